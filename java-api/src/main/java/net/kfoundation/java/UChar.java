@@ -113,6 +113,15 @@ public class UChar {
     }
 
 
+    /**
+     * Returns the UChar for the given codepoint, sharing the underlying
+     * Scala instance for cached (Latin-1) characters.
+     */
+    public static UChar valueOf(int codePoint) {
+        return new UChar(net.kfoundation.scala.UChar.valueOf(codePoint));
+    }
+
+
     /**
      * Decodes a UTF-8 character producing a UChar.
      */
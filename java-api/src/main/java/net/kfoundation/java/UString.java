@@ -110,7 +110,8 @@ public class UString {
 
     /**
      * Constructs a UString from the given portion of a raw UTF-8 encoded array
-     * of bytes.
+     * of bytes. No copy is made; the result is a slice sharing the given
+     * array.
      */
     public static UString of(byte[] octets, int offset, int size) {
         return of(net.kfoundation.scala.UString.of(octets, offset, size));
@@ -139,6 +140,23 @@ public class UString {
     }
 
 
+    /**
+     * Tests if this string is a slice sharing a larger array.
+     */
+    public boolean isSlice() {
+        return impl.isSlice();
+    }
+
+
+    /**
+     * If this string is a slice, produces a copy that does not share the
+     * array of its origin. Otherwise, returns this string.
+     */
+    public UString compact() {
+        return impl.isSlice() ? of(impl.compact()) : this;
+    }
+
+
     /**
      * Produces an iterator that can walk through this string
      * character-by-character.
@@ -194,9 +212,8 @@ public class UString {
 
     /**
      * Finds and reports the location of the first occurrence of the given
-     * character after the given offset, or -1 if not found. The location
-     * is measured in octets from the beginning of the UTF-8 representation
-     * of this string.
+     * character after the given offset, or -1 if not found. Both the offset
+     * and the location are measured in characters.
      */
     public int find(UChar ch, int offset) {
         return impl.find(ch.asScala(), offset);
@@ -205,15 +222,55 @@ public class UString {
 
     /**
      * Finds and reports the location of the first occurrence of the given
-     * string after the given offset, or -1 if not found. The location
-     * is measured in octets from the beginning of the UTF-8 representation
-     * of this string.
+     * string after the given offset, or -1 if not found. Both the offset
+     * and the location are measured in characters.
      */
     public int find(UString str, int offset) {
         return impl.find(str.impl, offset);
     }
 
 
+    /**
+     * Finds and reports the locations, measured in characters, of all
+     * non-overlapping occurrences of the given string.
+     */
+    public int[] findAll(UString str) {
+        return impl.findAll(str.impl);
+    }
+
+
+    /**
+     * Splits this string at every occurrence of the given delimiter. The
+     * parts returned are slices sharing the octets of this string.
+     */
+    public UString[] split(UString delimiter) {
+        return wrap(impl.split(delimiter.impl));
+    }
+
+
+    /**
+     * Splits this string at every occurrence of any of the given characters.
+     * The parts returned are slices sharing the octets of this string.
+     */
+    public UString[] split(UChar... delimiters) {
+        net.kfoundation.scala.UChar[] scalaDelimiters =
+            new net.kfoundation.scala.UChar[delimiters.length];
+        for(int i = 0; i < delimiters.length; i++) {
+            scalaDelimiters[i] = delimiters[i].asScala();
+        }
+        return wrap(impl.split(scalaDelimiters));
+    }
+
+
+    private static UString[] wrap(net.kfoundation.scala.UString[] parts) {
+        UString[] result = new UString[parts.length];
+        for(int i = 0; i < parts.length; i++) {
+            result[i] = of(parts[i]);
+        }
+        return result;
+    }
+
+
     /**
      * Converts all characters in this string to lower-case.
      */
@@ -241,7 +298,8 @@ public class UString {
     /**
      * Returns a desired portion of this string. Begin is inclusive, end
      * is exclusive. Location is measured in number of codepoints (as opposed
-     * to number of octets) from the beginning of this string.
+     * to number of octets) from the beginning of this string. The result is
+     * a slice sharing the octets of this string.
      */
     public UString subString(int begin, int end) {
         return of(impl.subString(begin, end));
@@ -250,7 +308,8 @@ public class UString {
 
     /**
      * Returns right portion of this string starting from the character
-     * (codepoint) at the given index
+     * (codepoint) at the given index. The result is a slice sharing the
+     * octets of this string.
      */
     public UString subString(int begin) {
         return of(impl.subString(begin));
@@ -309,7 +368,7 @@ public class UString {
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
-        return impl.equals(o);
+        return impl.equals(((UString) o).impl);
     }
 
 }
@@ -122,6 +122,15 @@ public class Path {
     }
 
 
+    /**
+     * Opens an InputStream to read from the file pointed to by this path
+     * through memory mapping. The result supports mark/reset.
+     */
+    public InputStream getMappedInputStream() {
+        return impl.newMappedInputStream();
+    }
+
+
     /**
      * Opens an OutputStream to write to the file pointed to by this path.
      */
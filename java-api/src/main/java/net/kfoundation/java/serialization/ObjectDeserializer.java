@@ -11,6 +11,8 @@ package net.kfoundation.java.serialization;
 
 import net.kfoundation.java.UString;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Optional;
 
 
@@ -80,10 +82,58 @@ public interface ObjectDeserializer {
     boolean readBooleanLiteral();
 
 
+    /**
+     * Reads an array of integers, written as a single literal, or otherwise
+     * throws an exception. Unless overridden, the literal is read as a string
+     * of space-separated numbers.
+     */
+    default long[] readLongArray() {
+        String[] words = wordsOf(readStringLiteral());
+        return Arrays.stream(words).mapToLong(Long::parseLong).toArray();
+    }
+
+
+    /**
+     * Reads an array of possibly fractional decimal numbers, written as a
+     * single literal, or otherwise throws an exception. Unless overridden,
+     * the literal is read as a string of space-separated numbers.
+     */
+    default double[] readDoubleArray() {
+        String[] words = wordsOf(readStringLiteral());
+        return Arrays.stream(words).mapToDouble(Double::parseDouble).toArray();
+    }
+
+
     /**
      * Attempts to read a property name (property definition) from input and
      * return its value. Returns empty if the attempt fails.
      */
     Optional<UString> tryReadPropertyName();
 
+
+    /**
+     * Skips the value of the property whose name was just read, be it a
+     * literal, an object, or a collection. Unless overridden, throws
+     * UnsupportedOperationException.
+     */
+    default void skipValue() {
+        throw new UnsupportedOperationException(
+            "Skipping values is not supported by " + getClass().getName());
+    }
+
+
+    /**
+     * Declares the properties of the object to be read next. Properties not
+     * in the given list may then be skipped by the deserializer, without
+     * being returned by tryReadPropertyName(). Unless overridden, does
+     * nothing, and all properties are returned.
+     */
+    default void select(Collection<UString> fields) {}
+
+
+    private static String[] wordsOf(UString literal) {
+        String str = literal.toString().trim();
+        return str.isEmpty() ? new String[0] : str.split(" +");
+    }
+
 }
\ No newline at end of file
@@ -11,6 +11,9 @@ package net.kfoundation.java.serialization;
 
 import net.kfoundation.java.UString;
 
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
 
 
 /**
@@ -42,6 +45,29 @@ public interface ObjectSerializer {
     ObjectSerializer writeLiteral(double value);
 
 
+    /**
+     * Writes an array of integers as a single literal. Unless overridden, it
+     * is written as a string of space-separated numbers.
+     */
+    default ObjectSerializer writeLiteral(long[] values) {
+        return writeLiteral(UString.of(Arrays.stream(values)
+            .mapToObj(Long::toString)
+            .collect(Collectors.joining(" "))));
+    }
+
+
+    /**
+     * Writes an array of possibly fractional decimal numbers as a single
+     * literal. Unless overridden, it is written as a string of space-separated
+     * numbers.
+     */
+    default ObjectSerializer writeLiteral(double[] values) {
+        return writeLiteral(UString.of(Arrays.stream(values)
+            .mapToObj(Double::toString)
+            .collect(Collectors.joining(" "))));
+    }
+
+
     /**
      * Writes a boolean literal to the output.
      */
@@ -34,6 +34,7 @@ public class ValueReadWriters {
 
         @Override
         public Map<UString, Object> read(ObjectDeserializer deserializer) {
+            deserializer.select(fieldMap.keySet());
             deserializer.readObjectBegin().ifPresent(name -> {
                 if(!name.equals(typeName)){
                     throw new DeserializationError(
@@ -50,11 +51,10 @@ public class ValueReadWriters {
                 UString pName = maybeProperty.get();
                 ValueReader<?> reader = fieldMap.get(pName);
                 if(reader == null) {
-                    throw new DeserializationError(
-                        "Found unexpected field in input while reading object of type "
-                        + typeName + ": " + pName);
+                    deserializer.skipValue();
+                } else {
+                    result.put(pName, reader.read(deserializer));
                 }
-                result.put(pName, reader.read(deserializer));
             }
 
             deserializer.readObjectEnd();
@@ -240,6 +240,38 @@ public class ValueReadWriters {
     };
 
 
+    /**
+     * Read-writer for long[].
+     */
+    public static ValueReadWriter<long[]> LONG_ARRAY = new ValueReadWriter<>() {
+        @Override
+        public long[] read(ObjectDeserializer deserializer) {
+            return deserializer.readLongArray();
+        }
+
+        @Override
+        public void write(ObjectSerializer serializer, long[] value) {
+            serializer.writeLiteral(value);
+        }
+    };
+
+
+    /**
+     * Read-writer for double[].
+     */
+    public static ValueReadWriter<double[]> DOUBLE_ARRAY = new ValueReadWriter<>() {
+        @Override
+        public double[] read(ObjectDeserializer deserializer) {
+            return deserializer.readDoubleArray();
+        }
+
+        @Override
+        public void write(ObjectSerializer serializer, double[] value) {
+            serializer.writeLiteral(value);
+        }
+    };
+
+
     /**
      * Read-writer for UString.
      */
@@ -284,6 +316,8 @@ public class ValueReadWriters {
         READERS.put(float.class, FLOAT);
         READERS.put(Double.class, DOUBLE);
         READERS.put(double.class, DOUBLE);
+        READERS.put(long[].class, LONG_ARRAY);
+        READERS.put(double[].class, DOUBLE_ARRAY);
         READERS.put(String.class, STRING);
         READERS.put(UString.class, USTRING);
     }
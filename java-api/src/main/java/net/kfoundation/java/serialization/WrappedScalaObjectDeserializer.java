@@ -10,8 +10,10 @@
 package net.kfoundation.java.serialization;
 
 import net.kfoundation.java.UString;
+import scala.jdk.javaapi.CollectionConverters;
 import scala.jdk.javaapi.OptionConverters;
 
+import java.util.Collection;
 import java.util.Optional;
 
 
@@ -80,10 +82,37 @@ public class WrappedScalaObjectDeserializer implements ObjectDeserializer {
     }
 
 
+    @Override
+    public long[] readLongArray() {
+        return impl.readLongArray();
+    }
+
+
+    @Override
+    public double[] readDoubleArray() {
+        return impl.readDoubleArray();
+    }
+
+
     @Override
     public Optional<UString> tryReadPropertyName() {
         return OptionConverters.toJava(
             impl.tryReadPropertyName().map(UString::of));
     }
 
+
+    @Override
+    public void skipValue() {
+        impl.skipValue();
+    }
+
+
+    @Override
+    public void select(Collection<UString> fields) {
+        impl.select(CollectionConverters.asScala(fields.stream()
+            .map(UString::asScala)
+            .iterator())
+            .toSeq());
+    }
+
 }
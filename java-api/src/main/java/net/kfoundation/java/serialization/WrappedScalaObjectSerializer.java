@@ -56,6 +56,20 @@ public class WrappedScalaObjectSerializer implements ObjectSerializer {
     }
 
 
+    @Override
+    public ObjectSerializer writeLiteral(long[] values) {
+        impl.writeLiteral(values);
+        return this;
+    }
+
+
+    @Override
+    public ObjectSerializer writeLiteral(double[] values) {
+        impl.writeLiteral(values);
+        return this;
+    }
+
+
     @Override
     public ObjectSerializer writeLiteral(boolean value) {
         impl.writeLiteral(value);
@@ -38,9 +38,10 @@ object ReadWriterGenerator {
     |      val pToken = deserializer.tryReadPropertyName()
     |      if(pToken.isDefined) {
     |        val pName = pToken.get
-    |        val reader = properties.getOrElse(pName, throw new DeserializationError(
-    |          "Reader for property is not provided: " + typeName + "." + pName))
-    |        result.put(pName, reader.read(deserializer))
+    |        properties.get(pName) match {
+    |          case Some(reader) => result.put(pName, reader.read(deserializer))
+    |          case None => deserializer.skipValue()
+    |        }
     |        loop()
     |      }
     |    }
@@ -129,6 +130,34 @@ object ReadWriterGenerator {
     |    deserializer.readBooleanLiteral()
     |}
     |
+    |implicit val LONG_ARRAY: ValueReadWriter[Array[Long]] = new ValueReadWriter[Array[Long]] {
+    |  override def write(serializer: ObjectSerializer, value: Array[Long]): Unit =
+    |    serializer.writeLiteral(value)
+    |  override def read(deserializer: ObjectDeserializer): Array[Long] =
+    |    deserializer.readLongArray()
+    |}
+    |
+    |implicit val INT_ARRAY: ValueReadWriter[Array[Int]] = new ValueReadWriter[Array[Int]] {
+    |  override def write(serializer: ObjectSerializer, value: Array[Int]): Unit =
+    |    serializer.writeLiteral(value)
+    |  override def read(deserializer: ObjectDeserializer): Array[Int] =
+    |    deserializer.readIntArray()
+    |}
+    |
+    |implicit val BYTE_ARRAY: ValueReadWriter[Array[Byte]] = new ValueReadWriter[Array[Byte]] {
+    |  override def write(serializer: ObjectSerializer, value: Array[Byte]): Unit =
+    |    serializer.writeLiteral(value)
+    |  override def read(deserializer: ObjectDeserializer): Array[Byte] =
+    |    deserializer.readByteArray()
+    |}
+    |
+    |implicit val DOUBLE_ARRAY: ValueReadWriter[Array[Double]] = new ValueReadWriter[Array[Double]] {
+    |  override def write(serializer: ObjectSerializer, value: Array[Double]): Unit =
+    |    serializer.writeLiteral(value)
+    |  override def read(deserializer: ObjectDeserializer): Array[Double] =
+    |    deserializer.readDoubleArray()
+    |}
+    |
     |def readWriterOf[T](implicit rw: ValueReadWriter[T]): ValueReadWriter[T] = rw
     |
     |def readWriterOf(className: UString): ValueReadWriter[Unit] = new ValueReadWriter[Unit] {
@@ -170,6 +199,8 @@ object ReadWriterGenerator {
     |    field1: (UString, ValueReadWriter[T1]))
     |  extends ValueReadWriter[T1]
     |{
+    |  private val fieldNames = new PropertyNames(Seq(field1._1))
+    |
     |  override def write(serializer: ObjectSerializer, value: T1): Unit = {
     |    serializer.writeObjectBegin(typeName)
     |    field1._2.writeProperty(serializer, field1._1, value)
@@ -177,17 +208,13 @@ object ReadWriterGenerator {
     |  }
     |
     |  override def read(deserializer: ObjectDeserializer): T1 = {
-    |    deserializer.select(Seq(field1._1))
+    |    deserializer.select(fieldNames.names)
     |    deserializer.readObjectBegin(typeName)
     |    var v1: Option[T1] = None
-    |    var propName = deserializer.tryReadPropertyName()
-    |    while(propName.isDefined) {
-    |      propName match {
-    |        case Some(field1._1) => v1 = Some(field1._2.read(deserializer))
-    |        case Some(x) => throw new DeserializationError("Unrecognized field: " + typeName + "." + x)
-    |        case _ =>
-    |      }
-    |      propName = deserializer.tryReadPropertyName()
+    |    var index = deserializer.tryReadPropertyIndex(fieldNames)
+    |    while(index != PropertyNames.NOT_FOUND) {
+    |      v1 = Some(field1._2.read(deserializer))
+    |      index = deserializer.tryReadPropertyIndex(fieldNames)
     |    }
     |    deserializer.readObjectEnd()
     |    v1.getOrElse(field1._2.getDefaultValue)
@@ -272,6 +299,7 @@ object ReadWriterGenerator {
     .append("  ").append(list(n, ", ", i => s"  field$i: (UString, ValueReadWriter[T$i])")).append(")\n")
     .append("  extends ValueReadWriter[(").append(typeParam(n)).append(")]\n")
     .append("{\n")
+    .append("  private val fieldNames = new PropertyNames(Seq(").append(list(n, ", ", i => s"field$i._1")).append("))\n\n")
     .append(_writeMethod(n)).append('\n')
     .append(_readMethod(n))
     .append("}\n\n")
@@ -280,17 +308,15 @@ object ReadWriterGenerator {
 
   def _readMethod(n: Int): String = new StringBuilder()
     .append("  override def read(deserializer: ObjectDeserializer): (").append(typeParam(n)).append(") = {\n")
-    .append("    deserializer.select(Seq(").append(list(n, ", ", i => s"field$i._1")).append("))\n")
+    .append("    deserializer.select(fieldNames.names)\n")
     .append("    deserializer.readObjectBegin(typeName)\n")
     .append(list(n, "\n", i => s"    var v$i: Option[T$i] = None")).append("\n")
-    .append("    var propName = deserializer.tryReadPropertyName()\n")
-    .append("    while(propName.isDefined) {\n")
-    .append("      propName match {\n")
-    .append(list(n, "", i => s"        case Some(field$i._1) => v$i = Some(field$i._2.read(deserializer))\n"))
-    .append("        case Some(x) => throw new DeserializationError(\"Unrecognized field: \" + typeName + \".\" + x)\n")
-    .append("        case _ => \n")
+    .append("    var index = deserializer.tryReadPropertyIndex(fieldNames)\n")
+    .append("    while(index != PropertyNames.NOT_FOUND) {\n")
+    .append("      index match {\n")
+    .append(list(n, "", i => s"        case ${i - 1} => v$i = Some(field$i._2.read(deserializer))\n"))
     .append("      }\n")
-    .append("      propName = deserializer.tryReadPropertyName()\n")
+    .append("      index = deserializer.tryReadPropertyIndex(fieldNames)\n")
     .append("    }\n")
     .append("    deserializer.readObjectEnd()\n")
     .append("    (").append(list(n, ",\n    ", i => s"v$i.getOrElse(field$i._2.getDefaultValue)")).append(")\n")
@@ -10,6 +10,7 @@
 package net.kfoundation.scala
 
 import java.io.{ByteArrayOutputStream, InputStream, OutputStream}
+import java.nio.ByteBuffer
 
 import net.kfoundation.scala.encoding.MurmurHash3
 
@@ -99,7 +100,7 @@ object UChar {
     def nextUChar: Option[UChar] = {
       val ch = nextCodePoint
       if (ch >= 0) {
-        Some(new UChar(ch, getLastReadOctets))
+        Some(valueOf(ch))
       } else
         None
     }
@@ -140,14 +141,21 @@ object UChar {
 
 
   /**
-   * Reads the given UTF-8 encoded array of bytes by its codepoints.
+   * Reads the given portion of a UTF-8 encoded array of bytes by its
+   * codepoints. Positions are measured from the beginning of that portion.
    */
-  class ByteArrayUtf8Reader(private val octets: Array[Byte])
+  class ByteArrayUtf8Reader(
+      private val octets: Array[Byte],
+      private val offset: Int,
+      size: Int)
     extends Utf8Reader
   {
-    private var pos: Int = 0
+    private val limit: Int = offset + size
+    private var pos: Int = offset
 
-    override def nextOctet: Int = if(pos < octets.length) {
+    def this(octets: Array[Byte]) = this(octets, 0, octets.length)
+
+    override def nextOctet: Int = if(pos < limit) {
       val i = pos
       pos += 1
       0xFF & octets(i)
@@ -155,16 +163,16 @@ object UChar {
       -1
     }
 
-    def seek(newPos: Int): Boolean = if(newPos >= octets.length) {
+    def seek(newPos: Int): Boolean = if(offset + newPos >= limit) {
       false
     } else {
-      pos = newPos
+      pos = offset + newPos
       true
     }
 
-    def getStreamPosition: Int = pos
+    def getStreamPosition: Int = pos - offset
 
-    def hasMore: Boolean = pos < octets.length
+    def hasMore: Boolean = pos < limit
   }
 
 
@@ -184,6 +192,30 @@ object UChar {
   private val SEQ4: Int = 0xf0
   private val SEQ5: Int = 0xf8
   private val SEQ6: Int = 0xfc
+  private val HIGH_BITS: Long = 0x8080808080808080L
+
+  // Character classes of ASCII codepoints, as given by java.lang.Character
+  private val LOWER_CASE = 0x01
+  private val UPPER_CASE = 0x02
+  private val NUMERIC = 0x04
+  private val ALPHABET = 0x08
+  private val ALPHANUMERIC = 0x10
+  private val WHITE_SPACE = 0x20
+  private val IDENTIFIER_START = 0x40
+  private val IDENTIFIER_PART = 0x80
+  private val ASCII_CLASSES: Array[Byte] = Array.tabulate(128)(ch =>
+    ((if(Character.isLowerCase(ch)) LOWER_CASE else 0) |
+      (if(Character.isUpperCase(ch)) UPPER_CASE else 0) |
+      (if(Character.isDigit(ch)) NUMERIC else 0) |
+      (if(Character.isAlphabetic(ch)) ALPHABET else 0) |
+      (if(Character.isLetterOrDigit(ch)) ALPHANUMERIC else 0) |
+      (if(Character.isWhitespace(ch)) WHITE_SPACE else 0) |
+      (if(Character.isJavaIdentifierStart(ch)) IDENTIFIER_START else 0) |
+      (if(Character.isJavaIdentifierPart(ch)) IDENTIFIER_PART else 0)).toByte)
+
+  @inline private def isAscii(ch: Int): Boolean = (ch & ~0x7f) == 0
+
+  @inline private def is(ch: Int, cls: Int): Boolean = (ASCII_CLASSES(ch) & cls) != 0
 
 
   private def write(codePoint: Int, n: Int, buffer: Array[Byte]): Unit = {
@@ -256,6 +288,148 @@ object UChar {
     }
 
 
+  private def isContinuation(octet: Int): Boolean = (octet & 0xc0) == NXT
+
+
+  /**
+   * Returns the size of the well-formed UTF-8 sequence of 2 to 4 octets
+   * starting at position i, or 0 if it is malformed, overlong, encodes a
+   * surrogate, or exceeds U+10FFFF.
+   */
+  private def getWellFormedSequenceSize(octets: Array[Byte], i: Int, end: Int): Int = {
+    val b0 = octets(i) & 0xff
+    if(b0 < 0xc2) {
+      0
+    } else if(b0 < 0xe0) {
+      if(i + 1 < end && isContinuation(octets(i + 1))) 2 else 0
+    } else if(b0 < 0xf0) {
+      if(i + 2 < end && isContinuation(octets(i + 2))) {
+        val b1 = octets(i + 1) & 0xff
+        val isValid = if(b0 == 0xe0) b1 >= 0xa0 && b1 <= 0xbf
+          else if(b0 == 0xed) b1 >= 0x80 && b1 <= 0x9f
+          else isContinuation(b1)
+        if(isValid) 3 else 0
+      } else {
+        0
+      }
+    } else if(b0 <= 0xf4) {
+      if(i + 3 < end && isContinuation(octets(i + 2)) && isContinuation(octets(i + 3))) {
+        val b1 = octets(i + 1) & 0xff
+        val isValid = if(b0 == 0xf0) b1 >= 0x90 && b1 <= 0xbf
+          else if(b0 == 0xf4) b1 >= 0x80 && b1 <= 0x8f
+          else isContinuation(b1)
+        if(isValid) 4 else 0
+      } else {
+        0
+      }
+    } else {
+      0
+    }
+  }
+
+
+  /**
+   * Tests if the given portion of the array is well-formed UTF-8, rejecting
+   * stray continuation octets, truncated, overlong and surrogate sequences,
+   * and code points beyond U+10FFFF. ASCII runs are skipped 8 octets at a
+   * time.
+   */
+  def isValidUtf8(octets: Array[Byte], offset: Int, size: Int): Boolean = {
+    val words = ByteBuffer.wrap(octets)
+    val end = offset + size
+    var i = offset
+    var isValid = true
+    while(isValid && i < end) {
+      if(octets(i) >= 0) {
+        i += 1
+        while(i + 8 <= end && (words.getLong(i) & HIGH_BITS) == 0) {
+          i += 8
+        }
+      } else {
+        val n = getWellFormedSequenceSize(octets, i, end)
+        isValid = n > 0
+        i += n
+      }
+    }
+    isValid
+  }
+
+
+  /**
+   * Counts the codepoints in the given portion of a UTF-8 encoded array, by
+   * counting the octets that are not continuation octets, 8 at a time. A
+   * codepoint begins at each such octet, and at the beginning of the portion
+   * even if it is a continuation octet. Stray continuation octets elsewhere
+   * belong to the codepoint before them, as with getCodePointSpan().
+   */
+  def countCodePoints(octets: Array[Byte], offset: Int, size: Int): Int = {
+    val words = ByteBuffer.wrap(octets)
+    val end = offset + size
+    var i = offset
+    var nContinuations = 0
+    while(i + 8 <= end) {
+      val w = words.getLong(i)
+      nContinuations += java.lang.Long.bitCount(w & ~(w << 1) & HIGH_BITS)
+      i += 8
+    }
+    while(i < end) {
+      if(isContinuation(octets(i))) {
+        nContinuations += 1
+      }
+      i += 1
+    }
+    if(size > 0 && isContinuation(octets(offset))) {
+      nContinuations -= 1
+    }
+    size - nContinuations
+  }
+
+
+  /**
+   * Returns the number of octets of the codepoint beginning at the given
+   * position, as counted by countCodePoints(): the octet there, followed by
+   * all continuation octets up to the next octet that is not one.
+   */
+  def getCodePointSpan(octets: Array[Byte], pos: Int, end: Int): Int = {
+    var i = pos + 1
+    while(i < end && isContinuation(octets(i))) {
+      i += 1
+    }
+    i - pos
+  }
+
+
+  /**
+   * Decodes the codepoint occupying the given span of octets, as returned by
+   * getCodePointSpan(). Returns U+FFFD if the span is not exactly one
+   * sequence as announced by its first octet.
+   */
+  def decodeUtf8Span(octets: Array[Byte], pos: Int, span: Int): Int =
+    if(getUtf8SizeWithFirstOctet(octets(pos)) == span) {
+      decodeUtf8(octets, pos, span, pos + span)
+    } else {
+      REPLACEMENT_CHARACTER
+    }
+
+
+  /**
+   * Tests if the given portion of the array has no octet with the high bit
+   * set, checking 8 octets at a time.
+   */
+  def isAscii(octets: Array[Byte], offset: Int, size: Int): Boolean = {
+    val words = ByteBuffer.wrap(octets)
+    val end = offset + size
+    var i = offset
+    while(i + 8 <= end && (words.getLong(i) & HIGH_BITS) == 0) {
+      i += 8
+    }
+    while(i < end && octets(i) >= 0) {
+      i += 1
+    }
+    i == end
+  }
+
+
   /**
    * Returns the number of octets necessary to represent the given character
    * in UTF-8 format.
@@ -311,6 +485,27 @@ object UChar {
     new ByteArrayUtf8Reader(input).nextCodePoint
 
 
+  /**
+   * Decodes the codepoint of n octets starting at the given position, as
+   * given by getUtf8SizeWithFirstOctet(). Returns U+FFFD if the sequence is
+   * truncated or does not start with a valid first octet.
+   */
+  def decodeUtf8(octets: Array[Byte], pos: Int, n: Int, end: Int): Int =
+    if(n == 1) {
+      octets(pos)
+    } else if(n == 0 || pos + n > end) {
+      REPLACEMENT_CHARACTER
+    } else {
+      var cp = octets(pos) & (0x7f >> n)
+      var i = 1
+      while(i < n) {
+        cp = (cp << 6) | (octets(pos + i) & 0x3f)
+        i += 1
+      }
+      cp
+    }
+
+
   /**
    * Converts the given codepoint to UTF-16 (Java native encoding).
    */
@@ -320,57 +515,87 @@ object UChar {
   /**
    * Tests if the given codepoint is a lower-case alphabetic character.
    */
-  def isLowerCase(ch: Int): Boolean = Character.isLowerCase(ch)
+  def isLowerCase(ch: Int): Boolean =
+    if(isAscii(ch)) is(ch, LOWER_CASE) else Character.isLowerCase(ch)
 
 
   /**
    * Tests if the given codepoint is a upper-case alphabetic character.
    */
-  def isUpperCase(ch: Int): Boolean = Character.isUpperCase(ch)
+  def isUpperCase(ch: Int): Boolean =
+    if(isAscii(ch)) is(ch, UPPER_CASE) else Character.isUpperCase(ch)
 
 
   /**
    * Tests if the given codepoint is a numeric character.
    */
-  def isNumeric(ch: Int): Boolean = Character.isDigit(ch)
+  def isNumeric(ch: Int): Boolean =
+    if(isAscii(ch)) is(ch, NUMERIC) else Character.isDigit(ch)
 
 
   /**
    * Tests if the given codepoint is an alphabetic character
    */
-  def isAlphabet(ch: Int): Boolean = Character.isAlphabetic(ch)
+  def isAlphabet(ch: Int): Boolean =
+    if(isAscii(ch)) is(ch, ALPHABET) else Character.isAlphabetic(ch)
 
 
   /**
    * Tests if the given codepoint is alphanumeric.
    */
-  def isAlphanumeric(ch: Int): Boolean = Character.isLetterOrDigit(ch)
+  def isAlphanumeric(ch: Int): Boolean =
+    if(isAscii(ch)) is(ch, ALPHANUMERIC) else Character.isLetterOrDigit(ch)
 
 
   /**
    * Tests if the given codepoint is a white space.
    */
-  def isWhiteSpace(ch: Int): Boolean = Character.isWhitespace(ch)
+  def isWhiteSpace(ch: Int): Boolean =
+    if(isAscii(ch)) is(ch, WHITE_SPACE) else Character.isWhitespace(ch)
+
+
+  /**
+   * Tests if the given codepoint can start a Java identifier.
+   */
+  def isIdentifierStart(ch: Int): Boolean =
+    if(isAscii(ch)) is(ch, IDENTIFIER_START) else Character.isJavaIdentifierStart(ch)
+
+
+  /**
+   * Tests if the given codepoint can be part of a Java identifier.
+   */
+  def isIdentifierPart(ch: Int): Boolean =
+    if(isAscii(ch)) is(ch, IDENTIFIER_PART) else Character.isJavaIdentifierPart(ch)
 
 
   /**
    * Returns the codepoint corresponding to the lower-case counterpart of the
    * given codepoint.
    */
-  def toLowerCase(ch: Int): Int = Character.toLowerCase(ch)
+  def toLowerCase(ch: Int): Int =
+    if(isAscii(ch)) {
+      if(is(ch, UPPER_CASE)) ch + 32 else ch
+    } else {
+      Character.toLowerCase(ch)
+    }
 
 
   /**
    * Returns the codepoint corresponding to the upper-case counterpart of the
    * given codepoint.
    */
-  def toUpperCase(ch: Int): Int = Character.toUpperCase(ch)
+  def toUpperCase(ch: Int): Int =
+    if(isAscii(ch)) {
+      if(is(ch, LOWER_CASE)) ch - 32 else ch
+    } else {
+      Character.toUpperCase(ch)
+    }
 
 
   /**
    * Creates a UChar from the given raw UTF-8 encoded character.
    */
-  def valueOfUtf8(utf8: Array[Byte]) = new UChar(decodeUtf8(utf8))
+  def valueOfUtf8(utf8: Array[Byte]): UChar = valueOf(decodeUtf8(utf8))
 
 
   /**
@@ -378,13 +603,51 @@ object UChar {
    * @param w1 UTF-16 first two bytes
    * @param w2 UTF-16 second two bytes
    */
-  def valueOfUtf16(w1: Char, w2: Char) = new UChar(Character.toCodePoint(w1, w2))
+  def valueOfUtf16(w1: Char, w2: Char): UChar = valueOf(Character.toCodePoint(w1, w2))
 
 
   /**
    * Converts a native character to UChar
    */
-  implicit def of(ch: Char): UChar = new UChar(ch)
+  implicit def of(ch: Char): UChar = valueOf(ch)
+
+
+  private val REPLACEMENT_CHARACTER = 0xfffd
+  private val LATIN1_CACHE: Array[UChar] = Array.tabulate(256)(new UChar(_))
+  @volatile private var bmpCache: Array[UChar] = _
+
+
+  /**
+   * Enables caching of every character in the Basic Multilingual Plane
+   * returned by valueOf(), rather than Latin-1 only. The cache is filled on
+   * demand and holds up to 65536 instances.
+   */
+  def enableBmpCache(): Unit =
+    if(bmpCache == null) {
+      bmpCache = new Array[UChar](0x10000)
+    }
+
+
+  /**
+   * Returns the UChar for the given codepoint. Latin-1 characters (and those
+   * of the BMP, if enableBmpCache() is called) are shared instances.
+   */
+  def valueOf(codePoint: Int): UChar =
+    if(codePoint >= 0 && codePoint < 256) {
+      LATIN1_CACHE(codePoint)
+    } else {
+      val cache = bmpCache
+      if(cache != null && codePoint >= 0 && codePoint < 0x10000) {
+        var ch = cache(codePoint)
+        if(ch == null) {
+          ch = new UChar(codePoint)
+          cache(codePoint) = ch
+        }
+        ch
+      } else {
+        new UChar(codePoint)
+      }
+    }
 
 }
 
@@ -421,49 +684,49 @@ class UChar private (val codePoint: Int, private val utf8: Array[Byte])
   /**
    * Tests of this character is lowercase.
    */
-  def isLowerCase: Boolean = Character.isLowerCase(codePoint)
+  def isLowerCase: Boolean = UChar.isLowerCase(codePoint)
 
 
   /**
    * Tests if this character is uppercase.
    */
-  def isUpperCase: Boolean = Character.isUpperCase(codePoint)
+  def isUpperCase: Boolean = UChar.isUpperCase(codePoint)
 
 
   /**
    * Tests if this character is numeric.
    */
-  def isNumeric: Boolean = Character.isDigit(codePoint)
+  def isNumeric: Boolean = UChar.isNumeric(codePoint)
 
 
   /**
    * Tests if this character is alphabetic.
    */
-  def isAlphabet: Boolean = Character.isAlphabetic(codePoint)
+  def isAlphabet: Boolean = UChar.isAlphabet(codePoint)
 
 
   /**
    * Tests if this character is alphanumeric.
    */
-  def isAlphanumeric: Boolean = Character.isLetterOrDigit(codePoint)
+  def isAlphanumeric: Boolean = UChar.isAlphanumeric(codePoint)
 
 
   /**
    * Tests if this character is a white space.
    */
-  def isWhiteSpace: Boolean = Character.isWhitespace(codePoint)
+  def isWhiteSpace: Boolean = UChar.isWhiteSpace(codePoint)
 
 
   /**
    * Converts this character to lowercase.
    */
-  def toLowerCase: UChar = new UChar(Character.toLowerCase(codePoint))
+  def toLowerCase: UChar = valueOf(UChar.toLowerCase(codePoint))
 
 
   /**
    * Converts this character to uppercase.
    */
-  def toUpperCase: UChar = new UChar(Character.toUpperCase(codePoint))
+  def toUpperCase: UChar = valueOf(UChar.toUpperCase(codePoint))
 
 
   /**
@@ -474,9 +737,16 @@ class UChar private (val codePoint: Int, private val utf8: Array[Byte])
 
 
   /**
-   * Returns UTF-8 representation of this character.
+   * Returns a copy of the UTF-8 representation of this character.
+   */
+  def toUtf8: Array[Byte] = utf8.clone()
+
+
+  /**
+   * UTF-8 representation of this character, without copying. Characters are
+   * shared, so it is not to be modified.
    */
-  def toUtf8: Array[Byte] = utf8
+  private[scala] def sharedUtf8: Array[Byte] = utf8
 
 
   /**
@@ -11,54 +11,89 @@ package net.kfoundation.scala
 
 import net.kfoundation.scala.UChar._
 import net.kfoundation.scala.UString.{CR, NOT_FOUND, PIPE, builder}
-import net.kfoundation.scala.encoding.{DecodingException, MurmurHash3}
+import net.kfoundation.scala.encoding.{DecodingException, MurmurHash3, NumberCodec}
+import net.kfoundation.scala.util.IntIterator
 
-import java.io.{ByteArrayOutputStream, InputStream, OutputStream}
+import net.kfoundation.scala.io.Path
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, InputStream, OutputStream}
 import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
 import java.nio.charset.StandardCharsets
-import scala.annotation.tailrec
+import java.nio.file.StandardOpenOption
+import scala.annotation.{tailrec, varargs}
+import scala.collection.immutable.ArraySeq
 import scala.language.implicitConversions
 
 
 
 object UString {
 
-  private class CodePointIterator(private val octets: Array[Byte]) extends Iterator[Int] {
-    private val reader = new ByteArrayUtf8Reader(octets)
-    private var ch = reader.nextCodePoint
+  private class CodePointIterator(octets: Array[Byte], offset: Int, end: Int)
+    extends IntIterator
+  {
+    private var pos = offset
 
-    override def hasNext: Boolean = ch != -1
+    override def hasNext: Boolean = pos < end
 
     override def next(): Int = {
-      val v = ch
-      ch = reader.nextCodePoint
-      v
+      val n = UChar.getCodePointSpan(octets, pos, end)
+      val cp = UChar.decodeUtf8Span(octets, pos, n)
+      pos += n
+      cp
     }
   }
 
 
-  private class UCharIterator(private val octets: Array[Byte]) extends Iterator[UChar] {
-    private val it: CodePointIterator = new CodePointIterator(octets)
+  private class UCharIterator(octets: Array[Byte], offset: Int, end: Int)
+    extends Iterator[UChar]
+  {
+    private val it = new CodePointIterator(octets, offset, end)
 
     override def hasNext: Boolean = it.hasNext
 
-    override def next(): UChar = {
-      val v = it.next()
-      if(v < 0)
-        null
-      else
-        new UChar(v)
-    }
+    override def next(): UChar = UChar.valueOf(it.next())
   }
 
 
-  /** High-performance buffered builder for UStrings */
-  class Builder {
-    private val buffer = new ByteArrayOutputStream()
+  /**
+   * High-performance buffered builder for UStrings. Not thread-safe; the
+   * buffer grows on demand starting from the given capacity, and is handed to
+   * the UString produced by build() without copying. Use reset() to reuse a
+   * builder.
+   */
+  class Builder(initialCapacity: Int) {
+    private var buffer = new Array[Byte](Math.max(initialCapacity, 1))
+    private var count = 0
+    private var shared = false
+
+    /** Creates a builder with the default initial capacity. */
+    def this() = this(DEFAULT_BUILDER_CAPACITY)
+
+    private def ensureCapacity(n: Int): Unit =
+      if(count + n > buffer.length) {
+        val capacity = Math.max(count + n, buffer.length << 1)
+        buffer = java.util.Arrays.copyOf(buffer, capacity)
+        shared = false
+      }
+
+    private[UString] def write(b: Int): Unit = {
+      ensureCapacity(1)
+      buffer(count) = b.toByte
+      count += 1
+    }
+
+    private[UString] def write(bytes: Array[Byte], offset: Int, size: Int): Unit = {
+      ensureCapacity(size)
+      System.arraycopy(bytes, offset, buffer, count, size)
+      count += size
+    }
+
+    private[UString] def write(bytes: Array[Byte]): Unit = write(bytes, 0, bytes.length)
 
     /** Appends a UString to the buffer. */
     def append(str: UString): Builder = {
-      buffer.write(str.toUtf8)
+      write(str.octets, str.lower, str.getUtf8Length)
       this
     }
 
@@ -66,13 +101,24 @@ object UString {
     def append(str: String): Builder = append(UString.of(str))
 
     /** Appends an Int to the buffer. */
-    def append(n: Int): Builder = append(UString.of(n))
+    def append(n: Int): Builder = append(n.toLong)
 
     /** Appends a Long to the buffer. */
-    def append(n: Long): Builder = append(UString.of(n))
+    def append(n: Long): Builder = {
+      ensureCapacity(NumberCodec.MAX_LONG_LENGTH)
+      count = NumberCodec.writeLong(n, buffer, count)
+      this
+    }
 
-    /** Appends a Double to the buffer. */
-    def append(n: Double): Builder = append(UString.of(n))
+    /**
+     * Appends the shortest decimal representation of the given Double that
+     * reads back to the same value.
+     */
+    def append(n: Double): Builder = {
+      ensureCapacity(NumberCodec.MAX_DOUBLE_LENGTH)
+      count = NumberCodec.writeDouble(n, buffer, count)
+      this
+    }
 
     /**
      * Replaces all occurances of `ch` in `str` with `replacement` and
@@ -87,13 +133,44 @@ object UString {
 
     /** Appends a Char to the buffer. */
     def append(ch: Char): Builder = {
-      buffer.write(UChar.encodeUtf8(ch))
+      if(ch < 0x80) {
+        write(ch)
+      } else {
+        write(UChar.encodeUtf8(ch))
+      }
+      this
+    }
+
+    /** Appends the UTF-8 encoding of the given codepoint to the buffer. */
+    def appendCodePoint(cp: Int): Builder = {
+      ensureCapacity(4)
+      if(cp < 0x80) {
+        buffer(count) = cp.toByte
+        count += 1
+      } else if(cp < 0x800) {
+        buffer(count) = (0xc0 | (cp >> 6)).toByte
+        buffer(count + 1) = (0x80 | (cp & 0x3f)).toByte
+        count += 2
+      } else if(cp < 0x10000) {
+        buffer(count) = (0xe0 | (cp >> 12)).toByte
+        buffer(count + 1) = (0x80 | ((cp >> 6) & 0x3f)).toByte
+        buffer(count + 2) = (0x80 | (cp & 0x3f)).toByte
+        count += 3
+      } else if(cp < 0x110000) {
+        buffer(count) = (0xf0 | (cp >> 18)).toByte
+        buffer(count + 1) = (0x80 | ((cp >> 12) & 0x3f)).toByte
+        buffer(count + 2) = (0x80 | ((cp >> 6) & 0x3f)).toByte
+        buffer(count + 3) = (0x80 | (cp & 0x3f)).toByte
+        count += 4
+      } else {
+        write(UChar.encodeUtf8(cp))
+      }
       this
     }
 
     /** Appends a UChar to the buffer. */
     def append(ch: UChar): Builder = {
-      buffer.write(ch.toUtf8)
+      write(ch.sharedUtf8)
       this
     }
 
@@ -106,8 +183,8 @@ object UString {
     private def digitToHex(b: Int): Int = if(b < 10) b + 48 else b + 55
 
     private def appendHexByte(b: Int): Unit = {
-      append(digitToHex((b >> 4) & 0xF).toChar)
-      append(digitToHex(b & 0xF).toChar)
+      write(digitToHex((b >> 4) & 0xF))
+      write(digitToHex(b & 0xF))
     }
 
     /**
@@ -115,6 +192,7 @@ object UString {
      * buffer.
      */
     def appendHex(bytes: Array[Byte]): Builder = {
+      ensureCapacity(bytes.length*2)
       bytes.foreach(appendHexByte(_))
       this
     }
@@ -131,17 +209,23 @@ object UString {
      * Appends the hexadecimal representation of the given number to the buffer.
      */
     def appendHex(n: Long): Builder = {
-      val buffer = ByteBuffer.allocate(8)
-      buffer.putLong(n)
-      appendHex(buffer.array())
+      ensureCapacity(16)
+      var shift = 56
+      while(shift >= 0) {
+        appendHexByte((n >> shift).toInt)
+        shift -= 8
+      }
+      this
     }
 
-    private def appendJoining(items: Iterable[UObject], delimiter: Array[Byte]): Builder = {
+    private def appendJoining(items: Iterable[UObject], delimiter: Array[Byte],
+      offset: Int, size: Int): Builder =
+    {
       val it = items.iterator
       while(it.hasNext) {
         it.next().appendTo(this)
         if(it.hasNext) {
-          buffer.write(delimiter)
+          write(delimiter, offset, size)
         }
       }
       this
@@ -151,15 +235,18 @@ object UString {
      * Appends all given items to the buffer, joining them using the given
      * delimiter.
      */
-    def appendJoining(items: Iterable[UObject], delimiter: UChar): Builder =
-      appendJoining(items, delimiter.toUtf8)
+    def appendJoining(items: Iterable[UObject], delimiter: UChar): Builder = {
+      val utf8 = delimiter.sharedUtf8
+      appendJoining(items, utf8, 0, utf8.length)
+    }
 
     /**
      * Appends all given items to the buffer, joining them using the given
      * delimiter.
      */
     def appendJoining(items: Iterable[UObject], delimiter: UString): Builder =
-      appendJoining(items, delimiter.toUtf8)
+      appendJoining(items, delimiter.octets, delimiter.lower,
+        delimiter.getUtf8Length)
 
     /**
      * Appends all the given items to the buffer. For items that are not
@@ -187,7 +274,7 @@ object UString {
       while(it.hasNext) {
         fn(this, it.next())
         if(it.hasNext) {
-          buffer.write(delimiter.toUtf8)
+          append(delimiter)
         }
       }
       this
@@ -199,11 +286,41 @@ object UString {
       this
     }
 
-    /** Returns the internal buffer as an UString. */
-    def build: UString = new UString(buffer.toByteArray)
+    /**
+     * Returns the contents of the buffer as an UString. The buffer is handed
+     * to the result if it is full, or if the content is large and at most
+     * half of the buffer is unused. Otherwise, the content is copied to a
+     * trimmed array. Appending after build() does not affect the result.
+     */
+    def build: UString =
+      if(count == buffer.length ||
+        (count >= MIN_SHARED_BUILDER_SIZE && buffer.length - count <= count))
+      {
+        shared = true
+        new UString(buffer, 0, count)
+      } else {
+        new UString(java.util.Arrays.copyOf(buffer, count))
+      }
+
+    /** Writes the contents of the buffer to the given stream. */
+    def writeToStream(os: OutputStream): Unit = os.write(buffer, 0, count)
+
+    /**
+     * Empties the buffer so that this builder can be reused. The capacity is
+     * retained, unless the buffer is shared with a UString produced by
+     * build().
+     */
+    def reset(): Builder = {
+      if(shared) {
+        buffer = new Array[Byte](buffer.length)
+        shared = false
+      }
+      count = 0
+      this
+    }
 
     /** The size of the string currently held in the buffer. */
-    def size: Int = buffer.size()
+    def size: Int = count
   }
 
 
@@ -244,6 +361,17 @@ object UString {
 
 
   private val NULL = new UString("null")
+  private val DEFAULT_BUILDER_CAPACITY = 64
+  private val MIN_SHARED_BUILDER_SIZE = 1024
+  private val HORSPOOL_MIN_LENGTH = 5
+  private val ASCII_LOWER_CASE: Array[Byte] = Array.tabulate(128)(i =>
+    (if(i >= 'A' && i <= 'Z') i + 32 else i).toByte)
+  private val ASCII_UPPER_CASE: Array[Byte] = Array.tabulate(128)(i =>
+    (if(i >= 'a' && i <= 'z') i - 32 else i).toByte)
+  private val INDEX_THRESHOLD = 256
+  private val INDEX_STRIDE_BITS = 6
+  private val INDEX_STRIDE = 1 << INDEX_STRIDE_BITS
+  private val MAX_ARRAY_SIZE = Int.MaxValue - 8
   private val PIPE: Byte = '|'
   private val CR: Byte = '\n'
 
@@ -254,15 +382,6 @@ object UString {
   val EMPTY: UString = new UString(Array.empty[Byte])
 
 
-  private def validateUtf8(bytes: Array[Byte]): Boolean = {
-    val n = bytes.length
-    var i = 0
-    while(i < n) {
-      i += getUtf8SizeWithFirstOctet(bytes(i))
-    }
-    i == n
-  }
-
   /** Reads a UString from the UTF-8 encoded stream. */
   def readUtf8(input: InputStream, nOctets: Int): UString = {
     val octets = input.readNBytes(nOctets)
@@ -270,13 +389,38 @@ object UString {
       throw new DecodingException(
         s"Not enough bytes to read. Expected:$nOctets, Actual: ${octets.length}")
     }
-    if(!validateUtf8(octets)) {
+    if(!UChar.isValidUtf8(octets, 0, octets.length)) {
       throw new DecodingException("Input is not valid UTF-8")
     }
     new UString(octets)
   }
 
 
+  /**
+   * Reads the UTF-8 encoded file pointed to by the given path, copying it
+   * from its memory mapping into a single array in one pass. Use
+   * CodeWalker.of(path) instead to lex files larger than 2 GB.
+   */
+  def mapFile(path: Path): UString = {
+    val channel = FileChannel.open(path.toJavaPath, StandardOpenOption.READ)
+    try {
+      val size = channel.size()
+      if(size > MAX_ARRAY_SIZE) {
+        throw new DecodingException(
+          s"File is too large to fit in a UString: $path ($size octets)")
+      }
+      val octets = new Array[Byte](size.toInt)
+      channel.map(FileChannel.MapMode.READ_ONLY, 0, size).get(octets)
+      if(!UChar.isValidUtf8(octets, 0, octets.length)) {
+        throw new DecodingException(s"File is not valid UTF-8: $path")
+      }
+      new UString(octets)
+    } finally {
+      channel.close()
+    }
+  }
+
+
   implicit def of(str: UString): String = str.toString
 
 
@@ -305,25 +449,47 @@ object UString {
 
 
   /**
-   * Converts the given portion of a way UTF-8 encoded byte array to UString.
+   * Converts the given portion of a raw UTF-8 encoded byte array to UString.
+   * No copy is made; the result is a slice sharing the given array. Use
+   * compact() on the result to obtain a copy independent of that array.
    */
   def of(octets: Array[Byte], offset: Int, size: Int): UString = {
-    val selection = new Array[Byte](size)
-    octets.drop(offset).copyToArray(selection)
-    new UString(selection)
+    if(offset < 0 || size < 0 || offset + size > octets.length) {
+      throw new IndexOutOfBoundsException(
+        s"offset: $offset, size: $size (array length: ${octets.length})")
+    }
+    new UString(octets, offset, offset + size)
   }
 
 
+  /**
+   * Converts the remaining octets of the given UTF-8 encoded buffer to
+   * UString. If the buffer is backed by an accessible array, no copy is made
+   * and the result is a slice of that array. Otherwise, such as for direct
+   * and mapped buffers, the octets are copied. The position of the buffer is
+   * not affected.
+   */
+  def of(buffer: ByteBuffer): UString =
+    if(buffer.hasArray) {
+      val offset = buffer.arrayOffset() + buffer.position()
+      new UString(buffer.array(), offset, offset + buffer.remaining())
+    } else {
+      val octets = new Array[Byte](buffer.remaining())
+      buffer.duplicate().get(octets)
+      new UString(octets)
+    }
+
+
   /**
    * Coverts a Long value to UString
    */
-  def of(n: Long): UString = of(n.toString)
+  def of(n: Long): UString = new Builder(NumberCodec.MAX_LONG_LENGTH).append(n).build
 
 
   /**
    * Converts a Double value to UString
    */
-  def of(n: Double): UString = of(n.toString)
+  def of(n: Double): UString = new Builder(NumberCodec.MAX_DOUBLE_LENGTH).append(n).build
 
 
   /** Produces the hexadecimal representation of the given byte array. */
@@ -335,19 +501,21 @@ object UString {
   def ofHex(n: Long): UString = builder.appendHex(n).build
 
 
-  private def join(objSeq: Iterable[UObject], delimiter: Array[Byte]): UString = {
+  private def join(objSeq: Iterable[UObject], delimiter: Array[Byte],
+    offset: Int, delimiterSize: Int): UString =
+  {
     val seq = objSeq.map(_.toUString)
     val size = seq.foldLeft(0)((a, b) => a + b.getUtf8Length) +
-      delimiter.length*Math.max(seq.size-1, 0)
-    val output = new ByteArrayOutputStream(size)
+      delimiterSize*Math.max(seq.size-1, 0)
+    val output = new Builder(size)
     val it = seq.iterator
     while(it.hasNext) {
-      output.write(it.next().getOctets)
+      output.append(it.next())
       if(it.hasNext) {
-        output.write(delimiter)
+        output.write(delimiter, offset, delimiterSize)
       }
     }
-    new UString(output.toByteArray)
+    output.build
   }
 
 
@@ -356,23 +524,32 @@ object UString {
    * delimiter in between them.
    */
   def join(parts: Iterable[UObject], delimiter: UString): UString =
-    join(parts, delimiter.toUtf8)
+    join(parts, delimiter.octets, delimiter.lower, delimiter.getUtf8Length)
 
 
   /**
    * Joins the given list of objects into a UString with putting the given
    * delimiter in between them.
    */
-  def join(parts: Iterable[UObject], delimiter: UChar): UString =
-    join(parts, delimiter.toUtf8)
+  def join(parts: Iterable[UObject], delimiter: UChar): UString = {
+    val utf8 = delimiter.sharedUtf8
+    join(parts, utf8, 0, utf8.length)
+  }
 
 
   /** Joins the given objects into a UString. */
-  def join(parts: UObject*): UString = join(parts, Array.emptyByteArray)
+  def join(parts: UObject*): UString = join(parts, Array.emptyByteArray, 0, 0)
 
 
   /** Create a new Builder instance. */
   def builder: Builder = new Builder
+
+
+  /**
+   * Create a new Builder instance, with a buffer presized to the given
+   * number of bytes.
+   */
+  def builder(capacity: Int): Builder = new Builder(capacity)
 }
 
 
@@ -407,10 +584,29 @@ object UString {
  * get the number of bytes use getUtf8Length(). substring() methods also
  * work based on character (codepoint) location, as one would naturally expect.
  *
- * @constructor creates a UString from a UTF-8 encoded raw array of bytes.
+ * A UString may be a slice of a larger array, i.e. it may share the array of
+ * another string and only cover a portion of it. subString(), split(), and
+ * UString.of(octets, offset, size) produce such slices without copying any
+ * data. Use compact() to detach a slice from the array it shares.
+ *
+ * @constructor creates a UString from the portion of a UTF-8 encoded raw
+ *              array of bytes between lower (inclusive) and upper (exclusive).
  */
-class UString private(octets: Array[Byte]) extends UObject {
+class UString private(
+    private val octets: Array[Byte],
+    private val lower: Int,
+    private val upper: Int)
+  extends UObject
+{
   private var length: Integer = _
+  private var ascii: java.lang.Boolean = _
+  private var hash: Int = 0
+  private var hashIsZero: Boolean = false
+  @volatile private var codePointIndex: Array[Int] = _
+  @volatile private var shiftTable: Array[Int] = _
+
+
+  private def this(octets: Array[Byte]) = this(octets, 0, octets.length)
 
 
   /** Creates a UString from a native String */
@@ -418,71 +614,84 @@ class UString private(octets: Array[Byte]) extends UObject {
     nativeString.getBytes(StandardCharsets.UTF_8))
 
 
-  private def getOctets: Array[Byte] = octets
-
-
-  private def codePointIterator: Iterator[Int] =
-    new UString.CodePointIterator(octets)
-
-
   @tailrec
-  private def getCharCount(n: Int, offset: Int, size: Int): Int =
-    if(offset < octets.length) {
-      getCharCount(n, offset + UChar.getUtf8SizeWithFirstOctet(octets(offset)), size+1)
+  private def octetsEqual(i: Int, that: UString): Boolean =
+    if(i < 0) {
+      true
+    } else if(octets(lower + i) == that.octets(that.lower + i)) {
+      octetsEqual(i - 1, that)
     } else {
-      size
+      false
     }
 
 
   @tailrec
-  private def find(target: Seq[Byte], offset: Int, i: Int, cp: Int): Int =
-    if(offset >= octets.length) {
-      NOT_FOUND
-    } else if(offset + i >= octets.length) {
-      find(target, offset + 1, 0, cp + codePointInc(offset))
-    } else if(i == target.length) {
-      cp
-    } else if(target(i) == octets(offset + i)) {
-      find(target, offset, i + 1, cp)
+  private def locationOfCodePointAtIndex(pos: Int, i: Int, index: Int): Int =
+    if(i >= index) {
+      pos
+    } else if(pos >= upper) {
+      throw new IndexOutOfBoundsException(index.toString + " (string length: " + getLength + ")")
     } else {
-      find(target, offset + 1, 0, cp + codePointInc(offset))
+      locationOfCodePointAtIndex(
+        pos + UChar.getCodePointSpan(octets, pos, upper), i + 1, index)
     }
 
 
-  private def codePointInc(offset: Int): Int =
-    if(UChar.getUtf8SizeWithFirstOctet(octets(offset)) > 0) 1 else 0
-
-
-  private def locationOfCodePointAtIndex(index: Int): Int =
-    locationOfCodePointAtIndex(0, 0, index)
-
-
-  @tailrec
-  private def octetsEqual(i: Int, thatOctets: Array[Byte]): Boolean =
-    if(i < 0) {
-      true
-    } else if(octets(i) == thatOctets(i)) {
-      octetsEqual(i - 1, thatOctets)
-    } else {
-      false
+  /**
+   * Builds the sparse index of long strings, holding the position of every
+   * INDEX_STRIDE-th code point. Code points are delimited the same way they
+   * are counted by getLength().
+   */
+  private def getCodePointIndex: Array[Int] = {
+    var index = codePointIndex
+    if(index == null) {
+      index = new Array[Int]((getUtf8Length >> UString.INDEX_STRIDE_BITS) + 1)
+      var pos = lower
+      var n = 0
+      while(pos < upper) {
+        if((n & (UString.INDEX_STRIDE - 1)) == 0) {
+          index(n >> UString.INDEX_STRIDE_BITS) = pos
+        }
+        pos += UChar.getCodePointSpan(octets, pos, upper)
+        n += 1
+      }
+      val nEntries = ((n - 1) >> UString.INDEX_STRIDE_BITS) + 1
+      if(nEntries < index.length) {
+        index = java.util.Arrays.copyOf(index, nEntries)
+      }
+      codePointIndex = index
     }
+    index
+  }
 
 
-  @tailrec
-  private def locationOfCodePointAtIndex(offset: Int, i: Int, index: Int): Int =
-    if(offset >= octets.length) {
-      throw new IndexOutOfBoundsException(index.toString + " (string length: " + getLength + ")")
-    } else if(i < index) {
-      locationOfCodePointAtIndex(offset + UChar.getUtf8SizeWithFirstOctet(octets(offset)), i + 1, index)
+  /**
+   * Returns the position in octets of the code point at the given index,
+   * continuing the search from the given position and its code point index,
+   * unless a shortcut is available.
+   */
+  private def locate(index: Int, pos: Int, i: Int): Int =
+    if(index < i) {
+      throw new IndexOutOfBoundsException(index.toString)
+    } else if(isAscii) {
+      if(index > getUtf8Length) {
+        throw new IndexOutOfBoundsException(
+          index.toString + " (string length: " + getUtf8Length + ")")
+      }
+      lower + index
+    } else if(index - i >= UString.INDEX_STRIDE &&
+      getUtf8Length >= UString.INDEX_THRESHOLD)
+    {
+      val cpIndex = getCodePointIndex
+      val k = Math.min(
+        Math.min(index, getLength - 1) >> UString.INDEX_STRIDE_BITS,
+        cpIndex.length - 1)
+      locationOfCodePointAtIndex(cpIndex(k), k << UString.INDEX_STRIDE_BITS, index)
     } else {
-      offset
+      locationOfCodePointAtIndex(pos, i, index)
     }
 
 
-  private def find(target: Seq[Byte], index: Int): Int =
-    find(target, locationOfCodePointAtIndex(index), 0, index)
-
-
   @tailrec
   private def equalsIgnoreCase(thisReader: Utf8Reader, thatReader: Utf8Reader): Boolean = {
     val thisChar = thisReader.nextCodePoint
@@ -497,16 +706,70 @@ class UString private(octets: Array[Byte]) extends UObject {
   }
 
 
+  private def newReader: ByteArrayUtf8Reader =
+    new ByteArrayUtf8Reader(octets, lower, getUtf8Length)
+
+
+  /**
+   * Returns the raw UTF-8 representation of this string. If this string is
+   * a slice, the relevant portion of the shared array is copied.
+   */
+  def toUtf8: Array[Byte] =
+    if(lower == 0 && upper == octets.length) {
+      octets
+    } else {
+      java.util.Arrays.copyOfRange(octets, lower, upper)
+    }
+
+
+  /**
+   * Tests if this string is a slice sharing a larger array.
+   */
+  def isSlice: Boolean = getUtf8Length != octets.length
+
+
   /**
-   * Returns the raw UTF-8 representation of this string.
+   * If this string is a slice, produces a copy that does not share the
+   * array of its origin, allowing that array to be garbage collected.
+   * Otherwise, returns this string.
    */
-  def toUtf8: Array[Byte] = octets
+  def compact(): UString = if(isSlice) new UString(toUtf8) else this
+
+
+  /**
+   * Opens an InputStream reading the UTF-8 representation of this string,
+   * without copying it.
+   */
+  def newInputStream: ByteArrayInputStream =
+    new ByteArrayInputStream(octets, lower, getUtf8Length)
 
 
   /**
    * Returns an iterator to traverse this string by character (codepoint).
    */
-  def uCharIterator: Iterator[UChar] = new UString.UCharIterator(octets)
+  def uCharIterator: Iterator[UChar] =
+    new UString.UCharIterator(octets, lower, upper)
+
+
+  /**
+   * Returns an iterator to traverse the codepoints of this string, without
+   * boxing or allocating UChar objects.
+   */
+  def codePoints: IntIterator = new UString.CodePointIterator(octets, lower, upper)
+
+
+  /**
+   * Calls the given function for each codepoint of this string, decoding
+   * directly from its octets.
+   */
+  def foreachCodePoint(fn: Int => Unit): Unit = {
+    var pos = lower
+    while(pos < upper) {
+      val n = UChar.getCodePointSpan(octets, pos, upper)
+      fn(UChar.decodeUtf8Span(octets, pos, n))
+      pos += n
+    }
+  }
 
 
   /**
@@ -515,50 +778,175 @@ class UString private(octets: Array[Byte]) extends UObject {
    */
   def getLength: Int = {
     if(length == null) {
-      length = getCharCount(octets.length, 0, 0)
+      length = UChar.countCodePoints(octets, lower, getUtf8Length)
     }
     length
   }
 
+
+  /**
+   * Tests if all octets of this string are ASCII. The result is computed and
+   * cached the first time this method is called.
+   */
+  def isAscii: Boolean = {
+    if(ascii == null) {
+      ascii = UChar.isAscii(octets, lower, getUtf8Length)
+    }
+    ascii
+  }
+
   /**
    * Returns the number of bytes in UTF-8 representation of this string.
    */
-  def getUtf8Length: Int = octets.length
+  def getUtf8Length: Int = upper - lower
 
 
   /**
    * Tests if this string is empty
    */
-  def isEmpty: Boolean = octets.isEmpty
+  def isEmpty: Boolean = upper == lower
 
 
   /**
    * Returns the octet at the given index of UTF-8 representation of this
    * string.
    */
-  def getOctetAt(i: Int): Byte = octets(i)
+  def getOctetAt(i: Int): Byte =
+    if(i < 0 || i >= getUtf8Length) {
+      throw new IndexOutOfBoundsException(
+        i.toString + " (UTF-8 length: " + getUtf8Length + ")")
+    } else {
+      octets(lower + i)
+    }
 
 
   /**
-   * Compares two strings ignoring cases.
+   * Compares two strings ignoring cases. ASCII characters are compared
+   * directly on octets; the comparison switches to decoding code points at
+   * the first non-ASCII octet.
    */
-  def equalsIgnoreCase(that: UString): Boolean = equalsIgnoreCase(
-    new ByteArrayUtf8Reader(this.octets),
-    new ByteArrayUtf8Reader(that.toUtf8))
+  def equalsIgnoreCase(that: UString): Boolean = {
+    val table = UString.ASCII_LOWER_CASE
+    val n = Math.min(this.getUtf8Length, that.getUtf8Length)
+    var i = 0
+    var isEqual = true
+    var isAscii = true
+    while(isEqual && isAscii && i < n) {
+      val a = octets(lower + i)
+      val b = that.octets(that.lower + i)
+      if(a < 0 || b < 0) {
+        isAscii = false
+      } else {
+        isEqual = a == b || table(a) == table(b)
+        i += 1
+      }
+    }
+    if(!isEqual) {
+      false
+    } else if(isAscii) {
+      this.getUtf8Length == that.getUtf8Length
+    } else {
+      equalsIgnoreCase(
+        new ByteArrayUtf8Reader(octets, lower + i, getUtf8Length - i),
+        new ByteArrayUtf8Reader(that.octets, that.lower + i, that.getUtf8Length - i))
+    }
+  }
 
 
   /**
-   * Finds the index of the first occurrence of the given byte after the given
-   * offset in the UTF-8 representation of this string.
+   * Bad-character shift table of this string when used as a search pattern,
+   * computed the first time it is needed.
+   */
+  private def getShiftTable: Array[Int] = {
+    var table = shiftTable
+    if(table == null) {
+      val n = getUtf8Length
+      table = Array.fill(256)(n)
+      var i = 0
+      while(i < n - 1) {
+        table(octets(lower + i) & 0xff) = n - 1 - i
+        i += 1
+      }
+      shiftTable = table
+    }
+    table
+  }
+
+
+  private def regionMatches(pos: Int, target: Array[Byte], offset: Int, n: Int): Boolean = {
+    var i = 0
+    while(i < n && octets(pos + i) == target(offset + i)) {
+      i += 1
+    }
+    i == n
+  }
+
+
+  /**
+   * Returns the absolute position of the first occurrence of the target at
+   * or after the given position, or NOT_FOUND.
+   */
+  private def indexOf(target: UString, from: Int): Int = {
+    val n = target.getUtf8Length
+    val t = target.octets
+    val tLower = target.lower
+    if(n == 0) {
+      if(from < upper) from else NOT_FOUND
+    } else if(n < UString.HORSPOOL_MIN_LENGTH) {
+      indexOf(t, tLower, n, from)
+    } else {
+      val shift = target.getShiftTable
+      val tLast = t(tLower + n - 1)
+      var pos = from
+      var result = NOT_FOUND
+      while(result == NOT_FOUND && pos + n <= upper) {
+        val o = octets(pos + n - 1)
+        if(o == tLast && regionMatches(pos, t, tLower, n - 1)) {
+          result = pos
+        } else {
+          pos += shift(o & 0xff)
+        }
+      }
+      result
+    }
+  }
+
+
+  /**
+   * Returns the absolute position of the first occurrence of the n octets
+   * of target starting at tLower, at or after the given position, or
+   * NOT_FOUND. Used for patterns too short to benefit from Horspool.
    */
+  private def indexOf(target: Array[Byte], tLower: Int, n: Int, from: Int): Int = {
+    val first = target(tLower)
+    var pos = from
+    val last = upper - n
+    while(pos <= last && (octets(pos) != first ||
+      !regionMatches(pos + 1, target, tLower + 1, n - 1)))
+    {
+      pos += 1
+    }
+    if(pos <= last) pos else NOT_FOUND
+  }
+
+
+  /** Converts a position found at or after start to a character index. */
+  private def toFoundIndex(offset: Int, start: Int, found: Int): Int =
+    if(found == NOT_FOUND) {
+      NOT_FOUND
+    } else {
+      offset + UChar.countCodePoints(octets, start, found - start)
+    }
+
+
   @tailrec
-  final def find(octet: Byte, offset: Int): Int =
-    if(offset >= octets.length) {
-      -1
-    } else if(octets(offset) == octet) {
-      offset
+  private def findOctet(octet: Byte, pos: Int): Int =
+    if(pos >= upper) {
+      NOT_FOUND
+    } else if(octets(pos) == octet) {
+      pos - lower
     } else {
-      find(octet, offset + 1)
+      findOctet(octet, pos + 1)
     }
 
 
@@ -566,14 +954,51 @@ class UString private(octets: Array[Byte]) extends UObject {
    * Finds the index of the first occurrence of the given byte after the given
    * offset in the UTF-8 representation of this string.
    */
-  def find(char: UChar, offset: Int): Int = find(char.toUtf8, offset)
+  def find(octet: Byte, offset: Int): Int = findOctet(octet, lower + offset)
 
 
   /**
-   * Finds the index of the first occurrence of the given byte after the given
-   * offset in the UTF-8 representation of this string.
+   * Finds the index of the first occurrence of the given character after the
+   * given offset, both measured in characters.
+   */
+  def find(char: UChar, offset: Int): Int = {
+    val start = locate(offset, lower, 0)
+    val utf8 = char.sharedUtf8
+    toFoundIndex(offset, start, indexOf(utf8, 0, utf8.length, start))
+  }
+
+
+  /**
+   * Finds the index of the first occurrence of the given string after the
+   * given offset, both measured in characters. Patterns of 5 octets or more
+   * are searched using Boyer-Moore-Horspool.
    */
-  def find(str: UString, offset: Int): Int = find(str.getOctets, offset)
+  def find(str: UString, offset: Int): Int = {
+    val start = locate(offset, lower, 0)
+    toFoundIndex(offset, start, indexOf(str, start))
+  }
+
+
+  /**
+   * Finds the indexes, measured in characters, of all non-overlapping
+   * occurrences of the given string.
+   */
+  def findAll(str: UString): Array[Int] = {
+    val result = Array.newBuilder[Int]
+    if(!str.isEmpty) {
+      var pos = lower
+      var index = 0
+      var found = indexOf(str, pos)
+      while(found != NOT_FOUND) {
+        index += UChar.countCodePoints(octets, pos, found - pos)
+        result += index
+        index += str.getLength
+        pos = found + str.getUtf8Length
+        found = indexOf(str, pos)
+      }
+    }
+    result.result()
+  }
 
 
   def contains(char: UChar): Boolean = find(char, 0) != NOT_FOUND
@@ -586,92 +1011,162 @@ class UString private(octets: Array[Byte]) extends UObject {
    * Uses the given mapping function to convert characters of this string, and
    * returns the resulting string.
    */
-  def mapCodePoints(fn: Int => Int): UString = new UString(
-    codePointIterator.map(fn)
-      .foldLeft(
-        new BufferUtf8Writer())(
-        (w, ch) => {w.write(ch); w})
-      .get)
+  def mapCodePoints(fn: Int => Int): UString = {
+    val b = new UString.Builder(getUtf8Length)
+    foreachCodePoint(cp => b.appendCodePoint(fn(cp)))
+    b.build
+  }
+
+
+  /**
+   * Converts case using the given table for ASCII octets, and the given
+   * function for other code points. Returns this string if nothing changes.
+   */
+  private def convertCase(table: Array[Byte], fn: Int => Int): UString = {
+    var i = lower
+    while(i < upper && octets(i) >= 0 && table(octets(i)) == octets(i)) {
+      i += 1
+    }
+    if(i == upper) {
+      this
+    } else {
+      val b = new UString.Builder(getUtf8Length)
+      b.write(octets, lower, i - lower)
+      var isChanged = false
+      while(i < upper && octets(i) >= 0) {
+        val o = octets(i)
+        val c = table(o)
+        isChanged |= c != o
+        b.write(c)
+        i += 1
+      }
+      if(i < upper) {
+        val it = new UString.CodePointIterator(octets, i, upper)
+        while(it.hasNext) {
+          val cp = it.next()
+          if(cp < 0x80) {
+            b.write(table(cp))
+            isChanged |= table(cp) != cp
+          } else {
+            val mapped = fn(cp)
+            isChanged |= mapped != cp
+            b.appendCodePoint(mapped)
+          }
+        }
+      }
+      if(isChanged) b.build else this
+    }
+  }
 
 
   /**
-   * Converts this string to lower-case.
+   * Converts this string to lower-case. Returns this string if it has no
+   * upper-case characters.
    */
-  def toLowerCase: UString = mapCodePoints(UChar.toLowerCase)
+  def toLowerCase: UString = convertCase(UString.ASCII_LOWER_CASE, UChar.toLowerCase)
 
 
   /**
-   * Converts this string to upper-case.
+   * Converts this string to upper-case. Returns this string if it has no
+   * lower-case characters.
    */
-  def toUpperCase: UString = mapCodePoints(UChar.toUpperCase)
+  def toUpperCase: UString = convertCase(UString.ASCII_UPPER_CASE, UChar.toUpperCase)
 
 
   /**
    * Converts only the first letter of this string to uppercase.
    * @return
    */
-  def toFirstUpperCase: UString = {
-    val writer = new BufferUtf8Writer()
-    val it = codePointIterator
-    writer.write(UChar.toUpperCase(it.next()))
-    it.foreach(ch => writer.write(ch))
-    new UString(writer.get)
-  }
+  def toFirstUpperCase: UString =
+    if(isEmpty) {
+      this
+    } else if(octets(lower) >= 0) {
+      val first = octets(lower)
+      val upperCase = UString.ASCII_UPPER_CASE(first)
+      if(upperCase == first) {
+        this
+      } else {
+        val result = java.util.Arrays.copyOfRange(octets, lower, upper)
+        result(0) = upperCase
+        new UString(result)
+      }
+    } else {
+      val size = UChar.getCodePointSpan(octets, lower, upper)
+      val first = UChar.decodeUtf8Span(octets, lower, size)
+      val upperCase = UChar.toUpperCase(first)
+      if(upperCase == first) {
+        this
+      } else {
+        val b = new UString.Builder(getUtf8Length + 1)
+        b.appendCodePoint(upperCase)
+        b.write(octets, lower + size, getUtf8Length - size)
+        b.build
+      }
+    }
 
 
-  private def subSequence(begin: Int, end: Int): UString = {
-    val size = end - begin
-    val result = new Array[Byte](size)
-    Array.copy(octets, begin, result, 0, size)
-    new UString(result)
-  }
+  private def subSequence(begin: Int, end: Int): UString =
+    new UString(octets, begin, end)
 
 
   /**
-   * Creates a copy of the portion of this string starting (inclusive) and
-   * ending (exclusive) at the given values.
+   * Returns the portion of this string starting (inclusive) and ending
+   * (exclusive) at the given values. The result is a slice sharing the
+   * octets of this string. If end is before begin, the result is empty. On
+   * long strings, the first call builds a sparse index of code point
+   * positions, making subsequent calls constant-time.
    */
   def subString(begin: Int, end: Int): UString = {
-    val l1 = locationOfCodePointAtIndex(0, 0, begin)
-    val l2 = locationOfCodePointAtIndex(l1, begin, end)
-    subSequence(l1, l2)
+    val l1 = locate(begin, lower, 0)
+    if(end < begin) {
+      subSequence(l1, l1)
+    } else {
+      subSequence(l1, locate(end, l1, begin))
+    }
   }
 
 
   /**
-   * Creates a copy of the portion of this string starting (inclusive) at the
-   * given location up to the end.
+   * Returns the portion of this string starting (inclusive) at the given
+   * location up to the end. The result is a slice sharing the octets of this
+   * string.
    */
-  def subString(begin: Int): UString = {
-    val l = locationOfCodePointAtIndex(0, 0, begin)
-    subSequence(l, octets.length)
-  }
+  def subString(begin: Int): UString = subSequence(locate(begin, lower, 0), upper)
 
 
   /**
    * Produces a new string appending the one given to the end of this string.
    */
-  def append(str: UString): UString = append(str.getOctets)
+  def append(str: UString): UString = append(str.octets, str.lower, str.getUtf8Length)
+
+
+  private def append(raw: Array[Byte], offset: Int, size: Int): UString = {
+    val n = getUtf8Length
+    val result = new Array[Byte](n + size)
+    System.arraycopy(octets, lower, result, 0, n)
+    System.arraycopy(raw, offset, result, n, size)
+    new UString(result)
+  }
 
 
   /**
    * Produces a new string appending a raw UTF-8 encoded string to the end of
    * this one.
    */
-  def append(raw: Array[Byte]): UString = new UString(octets ++ raw)
+  def append(raw: Array[Byte]): UString = append(raw, 0, raw.length)
 
 
   /**
    * Produces a new string appending the given unicode character to the end of
    * this string.
    */
-  def append(ch: UChar): UString = append(ch.toUtf8)
+  def append(ch: UChar): UString = append(ch.sharedUtf8)
 
 
   /**
    * Writes this string to the given OutputString in its UTF-8 encoded form.
    */
-  def writeToStream(os: OutputStream): Unit = os.write(octets)
+  def writeToStream(os: OutputStream): Unit = os.write(octets, lower, getUtf8Length)
 
 
   /**
@@ -687,7 +1182,7 @@ class UString private(octets: Array[Byte]) extends UObject {
     if(o == null) UString.NULL else new UString(o.toString))
 
 
-  def toInt: Int = toString.toInt
+  def toInt: Int = NumberCodec.parseInt(octets, lower, upper)
 
 
   def toInt(radix: Int): Int = Integer.parseInt(toString, radix)
@@ -696,7 +1191,7 @@ class UString private(octets: Array[Byte]) extends UObject {
   /**
    * Parses this string to a Long
    */
-  def toLong: Long =  toString.toLong
+  def toLong: Long = NumberCodec.parseLong(octets, lower, upper)
 
 
   def toLong(radix: Int): Long = java.lang.Long.parseLong(toString, radix)
@@ -705,7 +1200,7 @@ class UString private(octets: Array[Byte]) extends UObject {
   /**
    * Parses this string to a Double
    */
-  def toDouble: Double = toString.toDouble
+  def toDouble: Double = NumberCodec.parseDouble(octets, lower, upper)
 
 
   /**
@@ -714,9 +1209,11 @@ class UString private(octets: Array[Byte]) extends UObject {
    * preceding it at the beginning of each line.
    */
   def stripMargin: UString = {
-    val buffer = new ByteArrayOutputStream()
+    val buffer = new ByteArrayOutputStream(getUtf8Length)
     var ignore = false
-    octets.foreach(o => {
+    var i = lower
+    while(i < upper) {
+      val o = octets(i)
       if(o == PIPE) {
         ignore = false
       } else {
@@ -727,23 +1224,95 @@ class UString private(octets: Array[Byte]) extends UObject {
           ignore = true
         }
       }
-    })
+      i += 1
+    }
     new UString(buffer.toByteArray)
   }
 
 
-  @tailrec
-  private def split(ch: UChar, offset: Int, s: Seq[UString]): Seq[UString] = {
-    val pos = find(ch, offset)
-    if(pos == NOT_FOUND) {
-      s.:+(subSequence(offset, octets.length))
-    } else {
-      split(ch, pos + ch.getUtf8Length, s.:+(subSequence(offset, pos)))
+  private def delimiterSizeAt(pos: Int, delimiters: Array[Array[Byte]]): Int = {
+    var n = 0
+    var i = 0
+    while(n == 0 && i < delimiters.length) {
+      val d = delimiters(i)
+      if(pos + d.length <= upper && regionMatches(pos, d, 0, d.length)) {
+        n = d.length
+      }
+      i += 1
     }
+    n
   }
 
 
-  def split(ch: UChar): Seq[UString] = split(ch, 0, Seq.empty)
+  /**
+   * Splits this string at every occurrence of the given character. The parts
+   * returned are slices sharing the octets of this string.
+   */
+  def split(ch: UChar): Seq[UString] = {
+    val utf8 = ch.sharedUtf8
+    val n = utf8.length
+    val parts = Array.newBuilder[UString]
+    var pos = lower
+    var found = indexOf(utf8, 0, n, pos)
+    while(found != NOT_FOUND) {
+      parts += subSequence(pos, found)
+      pos = found + n
+      found = indexOf(utf8, 0, n, pos)
+    }
+    parts += subSequence(pos, upper)
+    ArraySeq.unsafeWrapArray(parts.result())
+  }
+
+
+  /**
+   * Splits this string at every occurrence of the given delimiter, in a
+   * single pass. The parts returned are slices sharing the octets of this
+   * string.
+   */
+  def split(delimiter: UString): Array[UString] =
+    if(delimiter.isEmpty) {
+      Array(this)
+    } else {
+      val parts = Array.newBuilder[UString]
+      val n = delimiter.getUtf8Length
+      var pos = lower
+      var found = indexOf(delimiter, pos)
+      while(found != NOT_FOUND) {
+        parts += subSequence(pos, found)
+        pos = found + n
+        found = indexOf(delimiter, pos)
+      }
+      parts += subSequence(pos, upper)
+      parts.result()
+    }
+
+
+  /**
+   * Splits this string at every occurrence of any of the given characters,
+   * in a single pass. The parts returned are slices sharing the octets of
+   * this string.
+   */
+  @varargs
+  def split(delimiters: UChar*): Array[UString] = {
+    val encoded = delimiters.map(_.sharedUtf8).toArray
+    val isFirstOctet = new Array[Boolean](256)
+    encoded.foreach(d => isFirstOctet(d(0) & 0xff) = true)
+    val parts = Array.newBuilder[UString]
+    var begin = lower
+    var pos = lower
+    while(pos < upper) {
+      val n = if(isFirstOctet(octets(pos) & 0xff)) delimiterSizeAt(pos, encoded) else 0
+      if(n > 0) {
+        parts += subSequence(begin, pos)
+        pos += n
+        begin = pos
+      } else {
+        pos += 1
+      }
+    }
+    parts += subSequence(begin, upper)
+    parts.result()
+  }
 
 
   def replace(ch: UChar, replacement: UString): UString =
@@ -753,19 +1322,33 @@ class UString private(octets: Array[Byte]) extends UObject {
   /**
    * Converts this string to corresponding native representation.
    */
-  override def toString: String = new String(octets, StandardCharsets.UTF_8)
+  override def toString: String =
+    new String(octets, lower, getUtf8Length, StandardCharsets.UTF_8)
 
 
   /**
-   * Computes and returns the hashcode for this string using MurmurHash.
+   * Computes and returns the hashcode for this string using MurmurHash. This
+   * value is computed and cached the first time this method is called.
    */
-  override def hashCode(): Int = MurmurHash3.hash32x86(octets)
+  override def hashCode(): Int = {
+    var h = hash
+    if(h == 0 && !hashIsZero) {
+      h = MurmurHash3.hash32x86(octets, lower, getUtf8Length, 0)
+      if(h == 0) {
+        hashIsZero = true
+      } else {
+        hash = h
+      }
+    }
+    h
+  }
 
 
   override def equals(other: Any): Boolean = other match {
     case that: UString => (this eq that) ||
-      (this.octets.length == that.getUtf8Length &&
-        octetsEqual(octets.length - 1, that.getOctets))
+      (this.getUtf8Length == that.getUtf8Length &&
+        (this.hash == 0 || that.hash == 0 || this.hash == that.hash) &&
+        octetsEqual(getUtf8Length - 1, that))
     case _ => false
   }
 
@@ -774,4 +1357,4 @@ class UString private(octets: Array[Byte]) extends UObject {
 
 
   override def toUString: UString = this
-}
\ No newline at end of file
+}
@@ -11,6 +11,7 @@ package net.kfoundation.scala.db
 
 import net.kfoundation.scala.UString
 import net.kfoundation.scala.UString.Interpolator
+import net.kfoundation.scala.encoding.Escaper
 import net.kfoundation.scala.serialization.internals.ObjectStreamStateMachine
 import net.kfoundation.scala.serialization.{ObjectSerializer, SerializationError}
 
@@ -20,14 +21,6 @@ object AbstractQueryObjectSerializer {
   private val NULL: UString = "null"
   private val TRUE: UString = "true"
   private val FALSE: UString = "false"
-
-  private def escape(str: String): String = str.replace("\\", "\\\\")
-    .replace("\t", "\\t")
-    .replace("\b", "\\b")
-    .replace("\n", "\\n")
-    .replace("\r", "\\r")
-    .replace("\f", "\\f")
-    .replace("\'", "''")
 }
 
 
@@ -49,14 +42,14 @@ abstract class AbstractQueryObjectSerializer extends ObjectSerializer {
   }
 
 
-  private def flush(): Unit = {
+  private def writeStatement(): Unit = {
     import UString.of
 
     val table = tableName.getOrElse(throw new SerializationError(
       "Only a proper object can be serialized to an insert query"))
 
     val normalizedFields = fields.map(t => (t._1, t._2 match {
-      case str: UString => U"'${escape(str)}'"
+      case str: UString => U"'${Escaper.SQL.escape(str)}'"
       case i: Int => of(i)
       case l: Long => of(l)
       case d: Double => of(d)
@@ -109,7 +102,7 @@ abstract class AbstractQueryObjectSerializer extends ObjectSerializer {
     if (path.nonEmpty) {
       path = path.dropRight(1)
     } else if (tableName.nonEmpty) {
-      flush()
+      writeStatement()
     }
     this
   }
@@ -10,20 +10,16 @@
 package net.kfoundation.scala.db
 
 import net.kfoundation.scala.UString
-import net.kfoundation.scala.serialization.internals.IndentingWriter
+import net.kfoundation.scala.serialization.internals.{IndentingSerializerFactory, IndentingWriter}
 import net.kfoundation.scala.serialization.{ObjectSerializer, ObjectSerializerFactory}
 
-import java.io.OutputStream
-
 
 object InsertQueryObjectSerializer {
   val MIME_TYPE: UString = "application/sql"
 
-  val FACTORY: ObjectSerializerFactory = new ObjectSerializerFactory {
-    override def of(output: OutputStream, indentSize: Int, compact: Boolean): ObjectSerializer =
-      new InsertQueryObjectSerializer(new IndentingWriter(output, indentSize, compact))
-
-    override def getMediaType: UString = MIME_TYPE
+  val FACTORY: ObjectSerializerFactory = new IndentingSerializerFactory(MIME_TYPE) {
+    override protected def of(writer: IndentingWriter): ObjectSerializer =
+      new InsertQueryObjectSerializer(writer)
   }
 }
 
@@ -48,6 +44,7 @@ class InsertQueryObjectSerializer(writer: IndentingWriter)
     writer.writeNewLine()
     writer.write(UString.join(values, ", "))
     writer.write(")")
+    writer.flush()
   }
 
 }
\ No newline at end of file
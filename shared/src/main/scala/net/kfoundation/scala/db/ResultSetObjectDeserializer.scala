@@ -103,6 +103,12 @@ class ResultSetObjectDeserializer(rs: ResultSet) extends ObjectDeserializer {
   }
 
 
+  override def skipValue(): Unit = {
+    stateMachine.literal()
+    currentColumn += 1
+  }
+
+
   override protected def getCurrentLocation: CodeLocation =
     new CodeLocation("ResultSet")
 }
@@ -10,20 +10,16 @@
 package net.kfoundation.scala.db
 
 import net.kfoundation.scala.UString
-import net.kfoundation.scala.serialization.internals.IndentingWriter
+import net.kfoundation.scala.serialization.internals.{IndentingSerializerFactory, IndentingWriter}
 import net.kfoundation.scala.serialization.{ObjectSerializer, ObjectSerializerFactory}
 
-import java.io.OutputStream
-
 
 object UpdateQueryObjectSerializer {
   val MIME_TYPE: UString = "application/sql"
 
-  val FACTORY: ObjectSerializerFactory = new ObjectSerializerFactory {
-    override def of(output: OutputStream, indentSize: Int, compact: Boolean): ObjectSerializer =
-      new UpdateQueryObjectSerializer(new IndentingWriter(output, indentSize, compact))
-
-    override def getMediaType: UString = MIME_TYPE
+  val FACTORY: ObjectSerializerFactory = new IndentingSerializerFactory(MIME_TYPE) {
+    override protected def of(writer: IndentingWriter): ObjectSerializer =
+      new UpdateQueryObjectSerializer(writer)
   }
 }
 
@@ -50,5 +46,6 @@ class UpdateQueryObjectSerializer(writer: IndentingWriter)
       writer.write(",")
       writeField(t)
     })
+    writer.flush()
   }
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.encoding
+
+import java.io.{ByteArrayOutputStream, OutputStream}
+import java.nio.charset.StandardCharsets
+
+import net.kfoundation.scala.UString
+
+
+
+object Escaper {
+  private val HEX = "0123456789abcdef"
+
+
+  /**
+   * Makes an escaper from the given replacements. Unless a replacement for it
+   * is given, an ASCII control character is replaced by the result of the
+   * given function, or is written as it is if that returns null.
+   */
+  def apply(controlEscape: Int => String, replacements: (Char, String)*): Escaper = {
+    val table = new Array[Array[Byte]](128)
+    (0 until 0x20).foreach(ch => table(ch) = Option(controlEscape(ch))
+      .map(_.getBytes(StandardCharsets.US_ASCII))
+      .orNull)
+    replacements.foreach(r =>
+      table(r._1) = r._2.getBytes(StandardCharsets.US_ASCII))
+    new Escaper(table)
+  }
+
+
+  private def unicodeEscape(ch: Int): String =
+    "\\u00" + HEX.charAt(ch >> 4) + HEX.charAt(ch & 0xF)
+
+
+  /** JSON string escaping, with \\uXXXX for control characters. */
+  val JSON: Escaper = apply(unicodeEscape,
+    '"' -> "\\\"", '\\' -> "\\\\", '\n' -> "\\n", '\r' -> "\\r", '\t' -> "\\t",
+    '\b' -> "\\b", '\f' -> "\\f")
+
+  /** YAML double-quoted scalars accept all JSON escape sequences. */
+  val YAML: Escaper = JSON
+
+  /** K4 strings, supporting the escape sequences read by StringToken. */
+  val K4: Escaper = apply(_ => null,
+    '"' -> "\\\"", '\\' -> "\\\\", '\n' -> "\\n", '\r' -> "\\r", '\t' -> "\\t",
+    '\b' -> "\\b")
+
+  /** XML element text, where quotes need no escaping. */
+  val XML_TEXT: Escaper = apply(_ => null,
+    '&' -> "&amp;", '<' -> "&lt;", '>' -> "&gt;")
+
+  /** XML attribute values. */
+  val XML: Escaper = apply(_ => null,
+    '&' -> "&amp;", '<' -> "&lt;", '>' -> "&gt;", '"' -> "&quot;", '\'' -> "&apos;")
+
+  /** SQL string literals, quoted with single quotes. */
+  val SQL: Escaper = apply(_ => null,
+    '\\' -> "\\\\", '\t' -> "\\t", '\b' -> "\\b", '\n' -> "\\n", '\r' -> "\\r",
+    '\f' -> "\\f", '\'' -> "''")
+
+  /** CSV fields, quoted with double quotes. */
+  val CSV: Escaper = apply(_ => null, '"' -> "\"\"")
+}
+
+
+
+/**
+ * Table-driven escaping of text. For each ASCII character, the table holds
+ * the octets to write instead of it, or null if it needs no escaping.
+ * Non-ASCII characters are never escaped, so UTF-8 input can be processed
+ * octet by octet. Runs of octets that need no escaping are copied in bulk.
+ */
+class Escaper private(table: Array[Array[Byte]]) {
+  private val strings: Array[String] = table.map(e =>
+    if(e == null) null else new String(e, StandardCharsets.US_ASCII))
+
+
+  /**
+   * Returns the index of the first octet in the given range that needs
+   * escaping, or end if there is none.
+   */
+  def indexOfEscape(octets: Array[Byte], begin: Int, end: Int): Int = {
+    var i = begin
+    while(i < end && (octets(i) < 0 || table(octets(i)) == null)) {
+      i += 1
+    }
+    i
+  }
+
+
+  /** Writes the given range of UTF-8 octets to output, escaped. */
+  def escape(octets: Array[Byte], begin: Int, end: Int, output: OutputStream): Unit = {
+    var runBegin = begin
+    var i = indexOfEscape(octets, begin, end)
+    while(i < end) {
+      if(i > runBegin) {
+        output.write(octets, runBegin, i - runBegin)
+      }
+      output.write(table(octets(i)))
+      runBegin = i + 1
+      i = indexOfEscape(octets, runBegin, end)
+    }
+    if(end > runBegin) {
+      output.write(octets, runBegin, end - runBegin)
+    }
+  }
+
+
+  /** Produces an escaped version of the given string, or itself if it needs none. */
+  def escape(str: UString): UString = {
+    val octets = str.toUtf8
+    if(indexOfEscape(octets, 0, octets.length) == octets.length) {
+      str
+    } else {
+      val output = new ByteArrayOutputStream(octets.length + 16)
+      escape(octets, 0, octets.length, output)
+      UString.of(output.toByteArray)
+    }
+  }
+
+
+  /** Same as escape(UString), for Java strings. */
+  def escape(str: String): String = {
+    var i = 0
+    while(i < str.length && (str.charAt(i) >= 128 || table(str.charAt(i)) == null)) {
+      i += 1
+    }
+    if(i == str.length) {
+      str
+    } else {
+      val builder = new java.lang.StringBuilder(str.length + 16)
+      builder.append(str, 0, i)
+      while(i < str.length) {
+        val ch = str.charAt(i)
+        if(ch < 128 && table(ch) != null) {
+          builder.append(strings(ch))
+        } else {
+          builder.append(ch)
+        }
+        i += 1
+      }
+      builder.toString
+    }
+  }
+}
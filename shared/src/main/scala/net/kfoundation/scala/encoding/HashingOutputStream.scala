@@ -0,0 +1,39 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.encoding
+
+import java.io.{FilterOutputStream, OutputStream}
+
+
+
+/**
+ * Feeds all octets written to the given output stream to the given hasher as
+ * well. For example, this can be used to fingerprint the output of a
+ * serializer while it is being written, without buffering it.
+ *
+ * <pre>
+ * val out = new HashingOutputStream(path.newOutputStream, new Murmur3Hasher128)
+ * writer.write(JsonObjectSerializer.FACTORY, out, value)
+ * val fingerprint = out.hasher.digest()
+ * </pre>
+ */
+class HashingOutputStream[H <: Murmur3Hasher](out: OutputStream, val hasher: H)
+  extends FilterOutputStream(out)
+{
+  override def write(b: Int): Unit = {
+    out.write(b)
+    hasher.update(b.toByte)
+  }
+
+  override def write(b: Array[Byte], off: Int, len: Int): Unit = {
+    out.write(b, off, len)
+    hasher.update(b, off, len)
+  }
+}
@@ -0,0 +1,212 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.encoding
+
+import java.nio.{ByteBuffer, ByteOrder}
+
+
+
+/**
+ * Incrementally computes a MurmurHash3 over input that arrives in parts.
+ * Feeding the input in any number of parts produces the same digest as
+ * hashing it at once using [[MurmurHash3]]. Instances are not thread-safe.
+ */
+sealed trait Murmur3Hasher {
+  /** Number of octets consumed at once by the hash function. */
+  protected def blockSize: Int
+
+  private val tail = new Array[Byte](blockSize)
+  private var tailLength = 0
+  private var length: Long = 0
+
+  /** Mixes one block starting at the given index of the given buffer. */
+  protected def mixBlock(data: ByteBuffer, index: Int): Unit
+
+  protected def reinitialize(): Unit
+
+  /** Octets received since the last full block. */
+  protected def getTail: Array[Byte] = tail
+
+  protected def getTailLength: Int = tailLength
+
+  /** Total number of octets received so far. */
+  def getLength: Long = length
+
+
+  /** Feeds a single octet. */
+  def update(b: Byte): this.type = {
+    tail(tailLength) = b
+    tailLength += 1
+    length += 1
+    if(tailLength == blockSize) {
+      mixBlock(MurmurHash3.littleEndian(tail), 0)
+      tailLength = 0
+    }
+    this
+  }
+
+
+  /** Feeds the whole of the given array. */
+  def update(data: Array[Byte]): this.type = update(data, 0, data.length)
+
+
+  /** Feeds the given portion of the given array. */
+  def update(data: Array[Byte], offset: Int, size: Int): this.type = {
+    if(offset < 0 || size < 0 || offset + size > data.length) {
+      throw new IndexOutOfBoundsException(
+        s"offset: $offset, size: $size (array length: ${data.length})")
+    }
+    update(MurmurHash3.littleEndian(data), offset, size)
+    this
+  }
+
+
+  /**
+   * Feeds the remaining octets of the given buffer, which can be direct or
+   * memory-mapped. Like MessageDigest, the position of the buffer is
+   * advanced to its limit.
+   */
+  def update(data: ByteBuffer): this.type = {
+    val position = data.position()
+    val size = data.remaining()
+    update(data.duplicate().order(ByteOrder.LITTLE_ENDIAN), position, size)
+    data.position(position + size)
+    this
+  }
+
+
+  private def update(data: ByteBuffer, offset: Int, size: Int): Unit = {
+    var index = offset
+    val end = offset + size
+
+    while(tailLength > 0 && index < end) {
+      update(data.get(index))
+      index += 1
+    }
+
+    val nBlocks = (end - index) / blockSize
+    val blocksEnd = index + nBlocks * blockSize
+    while(index < blocksEnd) {
+      mixBlock(data, index)
+      index += blockSize
+    }
+    length += nBlocks.toLong * blockSize
+
+    while(index < end) {
+      update(data.get(index))
+      index += 1
+    }
+  }
+
+
+  /** Discards all input, so that this hasher can be used again. */
+  def reset(): this.type = {
+    tailLength = 0
+    length = 0
+    reinitialize()
+    this
+  }
+}
+
+
+
+/**
+ * Incremental version of MurmurHash3.hash32x86().
+ */
+class Murmur3Hasher32(seed: Int) extends Murmur3Hasher {
+  private var hash: Int = seed
+
+  def this() = this(0)
+
+  override protected def blockSize: Int = 4
+
+  override protected def mixBlock(data: ByteBuffer, index: Int): Unit =
+    hash = MurmurHash3.mix32(data.getInt(index), hash)
+
+  override protected def reinitialize(): Unit = hash = seed
+
+
+  /**
+   * Returns the hash of the input received so far. This hasher is not
+   * affected, and more input can be fed after this.
+   */
+  def digest(): Int = {
+    val tail = getTail
+    val n = getTailLength
+    var k1: Int = 0
+    if(n >= 3) k1 ^= (tail(2) & 0xff) << 16
+    if(n >= 2) k1 ^= (tail(1) & 0xff) << 8
+    if(n >= 1) k1 ^= (tail(0) & 0xff)
+    MurmurHash3.finish32(k1, hash, getLength)
+  }
+}
+
+
+
+/**
+ * Incremental version of MurmurHash3.hash128x64().
+ */
+class Murmur3Hasher128(seed: Int) extends Murmur3Hasher {
+  private var h1: Long = seed & 0xffffffffL
+  private var h2: Long = seed & 0xffffffffL
+
+  def this() = this(0)
+
+  override protected def blockSize: Int = 16
+
+  override protected def mixBlock(data: ByteBuffer, index: Int): Unit = {
+    h1 = MurmurHash3.mix128H1(h1 ^ MurmurHash3.mix128K1(data.getLong(index)), h2)
+    h2 = MurmurHash3.mix128H2(h1, h2 ^ MurmurHash3.mix128K2(data.getLong(index + 8)))
+  }
+
+  override protected def reinitialize(): Unit = {
+    h1 = seed & 0xffffffffL
+    h2 = seed & 0xffffffffL
+  }
+
+
+  private def getLong(tail: Array[Byte], from: Int, to: Int): Long = {
+    var k: Long = 0
+    var i = to - 1
+    while(i >= from) {
+      k = (k << 8) | (tail(i) & 0xff)
+      i -= 1
+    }
+    k
+  }
+
+
+  /**
+   * Returns the 128-bit hash of the input received so far, as two longs.
+   * This hasher is not affected, and more input can be fed after this.
+   */
+  def digest(): Array[Long] = {
+    val tail = getTail
+    val n = getTailLength
+    val length = getLength
+
+    var x1 = h1 ^ MurmurHash3.mix128K1(getLong(tail, 0, Math.min(n, 8)))
+    var x2 = h2 ^ MurmurHash3.mix128K2(getLong(tail, 8, Math.max(n, 8)))
+
+    x1 ^= length
+    x2 ^= length
+
+    x1 += x2
+    x2 += x1
+
+    x1 = MurmurHash3.fMix64(x1)
+    x2 = MurmurHash3.fMix64(x2)
+
+    x1 += x2
+    x2 += x1
+
+    Array(x1, x2)
+  }
+}
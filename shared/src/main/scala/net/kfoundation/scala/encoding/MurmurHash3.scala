@@ -26,8 +26,14 @@
 
 package net.kfoundation.scala.encoding
 
+import java.nio.{ByteBuffer, ByteOrder}
+
+import scala.collection.immutable.ArraySeq
+
 /**
  * This is Scala port of MurmurHash originally implemented in Java by Google.
+ * For inputs that are not available at once, see [[Murmur3Hasher32]] and
+ * [[Murmur3Hasher128]].
  */
 object MurmurHash3 {
 
@@ -58,31 +64,44 @@ object MurmurHash3 {
         (i << distance) | (i >>> -distance)
 
 
-    private def getLittleEndianInt(data: Array[Byte], index: Int) =
+    private[encoding] def getLittleEndianInt(data: Array[Byte], index: Int) =
         (data(index     ) & 0xff       ) |
         ((data(index + 1) & 0xff) <<  8) |
         ((data(index + 2) & 0xff) << 16) |
         ((data(index + 3) & 0xff) << 24)
 
 
-    private def mix32(k: Int, hash: Int): Int = {
+    private[encoding] def mix32(k: Int, hash: Int): Int = {
         val h = hash ^ rotateLeft(k * C1_32, R1_32) * C2_32
         rotateLeft(h, R2_32) * M_32 + N_32
     }
 
 
-    private def getLittleEndianLong(data: Seq[Byte], index: Int): Long =
-        (data(index).toLong & 0xff) |
-        ((data(index + 1).toLong & 0xff) << 8) |
-        ((data(index + 2).toLong & 0xff) << 16) |
-        ((data(index + 3).toLong & 0xff) << 24) |
-        ((data(index + 4).toLong & 0xff) << 32) |
-        ((data(index + 5).toLong & 0xff) << 40) |
-        ((data(index + 6).toLong & 0xff) << 48) |
-        ((data(index + 7).toLong & 0xff) << 56)
+    /**
+     * Mixes the 0 to 3 remaining octets, packed in k1, and the total length
+     * into the hash.
+     */
+    private[encoding] def finish32(k1: Int, hash: Int, length: Long): Int =
+        (hash ^ rotateLeft(k1 * C1_32, R1_32) * C2_32) ^ length.toInt
+
+
+    private[encoding] def mix128K1(k1: Long): Long =
+        rotateLeft(k1 * C1, R1) * C2
+
+
+    private[encoding] def mix128K2(k2: Long): Long =
+        rotateLeft(k2 * C2, R3) * C1
 
 
-    private def fMix64(h: Long): Long = {
+    private[encoding] def mix128H1(h1: Long, h2: Long): Long =
+        (rotateLeft(h1, R2) + h2) * M + N1
+
+
+    private[encoding] def mix128H2(h1: Long, h2: Long): Long =
+        (rotateLeft(h2, R1) + h1) * M + N2
+
+
+    private[encoding] def fMix64(h: Long): Long = {
         var hash = h
         hash ^= (hash >>> 33)
         hash *= 0xff51afd7ed558ccdL
@@ -92,6 +111,14 @@ object MurmurHash3 {
     }
 
 
+    /**
+     * Reads the given array in little-endian order, so that 8 octets can be
+     * read at once.
+     */
+    private[encoding] def littleEndian(data: Array[Byte]): ByteBuffer =
+        ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN)
+
+
     /**
      * Applies 32-bit variation of MurmurHash to the input. Seed is assumed to be 0.
      */
@@ -103,112 +130,46 @@ object MurmurHash3 {
      */
     def hash32x86(data: Array[Byte], offset: Int, length: Int, seed: Int): Int = {
         var hash: Int = seed
-        val nBlocks: Int = length >> 2
+        val end = offset + (length & ~3)
 
         // body
-        Range(0, nBlocks).foreach(i => {
-            val index: Int = offset + (i << 2)
-            val k: Int = getLittleEndianInt(data, index)
-            hash = mix32(k, hash)
-        })
+        var index = offset
+        while(index < end) {
+            hash = mix32(getLittleEndianInt(data, index), hash)
+            index += 4
+        }
 
         // tail
-        val index: Int = offset + (nBlocks << 2)
         var k1: Int = 0
         val pos = offset + length - index
         if(pos >= 3) k1 ^= (data(index + 2) & 0xff) << 16
         if(pos >= 2) k1 ^= (data(index + 1) & 0xff) << 8
         if(pos >= 1) k1 ^= (data(index) & 0xff)
 
-        // mix functions
-        k1 *= C1_32
-        k1 = Integer.rotateLeft(k1, R1_32)
-        k1 *= C2_32
-        hash ^= k1
-        hash ^ length
+        finish32(k1, hash, length)
     }
 
 
-    private def hash128x64Internal(data: Seq[Byte], offset: Int, length: Int,
-        seed: Long): Array[Long] =
-    {
-        var h1 = seed
-        var h2 = seed
-        val nBlocks = length >> 4
+    /**
+     * Applies 128-bit variation of MurmurHash to the given input. Seed is assumed to be 0.
+     */
+    def hash128x64(data: Array[Byte]): Array[Long] = hash128x64(data, 0, data.length, 0)
 
-        // body
-        Range(0, nBlocks).foreach({i =>
-            val index = offset + (i << 4)
-            var k1 = getLittleEndianLong(data, index)
-            var k2 = getLittleEndianLong(data, index + 8)
-
-            // mix functions for k1
-            k1 *= C1
-            k1 = rotateLeft(k1, R1)
-            k1 *= C2
-            h1 ^= k1
-            h1 = rotateLeft(h1, R2)
-            h1 += h2
-            h1 = h1 * M + N1
-
-            // mix functions for k2
-            k2 *= C2
-            k2 = rotateLeft(k2, R3)
-            k2 *= C1
-            h2 ^= k2
-            h2 = rotateLeft(h2, R1)
-            h2 += h1
-            h2 = h2 * M + N2
-        })
 
-        // tail
-        var k1: Long = 0
-        var k2: Long = 0
-        val index = offset + (nBlocks << 4)
-        val pos = offset + length - index
+    /**
+     * Applies 128-bit variation of MurmurHash to given part of the input with a custom seed.
+     */
+    def hash128x64(data: Array[Byte], offset: Int, length: Int, seed: Int): Array[Long] =
+        new Murmur3Hasher128(seed).update(data, offset, length).digest()
 
-        if(pos >= 15) k2 ^= (data(index + 14).toLong & 0xff) << 48
-        if(pos >= 14) k2 ^= (data(index + 13).toLong & 0xff) << 40
-        if(pos >= 13) k2 ^= (data(index + 12).toLong & 0xff) << 32
-        if(pos >= 12) k2 ^= (data(index + 11).toLong & 0xff) << 24
-        if(pos >= 11) k2 ^= (data(index + 10).toLong & 0xff) << 16
-        if(pos >= 10) k2 ^= (data(index + 9).toLong & 0xff) << 8
-        if(pos >= 9) k2 ^= (data(index + 8).toLong & 0xff)
-
-        k2 *= C2
-        k2 = rotateLeft(k2, R3)
-        k2 *= C1
-        h2 ^= k2
-
-        if(pos >= 8) k1 ^= (data(index + 7).toLong & 0xff) << 56
-        if(pos >= 7) k1 ^= (data(index + 6).toLong & 0xff) << 48
-        if(pos >= 6) k1 ^= (data(index + 5).toLong & 0xff) << 40
-        if(pos >= 5) k1 ^= (data(index + 4).toLong & 0xff) << 32
-        if(pos >= 4) k1 ^= (data(index + 3).toLong & 0xff) << 24
-        if(pos >= 3) k1 ^= (data(index + 2).toLong & 0xff) << 16
-        if(pos >= 2) k1 ^= (data(index + 1).toLong & 0xff) << 8
-        if(pos >= 1) k1 ^= data(index) & 0xff
-
-        k1 *= C1
-        k1 = rotateLeft(k1, R1)
-        k1 *= C2
-        h1 ^= k1
-
-        // finalization
-        h1 ^= length
-        h2 ^= length
-
-        h1 += h2
-        h2 += h1
-
-        h1 = fMix64(h1)
-        h2 = fMix64(h2)
-
-        h1 += h2
-        h2 += h1
-
-        Array(h1, h2)
-    }
+
+    /**
+     * Applies 128-bit variation of MurmurHash to the remaining octets of the
+     * given buffer, which can be direct or memory-mapped. Seed is assumed to
+     * be 0. The position of the buffer is not affected.
+     */
+    def hash128x64(data: ByteBuffer): Array[Long] =
+        new Murmur3Hasher128(0).update(data.duplicate()).digest()
 
 
     /**
@@ -218,8 +179,13 @@ object MurmurHash3 {
 
 
     /**
-     * Applies 128-bit variation of MurmurHash to given part of the input with a custom seed.
+     * Applies 128-bit variation of MurmurHash to given part of the input with
+     * a custom seed. Prefer the Array[Byte] variant; other than ArraySeq,
+     * sequences are first copied to an array.
      */
     def hash128x64(data: Seq[Byte], offset: Int, length: Int, seed: Int): Array[Long] =
-        hash128x64Internal(data, offset, length, seed & 0xffffffffL)
-}
\ No newline at end of file
+        data match {
+            case a: ArraySeq.ofByte => hash128x64(a.unsafeArray, offset, length, seed)
+            case _ => hash128x64(data.toArray, offset, length, seed)
+        }
+}
@@ -0,0 +1,566 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.encoding
+
+import java.math.BigInteger
+import java.nio.charset.StandardCharsets
+
+
+
+/**
+ * Encodes and decodes decimal numbers directly to and from ASCII/UTF-8
+ * octets, without going through java.lang.String.
+ *
+ * Doubles are written in the shortest form that reads back to the same value,
+ * using Raffaello Giulietti's Schubfach algorithm, and laid out the same way
+ * as java.lang.Double.toString() does, i.e. in plain notation between 10^-3
+ * (inclusive) and 10^7 (exclusive), and in computerized scientific notation
+ * otherwise. Only the layout is shared: before JDK 19, Double.toString() does
+ * not always pick the shortest digits, so for some values the two differ
+ * (e.g. 1.0E23, which JDK 17 writes as 9.999999999999999E22).
+ */
+object NumberCodec {
+
+  /** Maximum number of octets written by writeLong(). */
+  val MAX_LONG_LENGTH: Int = 20
+
+  /** Maximum number of octets written by writeDouble(). */
+  val MAX_DOUBLE_LENGTH: Int = 24
+
+  private val ZERO: Byte = '0'
+  private val MINUS: Byte = '-'
+  private val DOT: Byte = '.'
+  private val EXP: Byte = 'E'
+
+  private val POW10: Array[Long] = Array.iterate(1L, 19)(_ * 10)
+  private val POW10_DOUBLE: Array[Double] = Array.iterate(1.0, 23)(_ * 10)
+
+  // Schubfach constants for binary64
+  private val P = 53
+  private val Q_MIN = -1074
+  private val C_MIN = 1L << (P - 1)
+  private val C_TINY = 3
+  private val K_MIN = -324
+  private val K_MAX = 292
+  private val MASK_63 = (1L << 63) - 1
+  private val T_MASK = (1L << (P - 1)) - 1
+
+  /**
+   * 126-bit approximations of powers of ten, g = floor(10^-k 2^-r) + 1 with
+   * r = flog2pow10(-k) - 125, stored as g1 2^63 + g0 at 2(k - K_MIN).
+   */
+  private val G: Array[Long] = {
+    val table = new Array[Long](2*(K_MAX - K_MIN + 1))
+    val mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE)
+    var k = K_MIN
+    while(k <= K_MAX) {
+      val r = flog2pow10(-k) - 125
+      val g = (if(k <= 0) {
+        val p = BigInteger.TEN.pow(-k)
+        if(r >= 0) p.shiftRight(r) else p.shiftLeft(-r)
+      } else {
+        BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k))
+      }).add(BigInteger.ONE)
+      table(2*(k - K_MIN)) = g.shiftRight(63).longValue()
+      table(2*(k - K_MIN) + 1) = g.and(mask).longValue()
+      k += 1
+    }
+    table
+  }
+
+
+  // Eisel-Lemire constants for binary64
+  private val POW5_MIN = -342
+  private val POW5_MAX = 308
+  private val INFINITY_BITS = 0x7ffL << 52
+
+  /**
+   * 128-bit approximations of 5^q for q in [POW5_MIN, POW5_MAX], normalized
+   * so that the most significant bit is set, stored as high and low longs at
+   * 2(q - POW5_MIN). Values for negative q are rounded up, the others
+   * truncated.
+   */
+  private val POW5_128: Array[Long] = {
+    val table = new Array[Long](2*(POW5_MAX - POW5_MIN + 1))
+    val mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE)
+    val five = BigInteger.valueOf(5)
+    var q = POW5_MIN
+    while(q <= POW5_MAX) {
+      val c = if(q < 0) {
+        val p = five.pow(-q)
+        val z = p.bitLength()
+        if(q >= -27) {
+          BigInteger.ONE.shiftLeft(z + 127).divide(p).add(BigInteger.ONE)
+        } else {
+          val c = BigInteger.ONE.shiftLeft(2*z + 128).divide(p).add(BigInteger.ONE)
+          c.shiftRight(Math.max(0, c.bitLength() - 128))
+        }
+      } else {
+        val p = five.pow(q)
+        val l = p.bitLength()
+        if(l < 128) p.shiftLeft(128 - l) else p.shiftRight(l - 128)
+      }
+      table(2*(q - POW5_MIN)) = c.shiftRight(64).longValue()
+      table(2*(q - POW5_MIN) + 1) = c.and(mask).longValue()
+      q += 1
+    }
+    table
+  }
+
+
+  private def flog10pow2(q: Int): Int = ((q * 661971961083L) >> 41).toInt
+
+  private def flog10threeQuartersPow2(q: Int): Int =
+    ((q * 661971961083L - 274743187321L) >> 41).toInt
+
+  private def flog2pow10(e: Int): Int = ((e * 913124641741L) >> 38).toInt
+
+
+  private def multiplyHigh(x: Long, y: Long): Long = {
+    val x1 = x >> 32
+    val x2 = x & 0xFFFFFFFFL
+    val y1 = y >> 32
+    val y2 = y & 0xFFFFFFFFL
+    val z2 = x2 * y2
+    val t = x1 * y2 + (z2 >>> 32)
+    val z1 = (t & 0xFFFFFFFFL) + x2 * y1
+    x1 * y1 + (t >> 32) + (z1 >> 32)
+  }
+
+
+  private def unsignedMultiplyHigh(x: Long, y: Long): Long =
+    multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x)
+
+
+  /**
+   * Returns the bits of the double nearest to w 10^q, where w is non-zero,
+   * using the algorithm of Michael Eisel and Daniel Lemire.
+   */
+  private def eiselLemire(w: Long, q: Int): Long =
+    if(q < POW5_MIN) {
+      0
+    } else if(q > POW5_MAX) {
+      INFINITY_BITS
+    } else {
+      val lz = java.lang.Long.numberOfLeadingZeros(w)
+      val x = w << lz
+      val index = 2*(q - POW5_MIN)
+      var high = unsignedMultiplyHigh(x, POW5_128(index))
+      var low = x * POW5_128(index)
+      if((high & 0x1ff) == 0x1ff) {
+        val secondHigh = unsignedMultiplyHigh(x, POW5_128(index + 1))
+        low += secondHigh
+        if(java.lang.Long.compareUnsigned(secondHigh, low) > 0) {
+          high += 1
+        }
+      }
+
+      val upperBit = (high >>> 63).toInt
+      var mantissa = high >>> (upperBit + 9)
+      var power2 = (((152170 + 65536) * q) >> 16) + 63 + upperBit - lz + 1023
+
+      if(power2 <= 0) {
+        // subnormal
+        if(-power2 + 1 >= 64) {
+          0
+        } else {
+          mantissa >>>= -power2 + 1
+          mantissa += mantissa & 1
+          mantissa >>>= 1
+          mantissa | (if(mantissa < (1L << 52)) 0L else 1L << 52)
+        }
+      } else {
+        // halfway between two doubles: round to even
+        if(java.lang.Long.compareUnsigned(low, 1) <= 0 && q >= -4 && q <= 23 &&
+          (mantissa & 3) == 1 && (mantissa << (upperBit + 9)) == high)
+        {
+          mantissa &= ~1L
+        }
+        mantissa += mantissa & 1
+        mantissa >>>= 1
+        if(mantissa >= (2L << 52)) {
+          mantissa = 1L << 52
+          power2 += 1
+        }
+        mantissa &= ~(1L << 52)
+        if(power2 >= 0x7ff) INFINITY_BITS else mantissa | (power2.toLong << 52)
+      }
+    }
+
+
+  /** Rounds (g cp 2^-127) to odd. */
+  private def rop(g1: Long, g0: Long, cp: Long): Long = {
+    val x1 = multiplyHigh(g0, cp)
+    val y0 = g1 * cp
+    val y1 = multiplyHigh(g1, cp)
+    val z = (y0 >>> 1) + x1
+    val vbp = y1 + (z >>> 63)
+    vbp | (((z & MASK_63) + MASK_63) >>> 63)
+  }
+
+
+  private def countDigits(n: Long): Int = {
+    var i = 1
+    while(i < 19 && n >= POW10(i)) {
+      i += 1
+    }
+    i
+  }
+
+
+  /** Writes exactly n digits of the given non-negative value, right to left. */
+  private def writeDigits(value: Long, n: Int, buffer: Array[Byte], offset: Int): Unit = {
+    var v = value
+    var i = offset + n - 1
+    while(i >= offset) {
+      buffer(i) = (ZERO + v % 10).toByte
+      v /= 10
+      i -= 1
+    }
+  }
+
+
+  private def writeZeros(n: Int, buffer: Array[Byte], offset: Int): Int = {
+    var i = 0
+    while(i < n) {
+      buffer(offset + i) = ZERO
+      i += 1
+    }
+    offset + n
+  }
+
+
+  /**
+   * Writes the decimal representation of the given number to the buffer at
+   * the given offset, and returns the offset past the last octet written.
+   * At most MAX_LONG_LENGTH octets are written.
+   */
+  def writeLong(value: Long, buffer: Array[Byte], offset: Int): Int =
+    if(value == Long.MinValue) {
+      buffer(offset) = MINUS
+      buffer(offset + 1) = '9'.toByte
+      writeDigits(223372036854775808L, 18, buffer, offset + 2)
+      offset + 20
+    } else {
+      var pos = offset
+      if(value < 0) {
+        buffer(pos) = MINUS
+        pos += 1
+      }
+      val v = Math.abs(value)
+      val n = countDigits(v)
+      writeDigits(v, n, buffer, pos)
+      pos + n
+    }
+
+
+  /**
+   * Writes f 10^e, where f > 0 has no trailing zeros, in the notation of
+   * Double.toString().
+   */
+  private def writeDecimal(f: Long, e: Int, buffer: Array[Byte], offset: Int): Int = {
+    val n = countDigits(f)
+    val x = e + n - 1
+    if(x >= -3 && x < 7) {
+      if(x < 0) {
+        buffer(offset) = ZERO
+        buffer(offset + 1) = DOT
+        val pos = writeZeros(-x - 1, buffer, offset + 2)
+        writeDigits(f, n, buffer, pos)
+        pos + n
+      } else if(n <= x + 1) {
+        writeDigits(f, n, buffer, offset)
+        val pos = writeZeros(x + 1 - n, buffer, offset + n)
+        buffer(pos) = DOT
+        buffer(pos + 1) = ZERO
+        pos + 2
+      } else {
+        val nFraction = n - x - 1
+        val p = POW10(nFraction)
+        writeDigits(f / p, x + 1, buffer, offset)
+        buffer(offset + x + 1) = DOT
+        writeDigits(f % p, nFraction, buffer, offset + x + 2)
+        offset + n + 1
+      }
+    } else {
+      val p = POW10(n - 1)
+      buffer(offset) = (ZERO + f / p).toByte
+      buffer(offset + 1) = DOT
+      var pos = offset + 2
+      if(n == 1) {
+        buffer(pos) = ZERO
+        pos += 1
+      } else {
+        writeDigits(f % p, n - 1, buffer, pos)
+        pos += n - 1
+      }
+      buffer(pos) = EXP
+      writeLong(x, buffer, pos + 1)
+    }
+  }
+
+
+  private def writeDecimalStrippingZeros(f: Long, e: Int, buffer: Array[Byte], offset: Int): Int = {
+    var ff = f
+    var ee = e
+    while(ff % 10 == 0) {
+      ff /= 10
+      ee += 1
+    }
+    writeDecimal(ff, ee, buffer, offset)
+  }
+
+
+  private def writeSchubfach(q: Int, c: Long, dk: Int, buffer: Array[Byte], offset: Int): Int = {
+    val out = c & 1
+    val cb = c << 2
+    val cbr = cb + 2
+    var cbl = 0L
+    var k = 0
+    if(c != C_MIN || q == Q_MIN) {
+      cbl = cb - 2
+      k = flog10pow2(q)
+    } else {
+      cbl = cb - 1
+      k = flog10threeQuartersPow2(q)
+    }
+    val h = q + flog2pow10(-k) + 2
+    val g1 = G(2*(k - K_MIN))
+    val g0 = G(2*(k - K_MIN) + 1)
+    val vb = rop(g1, g0, cb << h)
+    val vbl = rop(g1, g0, cbl << h)
+    val vbr = rop(g1, g0, cbr << h)
+    val s = vb >> 2
+
+    var isDone = false
+    var result = 0
+    if(s >= 100) {
+      val sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4)
+      val tp10 = sp10 + 10
+      val upin = vbl + out <= (sp10 << 2)
+      val wpin = (tp10 << 2) + out <= vbr
+      if(upin != wpin) {
+        result = writeDecimalStrippingZeros(if(upin) sp10 else tp10, k, buffer, offset)
+        isDone = true
+      }
+    }
+
+    if(isDone) {
+      result
+    } else {
+      val t = s + 1
+      val uin = vbl + out <= (s << 2)
+      val win = (t << 2) + out <= vbr
+      val f = if(uin != win) {
+        if(uin) s else t
+      } else {
+        val cmp = vb - ((s + t) << 1)
+        if(cmp < 0 || (cmp == 0 && (s & 1) == 0)) s else t
+      }
+      writeDecimalStrippingZeros(f, k + dk, buffer, offset)
+    }
+  }
+
+
+  private def writeAscii(str: String, buffer: Array[Byte], offset: Int): Int = {
+    var i = 0
+    while(i < str.length) {
+      buffer(offset + i) = str.charAt(i).toByte
+      i += 1
+    }
+    offset + str.length
+  }
+
+
+  /**
+   * Writes the shortest decimal representation of the given number that
+   * reads back to the same value to the buffer at the given offset, and
+   * returns the offset past the last octet written. At most
+   * MAX_DOUBLE_LENGTH octets are written.
+   */
+  def writeDouble(value: Double, buffer: Array[Byte], offset: Int): Int = {
+    val bits = java.lang.Double.doubleToRawLongBits(value)
+    val t = bits & T_MASK
+    val bq = ((bits >>> (P - 1)) & 0x7FF).toInt
+    if(bq == 0x7FF) {
+      writeAscii(java.lang.Double.toString(value), buffer, offset)
+    } else {
+      var pos = offset
+      if(bits < 0) {
+        buffer(pos) = MINUS
+        pos += 1
+      }
+      if(bq != 0) {
+        val mq = -Q_MIN + 1 - bq
+        val c = C_MIN | t
+        if(0 < mq && mq < P && ((c >> mq) << mq) == c) {
+          writeDecimalStrippingZeros(c >> mq, 0, buffer, pos)
+        } else {
+          writeSchubfach(-mq, c, 0, buffer, pos)
+        }
+      } else if(t != 0) {
+        if(t < C_TINY) {
+          writeSchubfach(Q_MIN, 10*t, -1, buffer, pos)
+        } else {
+          writeSchubfach(Q_MIN, t, 0, buffer, pos)
+        }
+      } else {
+        buffer(pos) = ZERO
+        buffer(pos + 1) = DOT
+        buffer(pos + 2) = ZERO
+        pos + 3
+      }
+    }
+  }
+
+
+  private def numberFormatError(octets: Array[Byte], begin: Int, end: Int) =
+    new NumberFormatException("For input string: \"" +
+      new String(octets, begin, end - begin, StandardCharsets.UTF_8) + "\"")
+
+
+  /**
+   * Parses the decimal integer held by the given portion of the array, with
+   * optional leading sign. Throws NumberFormatException if the input is
+   * malformed or out of range.
+   */
+  def parseLong(octets: Array[Byte], begin: Int, end: Int): Long = {
+    var pos = begin
+    val isNegative = pos < end && octets(pos) == MINUS
+    if(pos < end && (isNegative || octets(pos) == '+')) {
+      pos += 1
+    }
+    if(pos == end) {
+      throw numberFormatError(octets, begin, end)
+    }
+    val limit = if(isNegative) Long.MinValue else -Long.MaxValue
+    var result = 0L
+    while(pos < end) {
+      val d = octets(pos) - ZERO
+      if(d < 0 || d > 9 || result < Long.MinValue / 10 ||
+        result * 10 < limit + d)
+      {
+        throw numberFormatError(octets, begin, end)
+      }
+      result = result * 10 - d
+      pos += 1
+    }
+    if(isNegative) result else -result
+  }
+
+
+  /**
+   * Parses the decimal integer held by the given portion of the array,
+   * throwing NumberFormatException if it does not fit in an Int.
+   */
+  def parseInt(octets: Array[Byte], begin: Int, end: Int): Int = {
+    val n = parseLong(octets, begin, end)
+    if(n < Int.MinValue || n > Int.MaxValue) {
+      throw numberFormatError(octets, begin, end)
+    }
+    n.toInt
+  }
+
+
+  /**
+   * Parses a floating-point number held by the given portion of the array,
+   * returning the correctly rounded result without allocation. Numbers with
+   * up to 15 significant digits and a decimal exponent within [-22, 22] are
+   * computed directly, others using the Eisel-Lemire algorithm. The rare
+   * inputs that this cannot decide, i.e. some with more than 18 significant
+   * digits, as well as NaN and Infinity, are passed on to
+   * java.lang.Double.parseDouble().
+   */
+  def parseDouble(octets: Array[Byte], begin: Int, end: Int): Double = {
+    var pos = begin
+    val isNegative = pos < end && octets(pos) == MINUS
+    if(pos < end && (isNegative || octets(pos) == '+')) {
+      pos += 1
+    }
+
+    val integerBegin = pos
+    var mantissa = 0L
+    var nDigits = 0
+    var exponent = 0
+    var isValid = true
+
+    while(pos < end && octets(pos) >= '0' && octets(pos) <= '9') {
+      if(mantissa != 0 || octets(pos) != ZERO) {
+        nDigits += 1
+      }
+      if(nDigits <= 18) {
+        mantissa = mantissa*10 + (octets(pos) - ZERO)
+      } else {
+        exponent += 1
+      }
+      pos += 1
+    }
+    var hasDigits = pos > integerBegin
+
+    if(pos < end && octets(pos) == DOT) {
+      pos += 1
+      val fractionBegin = pos
+      while(pos < end && octets(pos) >= '0' && octets(pos) <= '9') {
+        if(mantissa != 0 || octets(pos) != ZERO) {
+          nDigits += 1
+        }
+        if(nDigits <= 18) {
+          mantissa = mantissa*10 + (octets(pos) - ZERO)
+          exponent -= 1
+        }
+        pos += 1
+      }
+      hasDigits |= pos > fractionBegin
+    }
+
+    if(hasDigits && pos < end && (octets(pos) == 'e' || octets(pos) == 'E')) {
+      pos += 1
+      val isExpNegative = pos < end && octets(pos) == MINUS
+      if(pos < end && (isExpNegative || octets(pos) == '+')) {
+        pos += 1
+      }
+      val expBegin = pos
+      var e = 0
+      while(pos < end && octets(pos) >= '0' && octets(pos) <= '9') {
+        if(e < 100000) {
+          e = e*10 + (octets(pos) - ZERO)
+        }
+        pos += 1
+      }
+      isValid = pos > expBegin
+      exponent += (if(isExpNegative) -e else e)
+    }
+
+    val isComplete = isValid && hasDigits && pos == end
+    if(isComplete && nDigits <= 15 && exponent >= -22 && exponent <= 22) {
+      val m = mantissa.toDouble
+      val v = if(exponent < 0) m / POW10_DOUBLE(-exponent) else m * POW10_DOUBLE(exponent)
+      if(isNegative) -v else v
+    } else if(isComplete && mantissa == 0) {
+      if(isNegative) -0.0 else 0.0
+    } else {
+      // With more than 18 digits, mantissa is truncated, and the result must
+      // be the same for mantissa + 1.
+      val bits = if(!isComplete) -1 else if(nDigits <= 18) {
+        eiselLemire(mantissa, exponent)
+      } else {
+        val b = eiselLemire(mantissa, exponent)
+        if(b == eiselLemire(mantissa + 1, exponent)) b else -1
+      }
+      if(bits >= 0) {
+        val v = java.lang.Double.longBitsToDouble(bits)
+        if(isNegative) -v else v
+      } else {
+        java.lang.Double.parseDouble(
+          new String(octets, begin, end - begin, StandardCharsets.UTF_8))
+      }
+    }
+  }
+}
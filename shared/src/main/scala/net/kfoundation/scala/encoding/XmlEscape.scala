@@ -27,11 +27,9 @@ object XmlEscape {
     U"lt" -> of('<'),
     U"gt" -> of('>'))
 
-  private val ESCAPE_MAP: Map[UChar, UString] =
-    UNESCAPE_MAP.map(kv => (kv._2, kv._1))
+  def escapeOne(char: UChar): UString = Escaper.XML.escape(UString.of(char))
 
-  def escapeOne(char: UChar): UString = ESCAPE_MAP.get(char)
-    .getOrElse(UString.of(char))
+  def escape(str: UString): UString = Escaper.XML.escape(str)
 
   def unescapeOne(str: UString): UString = UNESCAPE_MAP.get(str)
     .map(UString.of)
@@ -32,7 +32,7 @@ object LocaleManager {
       while(walker.hasMore) {
         walker.readAll(_ != CBRACE_CODE)
         builder.append(walker.getCurrentSelection)
-        walker.commit()
+        walker.discard()
         tryReadSymbol(walker).foreach(s => builder.append(
           values.get(s).filter(!_.isEmpty).map(apply).getOrElse(U"")))
       }
@@ -41,17 +41,17 @@ object LocaleManager {
 
     private def tryReadSymbol(walker: CodeWalker): Option[UString] =
       if(walker.hasMore && walker.tryRead(CBRACES_OPEN)) {
-        walker.commit()
+        walker.discard()
         walker.readAll(ch => UChar.isAlphabet(ch))
         val name = walker.getCurrentSelection
-        walker.commit()
+        walker.discard()
         if(name.isEmpty) {
           walker.lexicalErrorAtCurrentLocation("Missing symbol name")
         }
         if(!walker.tryRead(CBRACES_CLOSE)) {
           walker.lexicalErrorAtCurrentLocation("}} expected")
         }
-        walker.commit()
+        walker.discard()
         Some(name)
       } else {
         None
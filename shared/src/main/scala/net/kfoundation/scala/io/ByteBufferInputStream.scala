@@ -0,0 +1,52 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.io
+
+import java.io.InputStream
+import java.nio.ByteBuffer
+
+
+
+/**
+ * InputStream reading the remaining octets of a ByteBuffer, without copying
+ * them. Reads are not synchronized, and mark/reset is supported with no limit.
+ * The position of the given buffer is not affected.
+ */
+class ByteBufferInputStream(source: ByteBuffer) extends InputStream {
+  private val buffer = source.duplicate()
+
+  override def read(): Int =
+    if(buffer.hasRemaining) buffer.get & 0xff else -1
+
+  override def read(b: Array[Byte], off: Int, len: Int): Int =
+    if(len == 0) {
+      0
+    } else if(!buffer.hasRemaining) {
+      -1
+    } else {
+      val n = Math.min(len, buffer.remaining())
+      buffer.get(b, off, n)
+      n
+    }
+
+  override def skip(n: Long): Long = {
+    val delta = Math.max(0, Math.min(n, buffer.remaining().toLong)).toInt
+    buffer.position(buffer.position() + delta)
+    delta
+  }
+
+  override def available(): Int = buffer.remaining()
+
+  override def markSupported(): Boolean = true
+
+  override def mark(readLimit: Int): Unit = buffer.mark()
+
+  override def reset(): Unit = buffer.reset()
+}
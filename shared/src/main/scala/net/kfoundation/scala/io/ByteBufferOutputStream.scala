@@ -0,0 +1,26 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.io
+
+import java.io.OutputStream
+import java.nio.ByteBuffer
+
+
+
+/**
+ * OutputStream writing to the given ByteBuffer, starting at its position.
+ * Throws BufferOverflowException if the buffer runs out of space.
+ */
+class ByteBufferOutputStream(target: ByteBuffer) extends OutputStream {
+  override def write(b: Int): Unit = target.put(b.toByte)
+
+  override def write(b: Array[Byte], off: Int, len: Int): Unit =
+    target.put(b, off, len)
+}
@@ -0,0 +1,121 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.io
+
+import java.io.{IOException, InputStream}
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+
+
+object MappedFileInputStream {
+  /** Default size of the portion of file mapped into memory at a time. */
+  val DEFAULT_WINDOW_SIZE: Int = 1 << 30
+}
+
+
+
+/**
+ * InputStream reading a file through memory mapping, so that octets are
+ * read straight from the page cache. The file is mapped one window at a time,
+ * therefore files of any size, including those larger than the heap, can be
+ * read. Reads are not synchronized, and mark/reset is supported with no limit.
+ *
+ * @param path file to read
+ * @param windowSize maximum number of octets mapped at a time
+ */
+class MappedFileInputStream(path: java.nio.file.Path, windowSize: Int)
+  extends InputStream
+{
+  private val channel = FileChannel.open(path, StandardOpenOption.READ)
+  private val size = channel.size()
+  private var base: Long = 0
+  private var window: ByteBuffer = map(0)
+  private var markPosition: Long = -1
+
+  def this(path: java.nio.file.Path) =
+    this(path, MappedFileInputStream.DEFAULT_WINDOW_SIZE)
+
+
+  private def map(position: Long): ByteBuffer = {
+    base = position
+    channel.map(FileChannel.MapMode.READ_ONLY, position,
+      Math.min(windowSize.toLong, size - position))
+  }
+
+  private def position: Long = base + window.position()
+
+  private def windowEnd: Long = base + window.limit()
+
+  private def hasMore: Boolean =
+    window.hasRemaining || (windowEnd < size && {
+      window = map(windowEnd)
+      true
+    })
+
+  private def seek(target: Long): Unit =
+    if(target >= base && target <= windowEnd) {
+      window.position((target - base).toInt)
+    } else {
+      window = map(target)
+    }
+
+
+  /** Total size of the file in octets. */
+  def getSize: Long = size
+
+  override def read(): Int =
+    if(hasMore) window.get & 0xff else -1
+
+  override def read(b: Array[Byte], off: Int, len: Int): Int =
+    if(len == 0) {
+      0
+    } else if(!hasMore) {
+      -1
+    } else {
+      val n = Math.min(len, window.remaining())
+      window.get(b, off, n)
+      n
+    }
+
+  override def skip(n: Long): Long = {
+    val p = position
+    val target = Math.max(p, Math.min(size, p + n))
+    seek(target)
+    target - p
+  }
+
+  override def available(): Int =
+    Math.min(size - position, Int.MaxValue.toLong).toInt
+
+  override def markSupported(): Boolean = true
+
+  /**
+   * Marks the current position. If fewer than readLimit octets are left in
+   * the current window, the file is remapped starting from this position, so
+   * that a subsequent reset() does not need to remap.
+   */
+  override def mark(readLimit: Int): Unit = {
+    if(window.remaining() < readLimit && windowEnd < size) {
+      window = map(position)
+    }
+    markPosition = position
+  }
+
+  override def reset(): Unit = {
+    if(markPosition < 0) {
+      throw new IOException("Stream is not marked")
+    }
+    seek(markPosition)
+  }
+
+  override def close(): Unit = channel.close()
+}
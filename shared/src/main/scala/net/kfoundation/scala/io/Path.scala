@@ -59,7 +59,7 @@ object Path {
       if(buffer.size == 0) {
         None
       } else {
-        w.commit()
+        w.discard()
         Some(UString.of(buffer.toByteArray))
       }
     }
@@ -67,14 +67,14 @@ object Path {
     override def tryRead(w: CodeWalker): Option[Path] = {
       val isAbsolute = w.tryRead(SLASH_CODE)
       if(isAbsolute) {
-        w.commit()
+        w.discard()
       }
       var segments: Seq[UString] = Nil
       var hasMore = w.hasMore
       while(hasMore) {
         tryReadSegment(w).foreach(s => segments = segments :+ s)
         hasMore = w.tryRead(SLASH_CODE)
-        w.commit()
+        w.discard()
       }
       Some(if(segments.isEmpty) {
         if(isAbsolute) ROOT else EMPTY
@@ -186,6 +186,14 @@ class Path private (
   def newInputStream: FileInputStream = new FileInputStream(toString)
 
 
+  /**
+   * Opens an InputStream reading the file pointed to by this path through
+   * memory mapping. Unlike newInputStream, the result supports mark/reset.
+   */
+  def newMappedInputStream: MappedFileInputStream =
+    new MappedFileInputStream(toJavaPath)
+
+
   /**
    * Opens and returns an output stream to write to the file pointed to by this path.
    */
@@ -178,6 +178,7 @@ object URL {
       stateMachine.literal()
       param.value.isEmpty || param.value.equals(TRUE)
     }
+    override def skipValue(): Unit = stateMachine.literal()
     override protected def getCurrentLocation: CodeLocation =
       new CodeLocation("URLQueryParams")
   }
@@ -241,7 +242,7 @@ object URL {
   private def encode(builder: UString.Builder, part: UString,
     isValid: Int => Boolean): Unit =
     part.uCharIterator.foreach(ch => {
-      val octets = ch.toUtf8
+      val octets = ch.sharedUtf8
       if (octets.length == 1 && isValid(octets(0))) {
         builder.append(octets(0).toChar)
       } else {
@@ -11,7 +11,7 @@ package net.kfoundation.scala.parse
 
 
 
-class CodeLocation(fileName: String, row: Int, col: Int, streamPos: Int)
+class CodeLocation(fileName: String, row: Int, col: Int, streamPos: Long)
   extends MutableCodeLocation(fileName, row, col, streamPos)
 {
 
@@ -31,11 +31,11 @@ object CodeRange {
 
 /**
  * A CodeRange consists a beginning and an end represented by two CodeLocation
- * objects.
+ * objects. Subclasses may produce these locations on demand.
  */
 class CodeRange(
-  val begin: CodeLocation,
-  val end: CodeLocation)
+  _begin: CodeLocation,
+  _end: CodeLocation)
 {
 
   /** Copy constructor. */
@@ -43,6 +43,16 @@ class CodeRange(
     this(original.begin, original.end)
 
 
+  /** For subclasses that override begin and end. */
+  protected def this() = this(null, null)
+
+
+  def begin: CodeLocation = _begin
+
+
+  def end: CodeLocation = _end
+
+
   def canEqual(other: Any): Boolean = other.isInstanceOf[CodeRange]
 
 
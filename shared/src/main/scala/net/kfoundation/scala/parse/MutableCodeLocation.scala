@@ -15,13 +15,14 @@ package net.kfoundation.scala.parse
  * Represents location of a character in a text file/stream. Row and column
  * numbers start at 1, while streamPos starts at 0. Since the text being read
  * can be UTF-8 or alike, the amount streamPos is incremented per unit column
- * increment can vary each time.
+ * increment can vary each time. StreamPos is a Long, so that locations in
+ * inputs larger than 2GB are reported correctly.
  */
 class MutableCodeLocation(
   private val fileName: String,
   private var row: Int,
   private var col: Int,
-  private var streamPos: Int)
+  private var streamPos: Long)
 {
 
   /**
@@ -47,7 +48,7 @@ class MutableCodeLocation(
   def getCol: Int = col
 
 
-  def getStreamPos: Int = streamPos
+  def getStreamPos: Long = streamPos
 
 
   def set(other: MutableCodeLocation): MutableCodeLocation = {
@@ -89,7 +90,7 @@ class MutableCodeLocation(
     this
   }
 
-  def setStreamPos(pos: Int): MutableCodeLocation = {
+  def setStreamPos(pos: Long): MutableCodeLocation = {
     streamPos = pos
     this
   }
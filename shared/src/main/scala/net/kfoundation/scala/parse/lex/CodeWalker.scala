@@ -9,12 +9,15 @@
 
 package net.kfoundation.scala.parse.lex
 
-import net.kfoundation.scala.io.Path
+import net.kfoundation.scala.encoding.NumberCodec
+import net.kfoundation.scala.io.{ByteBufferInputStream, Path}
 import net.kfoundation.scala.parse._
 import net.kfoundation.scala.{UChar, UString}
 
-import java.io.{ByteArrayInputStream, ByteArrayOutputStream, InputStream}
-import scala.annotation.tailrec
+import java.io.{ByteArrayOutputStream, InputStream}
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.util.Arrays
 
 
 
@@ -35,240 +38,409 @@ object CodeWalker {
     def get: Option[UString]
   }
 
-  private class PatternWalkerImpl(reader: UChar.StreamUtf8Reader,
-      begin: CodeLocation, commit: CodeLocation => ())
-    extends PatternWalker
+
+  /**
+   * CodeRange whose locations are produced only when asked for, e.g. to build
+   * an error message.
+   */
+  private class LazyCodeRange(inputName: String,
+      beginPos: Long, beginRow: Int, beginCol: Int,
+      endPos: Long, endRow: Int, endCol: Int)
+    extends CodeRange
   {
-    private val buffer = new ByteArrayOutputStream()
-    private var failed: Boolean = false
-    private var recoverByte: Int = -1
-    private val end: MutableCodeLocation = begin
+    override def begin: CodeLocation =
+      new CodeLocation(inputName, beginRow, beginCol, beginPos)
 
-    private def step(b: Int): Unit = {
-      buffer.write(b)
-      end.step(1)
-    }
+    override def end: CodeLocation =
+      new CodeLocation(inputName, endRow, endCol, endPos)
+  }
 
-    private def testStep(): Unit = end.step(1)
 
-    private def read(): Int = {
-      if(recoverByte == -2) {
-        throw new IllegalStateException("PatternWalker can be used only once")
-      } else if(recoverByte == -1) {
-        reader.nextOctet
-      } else {
-        val b = recoverByte
-        recoverByte = -1
+  type PatternCheckFunction = (Int, Boolean) => Boolean
+
+  private val LF: Byte = 13
+  private val CR: Byte = 10
+  private val SPACE: Byte = 32
+  private val ROW: UString = "row"
+  private val COL: UString = "col"
+  private val DEFAULT_WINDOW_SIZE = 8192
+  private val MIN_WINDOW_SIZE = 16
+  val NOT_FOUND: Int = -1
+
+
+  /**
+   * Produces a CodeWalker to parse the given string.
+   */
+  def of(str: UString) = new CodeWalker("$buffer", str.newInputStream,
+    Math.max(MIN_WINDOW_SIZE, str.getUtf8Length))
+
+
+  /**
+   * Creates a CodeWalker to process the given input stream.
+   */
+  def of(input: InputStream) = new CodeWalker("$stream", input)
+
+
+  /**
+   * Produces a CodeWalker to parse the remaining octets of the given buffer,
+   * without copying them. This can be a direct or memory-mapped buffer.
+   */
+  def of(buffer: ByteBuffer) = new CodeWalker("$buffer",
+    new ByteBufferInputStream(buffer))
+
+
+  /**
+   * Produces a CodeWalker to parse the remaining octets of the given buffer,
+   * which are a portion of a larger input starting at the given origin. All
+   * locations are reported relative to that input, not the buffer.
+   */
+  def of(buffer: ByteBuffer, origin: CodeLocation): CodeWalker = {
+    val w = new CodeWalker(origin.getFileName, new ByteBufferInputStream(buffer),
+      Math.max(MIN_WINDOW_SIZE, Math.min(DEFAULT_WINDOW_SIZE, buffer.remaining())))
+    w.moveOrigin(origin)
+    w
+  }
+
+
+  /**
+   * Produces a CodeWalker for reading file pointed by the given path. The
+   * file is memory-mapped, and may be larger than the heap.
+   */
+  def of(path: Path) = new CodeWalker(
+    path.fileName.map(_.toString)
+      .getOrElse("<file>"),
+    path.newMappedInputStream)
+}
+
+
+
+/**
+ * Facilitates parsing (lexing) of a UTF-8 encoded stream. All parsers and
+ * deserializers in KFoundation are created using CodeWalker. They can serve
+ * as good examples for how to use this class. Usage of CodeWalker
+ * often involves one or several calls to tryRead(), read(), or readAll()
+ * methods, followed by a call to commit().
+ *
+ * For performance and streamlining reasons, this classes is designed with
+ * there-is-no-going-back policy. Meaning that, when a call to tryRead() succeeds,
+ * it is not possible to reset the stream to an earlier point, i.e. there is
+ * no rollback() method. If tryRead() fails the stream position will remain
+ * where it was before it was called.
+ *
+ * For each successful call to a read method, the data read is appended to an
+ * internal buffer. This can be retrieved using getCurrentSelection() method.
+ *
+ * The job of commit() method is to reset the internal buffer and return the
+ * input code range representing the location of data in that buffer
+ * within the input data.
+ *
+ * One can use skipAll() methods to discard a portion of stream matching a given
+ * criteria. skipSpaces() is a specialization of skipAll() that skips over
+ * spaces and newline characters. Beware that a call to these methods empties
+ * the internal buffer.
+ *
+ * To test for end-of-stream use hasMore() method.
+ *
+ * Input is read in blocks into an internal window, which is also where
+ * lookahead and rollback of failed tryRead() calls take place. Therefore the
+ * given stream does not need to support mark/reset, and it may be read past
+ * the point where parsing stops.
+ *
+ * @param inputName such as file name; this is used mainly for error messages.
+ * @param input the stream to be processes
+ */
+class CodeWalker private(inputName: String, private var input: InputStream,
+    initialCapacity: Int)
+{
+  import CodeWalker._
+
+  private var window = new Array[Byte](initialCapacity)
+  private var pos = 0
+  private var limit = 0
+  private var eof = false
+  private var selection = 0
+  private var patternMark = -1
+  private var lastSize = 0
+  private var base: Long = 0
+  private var row = 1
+  private var col = 1
+  private var beginPos: Long = 0
+  private var beginRow = 1
+  private var beginCol = 1
+
+
+  def this(inputName: String, input: InputStream) =
+    this(inputName, input, CodeWalker.DEFAULT_WINDOW_SIZE)
+
+
+  /**
+   * Starts over with the given input, keeping the window allocated for the
+   * previous one.
+   */
+  def reset(input: InputStream): Unit = {
+    this.input = input
+    pos = 0
+    limit = 0
+    eof = false
+    selection = 0
+    patternMark = -1
+    lastSize = 0
+    base = 0
+    row = 1
+    col = 1
+    beginPos = 0
+    beginRow = 1
+    beginCol = 1
+  }
+
+
+  private class PatternWalkerImpl extends PatternWalker {
+    private val buffer = new ByteArrayOutputStream()
+    private var failed: Boolean = false
+    private var used: Boolean = false
+
+    private def next(): Int =
+      if(ensure(1)) {
+        val b = window(pos) & 0xff
+        pos += 1
         b
+      } else {
+        NOT_FOUND
       }
-    }
 
     private def fail(): Unit = {
       failed = true
-      reader.reset()
+      pos = patternMark
     }
 
     override def read(b: Int): PatternWalker = {
       if(!failed) {
-        if(read() != b) {
+        if(next() != b) {
           fail()
         } else {
-          step(b)
+          buffer.write(b)
         }
       }
       this
     }
 
     override def read(predicate: Int => Boolean): PatternWalker = {
-      val b = read()
       if(!failed) {
-        if(!predicate(b)) {
+        val b = next()
+        if(b == NOT_FOUND || !predicate(b)) {
           fail()
         } else {
-          step(b)
+          buffer.write(b)
         }
       }
       this
     }
 
     override def readAll(predicate: Int => Boolean): PatternWalker = {
-      var b = read()
-      while(b != -1 && predicate(b)) {
-        step(b)
-        b = read()
+      if(!failed) {
+        while(ensure(1) && predicate(window(pos) & 0xff)) {
+          buffer.write(window(pos))
+          pos += 1
+        }
       }
-      recoverByte = b
       this
     }
 
     private def read(bytes: Array[Byte]): PatternWalker = {
-      @tailrec
-      def tryReadNext(i: Int, b: Int): Boolean =
-        if(b == bytes(i)) {
-          step(b)
-          if (i == bytes.length) {
-            true
-          } else {
-            tryReadNext(i + 1, read())
-          }
+      if(!failed) {
+        if(ensure(bytes.length) && matches(bytes)) {
+          buffer.write(bytes, 0, bytes.length)
+          pos += bytes.length
         } else {
-          false
+          fail()
         }
-      if(!failed && !tryReadNext(0, read())) {
-        fail()
       }
       this
     }
 
-    override def read(ch: UChar): PatternWalker = read(ch.toUtf8)
+    override def read(ch: UChar): PatternWalker = read(ch.sharedUtf8)
 
     override def read(str: UString): PatternWalker = read(str.toUtf8)
 
     override def test(b: Int): PatternWalker = {
-      if(!failed) {
-        if(read() != b) {
-          fail()
-        } else {
-          testStep()
-        }
+      if(!failed && next() != b) {
+        fail()
       }
       this
     }
 
     override def test(predicate: Int => Boolean): PatternWalker = {
       if(!failed) {
-        if(!predicate(read())) {
+        val b = next()
+        if(b == NOT_FOUND || !predicate(b)) {
           fail()
-        } else {
-          testStep()
         }
       }
       this
     }
 
     private def test(bytes: Array[Byte]): PatternWalker = {
-      @tailrec
-      def tryReadNext(i: Int, b: Int): Boolean =
-        if(b == bytes(i)) {
-          testStep()
-          if (i == bytes.length) {
-            true
-          } else {
-            tryReadNext(i + b, read())
-          }
+      if(!failed) {
+        if(ensure(bytes.length) && matches(bytes)) {
+          pos += bytes.length
         } else {
-          false
+          fail()
         }
-      if(!failed && !tryReadNext(0, read())) {
-        fail()
       }
       this
     }
 
-    override def test(ch: UChar): PatternWalker = test(ch.toUtf8)
+    override def test(ch: UChar): PatternWalker = test(ch.sharedUtf8)
 
     override def test(str: UString): PatternWalker = test(str.toUtf8)
 
     override def get: Option[UString] = {
-      recoverByte = -2
+      if(used) {
+        throw new IllegalStateException("PatternWalker can be used only once")
+      }
+      used = true
+      val n = pos - patternMark
+      patternMark = -1
       if(failed)
         None
       else {
-        commit(end.immutableCopy)
+        col += n
+        discard()
         Some(UString.of(buffer.toByteArray))
       }
     }
   }
 
 
-  type PatternCheckFunction = (Int, Boolean) => Boolean
+  /**
+   * Makes sure at least n octets are available in the window after the
+   * current position, reading more from input if necessary. Returns false if
+   * input ends before that.
+   */
+  private def ensure(n: Int): Boolean = (limit - pos >= n) || fill(n)
+
+
+  private def fill(n: Int): Boolean = {
+    if(eof) {
+      return false
+    }
+
+    if(pos + n > window.length) {
+      val keep = if(patternMark >= 0) Math.min(selection, patternMark) else selection
+      val size = limit - keep
+      if(size + n > window.length) {
+        val grown = new Array[Byte](Math.max(window.length * 2, size + n))
+        System.arraycopy(window, keep, grown, 0, size)
+        window = grown
+      } else {
+        System.arraycopy(window, keep, window, 0, size)
+      }
+      base += keep
+      pos -= keep
+      limit -= keep
+      selection -= keep
+      if(patternMark >= 0) {
+        patternMark -= keep
+      }
+    }
+
+    while(limit - pos < n && !eof) {
+      val nRead = input.read(window, limit, window.length - limit)
+      if(nRead < 0) {
+        eof = true
+      } else {
+        limit += nRead
+      }
+    }
+
+    limit - pos >= n
+  }
 
-  private val LF: Byte = 13
-  private val CR: Byte = 10
-  private val SPACE: Byte = 32
-  private val ROW: UString = "row"
-  private val COL: UString = "col"
-  val NOT_FOUND: Int = -1
+
+  /** Tests if the window at current position starts with the given octets. */
+  private def matches(bytes: Array[Byte]): Boolean = {
+    var i = 0
+    while(i < bytes.length && window(pos + i) == bytes(i)) {
+      i += 1
+    }
+    i == bytes.length
+  }
 
 
   /**
-   * Produces a CodeWalker to parse the given string.
+   * Decodes the codepoint at current position without consuming it, setting
+   * lastSize to the number of its octets. Returns NOT_FOUND at the end of
+   * input.
    */
-  def of(str: UString) = new CodeWalker("$buffer",
-    new ByteArrayInputStream(str.toUtf8))
+  private def peekCodePoint: Int =
+    if(!ensure(1)) {
+      NOT_FOUND
+    } else {
+      val n = UChar.getUtf8SizeWithFirstOctet(window(pos) & 0xff)
+      ensure(n)
+      lastSize = Math.max(1, Math.min(n, limit - pos))
+      UChar.decodeUtf8(window, pos, n, limit)
+    }
 
 
   /**
-   * Creates a CodeWalker to process the given input stream.
+   * Makes locations relative to a larger input, of which this one is a
+   * portion that starts at the given origin.
    */
-  def of(input: InputStream) = new CodeWalker("$stream", input)
+  def moveOrigin(origin: CodeLocation): Unit = {
+    base = origin.getStreamPos - pos
+    row = origin.getRow
+    col = origin.getCol
+    discard()
+  }
+
+
+  private def newLine(): Unit = {
+    row += 1
+    col = 1
+  }
 
 
   /**
-   * Produces a CodeWalker for reading file pointed by the given path.
+   * Returns the octet at the given distance from current position, without
+   * consuming it, or NOT_FOUND if input ends before that.
    */
-  def of(path: Path) = new CodeWalker(
-    path.fileName.map(_.toString)
-      .getOrElse("<file>"),
-    path.newInputStream)
-}
+  private[lex] def peekOctet(offset: Int): Int =
+    if(ensure(offset + 1)) window(pos + offset) & 0xff else NOT_FOUND
 
 
+  /**
+   * Parses the given number of octets after current position, which should
+   * have been examined using peekOctet(), as a Long, without consuming them.
+   */
+  private[lex] def peekLong(nOctets: Int): Long =
+    NumberCodec.parseLong(window, pos, pos + nOctets)
 
-/**
- * Facilitates parsing (lexing) of a UTF-8 encoded stream. All parsers and
- * deserializers in KFoundation are created using CodeWalker. They can serve
- * as good examples for how to use this class. Usage of CodeWalker
- * often involves one or several calls to tryRead(), read(), or readAll()
- * methods, followed by a call to commit().
- *
- * For performance and streamlining reasons, this classes is designed with
- * there-is-no-going-back policy. Meaning that, when a call to tryRead() succeeds,
- * it is not possible to reset the stream to an earlier point, i.e. there is
- * no rollback() method. If tryRead() fails the stream position will remain
- * where it was before it was called.
- *
- * For each successful call to a read method, the data read is appended to an
- * internal buffer. This can be retrieved using getCurrentSelection() method.
- *
- * The job of commit() method is to reset the internal buffer and return the
- * input code range representing the location of data in that buffer
- * within the input data.
- *
- * One can use skipAll() methods to discard a portion of stream matching a given
- * criteria. skipSpaces() is a specialization of skipAll() that skips over
- * spaces and newline characters. Beware that a call to these methods empties
- * the internal buffer.
- *
- * To test for end-of-stream use hasMore() method.
- *
- * @param inputName such as file name; this is used mainly for error messages.
- * @param input the stream to be processes
- */
-class CodeWalker(inputName: String, input: InputStream) {
-  import CodeWalker._
 
-  private val reader = new UChar.StreamUtf8Reader(input)
-  private var begin = new CodeLocation(inputName)
-  private val end = new MutableCodeLocation(inputName)
-  private val buffer = new ByteArrayOutputStream()
+  /** Same as peekLong(), for a Double. */
+  private[lex] def peekDouble(nOctets: Int): Double =
+    NumberCodec.parseDouble(window, pos, pos + nOctets)
 
 
-  private def step(): Unit = {
-    end.step(reader.getNumberOfLastOctetsRead)
-    reader.writeLastReadOctetsTo(buffer)
-  }
+  /** Same as peekLong(), for ASCII text. */
+  private[lex] def peekAscii(nOctets: Int): String =
+    new String(window, pos, nOctets, StandardCharsets.US_ASCII)
 
 
-  private def step(b: Byte): Unit = {
-    end.step(1)
-    buffer.write(b)
+  /**
+   * Consumes the given number of octets, which should have been examined
+   * using peekOctet(), as the given number of characters.
+   */
+  private[lex] def step(nOctets: Int, nChars: Int): Unit = {
+    pos += nOctets
+    col += nChars
   }
 
 
-  private def step(bytes: Array[Byte], nChars: Int): Unit = {
-    end.step(nChars, bytes.length)
-    buffer.write(bytes, 0, bytes.length)
+  /** Consumes the codepoint last returned by peekCodePoint. */
+  private def step(): Unit = {
+    col += 1
+    pos += lastSize
   }
 
 
@@ -277,10 +449,22 @@ class CodeWalker(inputName: String, input: InputStream) {
    * location of that buffer within the input data.
    */
   def commit(): CodeRange = {
-    val b = begin
-    begin = end.immutableCopy
-    buffer.reset()
-    new CodeRange(b, begin)
+    val range = new LazyCodeRange(inputName, beginPos, beginRow, beginCol,
+      base + pos, row, col)
+    discard()
+    range
+  }
+
+
+  /**
+   * Same as commit(), but does not produce a CodeRange. This is to be used
+   * when the range is not needed.
+   */
+  def discard(): Unit = {
+    beginPos = base + pos
+    beginRow = row
+    beginCol = col
+    selection = pos
   }
 
 
@@ -288,26 +472,30 @@ class CodeWalker(inputName: String, input: InputStream) {
    * Returns the data read since the last call to commit(), or if not called,
    * since the beginning of the input stream.
    */
-  def getCurrentSelection: UString = UString.of(buffer.toByteArray)
+  def getCurrentSelection: UString =
+    UString.of(Arrays.copyOfRange(window, selection, pos))
 
 
   /**
    * The lower bound of internal buffer. This is where commit() was last
    * called, or the beginning of stream.
    */
-  def getBegin: CodeLocation = begin
+  def getBegin: CodeLocation =
+    new CodeLocation(inputName, beginRow, beginCol, beginPos)
 
 
   /**
    * Location next to the last successful read.
    */
-  def getCurrentLocation: CodeLocation = end.immutableCopy
+  def getCurrentLocation: CodeLocation =
+    new CodeLocation(inputName, row, col, base + pos)
 
 
   /**
-   * Test if the input stream has reached its end.
+   * Test if the input stream has reached its end. This may block until more
+   * input is available.
    */
-  def hasMore: Boolean = input.available() > 0
+  def hasMore: Boolean = ensure(1)
 
 
   /**
@@ -315,7 +503,7 @@ class CodeWalker(inputName: String, input: InputStream) {
    * location of the buffer.
    */
   def lexicalErrorAtBeginning(message: String): LexicalError =
-    new LexicalError(begin, message)
+    new LexicalError(getBegin, message)
 
 
   /**
@@ -329,47 +517,32 @@ class CodeWalker(inputName: String, input: InputStream) {
   def parseError(key: UString,
       params: (UString, UString)*): ParseError =
     new ParseError(key, params :+
-      (ROW, UString.of(end.getRow)) :+
-      (COL, UString.of(end.getCol)) :_*)
+      (ROW, UString.of(row)) :+
+      (COL, UString.of(col)) :_*)
 
 
-  private def tryRead(b: Byte): Boolean = {
-    reader.mark(1)
-    if(reader.nextOctet == b) {
-      step(b)
+  private def tryRead(b: Byte): Boolean =
+    if(ensure(1) && window(pos) == b) {
+      pos += 1
+      col += 1
       true
     } else {
-      reader.reset()
       false
     }
-  }
-
-
-  private def tryRead(bytes: Array[Byte], nChars: () => Int): Boolean = {
-    @tailrec
-    def tryReadNext(bytes: Array[Byte], i: Int): Boolean =
-      if(i == bytes.length) {
-        true
-      } else if(reader.nextOctet == bytes(i)) {
-        tryReadNext(bytes, i + 1)
-      } else {
-        false
-      }
 
-    reader.mark(bytes.length)
 
-    if(tryReadNext(bytes, 0)) {
-      step(bytes, nChars())
+  private def tryRead(bytes: Array[Byte], nChars: () => Int): Boolean =
+    if(ensure(bytes.length) && matches(bytes)) {
+      pos += bytes.length
+      col += nChars()
       true
     } else {
-      reader.reset()
       false
     }
-  }
 
 
   /** Test for and read a unicode character. */
-  def tryRead(ch: UChar): Boolean = tryRead(ch.toUtf8, () => 1)
+  def tryRead(ch: UChar): Boolean = tryRead(ch.sharedUtf8, () => 1)
 
 
   /** Test for and read a unicode string. */
@@ -382,10 +555,10 @@ class CodeWalker(inputName: String, input: InputStream) {
       true
     } else if(tryRead(CR)) {
       tryRead(LF)
-      end.newLine
+      newLine()
       true
     } else if(tryRead(LF)) {
-      end.newLine
+      newLine()
       true
     } else {
       false
@@ -401,7 +574,7 @@ class CodeWalker(inputName: String, input: InputStream) {
   /** Read and discards all following spaces and anything in internal buffer. */
   final def skipSpaces(): Unit = {
     readSpaces()
-    commit()
+    discard()
   }
 
   /**
@@ -410,41 +583,33 @@ class CodeWalker(inputName: String, input: InputStream) {
    * NOT_FOUND (-1).
    */
   def tryRead(test: Int => Boolean): Int = {
-    reader.mark(8)
-    val ch = reader.nextCodePoint
-    if(test(ch)) {
+    val ch = peekCodePoint
+    if(ch != NOT_FOUND && test(ch)) {
       step()
       ch
     } else {
-      reader.reset()
       NOT_FOUND
     }
   }
 
-  def tryRead(codePoint: Int): Boolean = {
-    reader.mark(8)
-    val ch = reader.nextCodePoint
-    if(ch == codePoint) {
+  def tryRead(codePoint: Int): Boolean =
+    if(peekCodePoint == codePoint) {
       step()
       true
     } else {
-      reader.reset()
       false
     }
-  }
 
 
   /**
    * Test and read a numeric character, returning its numeric value.
    */
   def tryReadDigit: Int = {
-    reader.mark(8)
-    val ch = reader.nextCodePoint
+    val ch = peekCodePoint
     if(UChar.isNumeric(ch)) {
       step()
       ch - '0'
     } else {
-      reader.reset()
       NOT_FOUND
     }
   }
@@ -481,17 +646,17 @@ class CodeWalker(inputName: String, input: InputStream) {
    * criteria, discarding the internal buffer as well.
    */
   def skip(test: Int => Boolean): Boolean = {
-    reader.mark(8)
-    val ch = reader.nextCodePoint
-    if(test(ch)) {
+    val ch = peekCodePoint
+    if(ch != NOT_FOUND && test(ch)) {
       if(ch == CR) {
-        end.newLine
+        newLine()
       } else {
-        end.step(1)
+        col += 1
       }
+      pos += lastSize
+      selection = pos
       true
     } else {
-      reader.reset()
       false
     }
   }
@@ -506,34 +671,115 @@ class CodeWalker(inputName: String, input: InputStream) {
     while(skip(test)) {
       n += 1
     }
-    commit()
+    discard()
     n
   }
 
 
+  /**
+   * Consumes the octet at current position, which must be in the window,
+   * keeping row and column up to date.
+   */
+  private def skipOctet(): Int = {
+    val octet = window(pos) & 0xff
+    pos += 1
+    if(octet == '\n') {
+      newLine()
+    } else if((octet & 0xC0) != 0x80 && octet != '\r') {
+      col += 1
+    }
+    octet
+  }
+
+
+  /**
+   * Same as ensure(1), but lets the window drop the octets skipped so far,
+   * so that skipping a long input runs in bounded memory.
+   */
+  private def ensureWhileSkipping(): Boolean = {
+    selection = pos
+    ensure(1)
+  }
+
+
+  /**
+   * Skips the rest of a double-quoted string whose opening quote has just
+   * been read, honoring backslash escapes, and discards the internal buffer.
+   * Returns false if input ends before the string is closed.
+   */
+  def skipString(): Boolean = {
+    var octet = 0
+    while(octet != '"' && ensureWhileSkipping()) {
+      octet = skipOctet()
+      if(octet == '\\' && ensure(1)) {
+        skipOctet()
+      }
+    }
+    discard()
+    octet == '"'
+  }
+
+
+  /**
+   * Skips the rest of a block whose opening bracket has just been read, up
+   * to and including the matching closing bracket, and discards the internal
+   * buffer. Brackets to count are given as pairs of ASCII opening and closing
+   * characters, e.g. "[]{}". Double-quoted strings are skipped as a whole,
+   * so brackets in them are not counted. Returns false if input ends before
+   * the block is closed.
+   */
+  def skipBlock(brackets: String): Boolean = {
+    var depth = 1
+    while(depth > 0 && ensureWhileSkipping()) {
+      val octet = skipOctet()
+      if(octet == '"') {
+        if(!skipString()) {
+          return false
+        }
+      } else {
+        val i = brackets.indexOf(octet)
+        if(i >= 0) {
+          depth += (if(i % 2 == 0) 1 else -1)
+        }
+      }
+    }
+    discard()
+    depth == 0
+  }
+
+
   /**
    * Reads any character. Returns None if there is nothing to read.
    */
   def tryReadUChar: Option[UChar] = {
-    reader.mark(8)
-    val ch = reader.nextUChar
-    if(ch.isDefined) {
+    val ch = tryReadCodePoint
+    if(ch == NOT_FOUND) None else Some(UChar.valueOf(ch))
+  }
+
+
+  /**
+   * Reads any character, returning its codepoint, or NOT_FOUND if there is
+   * nothing to read. Unlike tryReadUChar, this allocates no objects.
+   */
+  def tryReadCodePoint: Int = {
+    val ch = peekCodePoint
+    if(ch != NOT_FOUND) {
       step()
-    } else {
-      reader.reset()
     }
     ch
   }
 
 
+  /**
+   * Starts matching a pattern at current position. Octets read by the
+   * returned PatternWalker are kept in the window until its get() method is
+   * called, therefore lookahead is not limited by the given value.
+   */
   def patternWalker(ahead: Int): PatternWalker = {
-    reader.mark(ahead)
-    new PatternWalkerImpl(reader, end.immutableCopy, e => {
-      end.set(e)
-      begin = e
-    })
+    patternMark = pos
+    new PatternWalkerImpl
   }
 
 
-  override def toString: String = "End: " + `end`.toString
+  override def toString: String = "End: " + getCurrentLocation.toString
 }
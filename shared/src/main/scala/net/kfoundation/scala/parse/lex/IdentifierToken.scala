@@ -9,7 +9,7 @@
 
 package net.kfoundation.scala.parse.lex
 
-import net.kfoundation.scala.UString
+import net.kfoundation.scala.{UChar, UString}
 import net.kfoundation.scala.parse.CodeRange
 
 
@@ -19,8 +19,8 @@ object IdentifierToken {
   /** Attempts to read an identifier from the input source */
   object reader extends TokenReader[IdentifierToken] {
     def tryRead(w: CodeWalker): Option[IdentifierToken] =
-      if(w.tryRead(ch => Character.isJavaIdentifierStart(ch)) >= 0) {
-        w.readAll(ch => Character.isJavaIdentifierPart(ch))
+      if(w.tryRead(UChar.isIdentifierStart(_)) >= 0) {
+        w.readAll(UChar.isIdentifierPart(_))
         val str = w.getCurrentSelection
         val selection = w.commit()
         Some(new IdentifierToken(selection, str))
@@ -29,6 +29,21 @@ object IdentifierToken {
       }
   }
 
+
+  /**
+   * Reads an identifier the same way as reader does, but produces only its
+   * value, without a token or code range.
+   */
+  def tryReadValue(w: CodeWalker): Option[UString] =
+    if(w.tryRead(UChar.isIdentifierStart(_)) >= 0) {
+      w.readAll(UChar.isIdentifierPart(_))
+      val str = w.getCurrentSelection
+      w.discard()
+      Some(str)
+    } else {
+      None
+    }
+
 }
 
 
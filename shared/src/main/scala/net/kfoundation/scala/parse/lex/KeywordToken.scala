@@ -12,7 +12,7 @@ package net.kfoundation.scala.parse.lex
 import net.kfoundation.scala.UString
 import net.kfoundation.scala.parse.CodeRange
 
-import scala.collection.{mutable, Seq}
+import scala.collection.Seq
 
 
 object KeywordToken {
@@ -23,22 +23,31 @@ object KeywordToken {
    * of alphabetical letters.
    */
   abstract class Reader extends TokenReader[KeywordToken] {
-    private val values = new mutable.ListBuffer[UString]
+    private val trie = new Trie.Lazy
 
-    def getValues: Seq[UString] = values.toSeq
+    def getValues: Seq[UString] = trie.getValues
 
-    protected def add(newValue: UString): UString = {
-      values.append(newValue)
-      newValue
-    }
+    protected def add(newValue: UString): UString = trie.add(newValue)
 
-    override def tryRead(w: CodeWalker): Option[KeywordToken] =
-      values.find(v => w.tryRead(v))
-        .map(v => new KeywordToken(w.commit(), v))
+    override def tryRead(w: CodeWalker): Option[KeywordToken] = {
+      val t = trie.get
+      val i = t.tryRead(w)
+      if(i == CodeWalker.NOT_FOUND) {
+        None
+      } else {
+        Some(new KeywordToken(w.commit(), t.values(i)))
+      }
+    }
 
-    def convert(id: IdentifierToken): Option[KeywordToken] =
-      values.find(v => id.value.equals(v))
-        .map(v => new KeywordToken(id, v))
+    def convert(id: IdentifierToken): Option[KeywordToken] = {
+      val t = trie.get
+      val i = t.indexOf(id.value)
+      if(i == CodeWalker.NOT_FOUND) {
+        None
+      } else {
+        Some(new KeywordToken(id, t.values(i)))
+      }
+    }
   }
 
 }
@@ -9,109 +9,146 @@
 
 package net.kfoundation.scala.parse.lex
 
-import net.kfoundation.scala.UChar
 import net.kfoundation.scala.parse.CodeRange
 
-import scala.annotation.tailrec
-
 
 
 object NumericToken {
-  private val PLUS : UChar = '+'
-  private val MINUS: UChar = '-'
-  private val DOT: UChar = '.'
-  private val SMALL_E: UChar = 'e'
-  private val BIG_E: UChar = 'E'
-  private val ZERO: UChar = '0'
-
-
-  private def readSign(w: CodeWalker): Int =
-    if(w.tryRead(PLUS)) {
-      1
-    } else if(w.tryRead(MINUS)) {
-      -1
-    } else {
-      1
-    }
+  private val MAX_SAFE_DIGITS = 18
 
 
-  private def readIntPart(w: CodeWalker): Option[Long] = {
-    val hasZeros = w.readAll(ZERO) > 0
-
-    val d: Int = w.tryReadDigit
-    if(d < 0) {
-      if(hasZeros) {
-        Some(0)
+  /**
+   * Receives the number read by tryReadValue(). One instance can be reused
+   * for any number of reads. If keepsText is set, the text of the number is
+   * retained, so that bigDecimalValue is exact.
+   */
+  final class Literal(val keepsText: Boolean) {
+    private[NumericToken] var _isIntegral: Boolean = false
+    private[NumericToken] var _integralValue: Long = 0
+    private[NumericToken] var _decimalValue: Double = 0
+    private[NumericToken] var _text: String = _
+
+    def this() = this(false)
+
+    /**
+     * True if the number has neither fraction nor exponent parts, and fits
+     * in a Long.
+     */
+    def isIntegral: Boolean = _isIntegral
+
+    /** Value of an integral number. */
+    def integralValue: Long = _integralValue
+
+    /** Value of the number as Double, whether integral or not. */
+    def decimalValue: Double = _decimalValue
+
+    /**
+     * Value of the number as BigDecimal. Unless keepsText is set, this is
+     * only as precise as integralValue or decimalValue.
+     */
+    def bigDecimalValue: java.math.BigDecimal =
+      if(_text != null) {
+        new java.math.BigDecimal(_text)
+      } else if(_isIntegral) {
+        java.math.BigDecimal.valueOf(_integralValue)
       } else {
-        None
+        java.math.BigDecimal.valueOf(_decimalValue)
       }
-    } else {
-      Some(readIntPart(w, d))
-    }
+
+    override def toString: String =
+      if(_isIntegral) _integralValue.toString else _decimalValue.toString
   }
 
 
-  @tailrec
-  private def readIntPart(w: CodeWalker, n: Long): Long = {
-    val d = w.tryReadDigit
-    if(d < 0) {
-      n
-    } else {
-      readIntPart(w, n*10 + d)
-    }
-  }
+  private def isDigit(octet: Int): Boolean = octet >= '0' && octet <= '9'
 
 
-  @tailrec
-  private def readFractionPart(w: CodeWalker, n: Double, m: Double): Option[Double] = {
-    val d = w.tryReadDigit
-    if(d < 0) {
-      if(m == 10) {
-        None
-      } else {
-        Some(n)
-      }
-    } else {
-      readFractionPart(w, n + d/m, m*10)
+  private def isSign(octet: Int): Boolean = octet == '+' || octet == '-'
+
+
+  private def skipDigits(w: CodeWalker, offset: Int): Int = {
+    var i = offset
+    while(isDigit(w.peekOctet(i))) {
+      i += 1
     }
+    i
   }
 
 
-  private def readExponentPart(w: CodeWalker): Option[Long] = {
-    val s = readSign(w)
-    val n = readIntPart(w)
-    n.map(_ * s)
-      .orElse(throw w.lexicalErrorAtCurrentLocation("Exponent value is missing"))
+  private def setDecimal(literal: Literal, value: Double): Unit = {
+    literal._isIntegral = false
+    literal._decimalValue = value
   }
 
 
-  private def tryReadPart2(w: CodeWalker): Option[Double] =
-    if(w.tryRead(DOT)) {
-      readFractionPart(w, 0, 10)
-    } else {
-      None
+  /**
+   * Reads a number of the form explained for reader into the given literal,
+   * without committing. Returns false if there is no number at the current
+   * position. The span of the number is found by examining octets in place,
+   * and then converted in one pass, with correct rounding.
+   */
+  private def read(w: CodeWalker, literal: Literal): Boolean = {
+    val intBegin = if(isSign(w.peekOctet(0))) 1 else 0
+    val intEnd = skipDigits(w, intBegin)
+
+    var end = intEnd
+    var hasFraction = false
+    if(w.peekOctet(end) == '.') {
+      end = skipDigits(w, end + 1)
+      hasFraction = end > intEnd + 1
     }
 
-
-  private def tryReadPart3(w: CodeWalker): Option[Long] =
-    if(w.tryRead(SMALL_E)) {
-      readExponentPart(w)
-    } else if(w.tryRead(BIG_E)) {
-      readExponentPart(w)
+    if(intEnd == intBegin && !hasFraction) {
+      false
     } else {
-      None
-    }
+      val e = w.peekOctet(end)
+      val hasExponent = e == 'e' || e == 'E'
+      if(hasExponent) {
+        val expBegin = end + (if(isSign(w.peekOctet(end + 1))) 2 else 1)
+        end = skipDigits(w, expBegin)
+        if(end == expBegin) {
+          w.step(end, end)
+          throw w.lexicalErrorAtCurrentLocation("Exponent value is missing")
+        }
+      }
 
+      if(hasFraction || hasExponent) {
+        setDecimal(literal, w.peekDouble(end))
+      } else if(intEnd - intBegin <= MAX_SAFE_DIGITS) {
+        literal._isIntegral = true
+        literal._integralValue = w.peekLong(intEnd)
+        literal._decimalValue = literal._integralValue.toDouble
+      } else {
+        try {
+          literal._integralValue = w.peekLong(intEnd)
+          literal._isIntegral = true
+          literal._decimalValue = literal._integralValue.toDouble
+        } catch {
+          case _: NumberFormatException => setDecimal(literal, w.peekDouble(intEnd))
+        }
+      }
 
-  private def composeDecimalToken(bounds: CodeRange, s: Int, part1: Long,
-    part2: Double, part3: Option[Long]): DecimalToken =
-  {
-    val p3 = part3.map(i => Math.pow(10, i.toDouble))
-      .getOrElse[Double](1)
-    new DecimalToken(bounds, (part1 + part2) * p3 * s)
+      literal._text = if(literal.keepsText) w.peekAscii(end) else null
+      w.step(end, end)
+      true
+    }
   }
 
 
+  /**
+   * Reads a number the same way as reader does, but stores it in the given
+   * literal instead of producing a token. Returns false if there is no number
+   * at current position.
+   */
+  def tryReadValue(w: CodeWalker, literal: Literal): Boolean =
+    if(read(w, literal)) {
+      w.discard()
+      true
+    } else {
+      false
+    }
+
+
   /**
    * Attempts to read an integral or fractional decimal number or one with
    * scientific notional from input stream. The result will be a subclass of
@@ -122,27 +159,22 @@ object NumericToken {
    * <pre>
    * [+-](part1)(.part2)[eE][+-](part3)
    * </pre>
+   *
+   * Integers that do not fit in a Long are read as DecimalToken.
    */
   object reader extends TokenReader[NumericToken[_]] {
     override def tryRead(w: CodeWalker): Option[NumericToken[_]] = {
-      val s = readSign(w)
-
-      readIntPart(w).map(part1 => {
-        val part2 = tryReadPart2(w)
-        val part3 = tryReadPart3(w)
+      val literal = new Literal
+      if(read(w, literal)) {
         val bounds = w.commit()
-        if (part2.isEmpty && part3.isEmpty) {
-          new IntegralToken(bounds, part1 * s)
+        if(literal.isIntegral) {
+          Some(new IntegralToken(bounds, literal.integralValue))
         } else {
-          composeDecimalToken(bounds, s, part1, part2.getOrElse(0), part3)
+          Some(new DecimalToken(bounds, literal.decimalValue))
         }
-      }).orElse({
-        tryReadPart2(w).map(part2 => {
-          val part3 = tryReadPart3(w)
-          val bounds = w.commit()
-          composeDecimalToken(bounds, s, 0, part2, part3)
-        })
-      })
+      } else {
+        None
+      }
     }
   }
 
@@ -12,7 +12,7 @@ package net.kfoundation.scala.parse.lex
 import net.kfoundation.scala.UString
 import net.kfoundation.scala.parse.CodeRange
 
-import scala.collection.{mutable, Seq}
+import scala.collection.Seq
 
 
 
@@ -23,18 +23,21 @@ object OperatorToken {
    * an operator is up to the implementing class.
    */
   abstract class Reader extends TokenReader[OperatorToken] {
-    private val values = new mutable.ListBuffer[UString]
+    private val trie = new Trie.Lazy
 
-    def getValues: Seq[UString] = values.toSeq
+    def getValues: Seq[UString] = trie.getValues
 
-    protected def add(newValue: UString): UString = {
-      values.append(newValue)
-      newValue
-    }
+    protected def add(newValue: UString): UString = trie.add(newValue)
 
-    override def tryRead(w: CodeWalker): Option[OperatorToken] =
-      values.find(w.tryRead)
-        .map(s => new OperatorToken(w.commit(), s))
+    override def tryRead(w: CodeWalker): Option[OperatorToken] = {
+      val t = trie.get
+      val i = t.tryRead(w)
+      if(i == CodeWalker.NOT_FOUND) {
+        None
+      } else {
+        Some(new OperatorToken(w.commit(), t.values(i)))
+      }
+    }
   }
 }
 
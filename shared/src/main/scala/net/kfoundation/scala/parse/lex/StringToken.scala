@@ -9,8 +9,6 @@
 
 package net.kfoundation.scala.parse.lex
 
-import java.io.ByteArrayOutputStream
-
 import net.kfoundation.scala.parse.CodeRange
 import net.kfoundation.scala.{UChar, UString}
 
@@ -32,7 +30,7 @@ object StringToken {
   object reader extends TokenReader[StringToken] {
     def tryRead(w: CodeWalker): Option[StringToken] =
       if(w.tryRead(DOUBLE_QUOTE)) {
-        val str = readStringBody(w, new ByteArrayOutputStream(), escaped = false)
+        val str = readStringBody(w, UString.builder, escaped = false)
         val range = w.commit()
         Some(new StringToken(range, str))
       } else {
@@ -41,29 +39,43 @@ object StringToken {
   }
 
 
+  /**
+   * Reads a string the same way as reader does, but produces only its
+   * value, without a token or code range.
+   */
+  def tryReadValue(w: CodeWalker): Option[UString] =
+    if(w.tryRead(DOUBLE_QUOTE)) {
+      val str = readStringBody(w, UString.builder, escaped = false)
+      w.discard()
+      Some(str)
+    } else {
+      None
+    }
+
+
   @tailrec
-  private def readStringBody(w: CodeWalker, b: ByteArrayOutputStream,
-    escaped: Boolean): UString = w.tryReadUChar match
+  private def readStringBody(w: CodeWalker, b: UString.Builder,
+    escaped: Boolean): UString =
   {
-    case Some(ch) =>
-      if(escaped) {
-        b.write(unescape(w, ch))
-        readStringBody(w, b, escaped = false)
-      } else if(ch.equals(BACKSLASH)) {
-        readStringBody(w, b, escaped = true)
-      } else if(ch.equals(DOUBLE_QUOTE)) {
-        UString.of(b.toByteArray.toSeq)
-      } else {
-        ch.writeToStream(b)
-        readStringBody(w, b, escaped = false)
-      }
-
-    case None => throw w.lexicalErrorAtCurrentLocation(
-      "End of stream reached but end of string not found. Start at " +
-        w.getBegin.getLocationTag)
+    val ch = w.tryReadCodePoint
+    if(ch == CodeWalker.NOT_FOUND) {
+      throw w.lexicalErrorAtCurrentLocation(
+        "End of stream reached but end of string not found. Start at " +
+          w.getBegin.getLocationTag)
+    } else if(escaped) {
+      b.appendCodePoint(unescape(w, ch))
+      readStringBody(w, b, escaped = false)
+    } else if(ch == BACKSLASH.codePoint) {
+      readStringBody(w, b, escaped = true)
+    } else if(ch == DOUBLE_QUOTE.codePoint) {
+      b.build
+    } else {
+      b.appendCodePoint(ch)
+      readStringBody(w, b, escaped = false)
+    }
   }
 
-  private def unescape(w: CodeWalker, ch: UChar): Int = ch.codePoint match {
+  private def unescape(w: CodeWalker, ch: Int): Int = ch match {
     case 'n' => '\n'
     case 't' => '\t'
     case 'b' => '\b'
@@ -73,7 +85,7 @@ object StringToken {
     case '"' => '"'
     case '\\' => '\\'
     case _ => throw w.lexicalErrorAtCurrentLocation(
-      "Invalid escape sequence '\\" + ch + "'")
+      "Invalid escape sequence '\\" + UChar.valueOf(ch) + "'")
   }
 
 }
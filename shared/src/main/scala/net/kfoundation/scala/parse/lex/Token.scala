@@ -9,16 +9,21 @@
 
 package net.kfoundation.scala.parse.lex
 
-import net.kfoundation.scala.parse.CodeRange
+import net.kfoundation.scala.parse.{CodeLocation, CodeRange}
 
 
 
 /**
  * Represents a portion of input that constitutes an interpretable lingual unit.
+ * The locations of the given range are not resolved until they are asked for.
  */
 abstract class Token[T](range: CodeRange, val value: T)
-  extends CodeRange(range)
+  extends CodeRange
 {
+  override def begin: CodeLocation = range.begin
+
+  override def end: CodeLocation = range.end
+
   /**
    * Returns the type of this token. Default implementation uses the name of
    * implementing class with "Token" removed.
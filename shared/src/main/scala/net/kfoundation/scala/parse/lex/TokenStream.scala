@@ -0,0 +1,68 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+
+package net.kfoundation.scala.parse.lex
+
+
+
+object TokenStream {
+
+  /** Produces the tokens of the given sequence, in order. */
+  def of(tokens: Seq[Token[_]]): TokenStream = new TokenStream {
+    private val iterator = tokens.iterator
+
+    override def next(): Option[Token[_]] =
+      if(iterator.hasNext) Some(iterator.next()) else None
+  }
+
+
+  /**
+   * Produces tokens on demand by reading the input of the given CodeWalker.
+   * Before each token, spaces are skipped, then the given readers are tried in
+   * order, and the first match is returned.
+   *
+   * @throws LexicalError if none of the readers matches the input.
+   */
+  def of(w: CodeWalker, readers: Seq[TokenReader[_ <: Token[_]]]): TokenStream =
+    new TokenStream {
+      private val readerArray = readers.toArray
+
+      override def next(): Option[Token[_]] = {
+        w.skipSpaces()
+        if(!w.hasMore) {
+          None
+        } else {
+          var i = 0
+          var result: Option[Token[_]] = None
+          while(result.isEmpty && i < readerArray.length) {
+            result = readerArray(i).tryRead(w)
+            i += 1
+          }
+          if(result.isEmpty) {
+            throw w.lexicalErrorAtCurrentLocation("Unrecognized token")
+          }
+          result
+        }
+      }
+    }
+
+}
+
+
+
+/**
+ * Source of tokens that are produced one at a time, as they are consumed,
+ * so that input does not need to be tokenized as a whole before parsing.
+ */
+trait TokenStream {
+
+  /** Returns the next token, or None at the end of input. */
+  def next(): Option[Token[_]]
+}
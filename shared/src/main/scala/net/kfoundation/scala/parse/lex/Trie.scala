@@ -0,0 +1,131 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.parse.lex
+
+import net.kfoundation.scala.UString
+
+import scala.collection.mutable
+
+
+
+object Trie {
+
+  /**
+   * Collects values to be matched, and compiles them into a Trie the first
+   * time it is needed, after they are all added. Adding a value afterwards
+   * causes it to be compiled again on next use.
+   */
+  class Lazy {
+    private val values = new mutable.ListBuffer[UString]
+    @volatile private var trie: Trie = _
+
+    def getValues: Seq[UString] = values.toSeq
+
+    def add(value: UString): UString = {
+      values.append(value)
+      trie = null
+      value
+    }
+
+    def get: Trie = {
+      var t = trie
+      if(t == null) {
+        t = new Trie(values.toSeq)
+        trie = t
+      }
+      t
+    }
+  }
+
+
+  private class Node {
+    var keys: Array[Byte] = Array.empty
+    var children: Array[Node] = Array.empty
+    var value: Int = -1
+
+    def child(key: Byte): Node = {
+      var i = 0
+      while(i < keys.length) {
+        if(keys(i) == key) {
+          return children(i)
+        }
+        i += 1
+      }
+      null
+    }
+
+    def getOrAdd(key: Byte): Node = {
+      val c = child(key)
+      if(c != null) {
+        c
+      } else {
+        val n = new Node
+        keys = keys :+ key
+        children = children :+ n
+        n
+      }
+    }
+  }
+}
+
+
+
+/**
+ * Byte-level trie of a fixed set of strings, used to read any of them from a
+ * CodeWalker in a single forward pass over the input. If more than one of
+ * the strings match, the one that comes first in the given sequence is read,
+ * as if each were tried in turn.
+ */
+class Trie(val values: Seq[UString]) {
+  import Trie._
+
+  private val root = new Node
+  private val lengths: Array[Int] = values.map(_.getLength).toArray
+  private val utf8Lengths: Array[Int] = values.map(_.getUtf8Length).toArray
+  private val indexes: mutable.HashMap[UString, Int] = mutable.HashMap()
+
+  values.zipWithIndex.foreach { case (v, i) =>
+    val node = v.toUtf8.foldLeft(root)((n, b) => n.getOrAdd(b))
+    if(node.value < 0) {
+      node.value = i
+    }
+    indexes.getOrElseUpdate(v, i)
+  }
+
+
+  /**
+   * Reads the matching string, if any, from the given walker, returning its
+   * index in values, or CodeWalker.NOT_FOUND if none matches.
+   */
+  def tryRead(w: CodeWalker): Int = {
+    var node = root
+    var depth = 0
+    var best = CodeWalker.NOT_FOUND
+    while(node != null) {
+      if(node.value >= 0 && (best < 0 || node.value < best)) {
+        best = node.value
+      }
+      val b = w.peekOctet(depth)
+      node = if(b < 0) null else node.child(b.toByte)
+      depth += 1
+    }
+    if(best >= 0) {
+      w.step(utf8Lengths(best), lengths(best))
+    }
+    best
+  }
+
+
+  /**
+   * Returns the index of the given string in values, or
+   * CodeWalker.NOT_FOUND if it is not one of them.
+   */
+  def indexOf(str: UString): Int = indexes.getOrElse(str, CodeWalker.NOT_FOUND)
+}
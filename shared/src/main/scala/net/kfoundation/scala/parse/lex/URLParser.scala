@@ -59,7 +59,7 @@ object URLParser extends Parser[URL] {
       throw w.parseError(MISSING_TOKEN,
         SHOULD -> COLON_SLASHES)
     }
-    w.commit()
+    w.discard()
     scheme
   }
 
@@ -118,7 +118,7 @@ object URLParser extends Parser[URL] {
         buffer.write(UChar.encodeUtf8(ch))
       }
     }
-    w.commit()
+    w.discard()
     UString.of(buffer.toByteArray)
   }
 
@@ -130,10 +130,10 @@ object URLParser extends Parser[URL] {
         MISSING_TOKEN, SHOULD -> "QUERY_PARAM_NAME"))
       .value
 
-    w.commit()
+    w.discard()
 
     if(w.tryRead(EQ)) {
-      w.commit()
+      w.discard()
       new URL.QueryParam(key, decode(w))
     } else {
       new URL.QueryParam(key, "")
@@ -145,13 +145,13 @@ object URLParser extends Parser[URL] {
     if(!w.tryRead(QUESTION_MARK)) {
       URL.NO_QUERY
     } else {
-      w.commit()
+      w.discard()
       var params: Seq[URL.QueryParam] = Nil
       var hasMore = true
       while(hasMore) {
         params = params :+ readQueryParam(w)
         hasMore = w.tryRead(AMP)
-        w.commit()
+        w.discard()
       }
       new URL.Query(params)
     }
@@ -159,7 +159,7 @@ object URLParser extends Parser[URL] {
 
   def readFragment(w: CodeWalker): Option[UString] =
     if(w.tryRead(HASH)) {
-      w.commit()
+      w.discard()
       val parsed = IdentifierToken.reader
         .tryRead(w)
         .map(_.value)
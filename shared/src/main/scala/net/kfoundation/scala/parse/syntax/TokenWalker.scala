@@ -10,17 +10,62 @@
 package net.kfoundation.scala.parse.syntax
 
 import net.kfoundation.scala.{UChar, UString}
-import net.kfoundation.scala.parse.CodeRange
+import net.kfoundation.scala.parse.{CodeLocation, CodeRange}
 import net.kfoundation.scala.parse.lex._
 
 
 
+object TokenWalker {
+  val DEFAULT_CAPACITY = 64
+}
+
+
+
 /**
  * Facility to process the output of tokenizer mainly for the purpose of
  * building an abstract syntax tree (AST).
+ *
+ * Tokens are pulled from the given stream as they are needed, and only the
+ * most recent ones are kept in a ring buffer of the given capacity. This
+ * bounds how far back range() and how far ahead peek() can reach, but allows
+ * input of any size to be parsed in constant memory.
  */
-class TokenWalker(file: String, tokens: Seq[Token[_]]) {
+class TokenWalker(file: String, stream: TokenStream, capacity: Int) {
+  if(capacity < 2) {
+    throw new IllegalArgumentException("Capacity should be at least 2")
+  }
+
+  private val buffer = new Array[Token[_]](capacity)
   private var cursor: Int = 0
+  private var nFetched: Int = 0
+  private var isEnd: Boolean = false
+
+
+  /** Walks over the given sequence of tokens, all of which are kept. */
+  def this(file: String, tokens: Seq[Token[_]]) =
+    this(file, TokenStream.of(tokens), Math.max(tokens.length, 1) + 1)
+
+
+  /** Walks over the given stream, using the default capacity. */
+  def this(file: String, stream: TokenStream) =
+    this(file, stream, TokenWalker.DEFAULT_CAPACITY)
+
+
+  private def get(index: Int): Option[Token[_]] = {
+    if(index < nFetched - capacity) {
+      throw new IllegalArgumentException(
+        s"Token at $index is no longer available")
+    }
+    while(nFetched <= index && !isEnd) {
+      stream.next() match {
+        case Some(t) =>
+          buffer(nFetched % capacity) = t
+          nFetched += 1
+        case None => isEnd = true
+      }
+    }
+    if(index >= 0 && index < nFetched) Some(buffer(index % capacity)) else None
+  }
 
 
   /** Move to next token */
@@ -32,19 +77,48 @@ class TokenWalker(file: String, tokens: Seq[Token[_]]) {
 
 
   /** Returns the current token */
-  def thisToken: Option[Token[_]] = tokens.lift(cursor)
+  def thisToken: Option[Token[_]] = get(cursor)
 
 
   /** Returns the token immediately before the current one */
-  def lastToken: Option[Token[_]] = tokens.lift(cursor-1)
+  def lastToken: Option[Token[_]] = get(cursor-1)
+
+
+  /**
+   * Returns the token at the given distance after the current one, without
+   * moving. The distance should be less than capacity - 1.
+   */
+  def peek(ahead: Int): Option[Token[_]] =
+    if(ahead < 0 || ahead >= capacity - 1) {
+      throw new IllegalArgumentException(
+        s"Lookahead should be within [0, ${capacity - 1}), but it is $ahead")
+    } else {
+      get(cursor + ahead)
+    }
+
+
+  private def apply(index: Int): Token[_] = get(index).getOrElse(
+    throw new IndexOutOfBoundsException(index.toString))
 
 
   /**
    * Computes the code range starting at the beginning of the token at the
    * given index to the end of the current token.
+   *
+   * @throws IllegalArgumentException if the token at the given index has
+   *         already left the buffer.
    */
   def range(begin: Int): CodeRange =
-    new CodeRange(tokens(begin).begin, tokens(cursor-1).end)
+    new CodeRange(apply(begin).begin, apply(cursor-1).end)
+
+
+  /**
+   * Computes the code range starting at the given location to the end of the
+   * current token. Unlike range(Int), this works regardless of how many tokens
+   * have been consumed since.
+   */
+  def range(begin: CodeLocation): CodeRange =
+    new CodeRange(begin, apply(cursor-1).end)
 
 
   /**
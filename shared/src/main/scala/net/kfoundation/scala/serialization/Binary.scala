@@ -0,0 +1,14 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization
+
+/** Object [de]serializer factory for the compact binary format */
+object Binary extends ObjectBiFactory.Adapter(
+  BinaryObjectSerializer.FACTORY, BinaryObjectDeserializer.FACTORY)
@@ -0,0 +1,424 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization
+
+import java.io.InputStream
+import java.util.Arrays
+
+import net.kfoundation.scala.UString
+import net.kfoundation.scala.parse.CodeLocation
+import net.kfoundation.scala.serialization.internals.{FieldSelection, ObjectStreamStateMachine}
+
+import scala.collection.mutable
+
+
+
+object BinaryObjectDeserializer {
+  val MIME_TYPE: UString = BinaryObjectSerializer.MIME_TYPE
+
+  val FACTORY: ObjectDeserializerFactory = new ObjectDeserializerFactory {
+    override def of(input: InputStream): ObjectDeserializer =
+      new BinaryObjectDeserializer("$stream", input)
+
+    override def getMediaType: UString = MIME_TYPE
+  }
+
+  private val EOF = -1
+}
+
+
+/**
+ * Deserializer for the compact binary format described in BinarySymbols.
+ * Since the input has no lines, locations in error messages give the offset
+ * of the octet at fault as their column.
+ */
+class BinaryObjectDeserializer private(fileName: String, private var input: InputStream)
+  extends ObjectDeserializer
+{
+  import BinaryObjectDeserializer._
+  import internals.BinarySymbols._
+
+  private val stateMachine = new ObjectStreamStateMachine
+  private val selection = new FieldSelection
+  private val names = new mutable.ArrayBuffer[UString]
+  private val buffer = new Array[Byte](BUFFER_SIZE)
+  private var pos = 0
+  private var limit = 0
+  private var consumed = 0L
+
+
+  /** Tries to make at least n octets available in the buffer. */
+  private def fill(n: Int): Boolean = {
+    if(limit - pos < n) {
+      System.arraycopy(buffer, pos, buffer, 0, limit - pos)
+      consumed += pos
+      limit -= pos
+      pos = 0
+      var read = 0
+      while(limit < n && read >= 0) {
+        read = input.read(buffer, limit, buffer.length - limit)
+        if(read > 0) {
+          limit += read
+        }
+      }
+    }
+    limit - pos >= n
+  }
+
+
+  private def error(message: String): DeserializationError =
+    new DeserializationError(s"${getCurrentLocation.getLocationTag} $message")
+
+
+  private def require(n: Int): Unit = if(!fill(n)) {
+    throw error("Unexpected end of input")
+  }
+
+
+  private def peekTag: Int = if(fill(1)) buffer(pos) else EOF
+
+
+  private def readTag(): Int = {
+    require(1)
+    val tag = buffer(pos)
+    pos += 1
+    tag
+  }
+
+
+  private def readTag(expected: Int, description: String): Unit = {
+    val tag = peekTag
+    if(tag != expected) {
+      throw error(s"$description expected")
+    }
+    pos += 1
+  }
+
+
+  private def readVarLong(): Long = {
+    var result = 0L
+    var shift = 0
+    var octet = 0x80
+    while((octet & 0x80) != 0) {
+      if(shift > 63) {
+        throw error("Malformed variable-length integer")
+      }
+      require(1)
+      octet = buffer(pos)
+      pos += 1
+      result |= (octet & 0x7FL) << shift
+      shift += 7
+    }
+    result
+  }
+
+
+  private def readLength(): Int = {
+    val length = readVarLong()
+    if(length < 0 || length > Int.MaxValue) {
+      throw error("Invalid length: " + length)
+    }
+    length.toInt
+  }
+
+
+  private def readZigZag(): Long = {
+    val v = readVarLong()
+    (v >>> 1) ^ -(v & 1)
+  }
+
+
+  private def readDoubleBits(): Double = {
+    require(8)
+    var bits = 0L
+    var i = 0
+    while(i < 8) {
+      bits = (bits << 8) | (buffer(pos + i) & 0xFF)
+      i += 1
+    }
+    pos += 8
+    java.lang.Double.longBitsToDouble(bits)
+  }
+
+
+  /**
+   * Lengths come from the input, so arrays are not allocated beyond what
+   * the buffer holds until their contents have actually been read.
+   */
+  private def sizeHint(builder: mutable.ArrayBuilder[_], length: Int): Unit =
+    builder.sizeHint(Math.min(length, buffer.length))
+
+
+  private def readString(): UString = {
+    val length = readLength()
+    if(length <= buffer.length) {
+      require(length)
+      val str = UString.of(Arrays.copyOfRange(buffer, pos, pos + length))
+      pos += length
+      str
+    } else {
+      val octets = new mutable.ArrayBuilder.ofByte
+      sizeHint(octets, length)
+      var remaining = length
+      while(remaining > 0) {
+        val n = Math.min(remaining, buffer.length)
+        require(n)
+        octets.addAll(buffer, pos, n)
+        pos += n
+        remaining -= n
+      }
+      UString.of(octets.result())
+    }
+  }
+
+
+  private def skip(length: Long): Unit = {
+    var remaining = length
+    while(remaining > 0) {
+      val n = Math.min(remaining, buffer.length).toInt
+      require(n)
+      pos += n
+      remaining -= n
+    }
+  }
+
+
+  private def readName(): UString = readLength() match {
+    case NAME_NULL => null
+    case NAME_INLINE => readString()
+    case NAME_DEFINITION =>
+      val name = readString()
+      names += name
+      name
+    case ref =>
+      val i = ref - NAME_REFERENCE_BASE
+      if(i >= names.size) {
+        throw error("Invalid name reference: " + ref)
+      }
+      names(i)
+  }
+
+
+  /** Skips one element along with everything nested in it. */
+  private def skipElement(): Unit = {
+    var depth = 0
+    do {
+      readTag() match {
+        case OBJECT_BEGIN =>
+          readName()
+          depth += 1
+        case COLLECTION_BEGIN => depth += 1
+        case OBJECT_END | COLLECTION_END => depth -= 1
+        case PROPERTY => readName()
+        case STRING => skip(readLength())
+        case INTEGER => readVarLong()
+        case DOUBLE => skip(8)
+        case TRUE | FALSE | NULL =>
+        case LONG_ARRAY => (0 until readLength()).foreach(_ => readVarLong())
+        case DOUBLE_ARRAY => skip(8L * readLength())
+        case tag => throw error("Unknown tag: " + tag)
+      }
+    } while(depth > 0)
+  }
+
+
+  override def readObjectBegin(): Option[UString] = {
+    stateMachine.objectBegin()
+    selection.objectBegin()
+    readTag(OBJECT_BEGIN, "Object")
+    Option(readName())
+  }
+
+
+  override def readObjectEnd(): Option[UString] = {
+    stateMachine.objectEnd()
+    selection.objectEnd()
+    readTag(OBJECT_END, "Object end")
+    None
+  }
+
+
+  override def readCollectionBegin(): Unit = {
+    stateMachine.collectionBegin()
+    readTag(COLLECTION_BEGIN, "Collection")
+  }
+
+
+  override def tryReadCollectionEnd(): Boolean =
+    if(peekTag == COLLECTION_END) {
+      pos += 1
+      stateMachine.collectionEnd()
+      true
+    } else {
+      false
+    }
+
+
+  override def tryReadPropertyName(): Option[UString] = {
+    var name = tryReadAnyPropertyName()
+    while(name.exists(selection.isSkipped)) {
+      skipValue()
+      name = tryReadAnyPropertyName()
+    }
+    name
+  }
+
+
+  private def tryReadAnyPropertyName(): Option[UString] =
+    if(peekTag == PROPERTY) {
+      pos += 1
+      stateMachine.property()
+      Some(readName())
+    } else {
+      None
+    }
+
+
+  override def readStringLiteral(): UString = {
+    stateMachine.literal()
+    readTag(STRING, "String literal")
+    readString()
+  }
+
+
+  override def readIntegerLiteral(): Long = {
+    stateMachine.literal()
+    readTag(INTEGER, "Integral value")
+    readZigZag()
+  }
+
+
+  override def readDecimalLiteral(): Double = {
+    stateMachine.literal()
+    peekTag match {
+      case DOUBLE =>
+        pos += 1
+        readDoubleBits()
+      case INTEGER =>
+        pos += 1
+        readZigZag().toDouble
+      case _ => throw error("Decimal value expected")
+    }
+  }
+
+
+  override def readBooleanLiteral(): Boolean = {
+    stateMachine.literal()
+    peekTag match {
+      case TRUE =>
+        pos += 1
+        true
+      case FALSE =>
+        pos += 1
+        false
+      case _ => throw error("Boolean value expected")
+    }
+  }
+
+
+  override def readLongArray(): Array[Long] = {
+    stateMachine.literal()
+    readTag(LONG_ARRAY, "Integer array")
+    val length = readLength()
+    val values = new mutable.ArrayBuilder.ofLong
+    sizeHint(values, length)
+    var i = 0
+    while(i < length) {
+      values.addOne(readZigZag())
+      i += 1
+    }
+    values.result()
+  }
+
+
+  override def readDoubleArray(): Array[Double] = {
+    stateMachine.literal()
+    readTag(DOUBLE_ARRAY, "Decimal array")
+    val length = readLength()
+    val values = new mutable.ArrayBuilder.ofDouble
+    sizeHint(values, length)
+    var i = 0
+    while(i < length) {
+      values.addOne(readDoubleBits())
+      i += 1
+    }
+    values.result()
+  }
+
+
+  override def readIntArray(): Array[Int] = {
+    stateMachine.literal()
+    readTag(LONG_ARRAY, "Integer array")
+    val length = readLength()
+    val values = new mutable.ArrayBuilder.ofInt
+    sizeHint(values, length)
+    var i = 0
+    while(i < length) {
+      values.addOne(checkInt(readZigZag()))
+      i += 1
+    }
+    values.result()
+  }
+
+
+  override def readByteArray(): Array[Byte] = {
+    stateMachine.literal()
+    readTag(LONG_ARRAY, "Integer array")
+    val length = readLength()
+    val values = new mutable.ArrayBuilder.ofByte
+    sizeHint(values, length)
+    var i = 0
+    while(i < length) {
+      values.addOne(checkByte(readZigZag()))
+      i += 1
+    }
+    values.result()
+  }
+
+
+  override def tryReadNullLiteral(): Boolean =
+    if(peekTag == NULL) {
+      pos += 1
+      stateMachine.literal()
+      true
+    } else {
+      false
+    }
+
+
+  override def skipValue(): Unit = {
+    stateMachine.literal()
+    skipElement()
+  }
+
+
+  override def select(fields: Seq[UString]): Unit = selection.select(fields)
+
+
+  override def isResettable: Boolean = true
+
+
+  override def reset(input: InputStream): ObjectDeserializer = {
+    this.input = input
+    pos = 0
+    limit = 0
+    consumed = 0
+    names.clear()
+    stateMachine.reset()
+    selection.reset()
+    this
+  }
+
+
+  override protected def getCurrentLocation: CodeLocation = {
+    val offset = consumed + pos
+    new CodeLocation(fileName, 1, Math.min(offset, Int.MaxValue - 1).toInt + 1, offset)
+  }
+}
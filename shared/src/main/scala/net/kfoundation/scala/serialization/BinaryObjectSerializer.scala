@@ -0,0 +1,312 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization
+
+import java.io.OutputStream
+
+import net.kfoundation.scala.UString
+import net.kfoundation.scala.serialization.internals.ObjectStreamStateMachine
+
+import scala.collection.mutable
+
+
+
+object BinaryObjectSerializer {
+  val MIME_TYPE: UString = "application/x-kfoundation-binary"
+
+  val FACTORY: ObjectSerializerFactory = factory(isChecked = true, useReferences = true)
+
+  /** Same as FACTORY, but does not validate the order of calls. */
+  val UNCHECKED_FACTORY: ObjectSerializerFactory =
+    factory(isChecked = false, useReferences = true)
+
+  /**
+   * Produces a factory for binary serializers. Indent size and compact flags
+   * given to it are ignored.
+   *
+   * @param isChecked whether to validate the order of calls
+   * @param useReferences whether to write each type and property name only
+   *                      once, and refer back to it afterwards
+   */
+  def factory(isChecked: Boolean, useReferences: Boolean): ObjectSerializerFactory =
+    new ObjectSerializerFactory {
+      override def of(output: OutputStream, indentSize: Int, compact: Boolean): ObjectSerializer =
+        new BinaryObjectSerializer(output, isChecked, useReferences)
+
+      override def getMediaType: UString = MIME_TYPE
+    }
+}
+
+
+/**
+ * Serializer for the compact binary format described in BinarySymbols.
+ * Output is buffered, and is passed on when the root object or collection
+ * ends.
+ */
+class BinaryObjectSerializer private(
+  private var output: OutputStream,
+  isChecked: Boolean,
+  useReferences: Boolean)
+  extends ObjectSerializer
+{
+  import internals.BinarySymbols._
+
+  private val stateMachine = new ObjectStreamStateMachine(isChecked)
+  private val names = new mutable.HashMap[UString, Int]
+  private val buffer = new Array[Byte](BUFFER_SIZE)
+  private var count = 0
+
+  private val bufferStream = new OutputStream {
+    override def write(b: Int): Unit = writeOctet(b)
+    override def write(b: Array[Byte], off: Int, len: Int): Unit = writeOctets(b, off, len)
+  }
+
+
+  private def drain(): Unit = {
+    output.write(buffer, 0, count)
+    count = 0
+  }
+
+
+  private def ensure(n: Int): Unit = if(count + n > buffer.length) {
+    drain()
+  }
+
+
+  private def writeOctet(octet: Int): Unit = {
+    ensure(1)
+    buffer(count) = octet.toByte
+    count += 1
+  }
+
+
+  private def writeOctets(octets: Array[Byte], offset: Int, length: Int): Unit = {
+    ensure(length)
+    if(length > buffer.length) {
+      output.write(octets, offset, length)
+    } else {
+      System.arraycopy(octets, offset, buffer, count, length)
+      count += length
+    }
+  }
+
+
+  private def writeVarLong(value: Long): Unit = {
+    ensure(10)
+    var v = value
+    while((v & ~0x7FL) != 0) {
+      buffer(count) = ((v & 0x7F) | 0x80).toByte
+      count += 1
+      v >>>= 7
+    }
+    buffer(count) = v.toByte
+    count += 1
+  }
+
+
+  private def writeZigZag(value: Long): Unit =
+    writeVarLong((value << 1) ^ (value >> 63))
+
+
+  private def writeDoubleBits(value: Double): Unit = {
+    ensure(8)
+    val bits = java.lang.Double.doubleToRawLongBits(value)
+    var shift = 56
+    while(shift >= 0) {
+      buffer(count) = (bits >>> shift).toByte
+      count += 1
+      shift -= 8
+    }
+  }
+
+
+  private def writeString(str: UString): Unit = {
+    writeVarLong(str.getUtf8Length)
+    str.writeToStream(bufferStream)
+  }
+
+
+  private def writeName(name: UString): Unit =
+    if(name == null) {
+      writeVarLong(NAME_NULL)
+    } else if(!useReferences) {
+      writeVarLong(NAME_INLINE)
+      writeString(name)
+    } else names.get(name) match {
+      case Some(i) => writeVarLong(NAME_REFERENCE_BASE + i)
+      case None =>
+        if(names.size < MAX_REFERENCES) {
+          writeVarLong(NAME_DEFINITION)
+          names.put(name, names.size)
+        } else {
+          writeVarLong(NAME_INLINE)
+        }
+        writeString(name)
+    }
+
+
+  private def flushIfAtRoot(): Unit = if(stateMachine.isAtRoot) {
+    flush()
+  }
+
+
+  override def writePropertyName(name: UString): ObjectSerializer = {
+    stateMachine.property()
+    writeOctet(PROPERTY)
+    writeName(name)
+    this
+  }
+
+
+  override def writeLiteral(value: UString): ObjectSerializer = {
+    stateMachine.literal()
+    writeOctet(STRING)
+    writeString(value)
+    this
+  }
+
+
+  override def writeLiteral(value: Long): ObjectSerializer = {
+    stateMachine.literal()
+    writeOctet(INTEGER)
+    writeZigZag(value)
+    this
+  }
+
+
+  override def writeLiteral(value: Double): ObjectSerializer = {
+    stateMachine.literal()
+    writeOctet(DOUBLE)
+    writeDoubleBits(value)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Long]): ObjectSerializer = {
+    stateMachine.literal()
+    writeOctet(LONG_ARRAY)
+    writeVarLong(values.length)
+    var i = 0
+    while(i < values.length) {
+      writeZigZag(values(i))
+      i += 1
+    }
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Double]): ObjectSerializer = {
+    stateMachine.literal()
+    writeOctet(DOUBLE_ARRAY)
+    writeVarLong(values.length)
+    var i = 0
+    while(i < values.length) {
+      writeDoubleBits(values(i))
+      i += 1
+    }
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Int]): ObjectSerializer = {
+    stateMachine.literal()
+    writeOctet(LONG_ARRAY)
+    writeVarLong(values.length)
+    var i = 0
+    while(i < values.length) {
+      writeZigZag(values(i))
+      i += 1
+    }
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Byte]): ObjectSerializer = {
+    stateMachine.literal()
+    writeOctet(LONG_ARRAY)
+    writeVarLong(values.length)
+    var i = 0
+    while(i < values.length) {
+      writeZigZag(values(i))
+      i += 1
+    }
+    this
+  }
+
+
+  override def writeLiteral(value: Boolean): ObjectSerializer = {
+    stateMachine.literal()
+    writeOctet(if(value) TRUE else FALSE)
+    this
+  }
+
+
+  override def writeNull(): ObjectSerializer = {
+    stateMachine.literal()
+    writeOctet(NULL)
+    this
+  }
+
+
+  override def writeObjectBegin(name: UString): ObjectSerializer = {
+    stateMachine.objectBegin(name)
+    writeOctet(OBJECT_BEGIN)
+    writeName(name)
+    this
+  }
+
+
+  override def writeObjectEnd(): ObjectSerializer = {
+    stateMachine.objectEnd()
+    writeOctet(OBJECT_END)
+    flushIfAtRoot()
+    this
+  }
+
+
+  override def writeCollectionBegin(): ObjectSerializer = {
+    stateMachine.collectionBegin()
+    writeOctet(COLLECTION_BEGIN)
+    this
+  }
+
+
+  override def writeCollectionEnd(): ObjectSerializer = {
+    stateMachine.collectionEnd()
+    writeOctet(COLLECTION_END)
+    flushIfAtRoot()
+    this
+  }
+
+
+  override def writeStreamEnd(): Unit = {
+    stateMachine.streamEnd()
+    flush()
+  }
+
+
+  override def flush(): ObjectSerializer = {
+    drain()
+    output.flush()
+    this
+  }
+
+
+  override def isResettable: Boolean = true
+
+
+  override def reset(output: OutputStream): ObjectSerializer = {
+    this.output = output
+    count = 0
+    names.clear()
+    stateMachine.reset()
+    this
+  }
+}
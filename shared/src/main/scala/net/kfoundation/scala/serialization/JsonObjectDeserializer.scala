@@ -9,12 +9,14 @@
 
 package net.kfoundation.scala.serialization
 import java.io.InputStream
+import java.nio.ByteBuffer
 
 import net.kfoundation.scala.UString
-import net.kfoundation.scala.io.Path
+import net.kfoundation.scala.io.ByteBufferInputStream
 import net.kfoundation.scala.parse.CodeLocation
-import net.kfoundation.scala.parse.lex._
-import net.kfoundation.scala.serialization.internals.ObjectStreamStateMachine
+import net.kfoundation.scala.serialization.internals.{FieldSelection, JsonScanner, ObjectStreamStateMachine}
+
+import scala.collection.mutable
 
 
 
@@ -23,138 +25,278 @@ object JsonObjectDeserializer {
 
   val FACTORY: ObjectDeserializerFactory = new ObjectDeserializerFactory {
     override def of(input: InputStream): ObjectDeserializer =
-      new JsonObjectDeserializer(CodeWalker.of(input))
+      new JsonObjectDeserializer(new JsonScanner("$stream", input))
+
+    override def of(buffer: ByteBuffer): ObjectDeserializer =
+      new JsonObjectDeserializer(scannerOf("$buffer", buffer))
+
+    override def of(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer = {
+      val scanner = scannerOf(origin.getFileName, buffer)
+      scanner.moveOrigin(origin)
+      new JsonObjectDeserializer(scanner)
+    }
 
     override def getMediaType: UString = MIME_TYPE
   }
-}
 
+  private def scannerOf(name: String, buffer: ByteBuffer) =
+    if(buffer.hasArray) {
+      val scanner = new JsonScanner(name, null, 0)
+      scanner.reset(buffer)
+      scanner
+    } else {
+      new JsonScanner(name, new ByteBufferInputStream(buffer),
+        Math.min(JsonScanner.DEFAULT_WINDOW_SIZE, buffer.remaining()))
+    }
+}
 
-/** JSON object deserializer. */
-class JsonObjectDeserializer private(walker: CodeWalker) extends ObjectDeserializer {
-  import internals.CommonSymbols._
 
+/**
+ * JSON object deserializer. Property names may also be given without quotes,
+ * if they consist of letters, digits, '_' and '$'.
+ */
+class JsonObjectDeserializer private(scanner: JsonScanner) extends ObjectDeserializer {
   private val stateMachine = new ObjectStreamStateMachine
+  private val selection = new FieldSelection
 
   override def readObjectBegin(): Option[UString] = {
-    if(stateMachine.isInCollection && !stateMachine.isFirst) {
-      walker.skipSpaces()
-      if(!walker.tryRead(COMMA)) {
-        throw walker.lexicalErrorAtCurrentLocation("',' expected")
-      }
+    if(stateMachine.isInCollection && !stateMachine.isFirst && !scanner.tryRead(',')) {
+      throw scanner.error("',' expected")
     }
     stateMachine.objectBegin()
-    walker.skipSpaces()
-    if(walker.tryRead(OPEN_CURLY_BRACE)) {
-      walker.commit()
-      None
-    } else {
-      throw walker.lexicalErrorAtBeginning("'{' expected")
+    selection.objectBegin()
+    if(!scanner.tryRead('{')) {
+      throw scanner.error("'{' expected")
     }
+    None
   }
 
 
   override def readObjectEnd(): Option[UString] = {
     stateMachine.objectEnd()
-    walker.skipSpaces()
-    if(walker.tryRead(CLOSE_CURLY_BRACE)) {
-      walker.commit()
-      None
-    } else {
-      throw walker.lexicalErrorAtBeginning("'}' expected")
+    selection.objectEnd()
+    if(!scanner.tryRead('}')) {
+      throw scanner.error("'}' expected")
     }
+    None
   }
 
 
   override def readCollectionBegin(): Unit = {
     stateMachine.collectionBegin()
-    walker.skipSpaces()
-    if(walker.tryRead(OPEN_BRACE)) {
-      walker.commit()
-    } else {
-      throw walker.lexicalErrorAtBeginning("']' expected")
+    if(!scanner.tryRead('[')) {
+      throw scanner.error("'[' expected")
     }
   }
 
 
-  override def tryReadCollectionEnd(): Boolean = {
-    walker.skipSpaces()
-    if(walker.tryRead(CLOSE_BRACE)) {
-      walker.commit()
+  override def tryReadCollectionEnd(): Boolean =
+    if(scanner.tryRead(']')) {
       stateMachine.collectionEnd()
       true
     } else {
       false
     }
+
+
+  override def tryReadPropertyName(): Option[UString] = {
+    var name = tryReadAnyPropertyName()
+    while(name.exists(selection.isSkipped)) {
+      skipValue()
+      name = tryReadAnyPropertyName()
+    }
+    name
   }
 
 
-  override def tryReadPropertyName(): Option[UString] =
-    if(!stateMachine.isFirst && !walker.tryRead(COMMA)) {
-      walker.skipSpaces()
+  private def tryReadAnyPropertyName(): Option[UString] =
+    if(!stateMachine.isFirst && !scanner.tryRead(',')) {
       None
     } else {
-      walker.skipSpaces()
-      StringToken.reader.tryRead(walker).map(token => {
-        if(!walker.tryRead(COLON)) {
-          throw walker.lexicalErrorAtBeginning("':' expected")
+      val name = scanner.skipSpaces() match {
+        case '"' => scanner.tryReadName()
+        case _ => scanner.tryReadIdentifier()
+      }
+      if(name == null) {
+        None
+      } else {
+        if(!scanner.tryRead(':')) {
+          throw scanner.error("':' expected")
+        }
+        stateMachine.property()
+        Some(name)
+      }
+    }
+
+
+  /**
+   * Same as tryReadPropertyName() followed by a lookup, but quoted names are
+   * matched in the scanner's window, and selections are not consulted, as
+   * properties not among the given names are skipped anyway.
+   */
+  override def tryReadPropertyIndex(names: PropertyNames): Int = {
+    var index = tryReadAnyPropertyIndex(names)
+    while(index == PropertyNames.NOT_FOUND) {
+      skipValue()
+      index = tryReadAnyPropertyIndex(names)
+    }
+    if(index == JsonScanner.NO_NAME) PropertyNames.NOT_FOUND else index
+  }
+
+
+  private def tryReadAnyPropertyIndex(names: PropertyNames): Int =
+    if(!stateMachine.isFirst && !scanner.tryRead(',')) {
+      JsonScanner.NO_NAME
+    } else {
+      val index = scanner.skipSpaces() match {
+        case '"' => scanner.tryReadNameIndex(names)
+        case _ =>
+          val name = scanner.tryReadIdentifier()
+          if(name == null) JsonScanner.NO_NAME else names.indexOf(name)
+      }
+      if(index != JsonScanner.NO_NAME) {
+        if(!scanner.tryRead(':')) {
+          throw scanner.error("':' expected")
         }
-        walker.commit()
         stateMachine.property()
-        token.value
-      })
+      }
+      index
     }
 
 
   override def readStringLiteral(): UString = {
     stateMachine.literal()
-    walker.skipSpaces()
-    StringToken.reader
-      .tryRead(walker)
-      .getOrElse(throw walker.lexicalErrorAtBeginning("String literal expected"))
-      .value
+    val value = scanner.tryReadString()
+    if(value == null) {
+      throw scanner.error("String literal expected")
+    }
+    value
   }
 
 
   override def readIntegerLiteral(): Long = {
     stateMachine.literal()
-    walker.skipSpaces()
-    NumericToken.reader
-      .tryRead(walker) match {
-      case Some(i: IntegralToken) => i.value
-      case Some(d: DecimalToken) => throw walker.lexicalErrorAtCurrentLocation("Expected an integer but found: " + d)
-      case _ => throw walker.lexicalErrorAtCurrentLocation("Integral value expected")
+    if(!scanner.tryReadNumber()) {
+      throw scanner.error("Integral value expected")
+    } else if(!scanner.isIntegral) {
+      throw scanner.error("Expected an integer but found: " + scanner.decimalValue)
     }
+    scanner.integralValue
   }
 
 
   override def readDecimalLiteral(): Double = {
     stateMachine.literal()
-    walker.skipSpaces()
-    NumericToken.reader
-      .tryRead(walker) match {
-      case Some(i: IntegralToken) => (i.value).toDouble
-      case Some(d: DecimalToken) => d.value
-      case _ => throw walker.lexicalErrorAtCurrentLocation("Decimal value expected")
+    if(!scanner.tryReadNumber()) {
+      throw scanner.error("Decimal value expected")
     }
+    scanner.decimalValue
   }
 
 
   override def readBooleanLiteral(): Boolean = {
     stateMachine.literal()
-    walker.skipSpaces()
-    if(walker.tryRead(TRUE)) {
-      walker.commit()
-      true
-    } else if(walker.tryRead(FALSE)) {
-      walker.commit()
-      false
+    scanner.readBoolean()
+  }
+
+
+  /**
+   * Reads the elements of a JSON array one by one until the closing bracket,
+   * calling the given function after each.
+   */
+  private def readArray(readElement: () => Unit): Unit = {
+    stateMachine.literal()
+    if(!scanner.tryRead('[')) {
+      throw scanner.error("'[' expected")
+    }
+    if(!scanner.tryRead(']')) {
+      do {
+        if(!scanner.tryReadNumber()) {
+          throw scanner.error("Number expected")
+        }
+        readElement()
+      } while(scanner.tryRead(','))
+      if(!scanner.tryRead(']')) {
+        throw scanner.error("']' expected")
+      }
+    }
+  }
+
+
+  private def integralElement: Long =
+    if(scanner.isIntegral) {
+      scanner.integralValue
     } else {
-      throw walker.lexicalErrorAtBeginning("Expected a boolean value")
+      throw scanner.error("Expected an integer but found: " + scanner.decimalValue)
     }
+
+
+  override def readLongArray(): Array[Long] = {
+    val values = new mutable.ArrayBuilder.ofLong
+    readArray(() => values += integralElement)
+    values.result()
+  }
+
+
+  override def readIntArray(): Array[Int] = {
+    val values = new mutable.ArrayBuilder.ofInt
+    readArray(() => values += checkInt(integralElement))
+    values.result()
+  }
+
+
+  override def readByteArray(): Array[Byte] = {
+    val values = new mutable.ArrayBuilder.ofByte
+    readArray(() => values += checkByte(integralElement))
+    values.result()
+  }
+
+
+  override def readDoubleArray(): Array[Double] = {
+    val values = new mutable.ArrayBuilder.ofDouble
+    readArray(() => values += scanner.decimalValue)
+    values.result()
+  }
+
+
+  override def skipValue(): Unit = {
+    stateMachine.literal()
+    scanner.skipValue()
+  }
+
+
+  override def select(fields: Seq[UString]): Unit = selection.select(fields)
+
+
+  override def isResettable: Boolean = true
+
+
+  override def reset(input: InputStream): ObjectDeserializer = {
+    scanner.reset(input)
+    stateMachine.reset()
+    selection.reset()
+    this
   }
 
 
+  override def reset(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer = {
+    scanner.reset(buffer)
+    stateMachine.reset()
+    selection.reset()
+    scanner.moveOrigin(origin)
+    this
+  }
+
+
+  override def tryReadNullLiteral(): Boolean =
+    if(scanner.tryReadNull()) {
+      stateMachine.literal()
+      true
+    } else {
+      false
+    }
+
+
   override protected def getCurrentLocation: CodeLocation =
-    walker.getCurrentLocation
+    scanner.getCurrentLocation
 }
@@ -10,35 +10,46 @@
 package net.kfoundation.scala.serialization
 
 import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
 
 import net.kfoundation.scala.UString
 import net.kfoundation.scala.UString.Interpolator
-import net.kfoundation.scala.serialization.internals.{IndentingWriter, ObjectStreamStateMachine}
+import net.kfoundation.scala.encoding.Escaper
+import net.kfoundation.scala.serialization.internals.{IndentingSerializerFactory, IndentingWriter, ObjectStreamStateMachine}
 
 
 
 object JsonObjectSerializer {
   private val COLON_SPACE = U": "
-  private val COMMA_SPACE = U", "
   val DEFAULT_INDENT_SIZE = 2
   val MIME_TYPE: UString = "application/json"
 
-  val FACTORY: ObjectSerializerFactory = new ObjectSerializerFactory {
-    override def of(output: OutputStream, indentSize: Int, compact: Boolean): ObjectSerializer =
-      new JsonObjectSerializer(new IndentingWriter(output, indentSize, compact))
+  val FACTORY: ObjectSerializerFactory = factory(true)
 
-    override def getMediaType: UString = MIME_TYPE
-  }
+  /**
+   * Same as FACTORY, but produces serializers that do not validate the order
+   * of calls made to them. To be used only with writers known to be correct,
+   * such as generated ones.
+   */
+  val UNCHECKED_FACTORY: ObjectSerializerFactory = factory(false)
+
+  private def factory(isChecked: Boolean): ObjectSerializerFactory =
+    new IndentingSerializerFactory(MIME_TYPE) {
+      override protected def of(writer: IndentingWriter): ObjectSerializer =
+        new JsonObjectSerializer(writer, isChecked)
+    }
 }
 
 
 /** JSON object serializer. */
-class JsonObjectSerializer private(writer: IndentingWriter) extends ObjectSerializer {
+class JsonObjectSerializer private(writer: IndentingWriter, isChecked: Boolean)
+  extends ObjectSerializer {
   import internals.CommonSymbols._
   import JsonObjectSerializer._
 
 
-  private val stateMachine = new ObjectStreamStateMachine
+  private val stateMachine = new ObjectStreamStateMachine(isChecked)
 
 
   override def writeObjectBegin(name: UString): ObjectSerializer = {
@@ -57,6 +68,9 @@ class JsonObjectSerializer private(writer: IndentingWriter) extends ObjectSerial
     writer.unindent()
     writer.writeNewLine()
     writer.write(CLOSE_CURLY_BRACE)
+    if(stateMachine.isAtRoot) {
+      writer.flush()
+    }
     this
   }
 
@@ -75,6 +89,9 @@ class JsonObjectSerializer private(writer: IndentingWriter) extends ObjectSerial
     writer.writeNewLine()
     writer.unindent()
     writer.write(CLOSE_BRACE)
+    if(stateMachine.isAtRoot) {
+      writer.flush()
+    }
     this
   }
 
@@ -96,7 +113,7 @@ class JsonObjectSerializer private(writer: IndentingWriter) extends ObjectSerial
   override def writeLiteral(value: UString): ObjectSerializer = {
     stateMachine.literal()
     writer.write(DOUBLE_QUOTE)
-    writer.write(value)
+    writer.write(value, Escaper.JSON)
     writer.write(DOUBLE_QUOTE)
     this
   }
@@ -104,14 +121,50 @@ class JsonObjectSerializer private(writer: IndentingWriter) extends ObjectSerial
 
   override def writeLiteral(value: Long): ObjectSerializer = {
     stateMachine.literal()
-    writer.write(UString.of(value))
+    writer.write(value)
     this
   }
 
 
   override def writeLiteral(value: Double): ObjectSerializer = {
     stateMachine.literal()
-    writer.write(UString.of(value))
+    writer.write(value)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Long]): ObjectSerializer = {
+    stateMachine.literal()
+    writer.write(OPEN_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_BRACE)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Double]): ObjectSerializer = {
+    stateMachine.literal()
+    writer.write(OPEN_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_BRACE)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Int]): ObjectSerializer = {
+    stateMachine.literal()
+    writer.write(OPEN_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_BRACE)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Byte]): ObjectSerializer = {
+    stateMachine.literal()
+    writer.write(OPEN_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_BRACE)
     this
   }
 
@@ -132,5 +185,39 @@ class JsonObjectSerializer private(writer: IndentingWriter) extends ObjectSerial
 
   override def writeStreamEnd(): Unit = {
     stateMachine.streamEnd()
+    writer.flush()
+  }
+
+
+  override def flush(): ObjectSerializer = {
+    writer.flush()
+    this
+  }
+
+
+  override def isResettable: Boolean = true
+
+
+  override def reset(output: OutputStream): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  override def reset(output: WritableByteChannel): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  override def reset(output: ByteBuffer): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  private def restart(): ObjectSerializer = {
+    stateMachine.reset()
+    this
   }
 }
\ No newline at end of file
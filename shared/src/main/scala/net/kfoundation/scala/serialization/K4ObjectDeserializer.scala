@@ -9,24 +9,30 @@
 
 package net.kfoundation.scala.serialization
 
-import net.kfoundation.scala.io.Path
+import net.kfoundation.scala.io.{ByteBufferInputStream, Path}
 import net.kfoundation.scala.parse.CodeLocation
 import net.kfoundation.scala.parse.lex._
-import net.kfoundation.scala.serialization.internals.ObjectStreamStateMachine
+import net.kfoundation.scala.serialization.internals.{FieldSelection, ObjectStreamStateMachine}
 import net.kfoundation.scala.{UChar, UString}
 
 import java.io.InputStream
+import java.nio.ByteBuffer
+import scala.collection.mutable
 
 
 
 /**  */
 object K4ObjectDeserializer {
   val MIME_TYPE: UString = "application/x-k4"
+  private val BRACKETS = "[]{}"
 
   val FACTORY: ObjectDeserializerFactory = new ObjectDeserializerFactory {
     override def of(input: InputStream): ObjectDeserializer =
       new K4ObjectDeserializer(CodeWalker.of(input))
 
+    override def of(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer =
+      new K4ObjectDeserializer(CodeWalker.of(buffer, origin))
+
     override def getMediaType: UString = MIME_TYPE
   }
 }
@@ -37,9 +43,23 @@ object K4ObjectDeserializer {
 class K4ObjectDeserializer private (walker: CodeWalker)
   extends ObjectDeserializer
 {
+  import K4ObjectDeserializer._
   import internals.CommonSymbols._
 
   private val stateMachine = new ObjectStreamStateMachine
+  private val selection = new FieldSelection
+  private val number = new NumericToken.Literal
+
+  private def isAtomPart(cp: Int): Boolean =
+    UChar.isIdentifierPart(cp) || cp == '.' || cp == '-' || cp == '+'
+
+
+  private def skipBlockOrError(): Unit =
+    if(!walker.skipBlock(BRACKETS)) {
+      throw walker.lexicalErrorAtCurrentLocation(
+        "End of stream reached but end of block not found")
+    }
+
 
   private def readOrError(symbol: UChar): Unit = {
     if(!walker.tryRead(symbol)) {
@@ -58,15 +78,15 @@ class K4ObjectDeserializer private (walker: CodeWalker)
 
     walker.skipSpaces()
 
-    val token = IdentifierToken.reader
-      .tryRead(walker)
+    val name = IdentifierToken.tryReadValue(walker)
       .getOrElse(throw walker.lexicalErrorAtBeginning(
         "Missing expected identifier"))
 
     walker.readSpaces()
     readOrError(OPEN_BRACE)
-    stateMachine.objectBegin(token.value)
-    Some(token.value)
+    stateMachine.objectBegin(name)
+    selection.objectBegin()
+    Some(name)
   }
 
 
@@ -74,7 +94,8 @@ class K4ObjectDeserializer private (walker: CodeWalker)
     walker.skipSpaces()
     readOrError(CLOSE_BRACE)
     val name = stateMachine.objectEnd()
-    walker.commit()
+    selection.objectEnd()
+    walker.discard()
     name
   }
 
@@ -83,7 +104,7 @@ class K4ObjectDeserializer private (walker: CodeWalker)
     walker.skipSpaces()
     readOrError(OPEN_CURLY_BRACE)
     stateMachine.collectionBegin()
-    walker.commit()
+    walker.discard()
   }
 
 
@@ -99,13 +120,23 @@ class K4ObjectDeserializer private (walker: CodeWalker)
 
 
   override def tryReadPropertyName(): Option[UString] = {
+    var name = tryReadAnyPropertyName()
+    while(name.exists(selection.isSkipped)) {
+      skipValue()
+      name = tryReadAnyPropertyName()
+    }
+    name
+  }
+
+
+  private def tryReadAnyPropertyName(): Option[UString] = {
     walker.skipSpaces()
 
-    IdentifierToken.reader.tryRead(walker).map(id => {
+    IdentifierToken.tryReadValue(walker).map(name => {
       walker.readSpaces()
       readOrError(EQUAL)
       stateMachine.property()
-      id.value
+      name
     })
   }
 
@@ -113,33 +144,31 @@ class K4ObjectDeserializer private (walker: CodeWalker)
   override def readStringLiteral(): UString = {
     stateMachine.literal()
     walker.skipSpaces()
-    StringToken.reader
-      .tryRead(walker)
+    StringToken.tryReadValue(walker)
       .getOrElse(throw walker.lexicalErrorAtBeginning("Missing string literal"))
-      .value
   }
 
 
   override def readIntegerLiteral(): Long = {
     stateMachine.literal()
     walker.skipSpaces()
-    NumericToken.reader.tryRead(walker) match {
-      case Some(i: IntegralToken) => i.value
-      case Some(d: DecimalToken) => throw walker.lexicalErrorAtBeginning(
-        "Expected an integer, found: " + d.value)
-      case _ => throw walker.lexicalErrorAtBeginning("Missing expected integer")
+    if(!NumericToken.tryReadValue(walker, number)) {
+      throw walker.lexicalErrorAtBeginning("Missing expected integer")
+    } else if(!number.isIntegral) {
+      throw walker.lexicalErrorAtBeginning(
+        "Expected an integer, found: " + number.decimalValue)
     }
+    number.integralValue
   }
 
 
   override def readDecimalLiteral(): Double = {
     stateMachine.literal()
     walker.skipSpaces()
-    NumericToken.reader.tryRead(walker) match {
-      case Some(i: IntegralToken) => i.asDecimalToken.value
-      case Some(d: DecimalToken) => d.value
-      case _ => throw walker.lexicalErrorAtBeginning("Missing expected number")
+    if(!NumericToken.tryReadValue(walker, number)) {
+      throw walker.lexicalErrorAtBeginning("Missing expected number")
     }
+    number.decimalValue
   }
 
 
@@ -156,5 +185,113 @@ class K4ObjectDeserializer private (walker: CodeWalker)
   }
 
 
+  /**
+   * Reads the numbers in a collection one by one until the closing brace,
+   * calling the given function after each.
+   */
+  private def readArray(readElement: () => Unit): Unit = {
+    stateMachine.literal()
+    walker.skipSpaces()
+    readOrError(OPEN_CURLY_BRACE)
+    walker.skipSpaces()
+    if(!walker.tryRead(CLOSE_CURLY_BRACE)) {
+      do {
+        walker.skipSpaces()
+        if(!NumericToken.tryReadValue(walker, number)) {
+          throw walker.lexicalErrorAtCurrentLocation("Missing expected number")
+        }
+        readElement()
+        walker.skipSpaces()
+      } while(walker.tryRead(COMMA))
+      readOrError(CLOSE_CURLY_BRACE)
+    }
+    walker.discard()
+  }
+
+
+  private def integralElement: Long =
+    if(number.isIntegral) {
+      number.integralValue
+    } else {
+      throw walker.lexicalErrorAtCurrentLocation(
+        "Expected an integer, found: " + number.decimalValue)
+    }
+
+
+  override def readLongArray(): Array[Long] = {
+    val values = new mutable.ArrayBuilder.ofLong
+    readArray(() => values += integralElement)
+    values.result()
+  }
+
+
+  override def readIntArray(): Array[Int] = {
+    val values = new mutable.ArrayBuilder.ofInt
+    readArray(() => values += checkInt(integralElement))
+    values.result()
+  }
+
+
+  override def readByteArray(): Array[Byte] = {
+    val values = new mutable.ArrayBuilder.ofByte
+    readArray(() => values += checkByte(integralElement))
+    values.result()
+  }
+
+
+  override def readDoubleArray(): Array[Double] = {
+    val values = new mutable.ArrayBuilder.ofDouble
+    readArray(() => values += number.decimalValue)
+    values.result()
+  }
+
+
+  /**
+   * Skips strings and collections by matching quotes and brackets; anything
+   * else is taken to be a number, a boolean, or an object type name, which
+   * is followed by the body of that object.
+   */
+  override def skipValue(): Unit = {
+    stateMachine.literal()
+    walker.skipSpaces()
+    if(walker.tryRead(DOUBLE_QUOTE)) {
+      if(!walker.skipString()) {
+        throw walker.lexicalErrorAtCurrentLocation(
+          "End of stream reached but end of string not found")
+      }
+    } else if(walker.tryRead(OPEN_CURLY_BRACE)) {
+      skipBlockOrError()
+    } else if(walker.skipAll(isAtomPart) == 0) {
+      throw walker.lexicalErrorAtCurrentLocation("Missing expected value")
+    } else {
+      walker.skipSpaces()
+      if(walker.tryRead(OPEN_BRACE)) {
+        skipBlockOrError()
+      }
+    }
+  }
+
+
+  override def select(fields: Seq[UString]): Unit = selection.select(fields)
+
+
+  override def isResettable: Boolean = true
+
+
+  override def reset(input: InputStream): ObjectDeserializer = {
+    walker.reset(input)
+    stateMachine.reset()
+    selection.reset()
+    this
+  }
+
+
+  override def reset(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer = {
+    reset(new ByteBufferInputStream(buffer))
+    walker.moveOrigin(origin)
+    this
+  }
+
+
   override def getCurrentLocation: CodeLocation = walker.getCurrentLocation
 }
@@ -10,9 +10,12 @@
 package net.kfoundation.scala.serialization
 
 import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
 
 import net.kfoundation.scala.UString
-import net.kfoundation.scala.serialization.internals.{IndentingWriter, ObjectStreamStateMachine}
+import net.kfoundation.scala.encoding.Escaper
+import net.kfoundation.scala.serialization.internals.{IndentingSerializerFactory, IndentingWriter, ObjectStreamStateMachine}
 
 
 
@@ -20,28 +23,36 @@ object K4ObjectSerializer {
   val DEFAULT_INDENT_SIZE = 2
   val MIME_TYPE: UString = "application/x-k4"
 
-  val FACTORY: ObjectSerializerFactory = new ObjectSerializerFactory {
-    override def of(output: OutputStream, indentSize: Int, compact: Boolean):
-    ObjectSerializer =
-      new K4ObjectSerializer(new IndentingWriter(output, indentSize, compact))
+  val FACTORY: ObjectSerializerFactory = factory(true)
 
-    override def getMediaType: UString = MIME_TYPE
-  }
+  /**
+   * Same as FACTORY, but produces serializers that do not validate the order
+   * of calls made to them. To be used only with writers known to be correct,
+   * such as generated ones.
+   */
+  val UNCHECKED_FACTORY: ObjectSerializerFactory = factory(false)
+
+  private def factory(isChecked: Boolean): ObjectSerializerFactory =
+    new IndentingSerializerFactory(MIME_TYPE) {
+      override protected def of(writer: IndentingWriter): ObjectSerializer =
+        new K4ObjectSerializer(writer, isChecked)
+    }
 }
 
 
 /** K4 object serializer */
-class K4ObjectSerializer private(writer: IndentingWriter)  extends ObjectSerializer {
+class K4ObjectSerializer private(writer: IndentingWriter, isChecked: Boolean)
+  extends ObjectSerializer {
   import internals.CommonSymbols._
-  import ObjectStreamStateMachine.State
+  import ObjectStreamStateMachine.StateId
 
 
-  private val stateMachine = new ObjectStreamStateMachine
+  private val stateMachine = new ObjectStreamStateMachine(isChecked)
 
 
   override def writePropertyName(name: UString): ObjectSerializer = {
-    if(stateMachine.getState == State.OBJECT_END
-      || stateMachine.getState == State.COLLECTION_END)
+    if(stateMachine.getStateId == StateId.OBJECT_END
+      || stateMachine.getStateId == StateId.COLLECTION_END)
     {
       writer.writeNewLine()
     } else if(!stateMachine.isFirst) {
@@ -59,7 +70,7 @@ class K4ObjectSerializer private(writer: IndentingWriter)  extends ObjectSeriali
   override def writeLiteral(value: UString): ObjectSerializer = {
     stateMachine.literal()
     writer.write(DOUBLE_QUOTE)
-    writer.write(value)
+    writer.write(value, Escaper.K4)
     writer.write(DOUBLE_QUOTE)
     this
   }
@@ -67,14 +78,50 @@ class K4ObjectSerializer private(writer: IndentingWriter)  extends ObjectSeriali
 
   override def writeLiteral(value: Long): ObjectSerializer = {
     stateMachine.literal()
-    writer.write(UString.of(value))
+    writer.write(value)
     this
   }
 
 
   override def writeLiteral(value: Double): ObjectSerializer = {
     stateMachine.literal()
-    writer.write(UString.of(value))
+    writer.write(value)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Long]): ObjectSerializer = {
+    stateMachine.literal()
+    writer.write(OPEN_CURLY_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_CURLY_BRACE)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Double]): ObjectSerializer = {
+    stateMachine.literal()
+    writer.write(OPEN_CURLY_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_CURLY_BRACE)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Int]): ObjectSerializer = {
+    stateMachine.literal()
+    writer.write(OPEN_CURLY_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_CURLY_BRACE)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Byte]): ObjectSerializer = {
+    stateMachine.literal()
+    writer.write(OPEN_CURLY_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_CURLY_BRACE)
     this
   }
 
@@ -114,6 +161,9 @@ class K4ObjectSerializer private(writer: IndentingWriter)  extends ObjectSeriali
     stateMachine.objectEnd()
     writer.write(CLOSE_BRACE)
     writer.unindent()
+    if(stateMachine.isAtRoot) {
+      writer.flush()
+    }
     this
   }
 
@@ -130,9 +180,48 @@ class K4ObjectSerializer private(writer: IndentingWriter)  extends ObjectSeriali
     stateMachine.collectionEnd()
     writer.write(CLOSE_CURLY_BRACE)
     writer.unindent()
+    if(stateMachine.isAtRoot) {
+      writer.flush()
+    }
+    this
+  }
+
+
+  override def writeStreamEnd(): Unit = {
+    stateMachine.streamEnd()
+    writer.flush()
+  }
+
+
+  override def flush(): ObjectSerializer = {
+    writer.flush()
     this
   }
 
 
-  override def writeStreamEnd(): Unit = stateMachine.streamEnd()
+  override def isResettable: Boolean = true
+
+
+  override def reset(output: OutputStream): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  override def reset(output: WritableByteChannel): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  override def reset(output: ByteBuffer): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  private def restart(): ObjectSerializer = {
+    stateMachine.reset()
+    this
+  }
 }
@@ -9,8 +9,11 @@
 
 package net.kfoundation.scala.serialization
 import net.kfoundation.scala.UString
+import net.kfoundation.scala.parse.CodeLocation
 
 import java.io.{InputStream, OutputStream}
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
 
 
 object ObjectBiFactory {
@@ -22,10 +25,29 @@ object ObjectBiFactory {
     override def of(output: OutputStream, indentSize: Int, compact: Boolean):
     ObjectSerializer = serializer.of(output, indentSize, compact)
 
+    override def of(output: WritableByteChannel, indentSize: Int, compact: Boolean):
+    ObjectSerializer = serializer.of(output, indentSize, compact)
+
+    override def of(output: ByteBuffer, indentSize: Int, compact: Boolean):
+    ObjectSerializer = serializer.of(output, indentSize, compact)
+
     override def getMediaType: UString = serializer.getMediaType
 
     override def of(input: InputStream): ObjectDeserializer =
       deserializer.of(input)
+
+    override def of(buffer: ByteBuffer): ObjectDeserializer =
+      deserializer.of(buffer)
+
+    override def of(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer =
+      deserializer.of(buffer, origin)
+
+    override def using[R](output: OutputStream, indentSize: Int, compact: Boolean)
+      (fn: ObjectSerializer => R): R =
+      serializer.using(output, indentSize, compact)(fn)
+
+    override def using[R](input: InputStream)(fn: ObjectDeserializer => R): R =
+      deserializer.using(input)(fn)
   }
 }
 
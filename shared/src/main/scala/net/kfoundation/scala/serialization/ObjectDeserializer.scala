@@ -10,9 +10,15 @@
 package net.kfoundation.scala.serialization
 
 import net.kfoundation.scala.UString
+import net.kfoundation.scala.encoding.NumberCodec
+import net.kfoundation.scala.io.ByteBufferInputStream
 import net.kfoundation.scala.parse.CodeLocation
 import net.kfoundation.scala.parse.lex._
 
+import java.io.InputStream
+import java.nio.ByteBuffer
+import scala.collection.mutable
+
 
 
 /**
@@ -57,6 +63,26 @@ abstract class ObjectDeserializer {
   def tryReadPropertyName(): Option[UString]
 
 
+  /**
+   * Attempts to read a property name among the given ones, skipping the
+   * values of properties with other names. Deserializers may override this
+   * to match names without producing them.
+   *
+   * @return If successful, the index of the property read among the given
+   *         names, otherwise PropertyNames.NOT_FOUND.
+   */
+  def tryReadPropertyIndex(names: PropertyNames): Int = {
+    var name = tryReadPropertyName()
+    var index = name.map(names.indexOf).getOrElse(PropertyNames.NOT_FOUND)
+    while(name.isDefined && index == PropertyNames.NOT_FOUND) {
+      skipValue()
+      name = tryReadPropertyName()
+      index = name.map(names.indexOf).getOrElse(PropertyNames.NOT_FOUND)
+    }
+    index
+  }
+
+
   /**
    * Reads and returns the value of the string literal next in the input stream.
    * Throws an exception if one could not be found.
@@ -148,5 +174,139 @@ abstract class ObjectDeserializer {
       "Missing expected property name"))
 
 
+  /**
+   * Reads an array of integers written by ObjectSerializer.writeLiteral().
+   * Unless overridden by a format that has a syntax for arrays, it is read
+   * from a string of numbers separated by spaces.
+   */
+  def readLongArray(): Array[Long] = {
+    val values = new mutable.ArrayBuilder.ofLong
+    forEachWord(readStringLiteral(), (octets, begin, end) =>
+      values += NumberCodec.parseLong(octets, begin, end))
+    values.result()
+  }
+
+
+  /** Same as readLongArray(), for decimal numbers. */
+  def readDoubleArray(): Array[Double] = {
+    val values = new mutable.ArrayBuilder.ofDouble
+    forEachWord(readStringLiteral(), (octets, begin, end) =>
+      values += NumberCodec.parseDouble(octets, begin, end))
+    values.result()
+  }
+
+
+  /**
+   * Same as readLongArray(), for integers that fit in an Int. Unless
+   * overridden, the result of readLongArray() is range-checked and copied.
+   */
+  def readIntArray(): Array[Int] = {
+    val longs = readLongArray()
+    val values = new Array[Int](longs.length)
+    var i = 0
+    while(i < values.length) {
+      values(i) = checkInt(longs(i))
+      i += 1
+    }
+    values
+  }
+
+
+  /** Same as readIntArray(), for integers that fit in a Byte. */
+  def readByteArray(): Array[Byte] = {
+    val longs = readLongArray()
+    val values = new Array[Byte](longs.length)
+    var i = 0
+    while(i < values.length) {
+      values(i) = checkByte(longs(i))
+      i += 1
+    }
+    values
+  }
+
+
+  /** Returns the given value as an Int, or throws if it does not fit. */
+  protected def checkInt(value: Long): Int =
+    if(value < Int.MinValue || value > Int.MaxValue) {
+      throw outOfRange(value, "Int")
+    } else {
+      value.toInt
+    }
+
+
+  /** Returns the given value as a Byte, or throws if it does not fit. */
+  protected def checkByte(value: Long): Byte =
+    if(value < Byte.MinValue || value > Byte.MaxValue) {
+      throw outOfRange(value, "Byte")
+    } else {
+      value.toByte
+    }
+
+
+  private def outOfRange(value: Long, typeName: String) =
+    new DeserializationError(
+      s"${getCurrentLocation.getLocationTag} $value is out of range for $typeName")
+
+
+  private def forEachWord(str: UString, fn: (Array[Byte], Int, Int) => Unit): Unit = {
+    val octets = str.toUtf8
+    var i = 0
+    while(i < octets.length) {
+      while(i < octets.length && octets(i) == ' ') {
+        i += 1
+      }
+      val begin = i
+      while(i < octets.length && octets(i) != ' ') {
+        i += 1
+      }
+      if(i > begin) {
+        try {
+          fn(octets, begin, i)
+        } catch {
+          case _: NumberFormatException => throw new LexicalError(getCurrentLocation,
+            "Expected an array of numbers but found: " + str)
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Skips the value of the property whose name was just read, be it a
+   * literal, an object, or a collection, without producing it.
+   */
+  def skipValue(): Unit =
+    throw new DeserializationError(
+      "Skipping values is not supported in this deserializer")
+
+
+  /**
+   * Declares the properties of the object to be read next, which are the only
+   * ones a reader is interested in. Deserializers that support this skip
+   * over the rest of the properties of that object, so that they are never
+   * returned by tryReadPropertyName().
+   */
   def select(fields: Seq[UString]): Unit = ()
+
+
+  /** Tells if this deserializer supports reset(). */
+  def isResettable: Boolean = false
+
+
+  /**
+   * Makes this deserializer start over reading the given input, reusing what
+   * it has allocated so far.
+   */
+  def reset(input: InputStream): ObjectDeserializer =
+    throw new DeserializationError(
+      "Resetting is not supported in this deserializer")
+
+
+  /**
+   * Same as reset(InputStream), for the remaining octets of the given buffer,
+   * which are a portion of a larger input starting at the given origin. The
+   * name of the input is kept. By default, the origin is ignored.
+   */
+  def reset(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer =
+    reset(new ByteBufferInputStream(buffer))
 }
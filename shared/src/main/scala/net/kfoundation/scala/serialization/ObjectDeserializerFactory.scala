@@ -10,9 +10,56 @@
 package net.kfoundation.scala.serialization
 
 import java.io.InputStream
+import java.nio.ByteBuffer
 
 import net.kfoundation.scala.UString
-import net.kfoundation.scala.io.Path
+import net.kfoundation.scala.io.{ByteBufferInputStream, Path}
+import net.kfoundation.scala.parse.CodeLocation
+
+
+
+object ObjectDeserializerFactory {
+  private class Pooled(factory: ObjectDeserializerFactory)
+    extends ObjectDeserializerFactory
+  {
+    private val idle = new ThreadLocal[ObjectDeserializer]
+
+    override def of(input: InputStream): ObjectDeserializer = factory.of(input)
+
+    override def of(buffer: ByteBuffer): ObjectDeserializer = factory.of(buffer)
+
+    override def of(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer =
+      factory.of(buffer, origin)
+
+    override def getMediaType: UString = factory.getMediaType
+
+    override def using[R](input: InputStream)(fn: ObjectDeserializer => R): R = {
+      val reused = idle.get()
+      val deserializer = if(reused == null) {
+        factory.of(input)
+      } else {
+        idle.set(null)
+        reused.reset(input)
+      }
+      val result = fn(deserializer)
+      if(deserializer.isResettable) {
+        idle.set(deserializer)
+      }
+      result
+    }
+  }
+
+
+  /**
+   * Wraps the given factory so that deserializers lent by using() are reset
+   * and reused by later calls on the same thread, instead of being created
+   * anew. Deserializers whose use ended with an exception are not reused,
+   * nor are those that do not support reset(), which are created anew for
+   * each call. Deserializers produced by of() are not pooled.
+   */
+  def pooled(factory: ObjectDeserializerFactory): ObjectDeserializerFactory =
+    new Pooled(factory)
+}
 
 
 
@@ -20,8 +67,39 @@ import net.kfoundation.scala.io.Path
 trait ObjectDeserializerFactory {
   def of(input: InputStream): ObjectDeserializer
 
+  /** Deserializes the remaining octets of the given buffer without copying. */
+  def of(buffer: ByteBuffer): ObjectDeserializer =
+    of(new ByteBufferInputStream(buffer))
+
+  /**
+   * Deserializes the remaining octets of the given buffer, which are a portion
+   * of a larger input starting at the given origin, so that errors point to
+   * the right location in that input. By default, the origin is ignored.
+   */
+  def of(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer =
+    of(buffer)
+
+  /**
+   * Same as of(ByteBuffer, CodeLocation), but resets the given deserializer
+   * instead, if there is one and it supports reset().
+   */
+  def renew(previous: ObjectDeserializer, buffer: ByteBuffer,
+    origin: CodeLocation): ObjectDeserializer =
+    if(previous != null && previous.isResettable) {
+      previous.reset(buffer, origin)
+    } else {
+      of(buffer, origin)
+    }
+
   def getMediaType: UString
 
+  /**
+   * Calls fn with a deserializer for the given input, which is not to be used
+   * after fn returns. Pooled factories lend reused deserializers.
+   */
+  def using[R](input: InputStream)(fn: ObjectDeserializer => R): R =
+    fn(of(input))
+
   def parse[T](str: UString)(implicit reader: ValueReader[T]): T =
     reader.read(this, str)
 
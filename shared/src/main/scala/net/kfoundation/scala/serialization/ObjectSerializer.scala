@@ -10,6 +10,11 @@
 package net.kfoundation.scala.serialization
 
 import net.kfoundation.scala.UString
+import net.kfoundation.scala.io.ByteBufferOutputStream
+
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.{Channels, WritableByteChannel}
 
 
 
@@ -59,10 +64,22 @@ abstract class ObjectSerializer {
   def writeCollectionEnd(): ObjectSerializer
 
 
-  /** Ends the current stream (if applicable). */
+  /**
+   * Ends the current stream (if applicable), passing on anything still
+   * buffered to the output.
+   */
   def writeStreamEnd(): Unit
 
 
+  /**
+   * Passes on anything still buffered to the output, and flushes the output,
+   * without ending the stream. Use this to make a partly written document,
+   * or what was written before an exception, reach the output. Serializers
+   * that do not buffer their output need not override this.
+   */
+  def flush(): ObjectSerializer = this
+
+
   /**
    * Writes a literal of custom type with string fallback. If this serializer
    * does not directly support the given literal, it uses the given fallback
@@ -90,6 +107,71 @@ abstract class ObjectSerializer {
     writeLiteral(fallback())
 
 
+  /**
+   * Writes an array of integers as a single literal. Unless the format has a
+   * syntax for arrays, they are written as a string of numbers separated by
+   * spaces, formatted the same way as writeLiteral(Long) and
+   * writeLiteral(Double) would.
+   */
+  def writeLiteral(values: Array[Long]): ObjectSerializer = {
+    val b = UString.builder(4*values.length)
+    var i = 0
+    while(i < values.length) {
+      if(i > 0) {
+        b.append(' ')
+      }
+      b.append(values(i))
+      i += 1
+    }
+    writeLiteral(b.build)
+  }
+
+
+  /** Same as writeLiteral(Array[Long]), for decimal numbers. */
+  def writeLiteral(values: Array[Double]): ObjectSerializer = {
+    val b = UString.builder(4*values.length)
+    var i = 0
+    while(i < values.length) {
+      if(i > 0) {
+        b.append(' ')
+      }
+      b.append(values(i))
+      i += 1
+    }
+    writeLiteral(b.build)
+  }
+
+
+  /** Same as writeLiteral(Array[Long]), for Int values. */
+  def writeLiteral(values: Array[Int]): ObjectSerializer = {
+    val b = UString.builder(4*values.length)
+    var i = 0
+    while(i < values.length) {
+      if(i > 0) {
+        b.append(' ')
+      }
+      b.append(values(i))
+      i += 1
+    }
+    writeLiteral(b.build)
+  }
+
+
+  /** Same as writeLiteral(Array[Long]), for Byte values. */
+  def writeLiteral(values: Array[Byte]): ObjectSerializer = {
+    val b = UString.builder(4*values.length)
+    var i = 0
+    while(i < values.length) {
+      if(i > 0) {
+        b.append(' ')
+      }
+      b.append(values(i).toLong)
+      i += 1
+    }
+    writeLiteral(b.build)
+  }
+
+
   /**
    * Writes given value if a writer for it is available. This method helps
    * using this class in fluent form better.
@@ -99,4 +181,27 @@ abstract class ObjectSerializer {
     this
   }
 
+
+  /** Tells if this serializer supports reset(). */
+  def isResettable: Boolean = false
+
+
+  /**
+   * Makes this serializer start over writing to the given output, reusing
+   * what it has allocated so far.
+   */
+  def reset(output: OutputStream): ObjectSerializer =
+    throw new SerializationError(
+      "Resetting is not supported in this serializer")
+
+
+  /** Same as reset(OutputStream), for a channel. */
+  def reset(output: WritableByteChannel): ObjectSerializer =
+    reset(Channels.newOutputStream(output))
+
+
+  /** Same as reset(OutputStream), for a buffer, written from its position on. */
+  def reset(output: ByteBuffer): ObjectSerializer =
+    reset(new ByteBufferOutputStream(output))
+
 }
\ No newline at end of file
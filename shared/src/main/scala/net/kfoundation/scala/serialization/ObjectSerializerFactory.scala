@@ -10,17 +10,112 @@
 package net.kfoundation.scala.serialization
 
 import net.kfoundation.scala.UString
+import net.kfoundation.scala.io.ByteBufferOutputStream
 
 import java.io.{ByteArrayOutputStream, OutputStream}
+import java.nio.ByteBuffer
+import java.nio.channels.{Channels, WritableByteChannel}
+
+
+
+object ObjectSerializerFactory {
+  /** A serializer kept for reuse, with the options it was made with. */
+  private class Slot {
+    var serializer: ObjectSerializer = _
+    var indentSize = 0
+    var compact = false
+  }
+
+
+  private class Pooled(factory: ObjectSerializerFactory)
+    extends ObjectSerializerFactory
+  {
+    private val slots = ThreadLocal.withInitial[Slot](() => new Slot)
+
+    override def of(output: OutputStream, indentSize: Int, compact: Boolean): ObjectSerializer =
+      factory.of(output, indentSize, compact)
+
+    override def of(output: WritableByteChannel, indentSize: Int, compact: Boolean): ObjectSerializer =
+      factory.of(output, indentSize, compact)
+
+    override def of(output: ByteBuffer, indentSize: Int, compact: Boolean): ObjectSerializer =
+      factory.of(output, indentSize, compact)
+
+    override def getMediaType: UString = factory.getMediaType
+
+    override def using[R](output: OutputStream, indentSize: Int, compact: Boolean)
+      (fn: ObjectSerializer => R): R =
+    {
+      val slot = slots.get()
+      val reused = slot.serializer
+      val serializer = if(reused != null && slot.indentSize == indentSize &&
+        slot.compact == compact)
+      {
+        slot.serializer = null
+        reused.reset(output)
+      } else {
+        factory.of(output, indentSize, compact)
+      }
+      val result = fn(serializer)
+      if(serializer.isResettable) {
+        slot.serializer = serializer
+        slot.indentSize = indentSize
+        slot.compact = compact
+      }
+      result
+    }
+  }
+
+
+  /**
+   * Wraps the given factory so that serializers lent by using() are reset
+   * and reused by later calls on the same thread with the same indent size
+   * and compact flag. Serializers whose use ended with an exception are not
+   * reused, nor are those that do not support reset(), which are created
+   * anew for each call. Serializers produced by of() are not pooled.
+   */
+  def pooled(factory: ObjectSerializerFactory): ObjectSerializerFactory =
+    new Pooled(factory)
+}
 
 
 
 /** Common interface for serializer factories */
 trait ObjectSerializerFactory {
+
+  /**
+   * Produces a serializer writing to the given stream. Serializers may
+   * buffer their output: what is written reaches the stream when the root
+   * object or collection ends, when writeStreamEnd() is called, or when
+   * flush() is called. Call flush() to pass on a partly written document,
+   * such as after an exception.
+   */
   def of(output: OutputStream, indentSize: Int, compact: Boolean): ObjectSerializer
 
+  /**
+   * Produces a serializer writing to the given channel, such as a socket.
+   * Output is buffered as described for of(OutputStream, ...).
+   */
+  def of(output: WritableByteChannel, indentSize: Int, compact: Boolean): ObjectSerializer =
+    of(Channels.newOutputStream(output), indentSize, compact)
+
+  /**
+   * Produces a serializer writing to the given buffer, from its position on.
+   * Output is buffered as described for of(OutputStream, ...).
+   */
+  def of(output: ByteBuffer, indentSize: Int, compact: Boolean): ObjectSerializer =
+    of(new ByteBufferOutputStream(output), indentSize, compact)
+
   def getMediaType: UString
 
+  /**
+   * Calls fn with a serializer for the given output, which is not to be used
+   * after fn returns. Pooled factories lend reused serializers.
+   */
+  def using[R](output: OutputStream, indentSize: Int, compact: Boolean)
+    (fn: ObjectSerializer => R): R =
+    fn(of(output, indentSize, compact))
+
   def toString[T](value: T)(implicit writer: ValueWriter[T]): UString = {
     val output = new ByteArrayOutputStream()
     writer.write(this, output, value)
@@ -0,0 +1,187 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+
+package net.kfoundation.scala.serialization
+
+import net.kfoundation.scala.io.Path
+import net.kfoundation.scala.parse.CodeLocation
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.{Callable, ForkJoinPool}
+import scala.collection.mutable
+import scala.util.{Try, Using}
+
+
+
+object ParallelValueReader {
+  /** Smallest chunk worth deserializing as a separate task. */
+  val MIN_CHUNK_SIZE: Int = 1 << 16
+
+  /** Largest chunk, which is also the most that is mapped at once. */
+  val MAX_CHUNK_SIZE: Int = 1 << 30
+
+  private val LF: Byte = '\n'
+  private val CHUNKS_PER_THREAD = 4
+
+
+  private def isBlank(buffer: ByteBuffer, begin: Int, end: Int): Boolean = {
+    var i = begin
+    while(i < end && (buffer.get(i) == ' ' || buffer.get(i) == '\t' || buffer.get(i) == '\r')) {
+      i += 1
+    }
+    i == end
+  }
+
+
+  private def countLines(buffer: ByteBuffer): Int = {
+    var n = 0
+    var i = buffer.position()
+    val end = buffer.limit()
+    while(i < end) {
+      if(buffer.get(i) == LF) {
+        n += 1
+      }
+      i += 1
+    }
+    n
+  }
+}
+
+
+
+/**
+ * Reads inputs having one value per line, such as NDJSON, using all cores.
+ * Input is split into chunks at line boundaries, and chunks are deserialized
+ * on the given pool. Each chunk is read by one deserializer, which is reset
+ * for every line if it supports reset(), and produced anew otherwise.
+ * Locations reported in errors are relative to the whole input, and
+ * values are returned in the order they appear. Blank lines are skipped.
+ *
+ * @param reader reads the value on each line
+ * @param factory produces a deserializer for each line
+ * @param pool where chunks are processed
+ */
+class ParallelValueReader[T](reader: ValueReader[T],
+  factory: ObjectDeserializerFactory, pool: ForkJoinPool)
+{
+  import ParallelValueReader._
+
+  def this(reader: ValueReader[T], factory: ObjectDeserializerFactory) =
+    this(reader, factory, ForkJoinPool.commonPool())
+
+
+  /** Reads values from the given array, without copying it. */
+  def read(octets: Array[Byte]): Seq[T] =
+    read("$buffer", octets.length,
+      (begin, end) => ByteBuffer.wrap(octets, begin.toInt, (end - begin).toInt))
+
+
+  /**
+   * Reads values from the file pointed to by the given path. Each chunk is
+   * memory-mapped separately by the task processing it, so the file may be
+   * larger than the heap.
+   */
+  def read(path: Path): Seq[T] =
+    Using(FileChannel.open(path.toJavaPath, StandardOpenOption.READ))(channel =>
+      read(path.fileName.map(_.toString).getOrElse("<file>"), channel.size(),
+        (begin, end) => channel.map(FileChannel.MapMode.READ_ONLY, begin, end - begin)))
+      .get
+
+
+  private def read(name: String, size: Long, map: (Long, Long) => ByteBuffer): Seq[T] = {
+    val bounds = split(size, map)
+    val chunks = 0 until bounds.length - 1
+    def chunk(i: Int) = map(bounds(i), bounds(i + 1))
+
+    val lineCounts = invokeAll(chunks.map(i => () => countLines(chunk(i))))
+    var row = 1
+    val origins = chunks.map(i => {
+      val origin = new CodeLocation(name, row, 1, bounds(i))
+      row += lineCounts(i)
+      origin
+    })
+
+    invokeAll(chunks.map(i => () => readChunk(chunk(i), origins(i))))
+      .flatten
+  }
+
+
+  /** Finds the offsets of chunks, each ending right after a newline. */
+  private def split(size: Long, map: (Long, Long) => ByteBuffer): IndexedSeq[Long] = {
+    val target = Math.max(MIN_CHUNK_SIZE.toLong, Math.min(MAX_CHUNK_SIZE.toLong,
+      size / (pool.getParallelism * CHUNKS_PER_THREAD) + 1))
+    val bounds = mutable.ArrayBuffer[Long](0)
+    while(bounds.last < size) {
+      bounds += nextLineBegin(bounds.last + target, size, map)
+    }
+    bounds.toIndexedSeq
+  }
+
+
+  private def nextLineBegin(from: Long, size: Long, map: (Long, Long) => ByteBuffer): Long = {
+    var begin = from - 1
+    var result = -1L
+    while(result < 0 && begin < size) {
+      val end = Math.min(size, begin + MIN_CHUNK_SIZE)
+      val buffer = map(begin, end)
+      var i = buffer.position()
+      while(i < buffer.limit() && buffer.get(i) != LF) {
+        i += 1
+      }
+      if(i < buffer.limit()) {
+        result = begin + (i - buffer.position()) + 1
+      }
+      begin = end
+    }
+    if(result < 0) size else result
+  }
+
+
+  private def readChunk(chunk: ByteBuffer, origin: CodeLocation): Seq[T] = {
+    val values = new mutable.ArrayBuffer[T]()
+    val chunkBegin = chunk.position()
+    val end = chunk.limit()
+    var lineBegin = chunkBegin
+    var row = origin.getRow
+    var deserializer: ObjectDeserializer = null
+    while(lineBegin < end) {
+      var lineEnd = lineBegin
+      while(lineEnd < end && chunk.get(lineEnd) != LF) {
+        lineEnd += 1
+      }
+      if(!isBlank(chunk, lineBegin, lineEnd)) {
+        val line = chunk.duplicate()
+        line.position(lineBegin)
+        line.limit(lineEnd)
+        val lineOrigin = new CodeLocation(origin.getFileName,
+          row, 1, origin.getStreamPos + lineBegin - chunkBegin)
+        deserializer = factory.renew(deserializer, line, lineOrigin)
+        values += reader.read(deserializer)
+      }
+      row += 1
+      lineBegin = lineEnd + 1
+    }
+    values.toSeq
+  }
+
+
+  /**
+   * Runs the given tasks on the pool and returns their results in order.
+   * Exceptions are carried over as they are, rather than wrapped.
+   */
+  private def invokeAll[R](tasks: Seq[() => R]): IndexedSeq[R] =
+    tasks.map(fn => pool.submit(new Callable[Try[R]] {
+        override def call(): Try[R] = Try(fn())
+      }))
+      .toIndexedSeq
+      .map(_.get().get)
+}
@@ -0,0 +1,45 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization
+
+import net.kfoundation.scala.UString
+
+
+
+object PropertyNames {
+  /** Returned by lookups for names that are not among the given ones. */
+  val NOT_FOUND: Int = -1
+}
+
+
+
+/**
+ * The property names a reader looks for, prepared once so that deserializers
+ * can match names in their input against their raw UTF-8 octets. The
+ * position of each name is its index, as returned by
+ * ObjectDeserializer.tryReadPropertyIndex().
+ */
+class PropertyNames(val names: Seq[UString]) {
+  private val octets: Array[Array[Byte]] = names.map(_.toUtf8).toArray
+
+
+  def size: Int = octets.length
+
+
+  def apply(index: Int): UString = names(index)
+
+
+  /** Finds the index of the given name, or returns NOT_FOUND. */
+  def indexOf(name: UString): Int = names.indexOf(name)
+
+
+  /** UTF-8 octets of the name at the given index, not to be modified. */
+  private[serialization] def octetsOf(index: Int): Array[Byte] = octets(index)
+}
@@ -0,0 +1,175 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization
+
+import net.kfoundation.scala.parse.CodeLocation
+
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.util.Arrays
+
+
+
+object ValueIterator {
+  private val LF: Byte = '\n'
+  private val DEFAULT_LINE_CAPACITY = 8192
+
+
+  /**
+   * Reads the elements of a collection, which is what the given deserializer
+   * is to read next, one at a time.
+   */
+  private class OfCollection[T](reader: ValueReader[T],
+    deserializer: ObjectDeserializer, input: AutoCloseable)
+    extends ValueIterator[T]
+  {
+    private var isStarted = false
+    private var isPending = false
+    private var isEnded = false
+
+    override def hasNext: Boolean = {
+      if(!isStarted) {
+        deserializer.readCollectionBegin()
+        isStarted = true
+      }
+      if(!isPending && !isEnded) {
+        isEnded = deserializer.tryReadCollectionEnd()
+        isPending = !isEnded
+      }
+      isPending
+    }
+
+    override def next(): T = {
+      if(!hasNext) {
+        throw new NoSuchElementException("End of collection is reached")
+      }
+      isPending = false
+      reader.read(deserializer)
+    }
+
+    override def close(): Unit = input.close()
+  }
+
+
+  /**
+   * Reads one value from each line of the input, resetting the same
+   * deserializer for each, if it supports reset(). Only the line being read
+   * is kept in memory. Blank lines are skipped.
+   */
+  private class OfLines[T](reader: ValueReader[T],
+    factory: ObjectDeserializerFactory, name: String, input: InputStream)
+    extends ValueIterator[T]
+  {
+    private var window = new Array[Byte](DEFAULT_LINE_CAPACITY)
+    private var begin = 0
+    private var scanned = 0
+    private var limit = 0
+    private var lineEnd = -1
+    private var eof = false
+    private var base: Long = 0
+    private var row = 1
+    private var deserializer: ObjectDeserializer = _
+
+    private def isBlank(end: Int): Boolean = {
+      var i = begin
+      while(i < end && (window(i) == ' ' || window(i) == '\t' || window(i) == '\r')) {
+        i += 1
+      }
+      i == end
+    }
+
+    /** Moves the line being scanned to the beginning of window, and reads more. */
+    private def fill(): Unit = {
+      if(begin > 0) {
+        System.arraycopy(window, begin, window, 0, limit - begin)
+        base += begin
+        scanned -= begin
+        limit -= begin
+        begin = 0
+      }
+      if(limit == window.length) {
+        window = Arrays.copyOf(window, 2*window.length)
+      }
+      val n = input.read(window, limit, window.length - limit)
+      if(n < 0) {
+        eof = true
+      } else {
+        limit += n
+      }
+    }
+
+    private def nextLine(end: Int): Unit = {
+      row += 1
+      begin = Math.min(end + 1, limit)
+      scanned = begin
+      lineEnd = -1
+    }
+
+    override def hasNext: Boolean = {
+      while(lineEnd < 0 && !(eof && begin == limit)) {
+        while(scanned < limit && window(scanned) != LF) {
+          scanned += 1
+        }
+        if(scanned < limit || eof) {
+          if(isBlank(scanned)) {
+            nextLine(scanned)
+          } else {
+            lineEnd = scanned
+          }
+        } else {
+          fill()
+        }
+      }
+      lineEnd >= 0
+    }
+
+    override def next(): T = {
+      if(!hasNext) {
+        throw new NoSuchElementException("End of input is reached")
+      }
+      deserializer = factory.renew(deserializer,
+        ByteBuffer.wrap(window, begin, lineEnd - begin),
+        new CodeLocation(name, row, 1, base + begin))
+      val value = reader.read(deserializer)
+      nextLine(lineEnd)
+      value
+    }
+
+    override def close(): Unit = input.close()
+  }
+
+
+  /**
+   * Produces an iterator over the elements of a collection that the given
+   * deserializer is to read next. Closing the iterator closes the given input.
+   */
+  def ofCollection[T](reader: ValueReader[T], deserializer: ObjectDeserializer,
+    input: AutoCloseable): ValueIterator[T] =
+    new OfCollection(reader, deserializer, input)
+
+
+  /**
+   * Produces an iterator over the values on each line of the given input,
+   * such as NDJSON. Locations reported in errors are relative to the whole
+   * input. Closing the iterator closes the input.
+   */
+  def ofLines[T](reader: ValueReader[T], factory: ObjectDeserializerFactory,
+    name: String, input: InputStream): ValueIterator[T] =
+    new OfLines(reader, factory, name, input)
+}
+
+
+
+/**
+ * Iterator over values being deserialized from an input, which is read as
+ * the iterator advances. Memory use is that of one value at a time, rather
+ * than of the whole input. Should be closed after use.
+ */
+abstract class ValueIterator[T] extends Iterator[T] with AutoCloseable
@@ -46,12 +46,12 @@ trait ValueReadWriter[T] extends ValueReader[T] with ValueWriter[T] {
     }
 
     override def read(deserializer: ObjectDeserializer): Seq[T] = {
-      var result = Seq[T]()
+      val result = List.newBuilder[T]
       deserializer.readCollectionBegin()
       while(!deserializer.tryReadCollectionEnd()) {
-        result = result :+ ValueReadWriter.this.read(deserializer)
+        result += ValueReadWriter.this.read(deserializer)
       }
-      result
+      result.result()
     }
   }
 
@@ -9,9 +9,10 @@
 
 package net.kfoundation.scala.serialization
 
-import java.io.{BufferedInputStream, ByteArrayInputStream, InputStream}
+import java.io.InputStream
 import net.kfoundation.scala.UString
 import net.kfoundation.scala.io.Path
+import net.kfoundation.scala.util.Flow
 
 import scala.util.Using
 
@@ -32,8 +33,8 @@ trait ValueReader[T] {
    * produced by the given factory.
    */
   def read(factory: ObjectDeserializerFactory, str: UString): T =
-    Using(new ByteArrayInputStream(str.toUtf8))(
-      stream => read(factory.of(stream)))
+    Using(str.newInputStream)(
+      stream => factory.using(stream)(read))
     .get
 
 
@@ -42,31 +43,83 @@ trait ValueReader[T] {
    * deserializer produced by the given factory.
    */
   def read(factory: ObjectDeserializerFactory, input: InputStream): T =
-    if(input.markSupported()) {
-      read(factory.of(input))
-    } else {
-      readBuffered(factory, input)
-    }
-
-
-  private def readBuffered(factory: ObjectDeserializerFactory, input: InputStream): T =
-    Using(
-      new BufferedInputStream(input))(
-      s => read(factory.of(s)))
-      .get
+    factory.using(input)(read)
 
 
   /**
    * Parses the file pointed to by the given path for a value of type T, using
-   * the deserializer produced by the given factory.
+   * the deserializer produced by the given factory. The file is
+   * memory-mapped, and may be larger than the heap.
    */
   def read(factory: ObjectDeserializerFactory, path: Path): T =
     Using(
-      path.newInputStream)(
-      stream => read(factory, stream))
+      path.newMappedInputStream)(
+      stream => factory.using(stream)(read))
       .get
 
 
+  /**
+   * Reads a value of type T from each line of the given file, such as NDJSON,
+   * using the deserializers produced by the given factory. Chunks of the file
+   * are processed in parallel on the common ForkJoinPool.
+   *
+   * @see ParallelValueReader
+   */
+  def readAll(factory: ObjectDeserializerFactory, path: Path): Seq[T] =
+    new ParallelValueReader(this, factory).read(path)
+
+
+  /** Same as readAll(ObjectDeserializerFactory, Path), for an array. */
+  def readAll(factory: ObjectDeserializerFactory, octets: Array[Byte]): Seq[T] =
+    new ParallelValueReader(this, factory).read(octets)
+
+
+  /**
+   * Reads the elements of the collection making up the given input one at a
+   * time, as the returned iterator advances, so that the collection does not
+   * need to fit in memory. Closing the iterator closes the input.
+   */
+  def iterator(factory: ObjectDeserializerFactory, input: InputStream): ValueIterator[T] =
+    ValueIterator.ofCollection(this, factory.of(input), input)
+
+
+  /**
+   * Same as iterator(ObjectDeserializerFactory, InputStream), for the file
+   * pointed to by the given path, which is memory-mapped.
+   */
+  def iterator(factory: ObjectDeserializerFactory, path: Path): ValueIterator[T] = {
+    val input = path.newMappedInputStream
+    ValueIterator.ofCollection(this, factory.of(input), input)
+  }
+
+
+  /**
+   * Reads a value of type T from each line of the given input, such as
+   * NDJSON, one line at a time as the returned iterator advances. Closing the
+   * iterator closes the input.
+   */
+  def lineIterator(factory: ObjectDeserializerFactory, input: InputStream): ValueIterator[T] =
+    ValueIterator.ofLines(this, factory, "$stream", input)
+
+
+  /**
+   * Same as lineIterator(ObjectDeserializerFactory, InputStream), for the
+   * file pointed to by the given path.
+   */
+  def lineIterator(factory: ObjectDeserializerFactory, path: Path): ValueIterator[T] =
+    ValueIterator.ofLines(this, factory,
+      path.fileName.map(_.toString).getOrElse("<file>"), path.newInputStream)
+
+
+  /**
+   * Writes the values produced by the given iterator to the given flow, one
+   * at a time, and closes the iterator afterwards. Errors are thrown rather
+   * than written to the flow.
+   */
+  def readEach(iterator: ValueIterator[T], output: Flow.Writable[T]): Unit =
+    Using(iterator)(_.foreach(output.write)).get
+
+
   /**
    * If an object in the stream being read is expected to have a property of
    * type T, but such property is missing, the value returned by this method
@@ -90,11 +143,11 @@ trait ValueReader[T] {
    */
   def seqReader: ValueReader[Seq[T]] = d => {
     d.readCollectionBegin()
-    var values = List[T]()
+    val values = List.newBuilder[T]
     while(!d.tryReadCollectionEnd()) {
-      values = values :+ ValueReader.this.read(d)
+      values += ValueReader.this.read(d)
     }
-    values
+    values.result()
   }
 
 
@@ -46,7 +46,7 @@ trait ValueWriter[T] {
    */
   def toString(factory: ObjectSerializerFactory, value: T): UString =
     Using(new ByteArrayOutputStream())(output => {
-      write(factory.of(output, 2, false), value)
+      write(factory, output, value)
       val result = UString.of(output.toByteArray)
       output.close()
       result
@@ -56,10 +56,17 @@ trait ValueWriter[T] {
 
   /**
    * Writer a value of type T to the given OutputStream using the serializer
-   * obtained from the given factory.
+   * obtained from the given factory, and ends the stream. If writing fails,
+   * what was written up to that point is still flushed to the output.
    */
   def write(factory: ObjectSerializerFactory, output: OutputStream, value: T): Unit =
-    write(factory.of(output, 2, false), value)
+    factory.using(output, 2, false)(serializer =>
+      try {
+        write(serializer, value)
+        serializer.writeStreamEnd()
+      } finally {
+        serializer.flush()
+      })
 
 
   /**
@@ -68,7 +75,7 @@ trait ValueWriter[T] {
    */
   def write(factory: ObjectSerializerFactory, path: Path, value: T): Unit =
     Using(path.newOutputStream)(
-      output => write(factory.of(output, 2, false), value))
+      output => write(factory, output, value))
 
 
   /**
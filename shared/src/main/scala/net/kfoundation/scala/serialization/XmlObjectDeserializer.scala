@@ -11,14 +11,15 @@ package net.kfoundation.scala.serialization
 
 import net.kfoundation.scala.UString
 import net.kfoundation.scala.encoding.XmlEscape
-import net.kfoundation.scala.io.Path
+import net.kfoundation.scala.io.{ByteBufferInputStream, Path}
 import net.kfoundation.scala.parse.CodeLocation
 import net.kfoundation.scala.parse.lex._
 import net.kfoundation.scala.serialization.internals.CommonSymbols._
-import net.kfoundation.scala.serialization.internals.ObjectStreamStateMachine
+import net.kfoundation.scala.serialization.internals.{FieldSelection, ObjectStreamStateMachine}
 import net.kfoundation.scala.serialization.internals.XmlSymbols._
 
 import java.io.{ByteArrayOutputStream, InputStream}
+import java.nio.ByteBuffer
 import scala.annotation.tailrec
 
 
@@ -40,10 +41,9 @@ object XmlObjectDeserializer {
         walker.skipSpaces()
         hasMore = false
 
-        IdentifierToken.reader
-          .tryRead(walker)
-          .foreach(id => {
-            _names = _names :+ id.value
+        IdentifierToken.tryReadValue(walker)
+          .foreach(name => {
+            _names = _names :+ name
 
             walker.skipSpaces()
             if (!walker.tryRead(EQ)) {
@@ -54,9 +54,7 @@ object XmlObjectDeserializer {
             if(walker.tryRead(NULL)) {
               _values = _values :+ None
             } else {
-              _values = _values :+ StringToken.reader
-                .tryRead(walker)
-                .map(_.value)
+              _values = _values :+ StringToken.tryReadValue(walker)
                 .orElse(
                   throw walker.lexicalErrorAtCurrentLocation("Attribute value expected"))
             }
@@ -98,6 +96,9 @@ object XmlObjectDeserializer {
     override def of(input: InputStream): ObjectDeserializer =
       new XmlObjectDeserializer(CodeWalker.of(input))
 
+    override def of(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer =
+      new XmlObjectDeserializer(CodeWalker.of(buffer, origin))
+
     override def getMediaType: UString = MIME_TYPE
   }
 }
@@ -109,6 +110,7 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
 
 
   private val stateMachine = new ObjectStreamStateMachine
+  private val selection = new FieldSelection
   private var currentPropertyName: Option[UString] = None
   private var attributes: AttributeReader = new AttributeReader()
   private var isEmptyTag: Boolean = false
@@ -117,12 +119,10 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
 
   private def tryReadTagBegin(): Option[UString] =
     if(walker.tryRead(LT)) {
-      walker.commit()
-      Some(IdentifierToken.reader
-        .tryRead(walker)
+      walker.discard()
+      Some(IdentifierToken.tryReadValue(walker)
         .getOrElse(
-          throw walker.lexicalErrorAtBeginning("tag name expected, " + stateMachine))
-        .value)
+          throw walker.lexicalErrorAtBeginning("tag name expected, " + stateMachine)))
     } else {
       None
     }
@@ -130,7 +130,7 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
 
   private def tryReadEmptyTagEnd(): Boolean =
     if(walker.tryRead(SLASH_GT)) {
-      walker.commit()
+      walker.discard()
       true
     } else {
       false
@@ -139,7 +139,7 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
 
   private def tryReadTagEnd(): Boolean =
     if(walker.tryRead(GT)) {
-      walker.commit()
+      walker.discard()
       true
     } else {
       false
@@ -148,6 +148,7 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
 
   private def tryReadEscapeSequence: Option[UString] =
     if(walker.tryRead(AMP)) {
+      walker.discard()
       if(walker.readAll(_ != SEMICOLON.codePoint) == 0) {
         throw walker.lexicalErrorAtCurrentLocation("Escape sequence expected")
       }
@@ -155,6 +156,7 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
       if(!walker.tryRead(SEMICOLON)) {
         throw walker.lexicalErrorAtCurrentLocation("';' expected")
       }
+      walker.discard()
       Some(unescaped)
     } else {
       None
@@ -162,8 +164,6 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
 
 
   private def readText(): UString = {
-    val begin = walker.getCurrentLocation
-    var end = begin
     val buffer = new ByteArrayOutputStream()
 
     var hasMore = true
@@ -172,8 +172,8 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
       skipComments()
       val nRead = walker.readAll(cp => cp != AMP_CP && cp != TAG_BEGIN_CP)
       if(nRead > 0)  {
-        buffer.write(walker.getCurrentSelection.toUtf8, 0, nRead)
-        end = walker.commit().end
+        walker.getCurrentSelection.writeToStream(buffer)
+        walker.discard()
         hasMore = true
       }
       tryReadEscapeSequence.foreach(part => {
@@ -190,15 +190,14 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
     if(!walker.tryRead(LT_SLASH)) {
       None
     } else {
-      walker.commit()
-      IdentifierToken.reader
-        .tryRead(walker)
+      walker.discard()
+      IdentifierToken.tryReadValue(walker)
         .map(v => {
             if(!walker.tryRead(GT)) {
               throw walker.lexicalErrorAtBeginning("'>' expected")
             }
-            walker.commit()
-            v.value
+            walker.discard()
+            v
           })
     }
 
@@ -229,7 +228,7 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
       if(!walker.tryRead(PROLOG_END)) {
         throw walker.lexicalErrorAtCurrentLocation(s"'$PROLOG_END' expected")
       }
-      walker.commit()
+      walker.discard()
       Some(new MetaData(
         attribReader.get(VERSION).getOrElse(""),
         attribReader.get(ENCODING).getOrElse("")))
@@ -240,12 +239,13 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
 
 
   override def readObjectBegin(): Option[UString] = {
-    import ObjectStreamStateMachine.State._
+    import ObjectStreamStateMachine.StateId._
 
-    if(stateMachine.getState == STREAM_BEGIN) {
+    if(stateMachine.getStateId == STREAM_BEGIN) {
       tryReadProlog()
     }
 
+    selection.objectBegin()
     if(currentPropertyName.isDefined) {
       stateMachine.objectBegin(currentPropertyName.get)
       currentPropertyName = None
@@ -266,7 +266,8 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
   }
 
 
-  override def readObjectEnd(): Option[UString] =
+  override def readObjectEnd(): Option[UString] = {
+    selection.objectEnd()
     if(isEmptyTag) {
       stateMachine.objectEnd()
     } else if(endTag.isDefined) {
@@ -282,6 +283,7 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
       stateMachine.objectEnd(maybeName.get)
       maybeName
     }
+  }
 
 
   override def readCollectionBegin(): Unit =
@@ -311,6 +313,16 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
 
 
   override def tryReadPropertyName(): Option[UString] = {
+    var name = tryReadAnyPropertyName()
+    while(name.exists(selection.isSkipped)) {
+      skipValue()
+      name = tryReadAnyPropertyName()
+    }
+    name
+  }
+
+
+  private def tryReadAnyPropertyName(): Option[UString] = {
     if(attributes.hasMore) {
       stateMachine.property()
       currentPropertyName = None
@@ -345,6 +357,109 @@ class XmlObjectDeserializer private (walker: CodeWalker) extends ObjectDeseriali
   }
 
 
+  /**
+   * Skips the rest of a tag, up to and including '>', returning true if it
+   * was an empty tag.
+   */
+  private def skipTagEnd(): Boolean = {
+    var last = 0
+    var cp = walker.tryReadCodePoint
+    while(cp != GT_CP) {
+      if(cp == CodeWalker.NOT_FOUND) {
+        throw walker.lexicalErrorAtCurrentLocation("'>' expected")
+      } else if(cp == DOUBLE_QUOTE.codePoint && !walker.skipString()) {
+        throw walker.lexicalErrorAtCurrentLocation(
+          "End of stream reached but end of string not found")
+      }
+      last = cp
+      cp = walker.tryReadCodePoint
+    }
+    walker.discard()
+    last == SLASH_CP
+  }
+
+
+  private def skipComment(): Unit = {
+    var isClosed = false
+    while(!isClosed) {
+      walker.skipAll(_ != DASH)
+      isClosed = walker.tryRead(COMMENT_END)
+      if(!isClosed && !walker.tryRead(DASH.toInt)) {
+        throw walker.lexicalErrorAtCurrentLocation(s"'$COMMENT_END' expected")
+      }
+    }
+    walker.discard()
+  }
+
+
+  /**
+   * Skips the content of an element whose opening tag is already read, up to
+   * and including its closing tag, by counting the tags in between.
+   */
+  private def skipElementContent(): Unit = {
+    var depth = 1
+    while(depth > 0) {
+      walker.skipAll(_ != TAG_BEGIN_CP)
+      if(walker.tryRead(COMMENT_BEGIN)) {
+        skipComment()
+      } else if(walker.tryRead(LT_SLASH)) {
+        skipTagEnd()
+        depth -= 1
+      } else if(walker.tryRead(LT)) {
+        if(!skipTagEnd()) {
+          depth += 1
+        }
+      } else {
+        throw walker.lexicalErrorAtCurrentLocation(
+          "XML closing tag expected for element: " + currentPropertyName.getOrElse(""))
+      }
+    }
+  }
+
+
+  override def skipValue(): Unit = {
+    stateMachine.literal()
+    if(attributes.hasMore) {
+      attributes.nextValue()
+    } else {
+      if(currentPropertyName.isEmpty) {
+        throw walker.lexicalErrorAtCurrentLocation(
+          "Illegal attempt to skip a value that does not follow a property definition")
+      }
+      if(!isEmptyTag) {
+        skipElementContent()
+      }
+      currentPropertyName = None
+      isEmptyTag = false
+    }
+  }
+
+
+  override def select(fields: Seq[UString]): Unit = selection.select(fields)
+
+
+  override def isResettable: Boolean = true
+
+
+  override def reset(input: InputStream): ObjectDeserializer = {
+    walker.reset(input)
+    stateMachine.reset()
+    selection.reset()
+    currentPropertyName = None
+    attributes = new AttributeReader()
+    isEmptyTag = false
+    endTag = None
+    this
+  }
+
+
+  override def reset(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer = {
+    reset(new ByteBufferInputStream(buffer))
+    walker.moveOrigin(origin)
+    this
+  }
+
+
   override def tryReadNullLiteral(): Boolean =
     if(attributes.hasMore) {
       if(attributes.isNextValueNull) {
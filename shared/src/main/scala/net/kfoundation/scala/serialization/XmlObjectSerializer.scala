@@ -10,9 +10,12 @@
 package net.kfoundation.scala.serialization
 
 import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
 
 import net.kfoundation.scala.UString
-import net.kfoundation.scala.serialization.internals.{IndentingWriter, ObjectStreamStateMachine}
+import net.kfoundation.scala.encoding.Escaper
+import net.kfoundation.scala.serialization.internals.{IndentingSerializerFactory, IndentingWriter, ObjectStreamStateMachine}
 
 
 
@@ -20,23 +23,31 @@ object XmlObjectSerializer {
   val DEFAULT_INDENT_SIZE = 4
   val MIME_TYPE: UString = "application/xml"
 
-  val FACTORY: ObjectSerializerFactory = new ObjectSerializerFactory {
-    override def of(output: OutputStream, indentSize: Int, compact: Boolean):
-    ObjectSerializer =
-      new XmlObjectSerializer(new IndentingWriter(output, indentSize, compact))
+  val FACTORY: ObjectSerializerFactory = factory(true)
 
-    override def getMediaType: UString = MIME_TYPE
-  }
+  /**
+   * Same as FACTORY, but produces serializers that do not validate the order
+   * of calls made to them. To be used only with writers known to be correct,
+   * such as generated ones.
+   */
+  val UNCHECKED_FACTORY: ObjectSerializerFactory = factory(false)
+
+  private def factory(isChecked: Boolean): ObjectSerializerFactory =
+    new IndentingSerializerFactory(MIME_TYPE) {
+      override protected def of(writer: IndentingWriter): ObjectSerializer =
+        new XmlObjectSerializer(writer, isChecked)
+    }
 }
 
 
 /** XML object serializer */
-class XmlObjectSerializer private(writer: IndentingWriter) extends ObjectSerializer {
+class XmlObjectSerializer private(writer: IndentingWriter, isChecked: Boolean)
+  extends ObjectSerializer {
   import internals.CommonSymbols._
   import internals.XmlSymbols._
 
 
-  private val stateMachine = new ObjectStreamStateMachine
+  private val stateMachine = new ObjectStreamStateMachine(isChecked)
   private var lastPropertyName: Option[UString] = None
 
 
@@ -76,6 +87,9 @@ class XmlObjectSerializer private(writer: IndentingWriter) extends ObjectSeriali
     writer.unindent()
     writer.writeNewLine()
     writeCloseTag(name)
+    if(stateMachine.isAtRoot) {
+      writer.flush()
+    }
     this
   }
 
@@ -103,6 +117,9 @@ class XmlObjectSerializer private(writer: IndentingWriter) extends ObjectSeriali
     writer.unindent()
     writeCloseTag(tagName)
 
+    if(stateMachine.isAtRoot) {
+      writer.flush()
+    }
     this
   }
 
@@ -115,27 +132,43 @@ class XmlObjectSerializer private(writer: IndentingWriter) extends ObjectSeriali
   }
 
 
-  override def writeLiteral(value: UString): ObjectSerializer = {
+  private def beginLiteral(): UString = {
     stateMachine.literal()
 
     val tagName = lastPropertyName.getOrElse(
       throw stateMachine.error("Literal does not follow a property"))
 
     writeOpenTag(tagName)
-    writer.write(value)
-    writeCloseTag(tagName)
+    tagName
+  }
+
 
+  private def endLiteral(tagName: UString): ObjectSerializer = {
+    writeCloseTag(tagName)
     lastPropertyName = None
     this
   }
 
 
-  override def writeLiteral(value: Long): ObjectSerializer =
-    writeLiteral(UString.of(value))
+  override def writeLiteral(value: UString): ObjectSerializer = {
+    val tagName = beginLiteral()
+    writer.write(value, Escaper.XML_TEXT)
+    endLiteral(tagName)
+  }
 
 
-  override def writeLiteral(value: Double): ObjectSerializer =
-    writeLiteral(UString.of(value))
+  override def writeLiteral(value: Long): ObjectSerializer = {
+    val tagName = beginLiteral()
+    writer.write(value)
+    endLiteral(tagName)
+  }
+
+
+  override def writeLiteral(value: Double): ObjectSerializer = {
+    val tagName = beginLiteral()
+    writer.write(value)
+    endLiteral(tagName)
+  }
 
 
   override def writeLiteral(value: Boolean): ObjectSerializer =
@@ -152,5 +185,42 @@ class XmlObjectSerializer private(writer: IndentingWriter) extends ObjectSeriali
   }
 
 
-  override def writeStreamEnd(): Unit = stateMachine.streamEnd()
+  override def writeStreamEnd(): Unit = {
+    stateMachine.streamEnd()
+    writer.flush()
+  }
+
+
+  override def flush(): ObjectSerializer = {
+    writer.flush()
+    this
+  }
+
+
+  override def isResettable: Boolean = true
+
+
+  override def reset(output: OutputStream): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  override def reset(output: WritableByteChannel): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  override def reset(output: ByteBuffer): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  private def restart(): ObjectSerializer = {
+    stateMachine.reset()
+    lastPropertyName = None
+    this
+  }
 }
@@ -1,9 +1,12 @@
 package net.kfoundation.scala.serialization
 
 import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
 
 import net.kfoundation.scala.UString
-import net.kfoundation.scala.serialization.internals.{IndentingWriter, ObjectStreamStateMachine}
+import net.kfoundation.scala.encoding.Escaper
+import net.kfoundation.scala.serialization.internals.{IndentingSerializerFactory, IndentingWriter, ObjectStreamStateMachine}
 
 
 
@@ -11,13 +14,20 @@ object YamlObjectSerializer {
   val DEFAULT_INDENT_SIZE = 2
   val MIME_TYPE: UString = "application/x-yaml"
 
-  val FACTORY: ObjectSerializerFactory = new ObjectSerializerFactory {
-    override def of(output: OutputStream, indentSize: Int, compact: Boolean):
-    ObjectSerializer =
-      new YamlObjectSerializer(new IndentingWriter(output, indentSize, compact))
+  val FACTORY: ObjectSerializerFactory = factory(true)
 
-    override def getMediaType: UString = MIME_TYPE
-  }
+  /**
+   * Same as FACTORY, but produces serializers that do not validate the order
+   * of calls made to them. To be used only with writers known to be correct,
+   * such as generated ones.
+   */
+  val UNCHECKED_FACTORY: ObjectSerializerFactory = factory(false)
+
+  private def factory(isChecked: Boolean): ObjectSerializerFactory =
+    new IndentingSerializerFactory(MIME_TYPE) {
+      override protected def of(writer: IndentingWriter): ObjectSerializer =
+        new YamlObjectSerializer(writer, isChecked)
+    }
 
   def toString[T](value: T)(implicit writer: ValueWriter[T]): UString =
     FACTORY.toString(value)(writer)
@@ -25,12 +35,13 @@ object YamlObjectSerializer {
 
 
 /** YAML object serializer */
-class YamlObjectSerializer private(writer: IndentingWriter) extends ObjectSerializer {
-  import ObjectStreamStateMachine.State
+class YamlObjectSerializer private(writer: IndentingWriter, isChecked: Boolean)
+  extends ObjectSerializer {
+  import ObjectStreamStateMachine.StateId
   import internals.CommonSymbols._
 
 
-  private val stateMachine = new ObjectStreamStateMachine
+  private val stateMachine = new ObjectStreamStateMachine(isChecked)
   private var isInCollection: Boolean = false
 
 
@@ -63,7 +74,7 @@ class YamlObjectSerializer private(writer: IndentingWriter) extends ObjectSerial
   override def writeLiteral(value: UString): ObjectSerializer = {
     literal()
     writer.write(DOUBLE_QUOTE)
-    writer.write(value)
+    writer.write(value, Escaper.YAML)
     writer.write(DOUBLE_QUOTE)
     this
   }
@@ -71,14 +82,50 @@ class YamlObjectSerializer private(writer: IndentingWriter) extends ObjectSerial
 
   override def writeLiteral(value: Long): ObjectSerializer = {
     literal()
-    writer.write(UString.of(value))
+    writer.write(value)
     this
   }
 
 
   override def writeLiteral(value: Double): ObjectSerializer = {
     literal()
-    writer.write(UString.of(value))
+    writer.write(value)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Long]): ObjectSerializer = {
+    literal()
+    writer.write(OPEN_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_BRACE)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Double]): ObjectSerializer = {
+    literal()
+    writer.write(OPEN_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_BRACE)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Int]): ObjectSerializer = {
+    literal()
+    writer.write(OPEN_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_BRACE)
+    this
+  }
+
+
+  override def writeLiteral(values: Array[Byte]): ObjectSerializer = {
+    literal()
+    writer.write(OPEN_BRACE)
+    writer.write(values, COMMA_SPACE)
+    writer.write(CLOSE_BRACE)
     this
   }
 
@@ -100,7 +147,7 @@ class YamlObjectSerializer private(writer: IndentingWriter) extends ObjectSerial
   override def writeObjectBegin(name: UString): ObjectSerializer = {
     isInCollection = stateMachine.isInCollection
 
-    if(stateMachine.getState == State.STREAM_BEGIN) {
+    if(stateMachine.getStateId == StateId.STREAM_BEGIN) {
       writer.write(name)
       writer.write(COLON)
     }
@@ -116,6 +163,9 @@ class YamlObjectSerializer private(writer: IndentingWriter) extends ObjectSerial
     stateMachine.objectEnd()
     isInCollection = false
     writer.unindent()
+    if(stateMachine.isAtRoot) {
+      writer.flush()
+    }
     this
   }
 
@@ -128,9 +178,49 @@ class YamlObjectSerializer private(writer: IndentingWriter) extends ObjectSerial
 
   override def writeCollectionEnd(): ObjectSerializer = {
     stateMachine.collectionEnd()
+    if(stateMachine.isAtRoot) {
+      writer.flush()
+    }
+    this
+  }
+
+
+  override def writeStreamEnd(): Unit = {
+    stateMachine.streamEnd()
+    writer.flush()
+  }
+
+
+  override def flush(): ObjectSerializer = {
+    writer.flush()
     this
   }
 
 
-  override def writeStreamEnd(): Unit = stateMachine.streamEnd()
+  override def isResettable: Boolean = true
+
+
+  override def reset(output: OutputStream): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  override def reset(output: WritableByteChannel): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  override def reset(output: ByteBuffer): ObjectSerializer = {
+    writer.reset(output)
+    restart()
+  }
+
+
+  private def restart(): ObjectSerializer = {
+    stateMachine.reset()
+    isInCollection = false
+    this
+  }
 }
@@ -0,0 +1,48 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization.internals
+
+
+
+/**
+ * Constants of the binary object stream format. Each element of the stream
+ * begins with one of the tags below. Integers are zigzag-encoded varints,
+ * doubles are 8-octet big-endian IEEE 754 values, and strings are a varint
+ * length followed by as many UTF-8 octets.
+ *
+ * Type and property names are preceded by a varint marker: NAME_NULL for no
+ * name, NAME_INLINE for a string that follows and is not remembered,
+ * NAME_DEFINITION for a string that follows and is added to the stream's
+ * name table, or NAME_REFERENCE_BASE + i for the i-th name in that table.
+ */
+object BinarySymbols {
+  val OBJECT_BEGIN = 1
+  val OBJECT_END = 2
+  val COLLECTION_BEGIN = 3
+  val COLLECTION_END = 4
+  val PROPERTY = 5
+  val STRING = 6
+  val INTEGER = 7
+  val DOUBLE = 8
+  val TRUE = 9
+  val FALSE = 10
+  val NULL = 11
+  val LONG_ARRAY = 12
+  val DOUBLE_ARRAY = 13
+
+  val NAME_NULL = 0
+  val NAME_INLINE = 1
+  val NAME_DEFINITION = 2
+  val NAME_REFERENCE_BASE = 3
+
+  /** Maximum number of names a serializer keeps in its name table. */
+  val MAX_REFERENCES = 4096
+  val BUFFER_SIZE = 8192
+}
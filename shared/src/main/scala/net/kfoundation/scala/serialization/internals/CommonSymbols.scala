@@ -28,6 +28,7 @@ object CommonSymbols {
   val NEWLINE: Char = '\n'
   val DASH: Char = '-'
   val COMMA: UChar = ','
+  val COMMA_SPACE: UString = ", "
 
   def booleanToString(value: Boolean): UString =
     if(value) {
@@ -10,6 +10,7 @@
 package net.kfoundation.scala.serialization.internals
 
 import net.kfoundation.scala.UString
+import net.kfoundation.scala.encoding.Escaper
 
 import java.io.{OutputStream, PrintWriter}
 import java.text.{DateFormat, DecimalFormat, SimpleDateFormat}
@@ -104,7 +105,7 @@ class CsvWriter(output: OutputStream,
     newCol()
     if (value == null) return this
     writer.print('"')
-    writer.print(value)
+    writer.print(Escaper.CSV.escape(value))
     writer.print('"')
     this
   }
@@ -0,0 +1,64 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization.internals
+
+import net.kfoundation.scala.UString
+
+import java.util.Arrays
+
+
+
+/**
+ * Keeps track of the properties selected for each object being read, as
+ * given to ObjectDeserializer.select(). A selection applies to the object
+ * that begins right after it is made; objects begun without one have all of
+ * their properties selected. Selections are kept as given rather than as
+ * sets, as they are short and made anew for every object read.
+ */
+class FieldSelection {
+  private var pending: Seq[UString] = _
+  private var stack = new Array[Seq[UString]](16)
+  private var depth = 0
+
+
+  def select(fields: Seq[UString]): Unit = pending = fields
+
+
+  def reset(): Unit = {
+    while(depth > 0) {
+      depth -= 1
+      stack(depth) = null
+    }
+    pending = null
+  }
+
+
+  def objectBegin(): Unit = {
+    if(depth == stack.length) {
+      stack = Arrays.copyOf(stack, 2*depth)
+    }
+    stack(depth) = pending
+    depth += 1
+    pending = null
+  }
+
+
+  def objectEnd(): Unit = if(depth > 0) {
+    depth -= 1
+    stack(depth) = null
+  }
+
+
+  /** Tests if the given property of current object is to be skipped. */
+  def isSkipped(name: UString): Boolean = depth > 0 && {
+    val selected = stack(depth - 1)
+    selected != null && !selected.contains(name)
+  }
+}
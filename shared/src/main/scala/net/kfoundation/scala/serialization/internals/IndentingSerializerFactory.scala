@@ -0,0 +1,44 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization.internals
+
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
+
+import net.kfoundation.scala.UString
+import net.kfoundation.scala.serialization.{ObjectSerializer, ObjectSerializerFactory}
+
+
+
+/**
+ * Base for factories of serializers that write through an IndentingWriter,
+ * which lets them write to streams, channels and buffers alike.
+ */
+abstract class IndentingSerializerFactory(mediaType: UString)
+  extends ObjectSerializerFactory
+{
+  protected def of(writer: IndentingWriter): ObjectSerializer
+
+
+  override def of(output: OutputStream, indentSize: Int, compact: Boolean):
+  ObjectSerializer = of(new IndentingWriter(output, indentSize, compact))
+
+
+  override def of(output: WritableByteChannel, indentSize: Int, compact: Boolean):
+  ObjectSerializer = of(new IndentingWriter(output, indentSize, compact))
+
+
+  override def of(output: ByteBuffer, indentSize: Int, compact: Boolean):
+  ObjectSerializer = of(new IndentingWriter(output, indentSize, compact))
+
+
+  override def getMediaType: UString = mediaType
+}
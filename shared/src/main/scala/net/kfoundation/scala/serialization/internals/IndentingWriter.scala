@@ -10,32 +10,188 @@
 package net.kfoundation.scala.serialization.internals
 
 import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
 
-import net.kfoundation.scala.util.Loop
+import net.kfoundation.scala.encoding.{Escaper, NumberCodec}
 import net.kfoundation.scala.{UChar, UString}
 
 
 
 object IndentingWriter {
-  private val SPACE = ' '
-  private val NEWLINE = '\n'
+  private val SPACE: Byte = ' '
+  private val NEWLINE: Byte = '\n'
+  val DEFAULT_BUFFER_SIZE = 8192
+
+
+  /** Destination of the octets buffered by an IndentingWriter. */
+  private[internals] trait Sink {
+    def write(octets: Array[Byte], offset: Int, length: Int): Unit
+    def flush(): Unit
+  }
+
+
+  private class StreamSink(output: OutputStream) extends Sink {
+    override def write(octets: Array[Byte], offset: Int, length: Int): Unit =
+      output.write(octets, offset, length)
+
+    override def flush(): Unit = output.flush()
+  }
+
+
+  private class ChannelSink(output: WritableByteChannel) extends Sink {
+    override def write(octets: Array[Byte], offset: Int, length: Int): Unit = {
+      val buffer = ByteBuffer.wrap(octets, offset, length)
+      while(buffer.hasRemaining) {
+        output.write(buffer)
+      }
+    }
+
+    override def flush(): Unit = {}
+  }
+
+
+  /** Throws BufferOverflowException if the output runs out of space. */
+  private class BufferSink(output: ByteBuffer) extends Sink {
+    override def write(octets: Array[Byte], offset: Int, length: Int): Unit =
+      output.put(octets, offset, length)
+
+    override def flush(): Unit = {}
+  }
 }
 
 
 
-class IndentingWriter(output: OutputStream, indentSize: Int, compact: Boolean) {
+/**
+ * Writes text to an output, keeping track of indentation. Output is buffered,
+ * and is passed on to the underlying stream, channel, or buffer only when the
+ * internal buffer is full, or when flush() is called.
+ */
+class IndentingWriter private[internals](
+  private var sink: IndentingWriter.Sink,
+  indentSize: Int,
+  compact: Boolean,
+  bufferSize: Int)
+{
   import IndentingWriter._
 
   private val isNewLineEnabled = !compact
   private var idt: Int = 0
   private var isAtNewLine = isNewLineEnabled
+  private val buffer = new Array[Byte](bufferSize)
+  private var count = 0
+  private var spaces = new Array[Byte](0)
+  private val numberBuffer = new Array[Byte](
+    Math.max(NumberCodec.MAX_LONG_LENGTH, NumberCodec.MAX_DOUBLE_LENGTH))
+
+  /** Lets UString and UChar write their UTF-8 octets straight to the buffer. */
+  private val bufferStream = new OutputStream {
+    override def write(b: Int): Unit = put(b.toByte)
+    override def write(b: Array[Byte], off: Int, len: Int): Unit = put(b, off, len)
+  }
+
+  /** Same as bufferStream, but escapes octets using the current escaper. */
+  private var escaper: Escaper = _
+  private val escapingStream = new OutputStream {
+    private val single = new Array[Byte](1)
+    override def write(b: Int): Unit = {
+      single(0) = b.toByte
+      write(single, 0, 1)
+    }
+    override def write(b: Array[Byte], off: Int, len: Int): Unit =
+      escaper.escape(b, off, off + len, bufferStream)
+  }
 
 
-  private def writeIndent(): Unit =
-    Loop(idt * indentSize, _ => output.write(SPACE))
+  def this(output: OutputStream, indentSize: Int, compact: Boolean) =
+    this(new IndentingWriter.StreamSink(output), indentSize, compact,
+      IndentingWriter.DEFAULT_BUFFER_SIZE)
+
+
+  def this(output: WritableByteChannel, indentSize: Int, compact: Boolean) =
+    this(new IndentingWriter.ChannelSink(output), indentSize, compact,
+      IndentingWriter.DEFAULT_BUFFER_SIZE)
+
+
+  def this(output: ByteBuffer, indentSize: Int, compact: Boolean) =
+    this(new IndentingWriter.BufferSink(output), indentSize, compact,
+      IndentingWriter.DEFAULT_BUFFER_SIZE)
+
+
+  private def drain(): Unit = {
+    sink.write(buffer, 0, count)
+    count = 0
+  }
+
+
+  private def put(octet: Byte): Unit = {
+    if(count == buffer.length) {
+      drain()
+    }
+    buffer(count) = octet
+    count += 1
+  }
+
+
+  private def put(octets: Array[Byte], offset: Int, length: Int): Unit =
+    if(length <= buffer.length - count) {
+      System.arraycopy(octets, offset, buffer, count, length)
+      count += length
+    } else {
+      drain()
+      if(length <= buffer.length) {
+        System.arraycopy(octets, offset, buffer, 0, length)
+        count = length
+      } else {
+        sink.write(octets, offset, length)
+      }
+    }
+
+
+  /** Writes a precomputed run of spaces for the current indentation. */
+  private def writeIndent(): Unit = {
+    put(spaces, 0, idt * indentSize)
+    isAtNewLine = false
+  }
+
+
+  /**
+   * Starts over writing to the given sink, discarding anything not yet
+   * flushed, and keeping the buffer allocated for the previous one.
+   */
+  private def reset(sink: Sink): Unit = {
+    this.sink = sink
+    count = 0
+    idt = 0
+    isAtNewLine = isNewLineEnabled
+  }
 
 
-  def indent(): Unit = idt += 1
+  /** Starts over writing to the given stream. See reset(Sink). */
+  def reset(output: OutputStream): Unit = reset(new StreamSink(output))
+
+
+  /** Starts over writing to the given channel. See reset(Sink). */
+  def reset(output: WritableByteChannel): Unit = reset(new ChannelSink(output))
+
+
+  /** Starts over writing to the given buffer. See reset(Sink). */
+  def reset(output: ByteBuffer): Unit = reset(new BufferSink(output))
+
+
+  /** Passes on the buffered octets and flushes the underlying output. */
+  def flush(): Unit = {
+    drain()
+    sink.flush()
+  }
+
+
+  def indent(): Unit = {
+    idt += 1
+    if(isNewLineEnabled && idt * indentSize > spaces.length) {
+      spaces = Array.fill[Byte](2 * idt * indentSize)(SPACE)
+    }
+  }
 
 
   def unindent(): Unit = {
@@ -46,9 +202,10 @@ class IndentingWriter(output: OutputStream, indentSize: Int, compact: Boolean) {
   }
 
 
+  /** Does nothing in compact mode, so isAtNewLine is never set there. */
   def writeNewLine(): Unit =
     if(isNewLineEnabled) {
-      output.write(NEWLINE)
+      put(NEWLINE)
       isAtNewLine = true
     }
 
@@ -56,34 +213,98 @@ class IndentingWriter(output: OutputStream, indentSize: Int, compact: Boolean) {
   def write(ch: Char): Unit = {
     if(isAtNewLine) {
       writeIndent()
-      isAtNewLine = false
     }
-    output.write(ch)
+    put(ch.toByte)
   }
 
   def write(ch1: Char, ch2: Char): Unit = {
     if(isAtNewLine) {
       writeIndent()
-      isAtNewLine = false
     }
-    output.write(ch1)
-    output.write(ch2)
+    put(ch1.toByte)
+    put(ch2.toByte)
   }
 
   def write(ch: UChar): Unit = {
-    if (isAtNewLine) {
+    if(isAtNewLine) {
       writeIndent()
-      isAtNewLine = false
     }
-    ch.writeToStream(output)
+    ch.writeToStream(bufferStream)
   }
 
   def write(str: UString): Unit = {
-    if (isAtNewLine) {
+    if(isAtNewLine) {
+      writeIndent()
+    }
+    str.writeToStream(bufferStream)
+  }
+
+  /** Writes the given string, escaped using the given escaper, in one pass. */
+  def write(str: UString, escaper: Escaper): Unit = {
+    if(isAtNewLine) {
+      writeIndent()
+    }
+    this.escaper = escaper
+    str.writeToStream(escapingStream)
+  }
+
+  def write(n: Long): Unit = {
+    if(isAtNewLine) {
+      writeIndent()
+    }
+    put(numberBuffer, 0, NumberCodec.writeLong(n, numberBuffer, 0))
+  }
+
+  def write(n: Double): Unit = {
+    if(isAtNewLine) {
       writeIndent()
-      isAtNewLine = false
     }
-    str.writeToStream(output)
+    put(numberBuffer, 0, NumberCodec.writeDouble(n, numberBuffer, 0))
+  }
+
+  /** Writes the given numbers, separated by the given delimiter. */
+  def write(values: Array[Long], delimiter: UString): Unit = {
+    var i = 0
+    while(i < values.length) {
+      if(i > 0) {
+        write(delimiter)
+      }
+      write(values(i))
+      i += 1
+    }
+  }
+
+  def write(values: Array[Double], delimiter: UString): Unit = {
+    var i = 0
+    while(i < values.length) {
+      if(i > 0) {
+        write(delimiter)
+      }
+      write(values(i))
+      i += 1
+    }
+  }
+
+  def write(values: Array[Int], delimiter: UString): Unit = {
+    var i = 0
+    while(i < values.length) {
+      if(i > 0) {
+        write(delimiter)
+      }
+      write(values(i).toLong)
+      i += 1
+    }
+  }
+
+  def write(values: Array[Byte], delimiter: UString): Unit = {
+    var i = 0
+    while(i < values.length) {
+      if(i > 0) {
+        write(delimiter)
+      }
+      write(values(i).toLong)
+      i += 1
+    }
   }
 
   def writeln(str: UString): Unit = {
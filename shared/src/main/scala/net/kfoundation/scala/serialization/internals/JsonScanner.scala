@@ -0,0 +1,740 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+
+package net.kfoundation.scala.serialization.internals
+
+import net.kfoundation.scala.encoding.NumberCodec
+import net.kfoundation.scala.io.ByteBufferInputStream
+import net.kfoundation.scala.parse.CodeLocation
+import net.kfoundation.scala.parse.lex.LexicalError
+import net.kfoundation.scala.serialization.PropertyNames
+import net.kfoundation.scala.{UChar, UString}
+
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.util.Arrays
+
+
+
+object JsonScanner {
+  val DEFAULT_WINDOW_SIZE = 8192
+  private val MIN_WINDOW_SIZE = 16
+  private val MAX_SAFE_DIGITS = 18
+  private val NAME_CACHE_SIZE = 256
+  private val MAX_CACHED_NAME_SIZE = 32
+  val EOF: Int = -1
+  /** Returned by tryReadNameIndex() if the next token is not a string. */
+  val NO_NAME: Int = -2
+  private val REPLACEMENT_CODE_POINT = 0xfffd
+
+  private val TRUE: Array[Byte] = CommonSymbols.TRUE.toUtf8
+  private val FALSE: Array[Byte] = CommonSymbols.FALSE.toUtf8
+  private val NULL: Array[Byte] = CommonSymbols.NULL.toUtf8
+
+  /** Octets that can be part of a string without escaping. */
+  private val IS_PLAIN: Array[Boolean] = {
+    val table = Array.fill(256)(true)
+    table('"') = false
+    table('\\') = false
+    table('\n') = false
+    table
+  }
+
+  /** Octets that have no effect on nesting of objects and arrays. */
+  private val IS_INERT: Array[Boolean] = {
+    val table = Array.fill(256)(true)
+    "\"\n{}[]".foreach(ch => table(ch) = false)
+    table
+  }
+
+  private def isDigit(octet: Int): Boolean = octet >= '0' && octet <= '9'
+
+  private def isSign(octet: Int): Boolean = octet == '-' || octet == '+'
+
+  private def isExponent(octet: Int): Boolean = octet == 'e' || octet == 'E'
+
+  private def isNumberPart(octet: Int): Boolean =
+    isDigit(octet) || isSign(octet) || octet == '.' || isExponent(octet)
+
+  /** ASCII letters, '_', '$', and octets of non-ASCII characters. */
+  def isIdentifierStart(octet: Int): Boolean =
+    (octet >= 'a' && octet <= 'z') || (octet >= 'A' && octet <= 'Z') ||
+      octet == '_' || octet == '$' || octet >= 0x80
+
+  def isIdentifierPart(octet: Int): Boolean =
+    isIdentifierStart(octet) || isDigit(octet)
+}
+
+
+
+/**
+ * Reads JSON tokens directly from a window of octets that is refilled from
+ * the given stream, or, for buffers backed by an array, from the array
+ * itself. Strings are unescaped and numbers are converted in place, so the
+ * only allocation per token is for the resulting UString. Tracks locations
+ * for error messages, but only computes columns when needed.
+ *
+ * Methods that begin with a token skip the white spaces preceding it.
+ *
+ * @param inputName such as file name; this is used mainly for error messages.
+ * @param input the stream to be read
+ * @param initialCapacity initial size of the window
+ */
+class JsonScanner(inputName: String, private var input: InputStream, initialCapacity: Int) {
+  import JsonScanner._
+
+  private var window = new Array[Byte](Math.max(MIN_WINDOW_SIZE, initialCapacity))
+  private var ownWindow = window
+  private var isBorrowed = false
+  private var pos = 0
+  private var limit = 0
+  private var eof = false
+  private var base: Long = 0
+  private var row = 1
+  private var lineBegin: Long = 0
+  private var lineCol = 0
+  private var scratch = new Array[Byte](64)
+  private var scratchSize = 0
+  private var _isIntegral = false
+  private var _integralValue: Long = 0
+  private var _decimalValue: Double = 0
+  private val names = new Array[UString](NAME_CACHE_SIZE)
+  private val nameOctets = new Array[Array[Byte]](NAME_CACHE_SIZE)
+
+
+  def this(inputName: String, input: InputStream) =
+    this(inputName, input, JsonScanner.DEFAULT_WINDOW_SIZE)
+
+
+  /**
+   * Starts over with the given input, keeping the window and the name cache
+   * allocated for the previous one.
+   */
+  def reset(input: InputStream): Unit = {
+    if(isBorrowed) {
+      window = ownWindow
+      isBorrowed = false
+    }
+    restart(input)
+  }
+
+
+  private def restart(input: InputStream): Unit = {
+    this.input = input
+    pos = 0
+    limit = 0
+    eof = false
+    base = 0
+    row = 1
+    lineBegin = 0
+    lineCol = 0
+    scratchSize = 0
+  }
+
+
+  /**
+   * Starts over with the remaining content of the given buffer. If the buffer
+   * is backed by an array, it is read in place and its position is left
+   * unchanged; otherwise it is read as a stream. The scanner's own window is
+   * kept aside meanwhile, so switching between the two allocates nothing.
+   */
+  def reset(buffer: ByteBuffer): Unit =
+    if(buffer.hasArray) {
+      if(!isBorrowed) {
+        ownWindow = window
+      }
+      restart(null)
+      window = buffer.array()
+      isBorrowed = true
+      pos = buffer.arrayOffset() + buffer.position()
+      limit = pos + buffer.remaining()
+      eof = true
+      base = -pos
+    } else {
+      reset(new ByteBufferInputStream(buffer))
+    }
+
+
+  /**
+   * Makes locations relative to a larger input, of which this one is a
+   * portion that starts at the given origin.
+   */
+  def moveOrigin(origin: CodeLocation): Unit = {
+    base = origin.getStreamPos - pos
+    row = origin.getRow
+    lineBegin = base + pos
+    lineCol = origin.getCol - 1
+  }
+
+
+  /**
+   * Makes sure n octets after current position are in the window, returning
+   * false if input ends before that.
+   */
+  private def ensure(n: Int): Boolean = limit - pos >= n || fill(n)
+
+
+  private def fill(n: Int): Boolean = !eof && {
+    if(pos > 0) {
+      discardLineBegin()
+      System.arraycopy(window, pos, window, 0, limit - pos)
+      base += pos
+      limit -= pos
+      pos = 0
+    }
+    if(n > window.length) {
+      window = Arrays.copyOf(window, Math.max(n, 2*window.length))
+    }
+    while(limit < n && !eof) {
+      val count = input.read(window, limit, window.length - limit)
+      if(count < 0) {
+        eof = true
+      } else {
+        limit += count
+      }
+    }
+    limit >= n
+  }
+
+
+  /** Returns the octet at the given distance from current position. */
+  private def octetAt(offset: Int): Int =
+    if(ensure(offset + 1)) window(pos + offset) & 0xff else EOF
+
+
+  private def newLine(offset: Long): Unit = {
+    row += 1
+    lineBegin = offset
+    lineCol = 0
+  }
+
+
+  /**
+   * Counts the characters of the current line that are about to be shifted
+   * out of the window, so that columns stay exact after a refill.
+   */
+  private def discardLineBegin(): Unit = {
+    val lineOffset = (lineBegin - base).toInt
+    if(lineOffset < pos) {
+      lineCol += UChar.countCodePoints(window, lineOffset, pos - lineOffset)
+      lineBegin = base + pos
+    }
+  }
+
+
+  /**
+   * Skips white spaces and returns the octet following them without
+   * consuming it, or EOF at the end of input.
+   */
+  def skipSpaces(): Int = {
+    val next = if(pos < limit) window(pos) & 0xff else EOF
+    if(next > ' ') next else skipSpacesFrom()
+  }
+
+
+  private def skipSpacesFrom(): Int = {
+    var octet = EOF
+    var isSpace = true
+    while(isSpace && ensure(1)) {
+      octet = window(pos) & 0xff
+      if(octet > ' ') {
+        isSpace = false
+      } else if(octet == ' ' || octet == '\t' || octet == '\r') {
+        pos += 1
+      } else if(octet == '\n') {
+        pos += 1
+        newLine(base + pos)
+      } else {
+        isSpace = false
+      }
+    }
+    if(isSpace) EOF else octet
+  }
+
+
+  /** Consumes the given ASCII octet if it is the next token. */
+  def tryRead(octet: Int): Boolean =
+    if(skipSpaces() == octet) {
+      pos += 1
+      true
+    } else {
+      false
+    }
+
+
+  private def tryReadWord(word: Array[Byte]): Boolean =
+    if(!ensure(word.length)) {
+      false
+    } else {
+      var i = 0
+      while(i < word.length && window(pos + i) == word(i)) {
+        i += 1
+      }
+      pos += (if(i == word.length) i else 0)
+      i == word.length
+    }
+
+
+  /** Reads true or false, or throws a LexicalError. */
+  def readBoolean(): Boolean = skipSpaces() match {
+    case 't' if tryReadWord(TRUE) => true
+    case 'f' if tryReadWord(FALSE) => false
+    case _ => throw error("Expected a boolean value")
+  }
+
+
+  /** Consumes null if it is the next token. */
+  def tryReadNull(): Boolean = skipSpaces() == 'n' && tryReadWord(NULL)
+
+
+  private def append(octets: Array[Byte], offset: Int, size: Int): Unit = {
+    if(scratchSize + size > scratch.length) {
+      scratch = Arrays.copyOf(scratch, Math.max(scratchSize + size, 2*scratch.length))
+    }
+    System.arraycopy(octets, offset, scratch, scratchSize, size)
+    scratchSize += size
+  }
+
+
+  private def append(octet: Int): Unit = {
+    if(scratchSize == scratch.length) {
+      scratch = Arrays.copyOf(scratch, 2*scratch.length)
+    }
+    scratch(scratchSize) = octet.toByte
+    scratchSize += 1
+  }
+
+
+  private def appendCodePoint(cp: Int): Unit =
+    if(cp < 0x80) {
+      append(cp)
+    } else if(cp < 0x800) {
+      append(0xC0 | (cp >> 6))
+      append(0x80 | (cp & 0x3F))
+    } else if(cp < 0x10000) {
+      append(0xE0 | (cp >> 12))
+      append(0x80 | ((cp >> 6) & 0x3F))
+      append(0x80 | (cp & 0x3F))
+    } else {
+      append(0xF0 | (cp >> 18))
+      append(0x80 | ((cp >> 12) & 0x3F))
+      append(0x80 | ((cp >> 6) & 0x3F))
+      append(0x80 | (cp & 0x3F))
+    }
+
+
+  private def readHex4(): Int = {
+    if(!ensure(4)) {
+      throw error("Incomplete unicode escape sequence")
+    }
+    var value = 0
+    var i = 0
+    while(i < 4) {
+      val d = Character.digit(window(pos + i), 16)
+      if(d < 0) {
+        throw error("Invalid unicode escape sequence")
+      }
+      value = (value << 4) | d
+      i += 1
+    }
+    pos += 4
+    value
+  }
+
+
+  /**
+   * Reads what follows \\u, combining surrogate pairs. A high surrogate not
+   * followed by a low one is replaced, and the escape after it, if any, is
+   * read as it would have been on its own.
+   */
+  private def readUnicodeEscape(): Int = {
+    var unit = readHex4()
+    var codePoint = -1
+    while(codePoint < 0) {
+      if(Character.isHighSurrogate(unit.toChar)) {
+        if(octetAt(0) == '\\' && octetAt(1) == 'u') {
+          pos += 2
+          val next = readHex4()
+          if(Character.isLowSurrogate(next.toChar)) {
+            codePoint = Character.toCodePoint(unit.toChar, next.toChar)
+          } else {
+            appendCodePoint(REPLACEMENT_CODE_POINT)
+            unit = next
+          }
+        } else {
+          codePoint = REPLACEMENT_CODE_POINT
+        }
+      } else if(Character.isLowSurrogate(unit.toChar)) {
+        codePoint = REPLACEMENT_CODE_POINT
+      } else {
+        codePoint = unit
+      }
+    }
+    codePoint
+  }
+
+
+  private def readEscape(): Unit = {
+    if(!ensure(2)) {
+      throw error("Incomplete escape sequence")
+    }
+    val octet = window(pos + 1).toInt
+    pos += 2
+    octet match {
+      case '"' | '\\' | '/' => append(octet)
+      case 'b' => append('\b')
+      case 'f' => append('\f')
+      case 'n' => append('\n')
+      case 'r' => append('\r')
+      case 't' => append('\t')
+      case 'u' => appendCodePoint(readUnicodeEscape())
+      case _ =>
+        pos -= 2
+        throw error("Invalid escape sequence")
+    }
+  }
+
+
+  /**
+   * Continues reading a string, of which the octets up to the given index
+   * need no unescaping.
+   */
+  private def readEscapedString(plainEnd: Int): UString = {
+    scratchSize = 0
+    append(window, pos, plainEnd - pos)
+    pos = plainEnd
+    var isClosed = false
+    while(!isClosed) {
+      if(!ensure(1)) {
+        throw error("Unterminated string")
+      }
+      var i = pos
+      while(i < limit && IS_PLAIN(window(i) & 0xff)) {
+        i += 1
+      }
+      append(window, pos, i - pos)
+      pos = i
+      if(pos < limit) {
+        window(pos).toInt match {
+          case '"' =>
+            pos += 1
+            isClosed = true
+          case '\\' => readEscape()
+          case _ =>
+            append('\n')
+            pos += 1
+            newLine(base + pos)
+        }
+      }
+    }
+    UString.of(Arrays.copyOf(scratch, scratchSize))
+  }
+
+
+  /**
+   * Reads a string if it is the next token, or returns null. Strings with no
+   * escape sequences are copied from the window in one go; others are
+   * unescaped into a reusable buffer.
+   */
+  def tryReadString(): UString =
+    if(skipSpaces() != '"') {
+      null
+    } else {
+      pos += 1
+      var i = pos
+      while(i < limit && IS_PLAIN(window(i) & 0xff)) {
+        i += 1
+      }
+      if(i < limit && window(i) == '"') {
+        val value = UString.of(Arrays.copyOfRange(window, pos, i))
+        pos = i + 1
+        value
+      } else {
+        readEscapedString(i)
+      }
+    }
+
+
+  private def isCached(slot: Int, offset: Int, size: Int): Boolean = {
+    val octets = nameOctets(slot)
+    if(octets == null || octets.length != size) {
+      false
+    } else {
+      var i = 0
+      while(i < size && octets(i) == window(offset + i)) {
+        i += 1
+      }
+      i == size
+    }
+  }
+
+
+  /**
+   * Same as tryReadString(), but short strings with no escape sequences are
+   * looked up in a cache first, as property names tend to repeat.
+   */
+  def tryReadName(): UString =
+    if(skipSpaces() != '"') {
+      null
+    } else {
+      val begin = pos + 1
+      var i = begin
+      var hash = 0
+      while(i < limit && IS_PLAIN(window(i) & 0xff)) {
+        hash = 31*hash + window(i)
+        i += 1
+      }
+      if(i < limit && window(i) == '"' && i - begin <= MAX_CACHED_NAME_SIZE) {
+        val slot = (hash ^ (hash >>> 8)) & (NAME_CACHE_SIZE - 1)
+        if(!isCached(slot, begin, i - begin)) {
+          nameOctets(slot) = Arrays.copyOfRange(window, begin, i)
+          names(slot) = UString.of(nameOctets(slot))
+        }
+        pos = i + 1
+        names(slot)
+      } else {
+        tryReadString()
+      }
+    }
+
+
+  /**
+   * Reads a string if it is the next token, and returns its index among the
+   * given names, or PropertyNames.NOT_FOUND; returns NO_NAME if the next
+   * token is not a string. Names are matched in the window without being
+   * copied out, unless they have escape sequences.
+   */
+  def tryReadNameIndex(names: PropertyNames): Int =
+    if(skipSpaces() != '"') {
+      NO_NAME
+    } else {
+      val begin = pos + 1
+      var index = 0
+      var found = PropertyNames.NOT_FOUND
+      while(found == PropertyNames.NOT_FOUND && index < names.size) {
+        if(isNameAt(names.octetsOf(index), begin)) {
+          found = index
+        }
+        index += 1
+      }
+      if(found == PropertyNames.NOT_FOUND) {
+        names.indexOf(tryReadString())
+      } else {
+        pos = begin + names.octetsOf(found).length + 1
+        found
+      }
+    }
+
+
+  /** Tests if the given name, closed by a quote, is in the window at begin. */
+  private def isNameAt(name: Array[Byte], begin: Int): Boolean = {
+    val end = begin + name.length
+    end < limit && window(end) == '"' && {
+      var i = 0
+      while(i < name.length && name(i) == window(begin + i) && IS_PLAIN(name(i) & 0xff)) {
+        i += 1
+      }
+      i == name.length
+    }
+  }
+
+
+  /**
+   * Reads an unquoted name, made of ASCII letters and digits, '_', '$', and
+   * non-ASCII characters, if it is the next token, or returns null.
+   */
+  def tryReadIdentifier(): UString =
+    if(!isIdentifierStart(skipSpaces())) {
+      null
+    } else {
+      var n = 1
+      while(isIdentifierPart(octetAt(n))) {
+        n += 1
+      }
+      val value = UString.of(Arrays.copyOfRange(window, pos, pos + n))
+      pos += n
+      value
+    }
+
+
+  /**
+   * Reads a number if it is the next token, returning false otherwise. The
+   * number is then given by isIntegral, integralValue and decimalValue.
+   * Integers that do not fit in a Long are read as decimals. As in JSON, the
+   * number may only be signed with '-', and must have digits both before and
+   * after its decimal point, if any.
+   */
+  def tryReadNumber(): Boolean = {
+    skipSpaces()
+    val intBegin = if(octetAt(0) == '-') 1 else 0
+    var end = intBegin
+    var magnitude = 0L
+    var octet = octetAt(end)
+    while(isDigit(octet)) {
+      magnitude = 10*magnitude + (octet - '0')
+      end += 1
+      octet = octetAt(end)
+    }
+    val intEnd = end
+
+    if(intEnd == intBegin) {
+      false
+    } else {
+      val hasFraction = octet == '.'
+      if(hasFraction) {
+        end += 1
+        while(isDigit(octetAt(end))) {
+          end += 1
+        }
+        if(end == intEnd + 1) {
+          pos += end
+          throw error("Fraction digits are missing")
+        }
+      }
+
+      val hasExponent = isExponent(octetAt(end))
+      if(hasExponent) {
+        val expBegin = end + (if(isSign(octetAt(end + 1))) 2 else 1)
+        end = expBegin
+        while(isDigit(octetAt(end))) {
+          end += 1
+        }
+        if(end == expBegin) {
+          pos += end
+          throw error("Exponent value is missing")
+        }
+      }
+
+      _isIntegral = !hasFraction && !hasExponent
+      if(_isIntegral && intEnd - intBegin > MAX_SAFE_DIGITS) {
+        try {
+          _integralValue = NumberCodec.parseLong(window, pos, pos + intEnd)
+        } catch {
+          case _: NumberFormatException => _isIntegral = false
+        }
+      } else if(_isIntegral) {
+        _integralValue = if(window(pos) == '-') -magnitude else magnitude
+      }
+      _decimalValue = if(_isIntegral) {
+        _integralValue.toDouble
+      } else {
+        NumberCodec.parseDouble(window, pos, pos + end)
+      }
+      pos += end
+      true
+    }
+  }
+
+
+  /** Skips the rest of a string whose opening quote is already consumed. */
+  private def skipStringBody(): Unit = {
+    var isClosed = false
+    while(!isClosed) {
+      if(!ensure(1)) {
+        throw error("Unterminated string")
+      }
+      while(pos < limit && IS_PLAIN(window(pos) & 0xff)) {
+        pos += 1
+      }
+      if(pos < limit) {
+        window(pos).toInt match {
+          case '"' =>
+            pos += 1
+            isClosed = true
+          case '\\' =>
+            if(!ensure(2)) {
+              throw error("Incomplete escape sequence")
+            }
+            pos += 2
+          case _ =>
+            pos += 1
+            newLine(base + pos)
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Skips an object or array up to and including its matching closing
+   * bracket. Only brackets and strings are looked at; the rest of the content
+   * is not validated.
+   */
+  private def skipBlock(): Unit = {
+    var depth = 0
+    do {
+      if(!ensure(1)) {
+        throw error("Unterminated object or array")
+      }
+      while(pos < limit && IS_INERT(window(pos) & 0xff)) {
+        pos += 1
+      }
+      if(pos < limit) {
+        val octet = window(pos).toInt
+        pos += 1
+        octet match {
+          case '{' | '[' => depth += 1
+          case '}' | ']' => depth -= 1
+          case '"' => skipStringBody()
+          case _ => newLine(base + pos)
+        }
+      }
+    } while(depth > 0)
+  }
+
+
+  /**
+   * Skips the value that is the next token, be it a literal, an object, or
+   * an array, without decoding it.
+   */
+  def skipValue(): Unit = skipSpaces() match {
+    case '"' =>
+      pos += 1
+      skipStringBody()
+    case '{' | '[' => skipBlock()
+    case 't' if tryReadWord(TRUE) =>
+    case 'f' if tryReadWord(FALSE) =>
+    case 'n' if tryReadWord(NULL) =>
+    case _ =>
+      var n = 0
+      while(isNumberPart(octetAt(n))) {
+        n += 1
+      }
+      if(n == 0) {
+        throw error("Value expected")
+      }
+      pos += n
+  }
+
+
+  /** True if the last number read has neither fraction nor exponent. */
+  def isIntegral: Boolean = _isIntegral
+
+
+  /** Value of the last number read, if integral. */
+  def integralValue: Long = _integralValue
+
+
+  /** Value of the last number read, as Double. */
+  def decimalValue: Double = _decimalValue
+
+
+  /** Location of the octet at current position. */
+  def getCurrentLocation: CodeLocation = {
+    val lineOffset = (lineBegin - base).toInt
+    val col = lineCol + UChar.countCodePoints(window, lineOffset, pos - lineOffset)
+    new CodeLocation(inputName, row, col + 1, base + pos)
+  }
+
+
+  /** Produces an error at current location. */
+  def error(message: String): LexicalError =
+    new LexicalError(getCurrentLocation, message)
+}
@@ -11,81 +11,160 @@ package net.kfoundation.scala.serialization.internals
 
 import net.kfoundation.scala.UString
 import net.kfoundation.scala.serialization.ObjectStreamError
-import net.kfoundation.scala.util.SimpleStack
+
+import java.util.Arrays
 
 
 
 object ObjectStreamStateMachine {
-  private class StackItem(val isCollection: Boolean, val name: Option[UString]) {
-    override def toString: String = name.map(_.toString).
-      getOrElse("<no-name>") + (if(isCollection) "[]" else "")
+  /**
+   * Ids of the states, which are kept as plain integers, and returned by
+   * getStateId.
+   */
+  object StateId {
+    final val STREAM_BEGIN = 0
+    final val STREAM_END = 1
+    final val OBJECT_BEGIN = 2
+    final val OBJECT_END = 3
+    final val COLLECTION_BEGIN = 4
+    final val COLLECTION_END = 5
+    final val PROPERTY = 6
+    final val LITERAL = 7
   }
 
   object State extends Enumeration {
-    val STREAM_BEGIN, STREAM_END, OBJECT_BEGIN, OBJECT_END, COLLECTION_BEGIN,
-    COLLECTION_END, PROPERTY, LITERAL = Value
+    val STREAM_BEGIN: Value = Value(StateId.STREAM_BEGIN)
+    val STREAM_END: Value = Value(StateId.STREAM_END)
+    val OBJECT_BEGIN: Value = Value(StateId.OBJECT_BEGIN)
+    val OBJECT_END: Value = Value(StateId.OBJECT_END)
+    val COLLECTION_BEGIN: Value = Value(StateId.COLLECTION_BEGIN)
+    val COLLECTION_END: Value = Value(StateId.COLLECTION_END)
+    val PROPERTY: Value = Value(StateId.PROPERTY)
+    val LITERAL: Value = Value(StateId.LITERAL)
+  }
+
+  import StateId._
+
+  private val STATES: Array[State.Value] = State.values.toArray
+
+  private val INITIAL_DEPTH = 16
+
+  private def bits(states: Int*): Int = states.foldLeft(0)((b, s) => b | (1 << s))
+
+  /** States allowed to follow each state, when not in a collection. */
+  private val TRANSITIONS: Array[Int] = Array(
+    bits(OBJECT_BEGIN, COLLECTION_BEGIN, STREAM_END),
+    0,
+    bits(PROPERTY, OBJECT_END),
+    bits(PROPERTY, OBJECT_END, COLLECTION_END, STREAM_END),
+    bits(OBJECT_BEGIN, COLLECTION_END),
+    bits(PROPERTY, OBJECT_END, STREAM_END),
+    bits(LITERAL, OBJECT_BEGIN, COLLECTION_BEGIN),
+    bits(PROPERTY, OBJECT_END))
+
+  /** Same as TRANSITIONS, for when in a collection. */
+  private val TRANSITIONS_IN_COLLECTION: Array[Int] = {
+    val table = TRANSITIONS.clone()
+    table(OBJECT_END) |= bits(OBJECT_BEGIN)
+    table
   }
 }
 
 
 
-class ObjectStreamStateMachine {
+/**
+ * Keeps track of the structure of the object stream being written or read,
+ * and validates that events come in a valid order. Names of open objects and
+ * collections are kept in an array used as a stack.
+ *
+ * @param isChecked whether to validate transitions. Unchecked state machines
+ *                  are meant for serializers driven by writers known to be
+ *                  correct; they still keep track of nesting.
+ */
+class ObjectStreamStateMachine(isChecked: Boolean) {
   import ObjectStreamStateMachine._
-  import State._
+  import StateId._
 
 
-  private val stack = new SimpleStack[StackItem]
-  private var state = State.STREAM_BEGIN
+  private var names = new Array[UString](INITIAL_DEPTH)
+  private var isCollection = new Array[Boolean](INITIAL_DEPTH)
+  private var depth = 0
+  private var state = STREAM_BEGIN
   private var _isFirst = true
 
 
-  private def validateTransition(s: State.Value): Unit = {
-    val isAllowed: Boolean = state match {
-      case STREAM_BEGIN => s == OBJECT_BEGIN || s == COLLECTION_BEGIN
-      case STREAM_END => false
-      case OBJECT_BEGIN => s == PROPERTY || s == OBJECT_END
-      case OBJECT_END => s == PROPERTY || s == OBJECT_END || s == COLLECTION_END || (s == OBJECT_BEGIN && isInCollection)
-      case COLLECTION_BEGIN => s == OBJECT_BEGIN || s == COLLECTION_END
-      case COLLECTION_END => s == PROPERTY || s == OBJECT_END
-      case PROPERTY => s == LITERAL || s == OBJECT_BEGIN || s == COLLECTION_BEGIN
-      case LITERAL => s == PROPERTY || s == OBJECT_END
-      case _ => false
+  def this() = this(true)
+
+
+  private def validateTransition(s: Int): Unit = {
+    if(isChecked) {
+      val allowed = if(isInCollection) TRANSITIONS_IN_COLLECTION else TRANSITIONS
+      if((allowed(state) & (1 << s)) == 0) {
+        val negative = if(isInCollection) "" else "not "
+        throw error(s"Illegal attempt to transition from ${STATES(state)} to ${STATES(s)} (${negative}in collection)")
+      }
     }
+    state = s
+  }
+
 
-    if(!isAllowed) {
-      val negative = if(isInCollection) "" else "not "
-      throw error(s"Illegal attempt to transition from $state to $s (${negative}in collection)")
+  private def push(isCollection: Boolean, name: UString): Unit = {
+    if(depth == names.length) {
+      names = Arrays.copyOf(names, 2*depth)
+      this.isCollection = Arrays.copyOf(this.isCollection, 2*depth)
     }
+    names(depth) = name
+    this.isCollection(depth) = isCollection
+    depth += 1
+  }
 
-    state = s
+
+  /** Pops the innermost object or collection and returns its name. */
+  private def pop(kind: String): Option[UString] = {
+    if(depth == 0) {
+      throw error(s"Illegal attempt to read $kind end with no corresponding beginning")
+    }
+    depth -= 1
+    val name = names(depth)
+    names(depth) = null
+    Option(name)
   }
 
 
-  def getState: State.Value = state
+  def getState: State.Value = STATES(state)
 
 
-  private def objectBegin(name: Option[UString]): Unit = {
-    validateTransition(OBJECT_BEGIN)
-    stack.push(new StackItem(false, name))
+  /** Same as getState, as the id of the state. */
+  def getStateId: Int = state
+
+
+  /** Goes back to the beginning of a new stream. */
+  def reset(): Unit = {
+    while(depth > 0) {
+      depth -= 1
+      names(depth) = null
+    }
+    state = STREAM_BEGIN
     _isFirst = true
   }
 
 
-  def objectBegin(name: UString): Unit = objectBegin(Some(name))
+  def objectBegin(name: UString): Unit = {
+    validateTransition(OBJECT_BEGIN)
+    push(false, name)
+    _isFirst = true
+  }
 
 
-  def objectBegin(): Unit = objectBegin(None)
+  def objectBegin(): Unit = objectBegin(null)
 
 
-  def objectEnd(): Option[UString] =
-    stack.pop()
-      .map(item => {
-        validateTransition(OBJECT_END)
-        _isFirst = false
-        item.name
-      })
-      .getOrElse(throw error(
-        "Illegal attempt to read object end with no corresponding beginning"))
+  def objectEnd(): Option[UString] = {
+    val name = pop("object")
+    validateTransition(OBJECT_END)
+    _isFirst = false
+    name
+  }
 
 
   def objectEnd(name: UString): Unit = objectEnd().foreach(n =>
@@ -94,26 +173,22 @@ class ObjectStreamStateMachine {
     })
 
 
-  private def collectionBegin(name: Option[UString]): Unit = {
+  def collectionBegin(): Unit = collectionBegin(null)
+
+
+  def collectionBegin(name: UString): Unit = {
     validateTransition(COLLECTION_BEGIN)
     _isFirst = true
-    stack.push(new StackItem(true, name))
+    push(true, name)
   }
 
-  def collectionBegin(): Unit = collectionBegin(None)
-
 
-  def collectionBegin(name: UString): Unit = collectionBegin(Some(name))
-
-
-  def collectionEnd(): Option[UString] = stack.pop()
-    .map(item => {
-      validateTransition(COLLECTION_END)
-      _isFirst = false
-      item.name
-    })
-    .getOrElse(throw error(
-      "Illegal attempt to read collection end with no corresponding beginning"))
+  def collectionEnd(): Option[UString] = {
+    val name = pop("collection")
+    validateTransition(COLLECTION_END)
+    _isFirst = false
+    name
+  }
 
 
   def property(): Unit = {
@@ -125,24 +200,41 @@ class ObjectStreamStateMachine {
   def literal(): Unit = validateTransition(LITERAL)
 
 
-  def streamEnd(): Unit = validateTransition(STREAM_END)
+  /**
+   * Only allowed once all objects and collections begun so far have ended,
+   * i.e. at the very beginning, or right after the root object or collection
+   * ends. Serializers call this from writeStreamEnd() to flush their output.
+   */
+  def streamEnd(): Unit = {
+    if(isChecked && depth > 0) {
+      throw error("Illegal attempt to end stream before all objects and collections end")
+    }
+    validateTransition(STREAM_END)
+  }
 
 
   def isFirst: Boolean = _isFirst
 
 
-  def isInCollection: Boolean = stack.peek().exists(_.isCollection)
+  def isInCollection: Boolean = depth > 0 && isCollection(depth - 1)
+
+
+  /** Whether all objects and collections begun so far have ended. */
+  def isAtRoot: Boolean = depth == 0
 
 
-  def peek: Option[UString] = stack.peek().flatMap(_.name)
+  def peek: Option[UString] = if(depth > 0) Option(names(depth - 1)) else None
 
 
   def error(message: String): ObjectStreamError = new ObjectStreamError(
     "Error at [" + getPath + "]: " + message)
 
 
-  def getPath: String = stack.getItems.mkString(" > ")
+  def getPath: String = (0 until depth)
+    .map(i => (if(names(i) == null) "<no-name>" else names(i).toString) +
+      (if(isCollection(i)) "[]" else ""))
+    .mkString(" > ")
 
 
-  override def toString: String = "Path: " + getPath + ", State: " + state
+  override def toString: String = "Path: " + getPath + ", State: " + getState
 }
@@ -23,6 +23,7 @@ object XmlSymbols {
   val COMMENT_END = U"-->"
   val LT_SLASH = U"</"
   val SLASH_GT = U"/>"
+  val SLASH_CP: Int = '/'
   val LT: UChar = '<'
   val TAG_BEGIN_CP: Int = LT.codePoint
   val GT: UChar = '>'
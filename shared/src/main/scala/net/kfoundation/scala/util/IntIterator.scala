@@ -0,0 +1,26 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.util
+
+
+/**
+ * Iterator of primitive Int values. Unlike Iterator[Int], values are not
+ * boxed.
+ */
+trait IntIterator {
+  def hasNext: Boolean
+
+  def next(): Int
+
+  def foreach(fn: Int => Unit): Unit =
+    while(hasNext) {
+      fn(next())
+    }
+}
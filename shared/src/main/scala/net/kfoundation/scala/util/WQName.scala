@@ -28,13 +28,13 @@ object WQName {
       if (hasMore) {
         parts = parts :+ w.getCurrentSelection
         hasMore = w.tryRead(DOT)
-        w.commit()
+        w.discard()
       }
     }
     if (parts.isEmpty) {
       None
     } else {
-      w.commit()
+      w.discard()
       Some(new WQName(parts))
     }
   }
@@ -51,30 +51,30 @@ object LoTexDocumentModel {
       if(!w.tryRead(OPEN_CBRACE)) {
         throw w.parseError(MISSING_TOKEN, SHOULD -> wrap(OPEN_CBRACE))
       }
-      w.commit()
+      w.discard()
       w.readAll(_ != CLOSE_CBRACE)
       val linkOrText = w.getCurrentSelection
       if(linkOrText.isEmpty) {
         throw w.parseError(MISSING_TOKEN, SHOULD -> "TEXT_OR_LINK")
       }
-      w.commit()
+      w.discard()
       if(!w.tryRead(CLOSE_CBRACE)) {
         throw w.parseError(MISSING_TOKEN, SHOULD -> wrap(CLOSE_CBRACE))
       }
-      w.commit()
+      w.discard()
 
       if(w.tryRead(OPEN_CBRACE)) {
-        w.commit()
+        w.discard()
         w.readAll(_ != CLOSE_CBRACE)
         val text = w.getCurrentSelection
         if(text.isEmpty) {
           throw w.parseError(MISSING_TOKEN, SHOULD -> "TEXT")
         }
-        w.commit()
+        w.discard()
         if(!w.tryRead(CLOSE_CBRACE)) {
           throw w.parseError(MISSING_TOKEN, SHOULD -> wrap(CLOSE_CBRACE))
         }
-        w.commit()
+        w.discard()
         new LinkedText(text, LINK, URL(linkOrText))
       } else {
         new LinkedText(linkOrText, LINK, URL(linkOrText))
@@ -85,13 +85,13 @@ object LoTexDocumentModel {
       if(!w.tryRead(OPEN_CBRACE)) {
         throw w.parseError(MISSING_TOKEN, SHOULD -> wrap(OPEN_CBRACE))
       }
-      w.commit()
+      w.discard()
       w.readAll(_ != CLOSE_CBRACE)
       val text = w.getCurrentSelection
       if(!w.tryRead(CLOSE_CBRACE)) {
         throw w.parseError(MISSING_TOKEN, SHOULD -> wrap(CLOSE_CBRACE))
       }
-      w.commit()
+      w.discard()
       new FormattedText(text, tag)
     }
 
@@ -99,7 +99,7 @@ object LoTexDocumentModel {
       w.readAll(_ != OPEN_CBRACE)
       val rawTag = w.getCurrentSelection
       val tag = if(rawTag.isEmpty) ParagraphStyle.NORMAL else rawTag
-      w.commit()
+      w.discard()
       if(tag.equals(LINK)) {
         readLinkPart(w)
       } else {
@@ -109,12 +109,12 @@ object LoTexDocumentModel {
 
     private def readPart(w: CodeWalker): Option[FormattedText] =
       if(w.tryRead(BACKSLASH)) {
-        w.commit()
+        w.discard()
         Some(readFormattedPart(w))
       } else {
         w.readAll(_ != BACKSLASH)
         val s = w.getCurrentSelection
-        w.commit()
+        w.discard()
         if(s.isEmpty) {
           None
         } else {
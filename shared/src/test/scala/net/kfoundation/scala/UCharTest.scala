@@ -182,4 +182,73 @@ class UCharTest extends AnyFunSuite {
     assert(reader.nextCodePoint == -1)
   }
 
+  test("isValidUtf8") {
+    def valid(list: Int*): Boolean = {
+      val b = bytes(list:_*)
+      UChar.isValidUtf8(b, 0, b.length)
+    }
+    val long = ("abcdefgh" * 3 + "漢字" + "ijklmnop" * 2).getBytes("UTF-8")
+    assert(UChar.isValidUtf8(long, 0, long.length))
+    assert(UChar.isValidUtf8(long, 3, 20))
+    assert(!UChar.isValidUtf8(long, 0, 25))
+    assert(valid(testUtf8.map(_ & 0xff).toIndexedSeq:_*))
+    assert(valid(0xc2, 0x80, 0xed, 0x9f, 0xbf, 0xf4, 0x8f, 0xbf, 0xbf))
+    assert(!valid(0x80))
+    assert(!valid(0xc0, 0xaf))
+    assert(!valid(0xe0, 0x80, 0xaf))
+    assert(!valid(0xed, 0xa0, 0x80))
+    assert(!valid(0xf4, 0x90, 0x80, 0x80))
+    assert(!valid(0xf8, 0x88, 0x80, 0x80, 0x80))
+    assert(!valid(0x61, 0xe3, 0x80))
+    assert(!valid(0xe3, 0x41, 0x80))
+  }
+
+  test("countCodePoints") {
+    assert(UChar.countCodePoints(testUtf8, 0, testUtf8.length) == 3)
+    assert(UChar.countCodePoints(testUtf8, 1, 3) == 1)
+    val str = "abcdefgh漢字テスト𐐷ijklmnop" * 5
+    val b = str.getBytes("UTF-8")
+    assert(UChar.countCodePoints(b, 0, b.length) == str.codePointCount(0, str.length))
+  }
+
+  test("flyweight") {
+    assert(UChar.of('a') eq UChar.valueOf('a'))
+    assert(UChar.valueOf(0xe9) eq UChar.valueOf(0xe9))
+    assert(UChar.valueOf(0x6f22) == new UChar(0x6f22))
+    UChar.enableBmpCache()
+    assert(UChar.valueOf(0x6f22) eq UChar.valueOf(0x6f22))
+    assert(UChar.valueOf(0x10437).toUtf8 sameElements rare_kanji.toUtf8)
+    UChar.valueOf('a').toUtf8(0) = 'b'
+    assert(UChar.valueOf('a').toUtf8 sameElements Array[Byte]('a'))
+  }
+
+  test("Character classes") {
+    (0 until 0x3000).foreach(ch => {
+      assert(UChar.isNumeric(ch) == Character.isDigit(ch), ch)
+      assert(UChar.isAlphabet(ch) == Character.isAlphabetic(ch), ch)
+      assert(UChar.isAlphanumeric(ch) == Character.isLetterOrDigit(ch), ch)
+      assert(UChar.isWhiteSpace(ch) == Character.isWhitespace(ch), ch)
+      assert(UChar.isLowerCase(ch) == Character.isLowerCase(ch), ch)
+      assert(UChar.isUpperCase(ch) == Character.isUpperCase(ch), ch)
+      assert(UChar.isIdentifierStart(ch) == Character.isJavaIdentifierStart(ch), ch)
+      assert(UChar.isIdentifierPart(ch) == Character.isJavaIdentifierPart(ch), ch)
+      assert(UChar.toLowerCase(ch) == Character.toLowerCase(ch), ch)
+      assert(UChar.toUpperCase(ch) == Character.toUpperCase(ch), ch)
+    })
+    assert(!UChar.isNumeric(-1))
+  }
+
+  test("Instance character classes") {
+    (0 until 0x3000).map(UChar.valueOf).foreach(ch => {
+      val cp = ch.codePoint
+      assert(ch.isNumeric == Character.isDigit(cp), cp)
+      assert(ch.isAlphabet == Character.isAlphabetic(cp), cp)
+      assert(ch.isAlphanumeric == Character.isLetterOrDigit(cp), cp)
+      assert(ch.isWhiteSpace == Character.isWhitespace(cp), cp)
+      assert(ch.isLowerCase == Character.isLowerCase(cp), cp)
+      assert(ch.isUpperCase == Character.isUpperCase(cp), cp)
+      assert(ch.toLowerCase.codePoint == Character.toLowerCase(cp), cp)
+      assert(ch.toUpperCase.codePoint == Character.toUpperCase(cp), cp)
+    })
+  }
 }
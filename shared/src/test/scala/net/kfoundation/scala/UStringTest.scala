@@ -9,7 +9,7 @@
 
 package net.kfoundation.scala
 
-import java.io.ByteArrayInputStream
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream}
 
 import net.kfoundation.scala.encoding.DecodingException
 import org.scalatest.funsuite.AnyFunSuite
@@ -93,6 +93,11 @@ class UStringTest extends AnyFunSuite {
   test("equalsIgnoreCase") {
     assert(U"abcdef".equalsIgnoreCase(U"AbCdEf"))
     assert(U"テストabcdef漢字".equalsIgnoreCase(U"テストAbCdEf漢字"))
+    assert(U"abcÉtÉ".equalsIgnoreCase(U"ABCété"))
+    assert(U"k".equalsIgnoreCase(UString.of(new UChar(0x212A))))
+    assert(!U"abcd".equalsIgnoreCase(U"abc"))
+    assert(!U"abcd".equalsIgnoreCase(U"abce"))
+    assert(!U"a@".equalsIgnoreCase(U"a`"))
   }
 
   test("find") {
@@ -116,16 +121,34 @@ class UStringTest extends AnyFunSuite {
 
   test("toLowerCase") {
     assert(U"テストAbCdEf".toLowerCase == U"テストabcdef")
+    assert(U"SELECT Ä, b".toLowerCase == U"select ä, b")
+    val lower = U"already lower 漢字"
+    assert(lower.toLowerCase eq lower)
   }
 
   test("toUpperCase") {
     assert(U"テストAbCdEf".toUpperCase == U"テストABCDEF")
+    assert(U"where".toUpperCase == U"WHERE")
+    assert(U"straße ä".toUpperCase == U"STRAßE Ä")
+    val upper = U"SELECT_1"
+    assert(upper.toUpperCase eq upper)
+  }
+
+  test("toFirstUpperCase") {
+    assert(U"abc".toFirstUpperCase == U"Abc")
+    assert(U"äbc".toFirstUpperCase == U"Äbc")
+    val str = U"Abc"
+    assert(str.toFirstUpperCase eq str)
+    val nonAscii = U"漢字"
+    assert(nonAscii.toFirstUpperCase eq nonAscii)
+    assert(UString.EMPTY.toFirstUpperCase.isEmpty)
   }
 
   test("subString") {
     val str = U"テストabcdef漢字abcdef"
     assert(str.subString(3) == U"abcdef漢字abcdef")
     assert(str.subString(3, 6) == U"abc")
+    assert(str.subString(6, 3).isEmpty)
   }
 
   test("append") {
@@ -136,5 +159,198 @@ class UStringTest extends AnyFunSuite {
 
   test("split") {
     assert(U"abcd@efgh@ijkl".split('@') == Seq(U"abcd", U"efgh", U"ijkl"))
+    assert(U"ab字cd字".split(UChar.of('字')) == Seq(U"ab", U"cd", U""))
+  }
+
+  test("join") {
+    val delimiter = U"a, b".subString(1, 3)
+    assert(UString.join(Seq(U"x", U"y", U"z"), delimiter) == U"x, y, z")
+    assert(UString.join(Seq(U"x", U"y"), UChar.of('字')) == U"x字y")
+    assert(UString.builder.appendJoining(Seq(U"x", U"y"), delimiter).build ==
+      U"x, y")
+  }
+
+  test("slice") {
+    val str = U"テストabcdef漢字abcdef"
+    val slice = str.subString(3, 11)
+    val copy = U"abcdef漢字"
+    assert(slice.isSlice)
+    assert(slice == copy && copy == slice)
+    assert(slice.hashCode() == copy.hashCode())
+    assert(slice.getLength == 8)
+    assert(slice.getUtf8Length == 12)
+    assert(slice.toString == "abcdef漢字")
+    assert(slice.toUtf8 sameElements copy.toUtf8)
+    assert(slice.find(U"漢字", 0) == 6)
+    assert(slice.find(UChar.of('a'), 1) == NOT_FOUND)
+    assert(slice.find('c'.toByte, 0) == 2)
+    assert(slice.subString(6) == U"漢字")
+    assert(slice.subString(2, 8) == U"cdef漢字")
+    assert(slice.equalsIgnoreCase(U"ABCDEF漢字"))
+    assert(slice.uCharIterator.toSeq.last == UChar.of('字'))
+    assert(slice + U"!" == U"abcdef漢字!")
+
+    val os = new ByteArrayOutputStream()
+    slice.writeToStream(os)
+    assert(os.toByteArray sameElements copy.toUtf8)
+
+    val compact = slice.compact()
+    assert(!compact.isSlice)
+    assert(compact == slice)
+    assert(!copy.isSlice && (copy.compact() eq copy))
+  }
+
+  test("long string indexing") {
+    val native = (0 until 100).map(i => s"$i:漢字テスト;").mkString
+    val str = UString.of(native)
+    assert(!str.isAscii)
+    Seq(0, 63, 64, 65, 127, 128, 500, native.length - 1).foreach(i =>
+      assert(str.subString(i, native.length).toString == native.substring(i)))
+    assert(str.subString(native.length) == UString.EMPTY)
+    assert(str.subString(300, 420).toString == native.substring(300, 420))
+    assert(str.find(U"99:", 10) == native.indexOf("99:"))
+    assertThrows[IndexOutOfBoundsException](str.subString(native.length + 1))
+
+    val ascii = UString.of("abcd" * 100)
+    assert(ascii.isAscii)
+    assert(ascii.subString(396, 400) == U"abcd")
+    assertThrows[IndexOutOfBoundsException](ascii.subString(401))
+  }
+
+  test("long string indexing with invalid octets") {
+    Seq(0x80, 0xbf, 0xfe, 0xff).foreach(b => {
+      val octets = Array.fill[Byte](300)('a')
+      octets(100) = b.toByte
+      java.util.Arrays.fill(octets, 200, 300, 'b'.toByte)
+      val str = UString.of(octets)
+      val d = 300 - str.getLength
+      assert(str.subString(250 - d).toString == "b" * 50)
+      assert(str.subString(150 - d, 210 - d).toString == "a" * 50 + "b" * 10)
+      assert(str.find(U"b", 120) == 200 - d)
+      assertThrows[IndexOutOfBoundsException](str.subString(301 - d))
+    })
+  }
+
+
+  test("malformed UTF-8 is counted and indexed consistently") {
+    val mixed = UString.of(Array[Byte]('a', 0xc3.toByte, 'b', 0x80.toByte, 'c'))
+    assert(!mixed.isAscii)
+    assert(mixed.getLength == 4)
+    val decoded = Seq.newBuilder[Int]
+    mixed.codePoints.foreach(decoded += _)
+    assert(decoded.result() == Seq('a'.toInt, 0xfffd, 0xfffd, 'c'.toInt))
+    assert(mixed.subString(3) == U"c")
+    assert(mixed.find(U"c", 0) == 3)
+
+    val leadOnly = Array.fill[Byte](300)('a')
+    leadOnly(10) = 0xff.toByte
+    assert(!UString.of(leadOnly).isAscii)
+
+    val random = new scala.util.Random(7)
+    (0 until 20).foreach(_ => {
+      val octets = new Array[Byte](300 + random.nextInt(300))
+      random.nextBytes(octets)
+      val str = UString.of(octets)
+      val n = str.getLength
+      var nIterated = 0
+      str.foreachCodePoint(_ => nIterated += 1)
+      assert(nIterated == n)
+      Seq(0, 1, 63, 64, 65, n / 2, n - 1, n).foreach(i => {
+        val tail = str.subString(i)
+        assert(tail.getLength == n - i)
+        assert(str.subString(0, i).getLength == i)
+        assert(tail.isEmpty || str.find(tail, i) == i)
+      })
+    })
+  }
+
+
+  test("cached hash") {
+    val str = U"some key"
+    val h = str.hashCode()
+    assert(str.hashCode() == h)
+    assert(U"some key".hashCode() == h)
+    assert(str == U"some key")
+    assert(str != U"some kez")
+  }
+
+  test("builder") {
+    val b = UString.builder(4)
+      .append(U"abc")
+      .append(-1234567890123L)
+      .append(0)
+      .append(Long.MinValue)
+      .append(' ')
+      .append('漢')
+      .append(1.5)
+      .appendHex(0xCAFEL)
+    val str = b.build
+    assert(str.toString ==
+      "abc-12345678901230-9223372036854775808 漢1.5000000000000CAFE")
+    b.append(U"xyz")
+    assert(str.toString.endsWith("CAFE"))
+    assert(b.reset().size == 0)
+    assert(b.append(Int.MaxValue).build == U"2147483647")
+    assert(str.toString.startsWith("abc"))
+    assert(UString.of(-42L) == U"-42")
+    assert(UString.of(0.1) == U"0.1")
+    assert(UString.of(1e21) == U"1.0E21")
+  }
+
+  test("number parsing") {
+    assert(U"-2147483648".toInt == Int.MinValue)
+    assert(U"1234567890123".toLong == 1234567890123L)
+    assert(U"-12.5e1".toDouble == -125.0)
+    assert(U"x=42".subString(2).toInt == 42)
+    assertThrows[NumberFormatException](U"2147483648".toInt)
+    assertThrows[NumberFormatException](U"12x".toLong)
+  }
+
+  test("find long pattern") {
+    val text = UString.of("漢字 lorem ipsum, dolor sit amet; " * 40 + "needle in haystack")
+    val native = text.toString
+    assert(text.find(U"needle in", 0) == native.indexOf("needle in"))
+    assert(text.find(U"dolor sit", 5) == native.indexOf("dolor sit", 5))
+    assert(text.find(U"dolor sit", 100) == native.indexOf("dolor sit", 100))
+    assert(text.find(U"needle in a", 0) == NOT_FOUND)
+    assert(text.contains(U"in haystack"))
+    assert(!text.contains(U"in haystacks"))
+  }
+
+  test("findAll") {
+    val text = U"ab漢字abab字ab"
+    assert(text.findAll(U"ab").toSeq == Seq(0, 4, 6, 9))
+    assert(text.findAll(U"字ab").toSeq == Seq(3, 8))
+    assert(U"aaaa".findAll(U"aa").toSeq == Seq(0, 2))
+    assert(text.findAll(U"xyz").isEmpty)
+    assert(text.findAll(UString.EMPTY).isEmpty)
+  }
+
+  test("split by string and characters") {
+    assert(U"a::b::::c".split(U"::").toSeq == Seq(U"a", U"b", UString.EMPTY, U"c"))
+    assert(U"a=>b=>".split(U"=>").toSeq == Seq(U"a", U"b", UString.EMPTY))
+    assert(U"abc".split(U"abcd").toSeq == Seq(U"abc"))
+    assert(U"k1=v1;k2=漢字、x".split('=', ';', '、').toSeq ==
+      Seq(U"k1", U"v1", U"k2", U"漢字", U"x"))
+  }
+
+  test("codepoint iteration") {
+    val str = U"aé漢𐐷z"
+    val expected = Seq(0x61, 0xe9, 0x6f22, 0x10437, 0x7a)
+    val collected = Seq.newBuilder[Int]
+    str.foreachCodePoint(collected += _)
+    assert(collected.result() == expected)
+    val it = str.subString(1, 4).codePoints
+    assert(it.hasNext && it.next() == 0xe9)
+    assert(it.next() == 0x6f22 && it.next() == 0x10437 && !it.hasNext)
+    assert(str.uCharIterator.map(_.codePoint).toSeq == expected)
+    assert(str.mapCodePoints(cp => cp + 1) == U"bê漣𐐸{")
+    assert(U"éa".toFirstUpperCase == U"Éa")
+  }
+
+  test("split slices") {
+    val parts = U"ab,,cd,".split(',')
+    assert(parts == Seq(U"ab", UString.EMPTY, U"cd", UString.EMPTY))
+    assert(parts.forall(_.isSlice))
   }
 }
@@ -0,0 +1,74 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala
+
+import java.nio.charset.StandardCharsets
+
+
+
+/**
+ * Compares the throughput of UTF-8 validation and codepoint counting against
+ * the former octet-by-octet implementation. Note that the former validation
+ * only followed lead octets, and did not check continuation octets. Run with:
+ *
+ * <pre>
+ * sbt "shared/Test/runMain net.kfoundation.scala.Utf8Benchmark"
+ * </pre>
+ */
+object Utf8Benchmark {
+  private val SIZE = 1 << 22
+  private val ROUNDS = 50
+
+  private def sample(unit: String): Array[Byte] = {
+    val b = new StringBuilder(SIZE)
+    while(b.length < SIZE) {
+      b.append(unit)
+    }
+    b.toString.getBytes(StandardCharsets.UTF_8)
+  }
+
+  private def octetByOctetValidate(bytes: Array[Byte]): Boolean = {
+    var i = 0
+    while(i < bytes.length) {
+      i += UChar.getUtf8SizeWithFirstOctet(bytes(i))
+    }
+    i == bytes.length
+  }
+
+  private def octetByOctetCount(bytes: Array[Byte]): Int = {
+    var i = 0
+    var n = 0
+    while(i < bytes.length) {
+      i += UChar.getUtf8SizeWithFirstOctet(bytes(i))
+      n += 1
+    }
+    n
+  }
+
+  private def measure(name: String, bytes: Array[Byte], fn: Array[Byte] => Any): Unit = {
+    (0 until ROUNDS).foreach(_ => fn(bytes))
+    val start = System.nanoTime()
+    (0 until ROUNDS).foreach(_ => fn(bytes))
+    val seconds = (System.nanoTime() - start) / 1e9
+    val mbs = bytes.length.toDouble * ROUNDS / seconds / (1 << 20)
+    println(f"$name%-32s $mbs%10.1f MB/s")
+  }
+
+  def main(args: Array[String]): Unit = Seq(
+    "ASCII" -> sample("The quick brown fox jumps over the lazy dog. "),
+    "CJK" -> sample("速い茶色の狐がのろまな犬を飛び越える。"),
+    "Mixed" -> sample("price: 100円, name: 山田 太郎; "))
+    .foreach { case (name, bytes) =>
+      measure(s"$name validate (octet)", bytes, octetByOctetValidate)
+      measure(s"$name validate (word)", bytes, b => UChar.isValidUtf8(b, 0, b.length))
+      measure(s"$name count (octet)", bytes, octetByOctetCount)
+      measure(s"$name count (word)", bytes, b => UChar.countCodePoints(b, 0, b.length))
+    }
+}
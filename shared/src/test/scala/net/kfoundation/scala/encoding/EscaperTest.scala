@@ -0,0 +1,48 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.encoding
+
+import java.io.ByteArrayOutputStream
+import java.nio.charset.StandardCharsets
+
+import net.kfoundation.scala.UString
+import org.scalatest.funsuite.AnyFunSuite
+
+
+class EscaperTest extends AnyFunSuite {
+  test("JSON") {
+    assert(Escaper.JSON.escape(UString.of("say \"hi\"\\\n\t\u0001")) ==
+      UString.of("say \\\"hi\\\"\\\\\\n\\t\\u0001"))
+  }
+
+  test("XML") {
+    assert(Escaper.XML.escape(UString.of("<a href='x'>&\"</a>")) ==
+      UString.of("&lt;a href=&apos;x&apos;&gt;&amp;&quot;&lt;/a&gt;"))
+    assert(Escaper.XML_TEXT.escape(UString.of("it's \"<b>\" & co")) ==
+      UString.of("it's \"&lt;b&gt;\" &amp; co"))
+  }
+
+  test("SQL and CSV") {
+    assert(Escaper.SQL.escape("it's\\\n") == "it''s\\\\\\n")
+    assert(Escaper.CSV.escape("a \"b\"") == "a \"\"b\"\"")
+  }
+
+  test("Clean strings are returned as they are") {
+    val str = UString.of("plain text ünïcödé")
+    assert(Escaper.JSON.escape(str) eq str)
+  }
+
+  test("Non-ASCII runs are copied intact") {
+    val octets = "ü\"€\n".getBytes(StandardCharsets.UTF_8)
+    val output = new ByteArrayOutputStream()
+    Escaper.K4.escape(octets, 0, octets.length, output)
+    assert(new String(output.toByteArray, StandardCharsets.UTF_8) == "ü\\\"€\\n")
+  }
+}
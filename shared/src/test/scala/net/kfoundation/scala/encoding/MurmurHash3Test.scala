@@ -0,0 +1,86 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.encoding
+
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+import org.scalatest.funsuite.AnyFunSuite
+
+import scala.util.Random
+
+
+class MurmurHash3Test extends AnyFunSuite {
+  private def bytes(str: String): Array[Byte] = str.getBytes(StandardCharsets.UTF_8)
+
+  private def random(size: Int): Array[Byte] = {
+    val b = new Array[Byte](size)
+    new Random(size).nextBytes(b)
+    b
+  }
+
+  test("hash128x64") {
+    assert(MurmurHash3.hash128x64(bytes("")) sameElements Array(0L, 0L))
+    assert(MurmurHash3.hash128x64(bytes("hello")) sameElements
+      Array(0xcbd8a7b341bd9b02L, 0x5b1e906a48ae1d19L))
+    assert(MurmurHash3.hash128x64(bytes("The quick brown fox jumps over the lazy dog")) sameElements
+      Array(0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L))
+    val b = bytes("0123456789abcdef0123456789abcdef!")
+    assert(MurmurHash3.hash128x64(b.toSeq, 0, b.length, 7) sameElements
+      Array(0x3d9f860a67782f33L, 0xa2e75830cb9afe6aL))
+    assert(MurmurHash3.hash128x64(b.toList) sameElements MurmurHash3.hash128x64(b))
+  }
+
+  test("hash32x86") {
+    assert(MurmurHash3.hash32x86(bytes("")) == 0)
+    assert(MurmurHash3.hash32x86(bytes("hello")) == -1666236490)
+    assert(MurmurHash3.hash32x86(bytes("0123456789abcdef0123456789abcdef!")) == -770416295)
+  }
+
+  test("Incremental") {
+    Seq(0, 1, 15, 16, 17, 100, 1000).foreach(size => {
+      val data = random(size)
+      val h128 = new Murmur3Hasher128(3)
+      val h32 = new Murmur3Hasher32(3)
+      var i = 0
+      var step = 1
+      while(i < size) {
+        val n = Math.min(step, size - i)
+        h128.update(data, i, n)
+        h32.update(data, i, n)
+        i += n
+        step = step * 2 + 1
+      }
+      assert(h128.digest() sameElements MurmurHash3.hash128x64(data, 0, size, 3))
+      assert(h32.digest() == MurmurHash3.hash32x86(data, 0, size, 3))
+      assert(h128.reset().update(data).digest() sameElements MurmurHash3.hash128x64(data, 0, size, 3))
+    })
+  }
+
+  test("ByteBuffer") {
+    val data = random(77)
+    val buffer = ByteBuffer.allocateDirect(data.length)
+    buffer.put(data).flip()
+    assert(MurmurHash3.hash128x64(buffer) sameElements MurmurHash3.hash128x64(data))
+    assert(buffer.position() == 0)
+    assert(new Murmur3Hasher128().update(data, 0, 5).update(buffer).digest() sameElements
+      new Murmur3Hasher128().update(data, 0, 5).update(data).digest())
+    assert(!buffer.hasRemaining)
+  }
+
+  test("HashingOutputStream") {
+    val data = random(50)
+    val out = new HashingOutputStream(new ByteArrayOutputStream(), new Murmur3Hasher128)
+    out.write(data(0))
+    out.write(data, 1, data.length - 1)
+    assert(out.hasher.digest() sameElements MurmurHash3.hash128x64(data))
+  }
+}
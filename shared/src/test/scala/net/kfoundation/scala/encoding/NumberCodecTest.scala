@@ -0,0 +1,110 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.encoding
+
+import java.nio.charset.StandardCharsets
+
+import org.scalatest.funsuite.AnyFunSuite
+
+import scala.util.Random
+
+
+class NumberCodecTest extends AnyFunSuite {
+  private val buffer = new Array[Byte](32)
+
+  private def format(n: Long): String =
+    new String(buffer, 0, NumberCodec.writeLong(n, buffer, 0), StandardCharsets.US_ASCII)
+
+  private def format(d: Double): String =
+    new String(buffer, 0, NumberCodec.writeDouble(d, buffer, 0), StandardCharsets.US_ASCII)
+
+  private def parseLong(str: String): Long = {
+    val b = str.getBytes(StandardCharsets.UTF_8)
+    NumberCodec.parseLong(b, 0, b.length)
+  }
+
+  private def parseDouble(str: String): Double = {
+    val b = str.getBytes(StandardCharsets.UTF_8)
+    NumberCodec.parseDouble(b, 0, b.length)
+  }
+
+
+  test("writeLong") {
+    Seq(0L, 1L, -1L, 9L, 10L, 1234567890L, Long.MaxValue, Long.MinValue,
+      Int.MinValue.toLong, 999999999999999999L)
+      .foreach(n => assert(format(n) == n.toString))
+  }
+
+  test("writeDouble") {
+    Seq(0.0, -0.0, 1.0, -1.5, 0.1, 100.0, 123.456, 0.001, 1.0E-4, 1234567.0,
+      1.0E7, 1.0E21, 2.5E-10, Double.MaxValue, Double.MinPositiveValue,
+      java.lang.Double.MIN_NORMAL, Double.NaN, Double.PositiveInfinity,
+      Double.NegativeInfinity, 1.0/3, 2.0/3, 9007199254740993.0)
+      .foreach(d => assert(format(d) == d.toString))
+  }
+
+  test("writeDouble shortest where Double.toString is not") {
+    assert(format(1.0E23) == "1.0E23")
+  }
+
+  test("writeDouble shortest round-trip") {
+    val random = new Random(42)
+    (0 until 100000).foreach(_ => {
+      val d = java.lang.Double.longBitsToDouble(random.nextLong())
+      if(!d.isNaN) {
+        val str = format(d)
+        assert(java.lang.Double.parseDouble(str) == d, str)
+        assert(str.length <= d.toString.length, str)
+      }
+    })
+  }
+
+  test("parseLong") {
+    assert(parseLong("0") == 0)
+    assert(parseLong("-42") == -42)
+    assert(parseLong("+42") == 42)
+    assert(parseLong("9223372036854775807") == Long.MaxValue)
+    assert(parseLong("-9223372036854775808") == Long.MinValue)
+    Seq("", "-", "12a", "9223372036854775808", "1.0").foreach(str =>
+      assertThrows[NumberFormatException](parseLong(str)))
+  }
+
+  test("parseDouble") {
+    Seq("0", "-0.0", "1.5", ".5", "5.", "123.456e2", "1E-22", "-7.25E+3",
+      "0.000001", "12345678901234567890", "1.7976931348623157E308",
+      "4.9E-324", "NaN", "-Infinity", "2.2250738585072014E-308")
+      .foreach(str => assert(
+        java.lang.Double.compare(parseDouble(str), str.toDouble) == 0, str))
+    val random = new Random(7)
+    (0 until 10000).foreach(_ => {
+      val d = random.nextDouble() * Math.pow(10, random.nextInt(40) - 20)
+      val str = d.toString
+      assert(parseDouble(str) == d, str)
+    })
+    Seq("", "-", "1e", "abc", "1.2.3").foreach(str =>
+      assertThrows[NumberFormatException](parseDouble(str)))
+  }
+
+  test("parseDouble correct rounding") {
+    Seq("0.1", "1e23", "8.41e21", "9007199254740993", "2.2250738585072011E-308",
+      "4.9406564584124654E-324", "2.4703282292062327E-324",
+      "2.4703282292062328E-324", "1.7976931348623158E308", "1e309", "1e-400",
+      "7.3177701707893310e+15", "0.30000000000000004440892098500626161694526",
+      "123456789012345678901234567890e-30", "0e999")
+      .foreach(str => assert(
+        java.lang.Double.compare(parseDouble(str), str.toDouble) == 0, str))
+    val random = new Random(11)
+    (0 until 100000).foreach(_ => {
+      val digits = (0 until 1 + random.nextInt(25)).map(_ => random.nextInt(10)).mkString
+      val str = s"$digits.${random.nextInt(1000)}e${random.nextInt(700) - 350}"
+      assert(java.lang.Double.compare(parseDouble(str), str.toDouble) == 0, str)
+    })
+  }
+}
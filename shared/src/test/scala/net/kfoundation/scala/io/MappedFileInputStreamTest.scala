@@ -0,0 +1,80 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.io
+
+import net.kfoundation.scala.UString
+import net.kfoundation.scala.parse.lex.CodeWalker
+import org.scalatest.funsuite.AnyFunSuite
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+
+class MappedFileInputStreamTest extends AnyFunSuite {
+  private val TEXT = "The quick brown fox, 速い茶色の狐, jumps over the lazy dog."
+  private val OCTETS = TEXT.getBytes(StandardCharsets.UTF_8)
+
+  private def withFile(fn: java.nio.file.Path => Unit): Unit = {
+    val file = Files.createTempFile("kfoundation", ".txt")
+    try {
+      Files.write(file, OCTETS)
+      fn(file)
+    } finally {
+      Files.delete(file)
+    }
+  }
+
+  test("Read across windows") {
+    withFile(file => {
+      val input = new MappedFileInputStream(file, 7)
+      val out = new Array[Byte](OCTETS.length)
+      assert(input.read() == (OCTETS(0) & 0xff))
+      var n = 1
+      while(n < out.length) {
+        n += input.read(out, n, out.length - n)
+      }
+      assert(input.read() == -1)
+      assert(out.drop(1) sameElements OCTETS.drop(1))
+      input.close()
+    })
+  }
+
+  test("Mark and reset across windows") {
+    withFile(file => {
+      val input = new MappedFileInputStream(file, 4)
+      input.skip(3)
+      input.mark(8)
+      val first = (0 until 10).map(_ => input.read())
+      input.reset()
+      assert((0 until 10).map(_ => input.read()) == first)
+      assert(first.head == (OCTETS(3) & 0xff))
+      assert(input.available() == OCTETS.length - 13)
+      input.close()
+    })
+  }
+
+  test("Map file") {
+    withFile(file => {
+      val str = UString.mapFile(Path(file.toString))
+      assert(str == UString.of(TEXT))
+    })
+  }
+
+  test("Walk ByteBuffer") {
+    val buffer = ByteBuffer.allocateDirect(OCTETS.length)
+    buffer.put(OCTETS).flip()
+    val w = CodeWalker.of(buffer)
+    assert(w.tryRead(UString.of("The quick")))
+    assert(!w.tryRead(UString.of("fox")))
+    assert(buffer.position() == 0)
+    assert(UString.of(buffer) == UString.of(TEXT))
+  }
+}
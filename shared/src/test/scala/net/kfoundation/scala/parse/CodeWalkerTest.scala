@@ -0,0 +1,151 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.parse
+
+import net.kfoundation.scala.UString
+import net.kfoundation.scala.parse.lex.CodeWalker
+import org.scalatest.funsuite.AnyFunSuite
+
+import java.io.InputStream
+import java.nio.charset.StandardCharsets
+
+
+class CodeWalkerTest extends AnyFunSuite {
+
+  /** Delivers one octet per read, reports nothing available, has no mark. */
+  private class TrickleInputStream(str: String) extends InputStream {
+    private val octets = str.getBytes(StandardCharsets.UTF_8)
+    private var pos = 0
+
+    override def read(): Int =
+      if(pos < octets.length) {
+        pos += 1
+        octets(pos - 1) & 0xff
+      } else {
+        -1
+      }
+
+    override def read(b: Array[Byte], off: Int, len: Int): Int =
+      if(len == 0) 0 else {
+        val c = read()
+        if(c < 0) -1 else {
+          b(off) = c.toByte
+          1
+        }
+      }
+
+    override def available(): Int = 0
+
+    override def markSupported(): Boolean = false
+
+    override def mark(readLimit: Int): Unit =
+      throw new UnsupportedOperationException
+
+    override def reset(): Unit =
+      throw new UnsupportedOperationException
+  }
+
+
+  test("Rollback without mark support") {
+    val w = CodeWalker.of(new TrickleInputStream("hello, 世界!"))
+    assert(w.hasMore)
+    assert(!w.tryRead(UString.of("help")))
+    assert(w.tryRead(UString.of("hel")))
+    assert(w.readAll(ch => ch != ',') == 2)
+    assert(w.getCurrentSelection == UString.of("hello"))
+    w.commit()
+    assert(w.tryRead(','.toInt))
+    w.skipSpaces()
+    assert(w.tryReadCodePoint == '世')
+    assert(w.tryRead(UString.of("界")))
+    assert(w.getCurrentSelection == UString.of("世界"))
+    assert(w.getCurrentLocation.getCol == 10)
+    assert(w.tryReadCodePoint == '!')
+    assert(!w.hasMore)
+    assert(w.tryReadCodePoint == CodeWalker.NOT_FOUND)
+  }
+
+  test("Selection across refills") {
+    val text = "x" * 20000 + "y"
+    val w = CodeWalker.of(new TrickleInputStream(text))
+    assert(w.readAll(ch => ch == 'x') == 20000)
+    assert(!w.tryRead(UString.of("yz")))
+    assert(w.tryRead('y'.toInt))
+    assert(w.getCurrentSelection == UString.of(text))
+  }
+
+  test("Skipping a block larger than the window") {
+    val head = "{\"a\": [".getBytes(StandardCharsets.UTF_8)
+    val item = "12345, ".getBytes(StandardCharsets.UTF_8)
+    val tail = "0]} next".getBytes(StandardCharsets.UTF_8)
+    val nItems = 100000
+    var maxRead = 0
+    val input = new InputStream {
+      private var pos = 0
+      private val size = head.length + nItems*item.length + tail.length
+
+      private def octetAt(i: Int): Byte =
+        if(i < head.length) {
+          head(i)
+        } else if(i - head.length < nItems*item.length) {
+          item((i - head.length) % item.length)
+        } else {
+          tail(i - head.length - nItems*item.length)
+        }
+
+      override def read(): Int =
+        if(pos < size) {
+          pos += 1
+          octetAt(pos - 1) & 0xff
+        } else {
+          -1
+        }
+
+      override def read(b: Array[Byte], off: Int, len: Int): Int = {
+        maxRead = Math.max(maxRead, len)
+        if(pos >= size) -1 else {
+          val n = Math.min(len, size - pos)
+          (0 until n).foreach(i => b(off + i) = octetAt(pos + i))
+          pos += n
+          n
+        }
+      }
+    }
+
+    val w = CodeWalker.of(input)
+    assert(w.tryRead('{'.toInt))
+    assert(w.skipBlock("[]{}"))
+    assert(maxRead <= 8192)
+    w.skipSpaces()
+    assert(w.tryRead(UString.of("next")))
+  }
+
+  test("Pattern rollback") {
+    val w = CodeWalker.of(new TrickleInputStream("user:pass"))
+    assert(w.patternWalker(4).readAll(Character.isLetter).test('@').get.isEmpty)
+    assert(w.patternWalker(4).readAll(Character.isLetter).test(':').get
+      .contains(UString.of("user")))
+    assert(w.tryRead(UString.of("pass")))
+  }
+
+  test("Ranges resolved on demand") {
+    val w = CodeWalker.of(UString.of("ab\n  é cd"))
+    w.readAll(ch => ch != '\n')
+    val first = w.commit()
+    w.skipSpaces()
+    assert(w.tryRead(UString.of("é c")))
+    val second = w.commit()
+    assert((first.begin.getRow, first.begin.getCol) == (1, 1))
+    assert((first.end.getRow, first.end.getCol) == (1, 3))
+    assert((second.begin.getRow, second.begin.getCol, second.begin.getStreamPos) == (2, 3, 5))
+    assert((second.end.getRow, second.end.getCol, second.end.getStreamPos) == (2, 6, 9))
+    assert(w.lexicalErrorAtBeginning("x").location.getCol == 6)
+  }
+}
@@ -46,4 +46,19 @@ class KeywordTokenTest extends AnyFlatSpec {
     assert(parse("kwa 123").map(_.value).contains(reader.KW1))
     assert(parse("kwb abcd").map(_.value).contains(reader.KW2))
   }
+
+  "Overlapping keywords" should "be read in order of addition" in {
+    object overlapping extends KeywordToken.Reader {
+      val INT: UString = add("int")
+      val IN: UString = add("in")
+      val INTERFACE: UString = add("interface")
+    }
+    val w = CodeWalker.of("interface in")
+    assert(overlapping.tryRead(w).map(_.value).contains(overlapping.INT))
+    assert(w.tryRead(UString.of("erface")))
+    w.skipSpaces()
+    val token = overlapping.tryRead(w)
+    assert(token.map(_.value).contains(overlapping.IN))
+    assert(token.map(_.end.getCol).contains(13))
+  }
 }
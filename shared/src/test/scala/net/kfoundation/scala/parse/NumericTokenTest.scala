@@ -10,7 +10,7 @@
 package net.kfoundation.scala.parse
 
 import net.kfoundation.scala.UString
-import net.kfoundation.scala.parse.lex.{CodeWalker, DecimalToken, IntegralToken, NumericToken}
+import net.kfoundation.scala.parse.lex.{CodeWalker, DecimalToken, IntegralToken, LexicalError, NumericToken}
 import org.scalatest.flatspec.AnyFlatSpec
 
 class NumericTokenTest extends AnyFlatSpec {
@@ -102,5 +102,50 @@ class NumericTokenTest extends AnyFlatSpec {
         .contains(item._2)))
   }
 
+  "Literal reader" should "produce values without tokens" in {
+    val w = CodeWalker.of("12 -0.5e1 x")
+    val literal = new NumericToken.Literal
+    assert(NumericToken.tryReadValue(w, literal))
+    assert(literal.isIntegral && literal.integralValue == 12)
+    w.skipSpaces()
+    assert(NumericToken.tryReadValue(w, literal))
+    assert(!literal.isIntegral && literal.decimalValue == -5.0)
+    w.skipSpaces()
+    assert(!NumericToken.tryReadValue(w, literal))
+  }
+
+  "Decimal numbers" should "be correctly rounded" in {
+    Seq("0.1", "2.2250738585072014E-308", "9007199254740993.0", "1e23",
+      "3.14159265358979323846264338327950288", "-4.9E-324")
+      .foreach(str => assert(parse(str)
+        .map(_.asInstanceOf[DecimalToken].value)
+        .contains(java.lang.Double.parseDouble(str)), str))
+  }
+
+  "Integers out of Long range" should "be parsed as DecimalToken" in {
+    assert(parse("9223372036854775807")
+      .map(_.asInstanceOf[IntegralToken].value)
+      .contains(Long.MaxValue))
+    assert(parse("-9223372036854775808")
+      .map(_.asInstanceOf[IntegralToken].value)
+      .contains(Long.MinValue))
+    assert(parse("9223372036854775808")
+      .map(_.asInstanceOf[DecimalToken].value)
+      .contains(9.223372036854775808E18))
+  }
+
+  "Missing exponent" should "be rejected" in {
+    Seq[UString]("1e", "1.5E+", "2e-x").foreach(str =>
+      assertThrows[LexicalError](parse(str)))
+  }
 
+  "Literal with text" should "produce exact BigDecimal" in {
+    val str = "123456789012345678901234567890.000000000000000000001"
+    val literal = new NumericToken.Literal(true)
+    assert(NumericToken.tryReadValue(CodeWalker.of(str), literal))
+    assert(literal.bigDecimalValue == new java.math.BigDecimal(str))
+    val inexact = new NumericToken.Literal
+    assert(NumericToken.tryReadValue(CodeWalker.of("0.1"), inexact))
+    assert(inexact.bigDecimalValue == new java.math.BigDecimal("0.1"))
+  }
 }
@@ -0,0 +1,76 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+
+package net.kfoundation.scala.parse
+
+import net.kfoundation.scala.{UChar, UString}
+import net.kfoundation.scala.parse.lex._
+import net.kfoundation.scala.parse.syntax.{SyntaxError, TokenWalker}
+import org.scalatest.flatspec.AnyFlatSpec
+
+
+
+class TokenWalkerTest extends AnyFlatSpec {
+
+  object keywords extends KeywordToken.Reader {
+    val LET: UString = add("let")
+  }
+
+  object punctuations extends PunctuationToken.Reader {
+    val EQUALS: UChar = add('=')
+    val SEMICOLON: UChar = add(';')
+  }
+
+  private val readers = Seq(keywords, punctuations, IdentifierToken.reader,
+    NumericToken.reader)
+
+  private def walker(input: UString, capacity: Int): TokenWalker =
+    new TokenWalker("test", TokenStream.of(CodeWalker.of(input), readers),
+      capacity)
+
+
+  "Token stream" should "produce tokens on demand" in {
+    val w = walker("let x = 1; let y = 2;", 4)
+    (0 until 2).foreach(_ => {
+      val begin = w.getCursor
+      w.expectKeyword("let")
+      w.expectIdentifier()
+      w.expectPunctuation('=')
+      assert(w.expect(classOf[IntegralToken]).value > 0)
+      w.expectPunctuation(';')
+      assert(w.range(w.getCursor - 3).end.getCol == w.lastToken.get.end.getCol)
+      assertThrows[IllegalArgumentException](w.range(begin))
+    })
+    assert(w.thisToken.isEmpty)
+  }
+
+  it should "look ahead within capacity" in {
+    val w = walker("a b c", 3)
+    assert(w.peek(1).map(_.value).contains(UString.of("b")))
+    assertThrows[IllegalArgumentException](w.peek(2))
+    w.step()
+    assert(w.lastToken.map(_.value).contains(UString.of("a")))
+  }
+
+  it should "report unrecognized input" in {
+    val w = walker("let ?", 4)
+    w.expectKeyword("let")
+    assertThrows[LexicalError](w.thisToken)
+  }
+
+  "Sequence of tokens" should "be fully retained" in {
+    val w = TokenSeqBuilder().kw("let").id("x").p(';').buildWalker
+    w.expectKeyword("let")
+    w.expectIdentifier()
+    assertThrows[SyntaxError](w.expectPunctuation('='))
+    w.step()
+    assert(w.range(0).end.getCol == 6)
+  }
+}
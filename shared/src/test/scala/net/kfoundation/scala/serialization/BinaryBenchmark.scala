@@ -0,0 +1,67 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization
+
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+
+
+
+/**
+ * Compares the size and throughput of the binary format against JSON and K4,
+ * on the fixtures of SerializationTestCommons. Run with:
+ *
+ * <pre>
+ * sbt "shared/Test/runMain net.kfoundation.scala.serialization.BinaryBenchmark"
+ * </pre>
+ */
+object BinaryBenchmark {
+  import SerializationTestCommons._
+
+  private val COUNT = 20000
+  private val ROUNDS = 20
+
+  private val SAMPLE: Seq[C] = (0 until COUNT).map(i => C(
+    Seq(A("item " + i, i), A("café \"" + i + "\"", -i)),
+    B(i % 2 == 0, i * 1.0e-3 + 0.1)))
+
+  private val FORMATS = Seq("JSON" -> Json, "K4" -> K4, "Binary" -> Binary)
+
+
+  private def write(factory: ObjectSerializerFactory): Array[Byte] = {
+    val output = new ByteArrayOutputStream()
+    C_RW.seq.write(factory, output, SAMPLE)
+    output.toByteArray
+  }
+
+
+  private def read(factory: ObjectDeserializerFactory, bytes: Array[Byte]): Int =
+    C_RW.seq.read(factory.of(ByteBuffer.wrap(bytes))).size
+
+
+  private def measure(name: String, size: Int, fn: () => Unit): Unit = {
+    (0 until ROUNDS).foreach(_ => fn())
+    val start = System.nanoTime()
+    (0 until ROUNDS).foreach(_ => fn())
+    val seconds = (System.nanoTime() - start) / 1e9
+    println(f"$name%-16s ${COUNT * ROUNDS / seconds}%12.0f objects/s " +
+      f"${size.toDouble * ROUNDS / seconds / (1 << 20)}%8.1f MB/s")
+  }
+
+
+  def main(args: Array[String]): Unit = FORMATS.foreach(f => {
+    val (name, factory) = f
+    val bytes = write(factory)
+    assert(read(factory, bytes) == COUNT)
+    println(f"$name%-16s ${bytes.length}%12d octets")
+    measure(s"$name write", bytes.length, () => write(factory))
+    measure(s"$name read", bytes.length, () => read(factory, bytes))
+  })
+}
@@ -0,0 +1,109 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization
+
+import net.kfoundation.scala.UString
+import org.scalatest.flatspec.AnyFlatSpec
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream}
+
+
+class BinarySerializationTest extends AnyFlatSpec {
+  import SerializationTestCommons._
+
+  private val INPUT = C(
+    Seq(A("one", 1), A("two \"2\" ü", -2), A("three", Int.MaxValue)),
+    B(false, -123.456))
+
+  private def write[T](factory: ObjectSerializerFactory, value: T)
+    (implicit writer: ValueWriter[T]): Array[Byte] =
+  {
+    val output = new ByteArrayOutputStream()
+    writer.write(factory, output, value)
+    output.toByteArray
+  }
+
+  private def read[T](bytes: Array[Byte])(implicit reader: ValueReader[T]): T =
+    reader.read(BinaryObjectDeserializer.FACTORY.of(new ByteArrayInputStream(bytes)))
+
+
+  "Object" should "survive a round trip" in {
+    assert(read[C](write(Binary, INPUT)) == INPUT)
+    assert(read[C](write(BinaryObjectSerializer.UNCHECKED_FACTORY, INPUT)) == INPUT)
+  }
+
+  "Numeric arrays" should "survive a round trip" in {
+    val result = read(write(BinaryObjectSerializer.FACTORY, ARRAYS)(ARRAYS_RW))(ARRAYS_RW)
+    assert(result._1.sameElements(ARRAYS._1))
+    assert(result._2.sameElements(ARRAYS._2))
+    assert(result._3.sameElements(ARRAYS._3))
+    assert(result._4.sameElements(ARRAYS._4))
+  }
+
+  "Names" should "be written once when references are used" in {
+    val many = C((0 until 100).map(i => A("a" + i, i)), B(true, 0.5))
+    val withReferences = write(BinaryObjectSerializer.FACTORY, many)
+    val withoutReferences = write(
+      BinaryObjectSerializer.factory(isChecked = true, useReferences = false), many)
+    assert(withReferences.length < withoutReferences.length)
+    assert(read[C](withoutReferences) == many)
+    assert(write(BinaryObjectSerializer.FACTORY, many).length <
+      write(JsonObjectSerializer.FACTORY, many).length)
+  }
+
+  "Properties not selected" should "be skipped" in {
+    val bytes = write(BinaryObjectSerializer.FACTORY, INPUT)
+    val deserializer = BinaryObjectDeserializer.FACTORY.of(new ByteArrayInputStream(bytes))
+    deserializer.select(Seq(UString.of("c2")))
+    deserializer.readObjectBegin()
+    assert(deserializer.readPropertyName() == UString.of("c2"))
+    assert(B_RW.read(deserializer) == INPUT.c2)
+    assert(deserializer.tryReadPropertyName().isEmpty)
+    deserializer.readObjectEnd()
+  }
+
+  "Truncated input" should "result in error" in {
+    val bytes = write(BinaryObjectSerializer.FACTORY, INPUT)
+    assertThrows[DeserializationError](read[C](bytes.take(bytes.length / 2)))
+  }
+
+  private def property(octets: Seq[Int]): ObjectDeserializer = {
+    import internals.BinarySymbols._
+    val head = Seq(OBJECT_BEGIN, NAME_NULL, PROPERTY, NAME_INLINE, 1, 'a'.toInt)
+    val deserializer = BinaryObjectDeserializer.FACTORY.of(
+      new ByteArrayInputStream((head ++ octets).map(_.toByte).toArray))
+    deserializer.readObjectBegin()
+    deserializer.readPropertyName()
+    deserializer
+  }
+
+  "Oversized lengths" should "result in error rather than allocation" in {
+    import internals.BinarySymbols._
+    val huge = Seq(0xFF, 0xFF, 0xFF, 0xFF, 0x07)
+    assertThrows[DeserializationError](property(LONG_ARRAY +: huge).readLongArray())
+    assertThrows[DeserializationError](property(LONG_ARRAY +: huge).readIntArray())
+    assertThrows[DeserializationError](property(LONG_ARRAY +: huge).readByteArray())
+    assertThrows[DeserializationError](property(DOUBLE_ARRAY +: huge).readDoubleArray())
+    assertThrows[DeserializationError](property(STRING +: huge).readStringLiteral())
+  }
+
+  "Error offset" should "count the octets of long strings" in {
+    import internals.BinarySymbols._
+    val length = 3*BUFFER_SIZE + 5
+    val octets = Seq(STRING, 0x80 | length & 0x7F, 0x80 | (length >> 7) & 0x7F,
+      length >> 14) ++ Seq.fill(length)('x'.toInt) ++
+      Seq(PROPERTY, NAME_INLINE, 1, 'b'.toInt, TRUE)
+    val deserializer = property(octets)
+    assert(deserializer.readStringLiteral().getLength == length)
+    assert(deserializer.readPropertyName() == UString.of("b"))
+    val e = intercept[DeserializationError](deserializer.readStringLiteral())
+    assert(e.getMessage.startsWith(s"[$$stream@1:${6 + octets.length}]"))
+  }
+}
@@ -0,0 +1,295 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+
+package net.kfoundation.scala.serialization
+
+import net.kfoundation.scala.UString
+import net.kfoundation.scala.parse.CodeLocation
+import net.kfoundation.scala.parse.lex.{CodeWalker, NumericToken, StringToken}
+import net.kfoundation.scala.serialization.internals.{JsonScanner, ObjectStreamStateMachine}
+
+import java.io.ByteArrayInputStream
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+
+
+/**
+ * Compares the throughput of JsonObjectDeserializer against the former
+ * implementation based on CodeWalker and token readers, which is reproduced
+ * here. The reproduction runs on the current CodeWalker, token readers and
+ * ObjectStreamStateMachine, which have since been made faster themselves, so
+ * it shows only the share of the gain due to JsonScanner. To compare against
+ * the original implementation as a whole, run the same input through
+ * JsonObjectDeserializer of an earlier revision. Run with:
+ *
+ * <pre>
+ * sbt "shared/Test/runMain net.kfoundation.scala.serialization.JsonBenchmark [former|scanner]"
+ * </pre>
+ */
+object JsonBenchmark {
+  import SerializationTestCommons._
+  import internals.CommonSymbols._
+
+  private val COUNT = 50000
+  private val ROUNDS = 20
+  private val C1 = UString.of("c1")
+  private val C2 = UString.of("c2")
+  private val A1 = UString.of("a1")
+  private val A2 = UString.of("a2")
+  private val B1 = UString.of("b1")
+  private val B2 = UString.of("b2")
+
+  private class FormerJsonObjectDeserializer(walker: CodeWalker) extends ObjectDeserializer {
+    private val stateMachine = new ObjectStreamStateMachine
+    private val number = new NumericToken.Literal
+
+    override def readObjectBegin(): Option[UString] = {
+      if(stateMachine.isInCollection && !stateMachine.isFirst) {
+        walker.skipSpaces()
+        if(!walker.tryRead(COMMA)) {
+          throw walker.lexicalErrorAtCurrentLocation("',' expected")
+        }
+      }
+      stateMachine.objectBegin()
+      walker.skipSpaces()
+      if(!walker.tryRead(OPEN_CURLY_BRACE)) {
+        throw walker.lexicalErrorAtBeginning("'{' expected")
+      }
+      walker.discard()
+      None
+    }
+
+    override def readObjectEnd(): Option[UString] = {
+      stateMachine.objectEnd()
+      walker.skipSpaces()
+      if(!walker.tryRead(CLOSE_CURLY_BRACE)) {
+        throw walker.lexicalErrorAtBeginning("'}' expected")
+      }
+      walker.discard()
+      None
+    }
+
+    override def readCollectionBegin(): Unit = {
+      stateMachine.collectionBegin()
+      walker.skipSpaces()
+      if(!walker.tryRead(OPEN_BRACE)) {
+        throw walker.lexicalErrorAtBeginning("'[' expected")
+      }
+      walker.discard()
+    }
+
+    override def tryReadCollectionEnd(): Boolean = {
+      walker.skipSpaces()
+      if(walker.tryRead(CLOSE_BRACE)) {
+        walker.discard()
+        stateMachine.collectionEnd()
+        true
+      } else {
+        false
+      }
+    }
+
+    override def tryReadPropertyName(): Option[UString] =
+      if(!stateMachine.isFirst && !walker.tryRead(COMMA)) {
+        walker.skipSpaces()
+        None
+      } else {
+        walker.skipSpaces()
+        StringToken.tryReadValue(walker).map(name => {
+          if(!walker.tryRead(COLON)) {
+            throw walker.lexicalErrorAtBeginning("':' expected")
+          }
+          walker.discard()
+          stateMachine.property()
+          name
+        })
+      }
+
+    override def readStringLiteral(): UString = {
+      stateMachine.literal()
+      walker.skipSpaces()
+      StringToken.tryReadValue(walker)
+        .getOrElse(throw walker.lexicalErrorAtBeginning("String literal expected"))
+    }
+
+    override def readIntegerLiteral(): Long = {
+      stateMachine.literal()
+      walker.skipSpaces()
+      if(!NumericToken.tryReadValue(walker, number) || !number.isIntegral) {
+        throw walker.lexicalErrorAtCurrentLocation("Integral value expected")
+      }
+      number.integralValue
+    }
+
+    override def readDecimalLiteral(): Double = {
+      stateMachine.literal()
+      walker.skipSpaces()
+      if(!NumericToken.tryReadValue(walker, number)) {
+        throw walker.lexicalErrorAtCurrentLocation("Decimal value expected")
+      }
+      number.decimalValue
+    }
+
+    override def readBooleanLiteral(): Boolean = {
+      stateMachine.literal()
+      walker.skipSpaces()
+      if(walker.tryRead(TRUE)) {
+        walker.discard()
+        true
+      } else if(walker.tryRead(FALSE)) {
+        walker.discard()
+        false
+      } else {
+        throw walker.lexicalErrorAtBeginning("Expected a boolean value")
+      }
+    }
+
+    override protected def getCurrentLocation: CodeLocation =
+      walker.getCurrentLocation
+  }
+
+
+  private def sample: Array[Byte] = (0 until COUNT)
+    .map(i => s"""{"c1":[{"a1":"item $i","a2":$i},{"a1":"café \\"$i\\"","a2":${-i}}],""" +
+      s""""c2":{"b1":${i % 2 == 0},"b2":${i * 1.0e-3 + 0.1}}}""")
+    .mkString("[\n  ", ",\n  ", "\n]")
+    .getBytes(StandardCharsets.UTF_8)
+
+
+  private def readAll(d: ObjectDeserializer): Int = {
+    var n = 0
+    d.readCollectionBegin()
+    while(!d.tryReadCollectionEnd()) {
+      C_RW.read(d)
+      n += 1
+    }
+    n
+  }
+
+
+  /** Reads the same input calling the deserializer directly. */
+  private def walkAll(d: ObjectDeserializer): Int = {
+    var n = 0
+    def walkObject(): Unit = {
+      d.readObjectBegin()
+      var name = d.tryReadPropertyName()
+      while(name.isDefined) {
+        name.get match {
+          case C1 =>
+            d.readCollectionBegin()
+            while(!d.tryReadCollectionEnd()) {
+              walkObject()
+            }
+          case C2 => walkObject()
+          case A1 => d.readStringLiteral()
+          case A2 => d.readIntegerLiteral()
+          case B1 => d.readBooleanLiteral()
+          case B2 => d.readDecimalLiteral()
+        }
+        name = d.tryReadPropertyName()
+      }
+      d.readObjectEnd()
+    }
+    d.readCollectionBegin()
+    while(!d.tryReadCollectionEnd()) {
+      walkObject()
+      n += 1
+    }
+    n
+  }
+
+
+  /** Lexes the input the way the former implementation did. */
+  private def formerTokens(w: CodeWalker): Int = {
+    val punctuations = Seq(OPEN_CURLY_BRACE, CLOSE_CURLY_BRACE, OPEN_BRACE,
+      CLOSE_BRACE, COLON, COMMA)
+    val number = new NumericToken.Literal
+    var n = 0
+    w.skipSpaces()
+    while(w.hasMore) {
+      if(!(punctuations.exists(w.tryRead) || StringToken.tryReadValue(w).isDefined ||
+        NumericToken.tryReadValue(w, number) || w.tryRead(TRUE) || w.tryRead(FALSE)))
+      {
+        throw w.lexicalErrorAtCurrentLocation("Unexpected input")
+      }
+      w.skipSpaces()
+      n += 1
+    }
+    n
+  }
+
+
+  private def scannerTokens(s: JsonScanner): Int = {
+    var n = 0
+    var octet = s.skipSpaces()
+    while(octet != JsonScanner.EOF) {
+      octet match {
+        case '"' => s.tryReadString()
+        case 't' | 'f' => s.readBoolean()
+        case '{' | '}' | '[' | ']' | ':' | ',' => s.tryRead(octet)
+        case _ => if(!s.tryReadNumber()) throw s.error("Unexpected input")
+      }
+      octet = s.skipSpaces()
+      n += 1
+    }
+    n
+  }
+
+
+  /** Reports the best of a number of rounds, after as many for warming up. */
+  private def measure(name: String, bytes: Array[Byte], fn: Array[Byte] => Int): Double = {
+    val expected = fn(bytes)
+    (0 until ROUNDS).foreach(_ => assert(fn(bytes) == expected))
+    var best = Long.MaxValue
+    (0 until ROUNDS).foreach(_ => {
+      val start = System.nanoTime()
+      fn(bytes)
+      best = Math.min(best, System.nanoTime() - start)
+    })
+    val mbs = bytes.length.toDouble / (best / 1e9) / (1 << 20)
+    println(f"$name%-24s $mbs%10.1f MB/s")
+    mbs
+  }
+
+
+  private def compare(name: String, former: Array[Byte] => Int,
+    current: Array[Byte] => Int, sides: Set[String]): Unit =
+  {
+    val bytes = sample
+    val f = if(sides("former")) measure(s"$name (former)", bytes, former) else 0
+    val c = if(sides("scanner")) measure(s"$name (scanner)", bytes, current) else 0
+    if(f > 0 && c > 0) {
+      println(f"$name speedup: ${c / f}%.1fx")
+    }
+  }
+
+
+  /**
+   * Runs both implementations, unless given "former" or "scanner" to run
+   * only one. Running each in its own JVM keeps the readers they share from
+   * being compiled for both.
+   */
+  def main(args: Array[String]): Unit = {
+    val sides = if(args.isEmpty) Set("former", "scanner") else args.toSet
+    compare("lexing",
+      b => formerTokens(CodeWalker.of(ByteBuffer.wrap(b))),
+      b => scannerTokens(new JsonScanner("$buffer", new ByteArrayInputStream(b))),
+      sides)
+    compare("deserializer",
+      b => walkAll(new FormerJsonObjectDeserializer(CodeWalker.of(ByteBuffer.wrap(b)))),
+      b => walkAll(JsonObjectDeserializer.FACTORY.of(ByteBuffer.wrap(b))),
+      sides)
+    compare("ValueReader",
+      b => readAll(new FormerJsonObjectDeserializer(CodeWalker.of(ByteBuffer.wrap(b)))),
+      b => readAll(JsonObjectDeserializer.FACTORY.of(ByteBuffer.wrap(b))),
+      sides)
+  }
+}
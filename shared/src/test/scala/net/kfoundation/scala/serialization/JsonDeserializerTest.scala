@@ -9,9 +9,15 @@
 
 package net.kfoundation.scala.serialization
 
+import net.kfoundation.scala.UString
 import net.kfoundation.scala.UString.Interpolator
+import net.kfoundation.scala.parse.lex.LexicalError
+import net.kfoundation.scala.serialization.internals.JsonScanner
 import org.scalatest.flatspec.AnyFlatSpec
 
+import java.lang.management.ManagementFactory
+import java.nio.ByteBuffer
+
 class JsonDeserializerTest extends AnyFlatSpec {
   import SerializationTestCommons._
 
@@ -43,4 +49,160 @@ class JsonDeserializerTest extends AnyFlatSpec {
     assert(output == expected)
   }
 
+  "Escape sequences" should "be decoded" in {
+    val input = U"""{"a1": "tab\t quote\" \u00e9 \ud83d\ude00 \/", "a2": -12}"""
+    assert(A_RW.read(JsonObjectDeserializer.FACTORY, input) ==
+      A("tab\t quote\" \u00e9 \ud83d\ude00 /", -12))
+  }
+
+  "Unpaired surrogates" should "be replaced" in {
+    val input = UString.of(
+      "{\"a1\": \"\\ud83d\\ud83d\\ude00 \\ude00 \\ud83d\\u0041 \\ud83d\", \"a2\": 0}")
+    assert(A_RW.read(JsonObjectDeserializer.FACTORY, input) ==
+      A("\ufffd\ud83d\ude00 \ufffd \ufffdA \ufffd", 0))
+  }
+
+  "Numbers" should "be converted exactly" in {
+    val input = U"""{"b1": true, "b2": 2.2250738585072014E-308}"""
+    assert(B_RW.read(JsonObjectDeserializer.FACTORY, input) ==
+      B(true, 2.2250738585072014E-308))
+  }
+
+  "Numbers not allowed in JSON" should "be rejected" in {
+    Seq("+1", ".5", "1.", "-.5", "1.e3").foreach(n => {
+      val input = UString.of("{\"b1\": true, \"b2\": " + n + "}")
+      assertThrows[LexicalError](B_RW.read(JsonObjectDeserializer.FACTORY, input))
+    })
+  }
+
+  "Errors" should "point to their location" in {
+    val input = U"""{
+      |  "a1": "x",
+      |  "a2": 1.5
+      |}""".stripMargin
+    val e = intercept[LexicalError](A_RW.read(JsonObjectDeserializer.FACTORY, input))
+    assert(e.location.getRow == 3 && e.location.getCol == 12, e.getMessage)
+  }
+
+  "Properties not selected" should "be skipped" in {
+    val input = U"""{
+      |  "x1": {"y": ["}", "\"]", {"z": [1, 2]}], "w": null},
+      |  "a1": "one",
+      |  "x2": [true, false, -1.5e3],
+      |  "a2": 1,
+      |  "x3": "tail"
+      |}""".stripMargin
+    assert(A_RW.read(JsonObjectDeserializer.FACTORY, input) == A("one", 1))
+  }
+
+  "Property names" should "be matched however they are written" in {
+    val input = UString.of(
+      "{\"a\\u0031\": \"one\", \"a1x\": 0, \"a\": 0, a2: 1, \"a2\\\"\": 2}")
+    assert(A_RW.read(JsonObjectDeserializer.FACTORY, input) == A("one", 1))
+    val names = new PropertyNames(Seq(U"a1", U"a2"))
+    val deserializer = JsonObjectDeserializer.FACTORY.of(stream(input))
+    deserializer.readObjectBegin()
+    assert(deserializer.tryReadPropertyIndex(names) == 0)
+    deserializer.readStringLiteral()
+    assert(deserializer.tryReadPropertyIndex(names) == 1)
+    deserializer.readIntegerLiteral()
+    assert(deserializer.tryReadPropertyIndex(names) == PropertyNames.NOT_FOUND)
+    deserializer.readObjectEnd()
+  }
+
+  "Skipped values" should "keep track of location" in {
+    val deserializer = JsonObjectDeserializer.FACTORY.of(stream(U"""{
+      |  "x": {"y": [1, {"z": "]"},
+      |    2]},
+      |  "a": true
+      |}""".stripMargin))
+    deserializer.readObjectBegin()
+    assert(deserializer.readPropertyName() == U"x")
+    deserializer.skipValue()
+    assert(deserializer.readPropertyName() == U"a")
+    val e = intercept[LexicalError](deserializer.readIntegerLiteral())
+    assert(e.location.getRow == 4 && e.location.getCol == 8, e.getMessage)
+  }
+
+  "Numeric arrays" should "be read and written" in {
+    assertArrays(JsonObjectSerializer.FACTORY, JsonObjectDeserializer.FACTORY)
+  }
+
+  "Out of range array elements" should "result in error" in {
+    def deserializer(input: UString) = {
+      val d = JsonObjectDeserializer.FACTORY.of(stream(input))
+      d.readObjectBegin()
+      d.readPropertyName()
+      d
+    }
+    val e = intercept[DeserializationError](
+      deserializer(U"""{"ints": [1, 3000000000]}""").readIntArray())
+    assert(e.getMessage.contains("3000000000"))
+    assertThrows[DeserializationError](
+      deserializer(U"""{"bytes": [1, 128]}""").readByteArray())
+  }
+
+  "Buffers" should "be read in place" in {
+    def slice(json: String): ByteBuffer = {
+      val octets = ("--" + json + "--").getBytes("UTF-8")
+      val buffer = ByteBuffer.wrap(octets, 1, octets.length - 2).slice()
+      buffer.position(1)
+      buffer
+    }
+
+    val valid = slice("{\"a1\": \"one\", \"a2\": 1}")
+    assert(A_RW.read(JsonObjectDeserializer.FACTORY.of(valid)) == A("one", 1))
+    assert(valid.position() == 1)
+
+    val json = "{\"a1\": \"two\",\n  \"a2\": x}"
+    val e = intercept[LexicalError](
+      A_RW.read(JsonObjectDeserializer.FACTORY.of(slice(json))))
+    assert(e.location.getRow == 2 && e.location.getCol == 9, e.getMessage)
+    assert(e.location.getStreamPos == json.indexOf('x'))
+  }
+
+  "Scanner" should "be reusable across array-backed buffers" in {
+    val scanner = new JsonScanner("test", stream(U"0"))
+    def buffer(json: String): ByteBuffer = {
+      val octets = ("--" + json).getBytes("UTF-8")
+      ByteBuffer.wrap(octets, 2, octets.length - 2).slice()
+    }
+    val buffers = (1 to 3).map(i => buffer(s"""["v$i", $i]"""))
+    def readAll(): Unit = buffers.zipWithIndex.foreach { case (b, i) =>
+      scanner.reset(b)
+      assert(scanner.tryRead('[') && scanner.tryReadString() == UString.of(s"v${i + 1}"))
+      assert(scanner.tryRead(',') && scanner.tryReadNumber())
+      assert(scanner.integralValue == i + 1)
+      assert(scanner.getCurrentLocation.getCol == 9)
+    }
+    readAll()
+
+    ManagementFactory.getThreadMXBean match {
+      case threads: com.sun.management.ThreadMXBean =>
+        val id = Thread.currentThread().getId
+        val before = threads.getThreadAllocatedBytes(id)
+        (0 until 1000).foreach(_ => buffers.foreach(b => {
+          scanner.reset(b)
+          scanner.skipSpaces()
+        }))
+        val perReset = (threads.getThreadAllocatedBytes(id) - before) / (1000 * buffers.size)
+        assert(perReset < JsonScanner.DEFAULT_WINDOW_SIZE / 100, perReset)
+      case _ =>
+    }
+
+    scanner.reset(stream(U"""["s"]"""))
+    assert(scanner.tryRead('[') && scanner.tryReadString() == U"s")
+    readAll()
+  }
+
+  "Columns" should "be counted in characters across refills" in {
+    val line = "{\"a1\": \"" + "\u00e9" * 40 + "\", \"a2\": x}"
+    val scanner = new JsonScanner("test", stream(UString.of(line)), 16)
+    assert(scanner.tryRead('{') && scanner.tryReadString() == U"a1")
+    assert(scanner.tryRead(':') && scanner.tryReadString() != null)
+    assert(scanner.tryRead(',') && scanner.tryReadString() == U"a2")
+    assert(scanner.tryRead(':') && scanner.skipSpaces() == 'x')
+    assert(scanner.getCurrentLocation.getCol == line.indexOf('x') + 1)
+  }
+
 }
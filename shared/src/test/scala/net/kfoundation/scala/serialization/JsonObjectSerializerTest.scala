@@ -9,9 +9,14 @@
 
 package net.kfoundation.scala.serialization
 
+import net.kfoundation.scala.UString
 import net.kfoundation.scala.UString.Interpolator
 import org.scalatest.flatspec.AnyFlatSpec
 
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+
 
 class JsonObjectSerializerTest extends AnyFlatSpec {
   import SerializationTestCommons._
@@ -48,4 +53,98 @@ class JsonObjectSerializerTest extends AnyFlatSpec {
     assert(expected == output)
   }
 
+
+  "Unchecked serializer" should "produce the same output" in {
+    val input = C(Seq(A("one", 1)), B(true, 0.5))
+    assert(C_RW.toString(JsonObjectSerializer.UNCHECKED_FACTORY, input) ==
+      C_RW.toString(JsonObjectSerializer.FACTORY, input))
+  }
+
+
+  it should "flush root literals at the end of stream" in {
+    val output = new ByteArrayOutputStream()
+    val serializer = JsonObjectSerializer.UNCHECKED_FACTORY.of(output, 2, false)
+    serializer.writeLiteral(42L)
+    serializer.writeStreamEnd()
+    assert(output.toString == "42")
+    assert(ValueReadWriters.STRING.toString(JsonObjectSerializer.UNCHECKED_FACTORY, U"x") == UString.of("\"x\""))
+  }
+
+
+  "Partly written output" should "reach the stream on flush" in {
+    val output = new ByteArrayOutputStream()
+    val serializer = JsonObjectSerializer.FACTORY.of(output, 2, true)
+    serializer.writeObjectBegin(U"A").writePropertyName(U"a1")
+    assert(output.size() == 0)
+    serializer.flush()
+    assert(output.toString == "{a1: ")
+
+    val failing = new ByteArrayOutputStream()
+    val writer = new ValueWriter[Int] {
+      override def write(serializer: ObjectSerializer, value: Int): Unit = {
+        serializer.writeObjectBegin(U"A").writePropertyName(U"a2")
+          .writeLiteral(value.toLong)
+        throw new IllegalStateException()
+      }
+    }
+    assertThrows[IllegalStateException](
+      writer.write(JsonObjectSerializer.FACTORY, failing, 7))
+    assert(failing.toString == "{\n  a2: 7")
+  }
+
+
+  "Reset" should "discard pending output and keep the kind of output" in {
+    val first = new ByteArrayOutputStream()
+    val serializer = JsonObjectSerializer.UNCHECKED_FACTORY.of(first, 2, false)
+    serializer.writeLiteral(1L)
+    val buffer = ByteBuffer.allocate(16)
+    serializer.reset(buffer).writeLiteral(2L).writeStreamEnd()
+    assert(first.size() == 0)
+    assert(buffer.position() == 1 && buffer.get(0) == '2')
+  }
+
+
+  "Strings" should "be escaped" in {
+    val input = A("say \"hi\"\\\n\t\u0001 ünï", 1)
+    val output = A_RW.toString(JsonObjectSerializer.FACTORY, input)
+    assert(output.toString.contains("say \\\"hi\\\"\\\\\\n\\t\\u0001 ünï"))
+    assert(A_RW.read(JsonObjectDeserializer.FACTORY, output) == input)
+
+    val k4Input = A("say \"hi\"\\\n\t", 2)
+    val k4Output = A_RW.toString(K4ObjectSerializer.FACTORY, k4Input)
+    assert(A_RW.read(K4ObjectDeserializer.FACTORY, k4Output) == k4Input)
+  }
+
+
+  "Channel and buffer output" should "match stream output" in {
+    val input = C((0 until 1000).map(i => A("item" + i, i)), B(true, 0.5))
+    val expected = C_RW.toString(JsonObjectSerializer.FACTORY, input)
+
+    val stream = new ByteArrayOutputStream()
+    C_RW.write(JsonObjectSerializer.FACTORY.of(Channels.newChannel(stream), 2, false), input)
+    assert(UString.of(stream.toByteArray) == expected)
+
+    val buffer = ByteBuffer.allocate(expected.getUtf8Length)
+    C_RW.write(JsonObjectSerializer.FACTORY.of(buffer, 2, false), input)
+    assert(!buffer.hasRemaining)
+    assert(UString.of(buffer.array()) == expected)
+  }
+
+
+  "Long literals" should "be passed to the output without copying" in {
+    import ValueReadWriters._
+    val rw = tuple[UString, Int]("A", "a1" -> STRING, "a2" -> INT)
+    val text = UString.of("_" + "x" * 20000).subString(1)
+    var offsets = List[Int]()
+    val output = new ByteArrayOutputStream() {
+      override def write(b: Array[Byte], off: Int, len: Int): Unit = {
+        offsets = off :: offsets
+        super.write(b, off, len)
+      }
+    }
+    rw.write(JsonObjectSerializer.FACTORY.of(output, 2, false), (text, 1))
+    assert(offsets.contains(1))
+    assert(rw.read(JsonObjectDeserializer.FACTORY, UString.of(output.toByteArray)) == (text, 1))
+  }
+
 }
@@ -177,4 +177,32 @@ class K4ObjectDeserializerTest extends AnyFlatSpec {
 
     assert(c == expected)
   }
-}
\ No newline at end of file
+
+  "Properties not selected" should "be skipped" in {
+    import SerializationTestCommons._
+
+    val input = "C[x1=\"a]\\\"}\" c1={A[a1=\"one\" x2=X[y={Y[z=1], Y[z=2]}] a2=1]} " +
+      "x3=-1.5 c2=B[b1=true b2=1.5] x4=true]"
+    val expected = C(List(A("one", 1)), B(b1 = true, 1.5))
+
+    assert(C_RW.read(FACTORY.of(stream(input))) == expected)
+  }
+
+  "Numeric arrays" should "be read and written" in {
+    SerializationTestCommons.assertArrays(K4ObjectSerializer.FACTORY, FACTORY)
+    val deserializer = FACTORY.of(stream("Object[list={1, 2.5}]"))
+    deserializer.readObjectBegin()
+    deserializer.readPropertyName()
+    assertThrows[LexicalError](deserializer.readLongArray())
+
+    val ints = FACTORY.of(stream("Object[ints={1, -3000000000}]"))
+    ints.readObjectBegin()
+    ints.readPropertyName()
+    assertThrows[DeserializationError](ints.readIntArray())
+
+    val bytes = FACTORY.of(stream("Object[bytes={-129}]"))
+    bytes.readObjectBegin()
+    bytes.readPropertyName()
+    assertThrows[DeserializationError](bytes.readByteArray())
+  }
+}
@@ -0,0 +1,83 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization
+
+import net.kfoundation.scala.UString.Interpolator
+import net.kfoundation.scala.serialization.internals.ObjectStreamStateMachine
+import org.scalatest.flatspec.AnyFlatSpec
+
+
+class ObjectStreamStateMachineTest extends AnyFlatSpec {
+  "Checked state machine" should "accept valid streams" in {
+    val sm = new ObjectStreamStateMachine
+    sm.collectionBegin(U"list")
+    (0 until 100).foreach(_ => {
+      sm.objectBegin(U"item")
+      sm.property()
+      sm.literal()
+      sm.objectEnd(U"item")
+    })
+    assert(sm.isInCollection)
+    assert(sm.collectionEnd().contains(U"list"))
+  }
+
+  it should "reject invalid transitions with path" in {
+    val sm = new ObjectStreamStateMachine
+    sm.objectBegin(U"outer")
+    sm.property()
+    sm.collectionBegin()
+    val error = intercept[ObjectStreamError](sm.literal())
+    assert(error.getMessage.startsWith("Error at [outer > <no-name>[]]"))
+  }
+
+  it should "reject sibling objects outside collections" in {
+    val sm = new ObjectStreamStateMachine
+    sm.objectBegin()
+    sm.property()
+    sm.objectBegin()
+    sm.objectEnd()
+    assertThrows[ObjectStreamError](sm.objectBegin())
+  }
+
+  it should "reject unbalanced ends" in {
+    assertThrows[ObjectStreamError](new ObjectStreamStateMachine().objectEnd())
+  }
+
+  it should "end streams only at root" in {
+    val sm = new ObjectStreamStateMachine
+    sm.objectBegin()
+    assertThrows[ObjectStreamError](sm.streamEnd())
+    sm.objectEnd()
+    sm.streamEnd()
+    assertThrows[ObjectStreamError](sm.objectBegin())
+  }
+
+  it should "report its state" in {
+    import ObjectStreamStateMachine.{State, StateId}
+    val sm = new ObjectStreamStateMachine
+    assert(sm.getState == State.STREAM_BEGIN)
+    sm.objectBegin()
+    sm.property()
+    assert(sm.getState == State.PROPERTY)
+    assert(sm.getStateId == StateId.PROPERTY)
+    assert(sm.toString.endsWith("State: PROPERTY"))
+  }
+
+  "Unchecked state machine" should "skip validation but track nesting" in {
+    val sm = new ObjectStreamStateMachine(false)
+    sm.objectBegin(U"a")
+    sm.literal()
+    sm.collectionBegin(U"b")
+    sm.literal()
+    assert(sm.isInCollection)
+    assert(sm.collectionEnd().contains(U"b"))
+    assert(sm.peek.contains(U"a"))
+  }
+}
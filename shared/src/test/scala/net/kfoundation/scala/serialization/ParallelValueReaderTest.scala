@@ -0,0 +1,123 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+
+package net.kfoundation.scala.serialization
+
+import net.kfoundation.scala.UString
+import net.kfoundation.scala.io.Path
+import net.kfoundation.scala.parse.CodeLocation
+import net.kfoundation.scala.parse.lex.LexicalError
+import org.scalatest.flatspec.AnyFlatSpec
+
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+
+class ParallelValueReaderTest extends AnyFlatSpec {
+  import SerializationTestCommons._
+
+  private val N = 20000
+
+  private def input(badRow: Int): Array[Byte] = (1 to N)
+    .map(i => if(i == badRow) s"""{"a1": x, "a2": $i}""" else s"""{"a1": "v$i", "a2": $i}""")
+    .mkString("", "\n", "\n\n")
+    .getBytes(StandardCharsets.UTF_8)
+
+  private val expected = (1 to N).map(i => A(s"v$i", i))
+
+
+  "Lines" should "be read in order" in {
+    val bytes = input(-1)
+    assert(bytes.length > 4*ParallelValueReader.MIN_CHUNK_SIZE)
+    assert(A_RW.readAll(JsonObjectDeserializer.FACTORY, bytes) == expected)
+  }
+
+  "Mapped file" should "be read in chunks" in {
+    val file = Files.createTempFile("kfoundation", ".ndjson")
+    try {
+      Files.write(file, input(-1))
+      assert(A_RW.readAll(JsonObjectDeserializer.FACTORY, Path(file.toString)) == expected)
+    } finally {
+      Files.delete(file)
+    }
+  }
+
+  "Error" should "point to its location in the whole input" in {
+    val e = intercept[LexicalError](
+      A_RW.readAll(JsonObjectDeserializer.FACTORY, input(15000)))
+    assert(e.getMessage.contains("@15000:"), e.getMessage)
+  }
+
+  "Errors read through a bi-factory" should "point to their location in the file" in {
+    val bytes = input(15000)
+    val file = Files.createTempFile("kfoundation", ".ndjson")
+    try {
+      Files.write(file, bytes)
+      Seq(
+        intercept[LexicalError](A_RW.readAll(Json, bytes)),
+        intercept[LexicalError](A_RW.readAll(Json, Path(file.toString))))
+        .foreach(e => {
+          assert(e.location.getRow == 15000, e.getMessage)
+          assert(e.location.getCol == 8, e.getMessage)
+          assert(bytes(e.location.getStreamPos.toInt) == 'x', e.getMessage)
+        })
+    } finally {
+      Files.delete(file)
+    }
+  }
+
+  "K4 lines" should "be read with one deserializer per chunk" in {
+    val lines = (1 to N).map(i => s"""A[a1="v$i" a2=$i]""")
+    assert(A_RW.readAll(K4, lines.mkString("\n").getBytes(StandardCharsets.UTF_8)) == expected)
+    val e = intercept[LexicalError](A_RW.readAll(K4,
+      lines.updated(2999, "A[a1=x]").mkString("\n").getBytes(StandardCharsets.UTF_8)))
+    assert(e.location.getRow == 3000, e.getMessage)
+  }
+
+  "Deserializers without reset" should "be produced for every line" in {
+    class Plain(d: ObjectDeserializer) extends ObjectDeserializer {
+      override def readObjectBegin(): Option[UString] = d.readObjectBegin()
+      override def readObjectEnd(): Option[UString] = d.readObjectEnd()
+      override def readCollectionBegin(): Unit = d.readCollectionBegin()
+      override def tryReadCollectionEnd(): Boolean = d.tryReadCollectionEnd()
+      override def tryReadPropertyName(): Option[UString] = d.tryReadPropertyName()
+      override def readStringLiteral(): UString = d.readStringLiteral()
+      override def readIntegerLiteral(): Long = d.readIntegerLiteral()
+      override def readDecimalLiteral(): Double = d.readDecimalLiteral()
+      override def readBooleanLiteral(): Boolean = d.readBooleanLiteral()
+      override def skipValue(): Unit = d.skipValue()
+      override protected def getCurrentLocation: CodeLocation = new CodeLocation("plain")
+    }
+    val factory = new ObjectDeserializerFactory {
+      override def of(input: InputStream): ObjectDeserializer =
+        new Plain(JsonObjectDeserializer.FACTORY.of(input))
+      override def of(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer =
+        new Plain(JsonObjectDeserializer.FACTORY.of(buffer, origin))
+      override def getMediaType: UString = JsonObjectDeserializer.FACTORY.getMediaType
+    }
+    assert(A_RW.readAll(factory, input(-1)) == expected)
+  }
+
+  "Origin past 2GB" should "be kept in error locations" in {
+    val origin = new CodeLocation("big", 7, 1, 3000000000L)
+    Seq(
+      JsonObjectDeserializer.FACTORY -> """{"a1": x}""",
+      K4ObjectDeserializer.FACTORY -> "A[a1=x]")
+      .foreach(t => {
+        val buffer = ByteBuffer.wrap(t._2.getBytes(StandardCharsets.UTF_8))
+        val e = intercept[LexicalError](A_RW.read(t._1.of(buffer, origin)))
+        assert(e.location.getRow == 7, e.getMessage)
+        assert(e.location.getStreamPos > 3000000000L, e.getMessage)
+        assert(e.location.getStreamPos < 3000000000L + buffer.capacity())
+      })
+  }
+}
@@ -0,0 +1,120 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization
+
+import net.kfoundation.scala.UString
+import net.kfoundation.scala.UString.Interpolator
+import net.kfoundation.scala.db.InsertQueryObjectSerializer
+import net.kfoundation.scala.parse.CodeLocation
+import org.scalatest.flatspec.AnyFlatSpec
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, InputStream}
+
+
+class PooledFactoryTest extends AnyFlatSpec {
+  import SerializationTestCommons._
+
+  /** Deserializer that does not support reset(). */
+  private class Plain(d: ObjectDeserializer) extends ObjectDeserializer {
+    override def readObjectBegin(): Option[UString] = d.readObjectBegin()
+    override def readObjectEnd(): Option[UString] = d.readObjectEnd()
+    override def readCollectionBegin(): Unit = d.readCollectionBegin()
+    override def tryReadCollectionEnd(): Boolean = d.tryReadCollectionEnd()
+    override def tryReadPropertyName(): Option[UString] = d.tryReadPropertyName()
+    override def readStringLiteral(): UString = d.readStringLiteral()
+    override def readIntegerLiteral(): Long = d.readIntegerLiteral()
+    override def readDecimalLiteral(): Double = d.readDecimalLiteral()
+    override def readBooleanLiteral(): Boolean = d.readBooleanLiteral()
+    override def skipValue(): Unit = d.skipValue()
+    override protected def getCurrentLocation: CodeLocation = new CodeLocation("plain")
+  }
+
+  private val INPUTS = Seq(
+    C(Seq(A("one", 1), A("two", 2)), B(false, 1.5)),
+    C(Seq(A("three \"3\"", 3)), B(true, -0.25)))
+
+  private val FORMATS = Seq(Json, K4, XML, Binary)
+
+
+  "Reset" should "make serializers and deserializers reusable" in {
+    FORMATS.foreach(format => {
+      val output1 = new ByteArrayOutputStream()
+      val serializer = format.of(output1, 2, false)
+      C_RW.write(serializer, INPUTS.head)
+      val output2 = new ByteArrayOutputStream()
+      C_RW.write(serializer.reset(output2), INPUTS(1))
+
+      val deserializer = format.of(new ByteArrayInputStream(output1.toByteArray))
+      assert(C_RW.read(deserializer) == INPUTS.head, format.getMediaType)
+      assert(C_RW.read(deserializer.reset(new ByteArrayInputStream(output2.toByteArray))) == INPUTS(1),
+        format.getMediaType)
+    })
+  }
+
+  "Pooled factories" should "produce the same results" in {
+    FORMATS.foreach(format => {
+      val pooled = new ObjectBiFactory.Adapter(
+        ObjectSerializerFactory.pooled(format),
+        ObjectDeserializerFactory.pooled(format))
+      (0 until 3).foreach(_ => INPUTS.foreach(input => {
+        val str = C_RW.toString(pooled, input)
+        assert(str == C_RW.toString(format, input))
+        assert(C_RW.read(pooled, str) == input)
+      }))
+    })
+  }
+
+  it should "reuse instances on the same thread" in {
+    val pooled = ObjectDeserializerFactory.pooled(Json)
+    val first = pooled.using(stream("{}"))(identity)
+    assert(pooled.using(stream("{}"))(identity) eq first)
+    pooled.using(stream("{}"))(outer =>
+      pooled.using(stream("{}"))(inner => assert(inner ne outer)))
+  }
+
+  it should "not reuse deserializers whose use failed" in {
+    val pooled = ObjectDeserializerFactory.pooled(Json)
+    var failed: ObjectDeserializer = null
+    assertThrows[IllegalStateException](pooled.using(stream("{}"))(d => {
+      failed = d
+      throw new IllegalStateException()
+    }))
+    assert(pooled.using(stream("{}"))(identity) ne failed)
+  }
+
+  it should "create anew what does not support reset" in {
+    val serializers = ObjectSerializerFactory.pooled(InsertQueryObjectSerializer.FACTORY)
+    (0 until 2).foreach(_ => assert(
+      A_RW.toString(serializers, A("one", 1)) ==
+        A_RW.toString(InsertQueryObjectSerializer.FACTORY, A("one", 1))))
+
+    val deserializers = ObjectDeserializerFactory.pooled(new ObjectDeserializerFactory {
+      override def of(input: InputStream): ObjectDeserializer = new Plain(Json.of(input))
+      override def getMediaType: UString = Json.getMediaType
+    })
+    (0 until 2).foreach(_ =>
+      assert(A_RW.read(deserializers, U"""{"a1": "one", "a2": 1}""") == A("one", 1)))
+  }
+
+  it should "not reuse serializers whose use failed" in {
+    FORMATS.foreach(format => {
+      val pooled = ObjectSerializerFactory.pooled(format)
+      val first = new ByteArrayOutputStream()
+      assertThrows[IllegalStateException](pooled.using(first, 2, false)(s => {
+        s.writeObjectBegin(U"A").writePropertyName(U"x").writeLiteral(1L)
+        throw new IllegalStateException()
+      }))
+      val second = new ByteArrayOutputStream()
+      C_RW.write(pooled, second, INPUTS.head)
+      assert(first.size() == 0, format.getMediaType)
+      assert(C_RW.read(format, new ByteArrayInputStream(second.toByteArray)) == INPUTS.head, format.getMediaType)
+    })
+  }
+}
@@ -37,4 +37,27 @@ object SerializationTestCommons {
     .mapRW[C](
       c => C(c._1, c._2),
       c => (c.c1, c.c2))
+
+  val ARRAYS_RW = tuple("Arrays", "ints" -> INT_ARRAY, "longs" -> LONG_ARRAY,
+    "doubles" -> DOUBLE_ARRAY, "bytes" -> BYTE_ARRAY)
+
+  val ARRAYS: (Array[Int], Array[Long], Array[Double], Array[Byte]) = (
+    Array(1, -2, Int.MaxValue),
+    Array(Long.MinValue, 0, 1234567890123L),
+    Array(0.1, -1.5E-300, 1.0E21),
+    Array(-128, 0, 127))
+
+  def assertArrays(factory: ObjectSerializerFactory,
+    deserializerFactory: ObjectDeserializerFactory): Unit =
+  {
+    val result = ARRAYS_RW.read(deserializerFactory,
+      factory.toString(ARRAYS)(ARRAYS_RW))
+    assert(result._1.sameElements(ARRAYS._1))
+    assert(result._2.sameElements(ARRAYS._2))
+    assert(result._3.sameElements(ARRAYS._3))
+    assert(result._4.sameElements(ARRAYS._4))
+    assert(ARRAYS_RW.read(deserializerFactory,
+      factory.toString((Array[Int](), Array[Long](), Array[Double](), Array[Byte]()))(ARRAYS_RW))
+      ._1.isEmpty)
+  }
 }
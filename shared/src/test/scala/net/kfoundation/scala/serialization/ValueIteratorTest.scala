@@ -0,0 +1,119 @@
+// --------------------------------------------------------------------------
+//   ██╗  ██╗███████╗
+//   ██║ ██╔╝██╔════╝   The KFoundation Project (www.kfoundation.net)
+//   █████╔╝ █████╗     KFoundation for Scala Library
+//   ██╔═██╗ ██╔══╝     Copyright (c) 2020 Mindscape Inc.
+//   ██║  ██╗██║        Terms of KnoRBA Free Public License Agreement Apply
+//   ╚═╝  ╚═╝╚═╝
+// --------------------------------------------------------------------------
+
+package net.kfoundation.scala.serialization
+
+import net.kfoundation.scala.UString
+import net.kfoundation.scala.parse.CodeLocation
+import net.kfoundation.scala.parse.lex.LexicalError
+import net.kfoundation.scala.util.Flow
+import org.scalatest.flatspec.AnyFlatSpec
+
+import java.io.{ByteArrayInputStream, InputStream}
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+
+class ValueIteratorTest extends AnyFlatSpec {
+  import SerializationTestCommons._
+
+  /** Produces its content as it is read, rather than holding it all. */
+  private class GeneratedInput(parts: Iterator[String]) extends InputStream {
+    private var current = new ByteArrayInputStream(Array[Byte]())
+    var isClosed = false
+
+    override def read(): Int = {
+      while(current.available() == 0 && parts.hasNext) {
+        current = new ByteArrayInputStream(parts.next().getBytes(StandardCharsets.UTF_8))
+      }
+      current.read()
+    }
+
+    override def read(b: Array[Byte], off: Int, len: Int): Int = {
+      while(current.available() == 0 && parts.hasNext) {
+        current = new ByteArrayInputStream(parts.next().getBytes(StandardCharsets.UTF_8))
+      }
+      current.read(b, off, len)
+    }
+
+    override def close(): Unit = isClosed = true
+  }
+
+  private def element(i: Int) = s"""{"a1": "v$i", "a2": $i}"""
+
+
+  "Collection elements" should "be read one at a time" in {
+    val n = 200000
+    val input = new GeneratedInput(Iterator("[") ++
+      (1 to n).iterator.map(i => (if(i > 1) ",\n" else "") + element(i)) ++
+      Iterator("]"))
+    val it = A_RW.iterator(JsonObjectDeserializer.FACTORY, input)
+    var count = 0
+    it.foreach(a => {
+      count += 1
+      assert(a.a2 == count)
+    })
+    assert(count == n)
+    assert(!it.hasNext)
+    it.close()
+    assert(input.isClosed)
+  }
+
+  "Empty collection" should "produce no elements" in {
+    val it = A_RW.iterator(JsonObjectDeserializer.FACTORY, stream("[ ]"))
+    assert(!it.hasNext)
+    assertThrows[NoSuchElementException](it.next())
+  }
+
+  "Lines" should "be read one at a time" in {
+    val long = "x" * 20000
+    val input = new GeneratedInput(Iterator(element(1), "\n\n  \n",
+      s"""{"a1": "$long", "a2": 2}""", "\r\n", element(3)))
+    val it = A_RW.lineIterator(JsonObjectDeserializer.FACTORY, input)
+    assert(it.toSeq == Seq(A("v1", 1), A(long, 2), A("v3", 3)))
+  }
+
+  "Lines" should "share one deserializer" in {
+    var count = 0
+    val factory = new ObjectDeserializerFactory {
+      override def of(input: InputStream): ObjectDeserializer = {
+        count += 1
+        JsonObjectDeserializer.FACTORY.of(input)
+      }
+      override def of(buffer: ByteBuffer, origin: CodeLocation): ObjectDeserializer = {
+        count += 1
+        JsonObjectDeserializer.FACTORY.of(buffer, origin)
+      }
+      override def getMediaType: UString = JsonObjectDeserializer.FACTORY.getMediaType
+    }
+    val input = stream((1 to 3).map(element).mkString("\n"))
+    assert(A_RW.lineIterator(factory, input).toSeq == (1 to 3).map(i => A(s"v$i", i)))
+    assert(count == 1)
+  }
+
+  "Line errors" should "point to their location in the whole input" in {
+    val input = new GeneratedInput(Iterator(element(1), "\n", element(2), "\n",
+      """{"a1": x, "a2": 3}""", "\n"))
+    val it = A_RW.lineIterator(JsonObjectDeserializer.FACTORY, input)
+    it.next()
+    it.next()
+    val e = intercept[LexicalError](it.next())
+    assert(e.location.getRow == 3 && e.location.getCol == 8, e.getMessage)
+  }
+
+  "Values" should "be written to flow" in {
+    val output = Flow.writable[A]
+    var values = Seq[A]()
+    output.foreach(a => values = values :+ a)
+    A_RW.readEach(
+      A_RW.lineIterator(JsonObjectDeserializer.FACTORY, stream(element(1) + "\n" + element(2))),
+      output)
+    assert(values == Seq(A("v1", 1), A("v2", 2)))
+  }
+}
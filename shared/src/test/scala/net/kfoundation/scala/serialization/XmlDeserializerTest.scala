@@ -43,4 +43,49 @@ class XmlDeserializerTest extends AnyFlatSpec {
     assert(output == expected)
   }
 
+  "Properties not selected" should "be skipped" in {
+    val input =
+      U"""<C x0="skip">
+         |    <x1><X y="a>b"><x>1</x><Y/></X><!-- </x1> --></x1>
+         |    <c1>
+         |        <A><a1>one</a1><x2/><a2>1</a2></A>
+         |    </c1>
+         |    <c2><b1>true</b1><x3>text</x3><b2>1.5</b2></c2>
+         |</C>""".stripMargin
+
+    val expected = C(List(A("one", 1)), B(b1 = true, 1.5))
+
+    assert(C_RW.read(XmlObjectDeserializer.FACTORY, input) == expected)
+  }
+
+  "Entities" should "be decoded wherever they appear in text" in {
+    assert(A_RW.read(XmlObjectDeserializer.FACTORY,
+      U"<A><a1>&lt;&amp;x&gt;y&quot;</a1><a2>1</a2></A>") == A("<&x>y\"", 1))
+  }
+
+  "Non-ASCII text" should "be read whole" in {
+    assert(A_RW.read(XmlObjectDeserializer.FACTORY,
+      U"<A><a1>ünïcödé 漢字</a1><a2>2</a2></A>") == A("ünïcödé 漢字", 2))
+  }
+
+  "Escaped text" should "be read back as written" in {
+    val input = A("it's \"<b>\" & ünïcödé", 1)
+    val output = A_RW.toString(XmlObjectSerializer.FACTORY, input)
+    assert(output.toString.contains("it's \"&lt;b&gt;\" &amp; ünïcödé"))
+    assert(A_RW.read(XmlObjectDeserializer.FACTORY, output) == input)
+  }
+
+  "Numeric arrays" should "be read and written" in {
+    assertArrays(XmlObjectSerializer.FACTORY, XmlObjectDeserializer.FACTORY)
+
+    val deserializer = XmlObjectDeserializer.FACTORY.of(
+      stream(U"<Object><bytes>1 300</bytes></Object>"))
+    deserializer.readObjectBegin()
+    deserializer.readPropertyName()
+    assertThrows[DeserializationError](deserializer.readByteArray())
+
+    val output = ARRAYS_RW.toString(XmlObjectSerializer.FACTORY,
+      (Array(1), Array(2L), Array(0.1, 1.0E23), Array[Byte](-3)))
+    assert(output.toString.contains(">0.1 1.0E23<"))
+  }
 }